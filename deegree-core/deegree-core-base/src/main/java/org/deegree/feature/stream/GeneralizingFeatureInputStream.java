@@ -0,0 +1,153 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import static java.util.Collections.singletonList;
+import static org.deegree.geometry.utils.GeometrySimplifier.simplify;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.Features;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.utils.GeometrySimplifier;
+
+/**
+ * {@link FeatureInputStream} that generalizes the geometry properties of the features of another
+ * {@link FeatureInputStream} (see {@link GeometrySimplifier}).
+ * <p>
+ * Intended for feature stores that cannot generalize in the backend, e.g. for rendering small scale maps. The features
+ * of the backing stream are never modified: if a geometry can be generalized, a copy of the feature is returned.
+ * Geometries that are nested inside complex properties are not generalized.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class GeneralizingFeatureInputStream implements FeatureInputStream {
+
+    private final FeatureInputStream rs;
+
+    private final double tolerance;
+
+    /**
+     * Creates a new {@link GeneralizingFeatureInputStream} that is backed by the given {@link FeatureInputStream}.
+     * 
+     * @param rs
+     *            FeatureInputStream to back the stream, must not be <code>null</code>
+     * @param tolerance
+     *            generalization tolerance in units of the geometries' crs, must be positive
+     */
+    public GeneralizingFeatureInputStream( FeatureInputStream rs, double tolerance ) {
+        this.rs = rs;
+        this.tolerance = tolerance;
+    }
+
+    @Override
+    public void close() {
+        rs.close();
+    }
+
+    @Override
+    public FeatureCollection toCollection() {
+        return Features.toCollection( this );
+    }
+
+    @Override
+    public Iterator<Feature> iterator() {
+        return new Iterator<Feature>() {
+
+            Iterator<Feature> iter = rs.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            @Override
+            public Feature next() {
+                return generalize( iter.next() );
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private Feature generalize( Feature feature ) {
+        List<Property> props = feature.getProperties();
+        List<Property> generalized = null;
+        for ( int i = 0; i < props.size(); i++ ) {
+            Property prop = props.get( i );
+            TypedObjectNode value = prop.getValue();
+            if ( value instanceof Geometry ) {
+                Geometry geom = simplify( (Geometry) value, tolerance );
+                if ( geom != value ) {
+                    if ( generalized == null ) {
+                        generalized = new ArrayList<Property>( props );
+                    }
+                    generalized.set( i, new GenericProperty( prop.getType(), prop.getName(), geom,
+                                                             prop.getAttributes(),
+                                                             singletonList( (TypedObjectNode) geom ) ) );
+                }
+            }
+        }
+        if ( generalized == null ) {
+            return feature;
+        }
+        return feature.getType().newFeature( feature.getId(), generalized, feature.getExtraProperties() );
+    }
+
+    @Override
+    public int count() {
+        int i = 0;
+        for ( @SuppressWarnings("unused")
+        Feature f : rs ) {
+            i++;
+        }
+        close();
+        return i;
+    }
+}
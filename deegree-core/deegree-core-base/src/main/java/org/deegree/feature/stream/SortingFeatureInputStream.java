@@ -0,0 +1,672 @@
+//$HeadURL$
+/*---------------------------------------------------------------------------- 
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import static javax.xml.stream.XMLOutputFactory.IS_REPAIRING_NAMESPACES;
+import static org.apache.commons.io.IOUtils.closeQuietly;
+import static org.deegree.gml.GMLInputFactory.createGMLStreamReader;
+import static org.deegree.gml.GMLOutputFactory.createGMLStreamWriter;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.deegree.commons.tom.Reference;
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.datetime.Temporal;
+import org.deegree.commons.tom.gml.GMLObject;
+import org.deegree.commons.tom.gml.GMLReferenceResolver;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.ows.CodeType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.uom.Measure;
+import org.deegree.commons.utils.Pair;
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.Features;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
+import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.sort.SortProperty;
+import org.deegree.geometry.Geometry;
+import org.deegree.gml.GMLStreamReader;
+import org.deegree.gml.GMLStreamWriter;
+import org.deegree.gml.GMLVersion;
+import org.deegree.gml.reference.GmlDocumentIdContext;
+import org.deegree.gml.utils.GMLObjectVisitor;
+import org.deegree.gml.utils.GMLObjectWalker;
+import org.slf4j.Logger;
+
+/**
+ * {@link FeatureInputStream} that returns the features of another {@link FeatureInputStream} ordered by a list of
+ * {@link SortProperty}s.
+ * <p>
+ * The sort keys are evaluated once per feature (not once per comparison). If only the first features are needed
+ * (paging), a bounded heap of <code>limit</code> features is used. Otherwise, features are sorted in memory.
+ * </p>
+ * <p>
+ * Optionally (see {@link #MAX_IN_MEMORY_PROPERTY} and the <code>maxInMemory</code> constructor parameter), sorted runs
+ * are written to temporary files (as GML) as soon as more than <code>maxInMemory</code> features have been collected,
+ * and merged on iteration, so large sorted results don't have to fit into the heap. Features from these runs are
+ * parsed again, so they are equal copies of the original features, but not the same instances. References to other
+ * objects (xlinks) are resolved to the original objects. The temporary files are deleted when the stream is exhausted
+ * or closed.
+ * </p>
+ * <p>
+ * If a sort property has multiple values, the first one is used. Features without a value sort after all others in
+ * ascending order and before all others in descending order (like in PostgreSQL). Features with equal keys keep their
+ * original order.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SortingFeatureInputStream implements FeatureInputStream {
+
+    private static final Logger LOG = getLogger( SortingFeatureInputStream.class );
+
+    /**
+     * System property for the number of features that are sorted in memory before runs are written to temporary files.
+     * If it is not set, features are always sorted in memory.
+     */
+    public static final String MAX_IN_MEMORY_PROPERTY = "deegree.feature.sort.maxInMemory";
+
+    private static final int DEFAULT_MAX_IN_MEMORY = Math.max( 1, Integer.getInteger( MAX_IN_MEMORY_PROPERTY,
+                                                                                      Integer.MAX_VALUE ) );
+
+    private static final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newInstance();
+
+    private static final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+
+    static {
+        xmlOutputFactory.setProperty( IS_REPAIRING_NAMESPACES, Boolean.TRUE );
+    }
+
+    private final FeatureInputStream rs;
+
+    private final SortProperty[] sortCrits;
+
+    private final int limit;
+
+    private int maxInMemory;
+
+    private final TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
+
+    private final List<Run> runs = new ArrayList<Run>();
+
+    private boolean consumed;
+
+    private AppSchema schema;
+
+    private GMLVersion gmlVersion;
+
+    // references of the spilled features (by uri), used to resolve the xlinks of the features read back
+    private final Map<String, Reference<?>> references = new HashMap<String, Reference<?>>();
+
+    private final Comparator<Entry> order = new Comparator<Entry>() {
+        @Override
+        public int compare( Entry e1, Entry e2 ) {
+            int c = compareKeys( e1.keys, e2.keys );
+            if ( c != 0 ) {
+                return c;
+            }
+            return e1.seq < e2.seq ? -1 : ( e1.seq == e2.seq ? 0 : 1 );
+        }
+    };
+
+    /**
+     * Creates a new {@link SortingFeatureInputStream} that sorts in memory, unless the system property
+     * {@value #MAX_IN_MEMORY_PROPERTY} is set (number of features after which sorted runs are written to temporary
+     * files).
+     * 
+     * @param rs
+     *            stream to be sorted, must not be <code>null</code>
+     * @param sortCrits
+     *            sort criteria, must not be <code>null</code>
+     * @param limit
+     *            number of features that are actually needed (e.g. start index plus maximum number of features), -1
+     *            for all
+     */
+    public SortingFeatureInputStream( FeatureInputStream rs, SortProperty[] sortCrits, int limit ) {
+        this( rs, sortCrits, limit, DEFAULT_MAX_IN_MEMORY );
+    }
+
+    /**
+     * Creates a new {@link SortingFeatureInputStream}.
+     * 
+     * @param rs
+     *            stream to be sorted, must not be <code>null</code>
+     * @param sortCrits
+     *            sort criteria, must not be <code>null</code>
+     * @param limit
+     *            number of features that are actually needed (e.g. start index plus maximum number of features), -1
+     *            for all
+     * @param maxInMemory
+     *            number of features that are sorted in memory before runs are written to temporary files,
+     *            {@link Integer#MAX_VALUE} to always sort in memory (e.g. if the features are in memory anyway)
+     */
+    public SortingFeatureInputStream( FeatureInputStream rs, SortProperty[] sortCrits, int limit, int maxInMemory ) {
+        this.rs = rs;
+        this.sortCrits = sortCrits;
+        this.limit = limit;
+        this.maxInMemory = Math.max( 1, maxInMemory );
+    }
+
+    /**
+     * Returns the number of features that a sort has to provide for the given paging parameters.
+     * 
+     * @param startIndex
+     *            index of the first feature to be returned, must be >= 0
+     * @param maxFeatures
+     *            maximum number of features to be returned, -1 for no limit
+     * @return number of features to be passed as <code>limit</code>, -1 for all
+     */
+    public static int getLimit( int startIndex, int maxFeatures ) {
+        if ( maxFeatures < 0 ) {
+            return -1;
+        }
+        return (int) Math.min( Integer.MAX_VALUE, (long) startIndex + maxFeatures );
+    }
+
+    @Override
+    public void close() {
+        closeSource();
+        for ( Run run : runs ) {
+            run.close();
+        }
+        runs.clear();
+        references.clear();
+    }
+
+    @Override
+    public FeatureCollection toCollection() {
+        return Features.toCollection( this );
+    }
+
+    @Override
+    public Iterator<Feature> iterator() {
+        try {
+            if ( limit >= 0 && limit <= maxInMemory ) {
+                return new EntryFeatureIterator( selectFirst().iterator() );
+            }
+            return sort();
+        } finally {
+            closeSource();
+        }
+    }
+
+    private void closeSource() {
+        if ( !consumed ) {
+            consumed = true;
+            rs.close();
+        }
+    }
+
+    @Override
+    public int count() {
+        int i = 0;
+        for ( @SuppressWarnings("unused")
+        Feature f : this ) {
+            i++;
+        }
+        close();
+        return i;
+    }
+
+    private List<Entry> selectFirst() {
+        if ( limit == 0 ) {
+            return Collections.emptyList();
+        }
+        PriorityQueue<Entry> heap = new PriorityQueue<Entry>( Math.min( limit, 1024 ) + 1,
+                                                              Collections.reverseOrder( order ) );
+        long seq = 0;
+        for ( Feature feature : rs ) {
+            Entry entry = new Entry( extractKeys( feature ), feature, seq++ );
+            if ( heap.size() < limit ) {
+                heap.add( entry );
+            } else if ( order.compare( entry, heap.peek() ) < 0 ) {
+                heap.poll();
+                heap.add( entry );
+            }
+        }
+        Entry[] entries = heap.toArray( new Entry[heap.size()] );
+        Arrays.sort( entries, order );
+        return Arrays.asList( entries );
+    }
+
+    private Iterator<Feature> sort() {
+        List<Entry> buffer = new ArrayList<Entry>();
+        long seq = 0;
+        for ( Feature feature : rs ) {
+            buffer.add( new Entry( extractKeys( feature ), feature, seq++ ) );
+            if ( buffer.size() >= maxInMemory && spill( buffer ) ) {
+                buffer.clear();
+            }
+        }
+        Collections.sort( buffer, order );
+        if ( runs.isEmpty() ) {
+            return new EntryFeatureIterator( buffer.iterator() );
+        }
+        LOG.debug( "Merging {} sorted runs of {} features.", runs.size() + 1, seq );
+        return merge( buffer );
+    }
+
+    /**
+     * Sorts the given entries and writes them to a temporary file.
+     * 
+     * @return <code>true</code>, if the entries have been written, <code>false</code> if they have to be kept in memory
+     */
+    private boolean spill( List<Entry> buffer ) {
+        if ( schema == null ) {
+            schema = buffer.get( 0 ).feature.getType().getSchema();
+            if ( schema == null ) {
+                LOG.warn( "Sorting features without application schema in memory, cannot write them to disk." );
+                maxInMemory = Integer.MAX_VALUE;
+                return false;
+            }
+            gmlVersion = schema.getGMLSchema() != null ? schema.getGMLSchema().getVersion() : GMLVersion.GML_32;
+        }
+        Collections.sort( buffer, order );
+        File file = null;
+        try {
+            file = File.createTempFile( "deegree-sort", ".tmp" );
+            DataOutputStream os = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) );
+            try {
+                for ( Entry entry : buffer ) {
+                    collectReferences( entry.feature );
+                    byte[] gml = encode( entry.feature );
+                    os.writeLong( entry.seq );
+                    os.writeInt( gml.length );
+                    os.write( gml );
+                }
+            } finally {
+                os.close();
+            }
+        } catch ( Exception e ) {
+            if ( file != null ) {
+                file.delete();
+            }
+            close();
+            throw new RuntimeException( "Unable to write sorted features to temporary file: " + e.getMessage(), e );
+        }
+        LOG.debug( "Wrote sorted run of {} features to '{}'.", buffer.size(), file );
+        runs.add( new Run( file, buffer.size() ) );
+        return true;
+    }
+
+    private byte[] encode( Feature feature )
+                            throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        XMLStreamWriter xmlWriter = xmlOutputFactory.createXMLStreamWriter( bos, "UTF-8" );
+        GMLStreamWriter gmlWriter = createGMLStreamWriter( gmlVersion, xmlWriter );
+        gmlWriter.setExportExtraProps( true );
+        gmlWriter.write( feature );
+        xmlWriter.flush();
+        gmlWriter.close();
+        return bos.toByteArray();
+    }
+
+    /**
+     * Remembers the references of the given feature (that is about to be written), so the references of the feature
+     * that is read back can be resolved to the same objects.
+     */
+    private void collectReferences( final Feature feature ) {
+        GMLObjectVisitor visitor = new GMLObjectVisitor() {
+            @Override
+            public boolean visitGeometry( Geometry geom ) {
+                return true;
+            }
+
+            @Override
+            public boolean visitFeature( Feature f ) {
+                return true;
+            }
+
+            @Override
+            public boolean visitObject( GMLObject o ) {
+                return true;
+            }
+
+            @Override
+            public boolean visitReference( Reference<?> ref ) {
+                if ( ref == feature ) {
+                    // the feature itself is a reference (e.g. member of a collection), it is written by value
+                    return true;
+                }
+                references.put( ref.getURI(), ref );
+                return false;
+            }
+        };
+        new GMLObjectWalker( visitor ).traverse( feature );
+    }
+
+    private Feature decode( byte[] gml )
+                            throws Exception {
+        XMLStreamReader xmlReader = xmlInputFactory.createXMLStreamReader( new ByteArrayInputStream( gml ), "UTF-8" );
+        GMLStreamReader gmlReader = createGMLStreamReader( gmlVersion, xmlReader );
+        gmlReader.setApplicationSchema( schema );
+        gmlReader.setResolver( new SpilledReferenceResolver( gmlReader.getIdContext() ) );
+        return gmlReader.readFeature();
+    }
+
+    private Iterator<Feature> merge( List<Entry> inMemory ) {
+        final PriorityQueue<Cursor> heads = new PriorityQueue<Cursor>( runs.size() + 1, new Comparator<Cursor>() {
+            @Override
+            public int compare( Cursor c1, Cursor c2 ) {
+                return order.compare( c1.head, c2.head );
+            }
+        } );
+        List<Iterator<Entry>> sources = new ArrayList<Iterator<Entry>>( runs );
+        sources.add( inMemory.iterator() );
+        for ( Iterator<Entry> source : sources ) {
+            if ( source.hasNext() ) {
+                heads.add( new Cursor( source ) );
+            }
+        }
+        return new Iterator<Feature>() {
+
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public Feature next() {
+                if ( !hasNext() ) {
+                    throw new NoSuchElementException();
+                }
+                Cursor cursor = heads.poll();
+                Feature feature = cursor.head.feature;
+                if ( cursor.source.hasNext() ) {
+                    cursor.head = cursor.source.next();
+                    heads.add( cursor );
+                }
+                return feature;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private Object[] extractKeys( Feature feature ) {
+        Object[] keys = new Object[sortCrits.length];
+        for ( int i = 0; i < sortCrits.length; i++ ) {
+            try {
+                for ( TypedObjectNode value : evaluator.eval( feature, sortCrits[i].getSortProperty() ) ) {
+                    keys[i] = toComparable( value );
+                    if ( keys[i] != null ) {
+                        break;
+                    }
+                }
+            } catch ( FilterEvaluationException e ) {
+                LOG.debug( "Cannot evaluate sort property: " + e.getMessage() );
+            }
+        }
+        return keys;
+    }
+
+    private static Object toComparable( Object value ) {
+        if ( value instanceof Property ) {
+            value = ( (Property) value ).getValue();
+        }
+        if ( value instanceof PrimitiveValue ) {
+            value = ( (PrimitiveValue) value ).getValue();
+        }
+        if ( value == null || value instanceof BigDecimal ) {
+            return value;
+        }
+        if ( value instanceof Number ) {
+            try {
+                return new BigDecimal( value.toString() );
+            } catch ( NumberFormatException e ) {
+                // NaN or infinite
+                return value;
+            }
+        }
+        if ( value instanceof Measure ) {
+            return ( (Measure) value ).getValue();
+        }
+        if ( value instanceof CodeType ) {
+            return ( (CodeType) value ).getCode();
+        }
+        if ( value instanceof Comparable<?> ) {
+            return value;
+        }
+        return value.toString();
+    }
+
+    private int compareKeys( Object[] keys1, Object[] keys2 ) {
+        for ( int i = 0; i < sortCrits.length; i++ ) {
+            Object key1 = keys1[i];
+            Object key2 = keys2[i];
+            int c;
+            if ( key1 == null ) {
+                c = key2 == null ? 0 : 1;
+            } else if ( key2 == null ) {
+                c = -1;
+            } else {
+                c = compareValues( key1, key2 );
+            }
+            if ( c != 0 ) {
+                return sortCrits[i].getSortOrder() ? c : -c;
+            }
+        }
+        return 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareValues( Object value1, Object value2 ) {
+        try {
+            if ( value1.getClass() == value2.getClass()
+                 || ( value1 instanceof Temporal && value2 instanceof Temporal ) ) {
+                return ( (Comparable<Object>) value1 ).compareTo( value2 );
+            }
+            Pair<Object, Object> comparablePair = PrimitiveValue.makeComparable( value1, value2 );
+            return ( (Comparable<Object>) comparablePair.first ).compareTo( comparablePair.second );
+        } catch ( Exception e ) {
+            LOG.debug( "Cannot compare values: " + e.getMessage() );
+            return value1.toString().compareTo( value2.toString() );
+        }
+    }
+
+    /**
+     * Resolves the references of a feature that has been read back: to objects of the feature itself first, then to the
+     * referenced objects of the original features.
+     */
+    private class SpilledReferenceResolver implements GMLReferenceResolver {
+
+        private final GmlDocumentIdContext idContext;
+
+        SpilledReferenceResolver( GmlDocumentIdContext idContext ) {
+            this.idContext = idContext;
+        }
+
+        @Override
+        public GMLObject getObject( String uri, String baseURL ) {
+            if ( uri.startsWith( "#" ) ) {
+                GMLObject object = idContext.getObject( uri.substring( 1 ) );
+                if ( object != null ) {
+                    return object;
+                }
+            }
+            Reference<?> original = references.get( uri );
+            if ( original != null && original.getReferencedObject() instanceof GMLObject ) {
+                return (GMLObject) original.getReferencedObject();
+            }
+            return idContext.getObject( uri, baseURL );
+        }
+    }
+
+    private static class Entry {
+
+        final Object[] keys;
+
+        final Feature feature;
+
+        final long seq;
+
+        Entry( Object[] keys, Feature feature, long seq ) {
+            this.keys = keys;
+            this.feature = feature;
+            this.seq = seq;
+        }
+    }
+
+    private static class Cursor {
+
+        final Iterator<Entry> source;
+
+        Entry head;
+
+        Cursor( Iterator<Entry> source ) {
+            this.source = source;
+            this.head = source.next();
+        }
+    }
+
+    private static class EntryFeatureIterator implements Iterator<Feature> {
+
+        private final Iterator<Entry> entries;
+
+        EntryFeatureIterator( Iterator<Entry> entries ) {
+            this.entries = entries;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return entries.hasNext();
+        }
+
+        @Override
+        public Feature next() {
+            return entries.next().feature;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Sorted run in a temporary file, read back one feature at a time.
+     */
+    private class Run implements Iterator<Entry> {
+
+        private final File file;
+
+        private final int size;
+
+        private DataInputStream is;
+
+        private int read;
+
+        Run( File file, int size ) {
+            this.file = file;
+            this.size = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return read < size;
+        }
+
+        @Override
+        public Entry next() {
+            if ( !hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            try {
+                if ( is == null ) {
+                    is = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+                }
+                long seq = is.readLong();
+                byte[] gml = new byte[is.readInt()];
+                is.readFully( gml );
+                Feature feature = decode( gml );
+                if ( ++read == size ) {
+                    close();
+                }
+                return new Entry( extractKeys( feature ), feature, seq );
+            } catch ( Exception e ) {
+                SortingFeatureInputStream.this.close();
+                throw new RuntimeException( "Unable to read sorted features from '" + file + "': " + e.getMessage(),
+                                            e );
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        void close() {
+            closeQuietly( is );
+            is = null;
+            read = size;
+            if ( file.exists() && !file.delete() ) {
+                LOG.warn( "Unable to delete temporary file '{}'.", file );
+            }
+        }
+    }
+}
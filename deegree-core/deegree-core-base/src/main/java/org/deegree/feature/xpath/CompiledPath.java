@@ -0,0 +1,270 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.xpath;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.xml.NamespaceBindings;
+import org.deegree.feature.xpath.node.AttributeNode;
+import org.deegree.feature.xpath.node.ElementNode;
+import org.deegree.feature.xpath.node.XPathNode;
+import org.deegree.filter.expression.ValueReference;
+import org.jaxen.expr.Expr;
+import org.jaxen.expr.LocationPath;
+import org.jaxen.expr.NameStep;
+import org.jaxen.expr.NumberExpr;
+import org.jaxen.expr.Predicate;
+import org.jaxen.saxpath.Axis;
+
+/**
+ * Evaluation plan for simple {@link ValueReference}s that navigates the {@link XPathNode} tree directly, without
+ * Jaxen.
+ * <p>
+ * Supported are relative location paths that consist of child element steps (name tests, optionally with a prefixed
+ * or unprefixed <code>*</code>) with an optional positional predicate (e.g. <code>app:address[2]</code>), optionally
+ * followed by a final attribute step (e.g. <code>app:length/@uom</code>). Name tests have the same semantics as in
+ * {@link GMLObjectNavigator}/Jaxen, unprefixed names only match elements without namespace. Compiled paths are
+ * immutable (thread-safe) and cached by expression text and namespace bindings.
+ * </p>
+ * 
+ * @see TypedObjectNodeXPathEvaluator
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+final class CompiledPath {
+
+    /** Returned for paths that have to be evaluated by Jaxen. */
+    static final CompiledPath UNSUPPORTED = new CompiledPath( null );
+
+    private static final int MAX_CACHE_SIZE = 1024;
+
+    private static final Map<String, CompiledPath> cache = new ConcurrentHashMap<String, CompiledPath>();
+
+    // only the child and attribute axis iterators are used, they do not need the document root
+    private static final GMLObjectNavigator navigator = new GMLObjectNavigator( null );
+
+    private final Step[] steps;
+
+    private CompiledPath( Step[] steps ) {
+        this.steps = steps;
+    }
+
+    /**
+     * Returns the (cached) compiled plan for the given path.
+     * 
+     * @param path
+     *            path, must not be <code>null</code>
+     * @return compiled plan, {@link #UNSUPPORTED} if the path has to be evaluated by Jaxen, never <code>null</code>
+     */
+    static CompiledPath get( ValueReference path ) {
+        String key = getKey( path );
+        CompiledPath compiled = cache.get( key );
+        if ( compiled == null ) {
+            compiled = compile( path );
+            if ( cache.size() >= MAX_CACHE_SIZE ) {
+                cache.clear();
+            }
+            cache.put( key, compiled );
+        }
+        return compiled;
+    }
+
+    private static String getKey( ValueReference path ) {
+        NamespaceBindings nsContext = path.getNsContext();
+        Iterator<String> prefixes = nsContext.getPrefixes();
+        if ( !prefixes.hasNext() ) {
+            return path.getAsText();
+        }
+        StringBuilder sb = new StringBuilder( path.getAsText() );
+        while ( prefixes.hasNext() ) {
+            String prefix = prefixes.next();
+            sb.append( ' ' ).append( prefix ).append( '=' ).append( nsContext.translateNamespacePrefixToUri( prefix ) );
+        }
+        return sb.toString();
+    }
+
+    private static CompiledPath compile( ValueReference path ) {
+        Expr expr = path.getAsXPath();
+        if ( !( expr instanceof LocationPath ) || ( (LocationPath) expr ).isAbsolute() ) {
+            return UNSUPPORTED;
+        }
+        List<?> jaxenSteps = ( (LocationPath) expr ).getSteps();
+        if ( jaxenSteps.isEmpty() ) {
+            return UNSUPPORTED;
+        }
+        Step[] steps = new Step[jaxenSteps.size()];
+        for ( int i = 0; i < steps.length; i++ ) {
+            if ( !( jaxenSteps.get( i ) instanceof NameStep ) ) {
+                return UNSUPPORTED;
+            }
+            NameStep step = (NameStep) jaxenSteps.get( i );
+            boolean attribute = step.getAxis() == Axis.ATTRIBUTE;
+            if ( !( attribute || step.getAxis() == Axis.CHILD ) || ( attribute && i != steps.length - 1 ) ) {
+                return UNSUPPORTED;
+            }
+            String ns = "";
+            if ( step.getPrefix() != null && !step.getPrefix().isEmpty() ) {
+                ns = path.getNsContext().translateNamespacePrefixToUri( step.getPrefix() );
+                if ( ns == null ) {
+                    // let Jaxen report the unbound prefix
+                    return UNSUPPORTED;
+                }
+            } else if ( "*".equals( step.getLocalName() ) ) {
+                ns = null;
+            }
+            String localName = "*".equals( step.getLocalName() ) ? null : step.getLocalName();
+            int position = getPosition( step.getPredicates() );
+            if ( position < 0 || ( attribute && position > 0 ) ) {
+                return UNSUPPORTED;
+            }
+            steps[i] = new Step( attribute, ns, localName, position );
+        }
+        return new CompiledPath( steps );
+    }
+
+    /**
+     * @return 0 (no predicate), the position of a positional predicate, or -1 if the predicates are not supported
+     */
+    private static int getPosition( List<?> predicates ) {
+        if ( predicates.isEmpty() ) {
+            return 0;
+        }
+        if ( predicates.size() == 1 ) {
+            Expr expr = ( (Predicate) predicates.get( 0 ) ).getExpr();
+            if ( expr instanceof NumberExpr ) {
+                double d = ( (NumberExpr) expr ).getNumber().doubleValue();
+                if ( d >= 1 && d <= Integer.MAX_VALUE && d == Math.floor( d ) ) {
+                    return (int) d;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Evaluates the path against the given context node.
+     * 
+     * @param context
+     *            context node, must not be <code>null</code>
+     * @return values of the selected nodes in document order, never <code>null</code>
+     */
+    TypedObjectNode[] eval( XPathNode<?> context ) {
+        List<XPathNode<?>> nodes = Collections.<XPathNode<?>> singletonList( context );
+        for ( Step step : steps ) {
+            List<XPathNode<?>> selected = new ArrayList<XPathNode<?>>();
+            for ( XPathNode<?> node : nodes ) {
+                step.select( node, selected );
+            }
+            if ( selected.isEmpty() ) {
+                return new TypedObjectNode[0];
+            }
+            nodes = selected;
+        }
+        TypedObjectNode[] values = new TypedObjectNode[nodes.size()];
+        for ( int i = 0; i < values.length; i++ ) {
+            values[i] = nodes.get( i ).getValue();
+        }
+        return values;
+    }
+
+    private static final class Step {
+
+        private final boolean attribute;
+
+        // null: any namespace
+        private final String ns;
+
+        // null: any name
+        private final String localName;
+
+        // 0: all matching nodes
+        private final int position;
+
+        Step( boolean attribute, String ns, String localName, int position ) {
+            this.attribute = attribute;
+            this.ns = ns;
+            this.localName = localName;
+            this.position = position;
+        }
+
+        void select( XPathNode<?> node, List<XPathNode<?>> selected ) {
+            Iterator<?> iter = attribute ? navigator.getAttributeAxisIterator( node )
+                                        : navigator.getChildAxisIterator( node );
+            int matched = 0;
+            while ( iter.hasNext() ) {
+                Object child = iter.next();
+                if ( matches( child ) ) {
+                    if ( position == 0 ) {
+                        selected.add( (XPathNode<?>) child );
+                    } else if ( ++matched == position ) {
+                        selected.add( (XPathNode<?>) child );
+                        return;
+                    }
+                }
+            }
+        }
+
+        private boolean matches( Object node ) {
+            String nodeNs;
+            String nodeLocalName;
+            if ( attribute ) {
+                if ( !( node instanceof AttributeNode<?> ) ) {
+                    return false;
+                }
+                nodeNs = ( (AttributeNode<?>) node ).getNamespaceUri();
+                nodeLocalName = ( (AttributeNode<?>) node ).getLocalName();
+            } else {
+                if ( !( node instanceof ElementNode<?> ) ) {
+                    return false;
+                }
+                nodeNs = ( (ElementNode<?>) node ).getNamespaceUri();
+                nodeLocalName = ( (ElementNode<?>) node ).getLocalName();
+            }
+            if ( localName != null && !localName.equals( nodeLocalName ) ) {
+                return false;
+            }
+            return ns == null || ns.equals( nodeNs == null ? "" : nodeNs );
+        }
+    }
+}
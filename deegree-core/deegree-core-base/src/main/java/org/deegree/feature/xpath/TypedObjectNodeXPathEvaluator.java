@@ -60,6 +60,10 @@ import org.slf4j.LoggerFactory;
 
 /**
  * {@link XPathEvaluator} implementation for {@link TypedObjectNode} graphs.
+ * <p>
+ * Simple location paths are evaluated by navigating the node graph directly (see {@link CompiledPath}), other
+ * expressions are evaluated using <a href="http://jaxen.codehaus.org/">Jaxen</a>.
+ * </p>
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author$
@@ -116,6 +120,11 @@ public class TypedObjectNodeXPathEvaluator implements XPathEvaluator<TypedObject
             return props.toArray( propArray );
         }
 
+        CompiledPath compiled = CompiledPath.get( propName );
+        if ( compiled != CompiledPath.UNSUPPORTED ) {
+            return compiled.eval( new GMLObjectNode<GMLObject, GMLObject>( null, context ) );
+        }
+
         TypedObjectNode[] resultValues = null;
         try {
             synchronized ( context ) {
@@ -147,6 +156,11 @@ public class TypedObjectNodeXPathEvaluator implements XPathEvaluator<TypedObject
     public TypedObjectNode[] eval( ElementNode element, ValueReference propName )
                             throws FilterEvaluationException {
 
+        CompiledPath compiled = CompiledPath.get( propName );
+        if ( compiled != CompiledPath.UNSUPPORTED ) {
+            return compiled.eval( new XMLElementNode<TypedObjectNode>( null, element ) );
+        }
+
         TypedObjectNode[] resultValues = null;
         try {
             XPath xpath = new GMLObjectXPath( propName.getAsText(), null );
@@ -175,6 +189,11 @@ public class TypedObjectNodeXPathEvaluator implements XPathEvaluator<TypedObject
     public TypedObjectNode[] eval( Property element, ValueReference propName )
                             throws FilterEvaluationException {
 
+        CompiledPath compiled = CompiledPath.get( propName );
+        if ( compiled != CompiledPath.UNSUPPORTED ) {
+            return compiled.eval( new PropertyNode( null, element ) );
+        }
+
         TypedObjectNode[] resultValues = null;
         try {
             XPath xpath = new GMLObjectXPath( propName.getAsText(), null );
@@ -148,10 +148,13 @@ public class BBOX extends SpatialOperator {
         if ( param1 != null ) {
             for ( TypedObjectNode paramValue : param1.evaluate( obj, xpathEvaluator ) ) {
                 Geometry param1Value = checkGeometryOrNull( paramValue );
-                if ( param1Value != null ) {
+                if ( param1Value instanceof Envelope ) {
                     Envelope transformedBBox = (Envelope) getCompatibleGeometry( param1Value, param2 );
                     return transformedBBox.intersects( param1Value );
                 }
+                if ( param1Value != null ) {
+                    return getPreparedGeometry( param1Value, param2 ).intersects( param1Value );
+                }
             }
         } else if ( obj instanceof Feature ) {
             // handle the case where the property name is empty
@@ -82,9 +82,8 @@ public class Beyond extends SpatialOperator {
         for ( TypedObjectNode param1Value : propName.evaluate( obj, xpathEvaluator ) ) {
             Geometry geom = checkGeometryOrNull( param1Value );
             if ( geom != null ) {
-                Geometry transformedLiteral = getCompatibleGeometry( geom, geometry );
                 // TODO what about the units of the distance when transforming?
-                return geom.isBeyond( transformedLiteral, distance );
+                return !getPreparedGeometry( geom, geometry ).isWithinDistance( geom, distance );
             }
         }
         return false;
@@ -80,8 +80,7 @@ public class Intersects extends SpatialOperator {
             for ( TypedObjectNode paramValue : param1.evaluate( obj, xpathEvaluator ) ) {
                 Geometry param1Value = checkGeometryOrNull( paramValue );
                 if ( param1Value != null ) {
-                    Geometry transformedGeom = getCompatibleGeometry( param1Value, geometry );
-                    return transformedGeom.intersects( param1Value );
+                    return getPreparedGeometry( param1Value, geometry ).intersects( param1Value );
                 }
             }
         } else if ( obj instanceof Feature ) {
@@ -93,7 +92,7 @@ public class Intersects extends SpatialOperator {
                     foundGeom = true;
                     Geometry geom = (Geometry) prop.getValue();
                     Geometry transformedGeom = getCompatibleGeometry( geometry, geom );
-                    if ( transformedGeom.intersects( geometry ) ) {
+                    if ( getPreparedGeometry( geometry, geometry ).intersects( transformedGeom ) ) {
                         return true;
                     }
                 }
@@ -102,7 +101,7 @@ public class Intersects extends SpatialOperator {
                 Envelope env = f.getEnvelope();
                 if ( env != null ) {
                     Geometry g = getCompatibleGeometry( geometry, env );
-                    if ( g.intersects( geometry ) ) {
+                    if ( getPreparedGeometry( geometry, geometry ).intersects( g ) ) {
                         return true;
                     }
                 }
@@ -112,7 +111,7 @@ public class Intersects extends SpatialOperator {
                     if ( prop.getValue() instanceof Geometry ) {
                         Geometry geom = (Geometry) prop.getValue();
                         Geometry transformedGeom = getCompatibleGeometry( geometry, geom );
-                        if ( transformedGeom.intersects( geometry ) ) {
+                        if ( getPreparedGeometry( geometry, geometry ).intersects( transformedGeom ) ) {
                             return true;
                         }
                     }
@@ -35,8 +35,8 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.filter.spatial;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.deegree.commons.tom.TypedObjectNode;
 import org.deegree.commons.tom.genericxml.GenericXMLElement;
@@ -49,6 +49,7 @@ import org.deegree.filter.expression.ValueReference;
 import org.deegree.filter.i18n.Messages;
 import org.deegree.geometry.Geometry;
 import org.deegree.geometry.GeometryTransformer;
+import org.deegree.geometry.standard.JTSPreparedGeometry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,12 +65,19 @@ public abstract class SpatialOperator implements Operator {
 
     private static final Logger LOG = LoggerFactory.getLogger( SpatialOperator.class );
 
-    private final Map<String, Geometry> srsNameToTransformedGeometry = new HashMap<String, Geometry>();
+    // key for the prepared literal in its original srs
+    private static final String LITERAL_SRS = "";
+
+    private final ConcurrentMap<String, Geometry> srsNameToTransformedGeometry;
+
+    private final ConcurrentMap<String, JTSPreparedGeometry> srsNameToPreparedGeometry;
 
     protected final Expression propName;
 
     protected SpatialOperator( Expression param1 ) {
         this.propName = param1;
+        this.srsNameToTransformedGeometry = new ConcurrentHashMap<String, Geometry>();
+        this.srsNameToPreparedGeometry = new ConcurrentHashMap<String, JTSPreparedGeometry>();
     }
 
     /**
@@ -201,7 +209,11 @@ public abstract class SpatialOperator implements Operator {
                 try {
                     GeometryTransformer transformer = new GeometryTransformer( paramCRS );
                     transformedLiteral = transformer.transform( literal );
-                    srsNameToTransformedGeometry.put( paramCRS.getAlias(), transformedLiteral );
+                    String alias = paramCRS.getAlias();
+                    Geometry former = srsNameToTransformedGeometry.putIfAbsent( alias, transformedLiteral );
+                    if ( former != null ) {
+                        transformedLiteral = former;
+                    }
                 } catch ( Exception e ) {
                     throw new FilterEvaluationException( e.getMessage() );
                 }
@@ -210,5 +222,33 @@ public abstract class SpatialOperator implements Operator {
         return transformedLiteral;
     }
 
+    /**
+     * Returns a prepared version of the given geometry literal that has the same srs as the given geometry parameter.
+     * The prepared literal is built once per srs and reused for all subsequent evaluations, so the literal must be the
+     * same for every invocation on this operator.
+     * 
+     * @param param
+     *            geometry parameter, must not be <code>null</code>
+     * @param literal
+     *            geometry literal of this operator, must not be <code>null</code>
+     * @return prepared literal geometry with the same srs as the parameter geometry, never <code>null</code>
+     * @throws FilterEvaluationException
+     *             if the transformation failed
+     */
+    protected JTSPreparedGeometry getPreparedGeometry( Geometry param, Geometry literal )
+                            throws FilterEvaluationException {
+        Geometry transformedLiteral = getCompatibleGeometry( param, literal );
+        String key = transformedLiteral == literal ? LITERAL_SRS : param.getCoordinateSystem().getAlias();
+        JTSPreparedGeometry prepared = srsNameToPreparedGeometry.get( key );
+        if ( prepared == null ) {
+            prepared = JTSPreparedGeometry.prepare( transformedLiteral );
+            JTSPreparedGeometry former = srsNameToPreparedGeometry.putIfAbsent( key, prepared );
+            if ( former != null ) {
+                prepared = former;
+            }
+        }
+        return prepared;
+    }
+
     public abstract Object[] getParams();
 }
@@ -0,0 +1,98 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.deegree.feature.Feature;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PagingFeatureInputStream}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PagingFeatureInputStreamTest {
+
+    private final List<Feature> features = asList( mock( Feature.class ), mock( Feature.class ), mock( Feature.class ),
+                                                   mock( Feature.class ), mock( Feature.class ) );
+
+    @Test
+    public void testStartIndexAndLimit() {
+        assertEquals( features.subList( 1, 3 ), toList( new PagingFeatureInputStream( stream(), 1, 2 ) ) );
+    }
+
+    @Test
+    public void testStartIndexWithoutLimit() {
+        assertEquals( features.subList( 3, 5 ), toList( new PagingFeatureInputStream( stream(), 3, -1 ) ) );
+    }
+
+    @Test
+    public void testStartIndexBeyondEnd() {
+        assertEquals( 0, new PagingFeatureInputStream( stream(), 10, 2 ).count() );
+    }
+
+    @Test
+    public void testCloseIsDelegated() {
+        FeatureInputStream rs = stream();
+        new PagingFeatureInputStream( rs, 0, 1 ).count();
+        verify( rs ).close();
+    }
+
+    private FeatureInputStream stream() {
+        FeatureInputStream rs = mock( FeatureInputStream.class );
+        when( rs.iterator() ).thenReturn( features.iterator() );
+        return rs;
+    }
+
+    private static List<Feature> toList( FeatureInputStream rs ) {
+        List<Feature> list = new ArrayList<Feature>();
+        for ( Feature f : rs ) {
+            list.add( f );
+        }
+        return list;
+    }
+
+}
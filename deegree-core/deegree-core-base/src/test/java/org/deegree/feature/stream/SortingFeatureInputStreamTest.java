@@ -0,0 +1,232 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import static java.util.Arrays.asList;
+import static org.deegree.gml.GMLVersion.GML_31;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.Reference;
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.sort.SortProperty;
+import org.deegree.gml.GMLInputFactory;
+import org.deegree.gml.GMLStreamReader;
+import org.deegree.gml.feature.GMLFeatureReaderTest;
+import org.deegree.gml.schema.GMLAppSchemaReader;
+import org.deegree.workspace.standard.DefaultWorkspace;
+import org.jaxen.SimpleNamespaceContext;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SortingFeatureInputStream}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SortingFeatureInputStreamTest {
+
+    private static final String APP_NS = "http://www.deegree.org/app";
+
+    private static final List<String> BY_NAME = asList( "PHILOSOPHER_7", "PHILOSOPHER_2", "PHILOSOPHER_3",
+                                                        "PHILOSOPHER_6", "PHILOSOPHER_1", "PHILOSOPHER_5",
+                                                        "PHILOSOPHER_4" );
+
+    private FeatureCollection fc;
+
+    private SimpleNamespaceContext nsContext;
+
+    @Before
+    public void setUp()
+                            throws Exception {
+        String schemaURL = GMLFeatureReaderTest.class.getResource( "../misc/schema/Philosopher.xsd" ).toString();
+        URL docURL = GMLFeatureReaderTest.class.getResource( "../misc/feature/Philosopher_FeatureCollection.xml" );
+        AppSchema schema = new GMLAppSchemaReader( GML_31, null, schemaURL ).extractAppSchema();
+        GMLStreamReader gmlReader = GMLInputFactory.createGMLStreamReader( GML_31, docURL );
+        gmlReader.setApplicationSchema( schema );
+        fc = (FeatureCollection) gmlReader.readFeature();
+        gmlReader.getIdContext().resolveLocalRefs();
+
+        nsContext = new SimpleNamespaceContext();
+        nsContext.addNamespace( "app", "http://www.deegree.org/app" );
+        new DefaultWorkspace( new File( "nix" ) ).initAll();
+    }
+
+    @Test
+    public void testSortAscending() {
+        assertEquals( BY_NAME, ids( new SortingFeatureInputStream( stream(), sortBy( "app:name", true ), -1 ) ) );
+    }
+
+    @Test
+    public void testSortDescending() {
+        List<String> expected = asList( "PHILOSOPHER_7", "PHILOSOPHER_6", "PHILOSOPHER_5", "PHILOSOPHER_4",
+                                        "PHILOSOPHER_3", "PHILOSOPHER_2", "PHILOSOPHER_1" );
+        assertEquals( expected, ids( new SortingFeatureInputStream( stream(), sortBy( "app:id", false ), -1 ) ) );
+    }
+
+    @Test
+    public void testLimitSelectsFirstFeatures() {
+        SortingFeatureInputStream rs = new SortingFeatureInputStream( stream(), sortBy( "app:name", true ), 3 );
+        assertEquals( BY_NAME.subList( 0, 3 ), ids( rs ) );
+    }
+
+    @Test
+    public void testMissingValuesSortLast() {
+        // only Marx, Sartre and Camus have subjects, equal keys keep their order
+        List<String> expected = asList( "PHILOSOPHER_1", "PHILOSOPHER_6", "PHILOSOPHER_7", "PHILOSOPHER_2",
+                                        "PHILOSOPHER_3", "PHILOSOPHER_4", "PHILOSOPHER_5" );
+        assertEquals( expected, ids( new SortingFeatureInputStream( stream(), sortBy( "app:subject", true ), -1 ) ) );
+    }
+
+    @Test
+    public void testSpilledRunsAreMerged() {
+        SortingFeatureInputStream rs = new SortingFeatureInputStream( stream(), sortBy( "app:name", true ), -1, 2 );
+        List<String> ids = new ArrayList<String>();
+        for ( Feature f : rs ) {
+            ids.add( f.getId() );
+            Feature original = getOriginal( f.getId() );
+            for ( String prop : asList( "id", "name", "sex", "subject" ) ) {
+                assertEquals( values( original, prop ), values( f, prop ) );
+            }
+            for ( String prop : asList( "friend", "placeOfBirth", "placeOfDeath", "isAuthorOf" ) ) {
+                assertSameReferences( original, f, prop );
+            }
+        }
+        rs.close();
+        assertEquals( BY_NAME, ids );
+    }
+
+    @Test
+    public void testSpilledReferencesAreResolved() {
+        SortingFeatureInputStream rs = new SortingFeatureInputStream( stream(), sortBy( "app:name", true ), -1, 2 );
+        for ( Feature f : rs ) {
+            if ( "PHILOSOPHER_1".equals( f.getId() ) ) {
+                // spilled, so it is a copy, but its friend is the original feature
+                assertNotSame( getOriginal( "PHILOSOPHER_1" ), f );
+                Reference<?> friend = (Reference<?>) getValues( f, "friend" ).get( 0 );
+                assertEquals( "#PHILOSOPHER_2", friend.getURI() );
+                assertSame( getOriginal( "PHILOSOPHER_2" ), friend.getReferencedObject() );
+            }
+        }
+        rs.close();
+    }
+
+    @Test
+    public void testGetLimit() {
+        assertEquals( -1, SortingFeatureInputStream.getLimit( 10, -1 ) );
+        assertEquals( 15, SortingFeatureInputStream.getLimit( 10, 5 ) );
+        assertEquals( Integer.MAX_VALUE, SortingFeatureInputStream.getLimit( 10, Integer.MAX_VALUE ) );
+    }
+
+    private void assertSameReferences( Feature original, Feature copy, String prop ) {
+        List<TypedObjectNode> expected = getValues( original, prop );
+        List<TypedObjectNode> actual = getValues( copy, prop );
+        assertEquals( expected.size(), actual.size() );
+        for ( int i = 0; i < expected.size(); i++ ) {
+            TypedObjectNode value = expected.get( i );
+            if ( value instanceof Reference<?> ) {
+                assertTrue( actual.get( i ) instanceof Reference<?> );
+                Reference<?> ref = (Reference<?>) actual.get( i );
+                assertEquals( ( (Reference<?>) value ).getURI(), ref.getURI() );
+                assertSame( ( (Reference<?>) value ).getReferencedObject(), ref.getReferencedObject() );
+            } else {
+                // inlined feature
+                Feature inlined = (Feature) actual.get( i );
+                assertEquals( ( (Feature) value ).getId(), inlined.getId() );
+                assertEquals( values( (Feature) value, "name" ), values( inlined, "name" ) );
+                assertEquals( values( (Feature) value, "title" ), values( inlined, "title" ) );
+            }
+        }
+    }
+
+    private Feature getOriginal( String fid ) {
+        for ( Feature f : fc ) {
+            if ( fid.equals( f.getId() ) ) {
+                return f;
+            }
+        }
+        throw new IllegalArgumentException( fid );
+    }
+
+    private static List<TypedObjectNode> getValues( Feature f, String prop ) {
+        List<TypedObjectNode> values = new ArrayList<TypedObjectNode>();
+        for ( Property p : f.getProperties( new QName( APP_NS, prop ) ) ) {
+            values.add( p.getValue() );
+        }
+        return values;
+    }
+
+    private static List<String> values( Feature f, String prop ) {
+        List<String> values = new ArrayList<String>();
+        for ( TypedObjectNode value : getValues( f, prop ) ) {
+            values.add( String.valueOf( value ) );
+        }
+        return values;
+    }
+
+    private FeatureInputStream stream() {
+        return new MemoryFeatureInputStream( fc );
+    }
+
+    private SortProperty[] sortBy( String xpath, boolean ascending ) {
+        return new SortProperty[] { new SortProperty( new ValueReference( xpath, nsContext ), ascending ) };
+    }
+
+    private static List<String> ids( FeatureInputStream rs ) {
+        List<String> ids = new ArrayList<String>();
+        for ( Feature f : rs ) {
+            ids.add( f.getId() );
+        }
+        rs.close();
+        return ids;
+    }
+}
@@ -47,9 +47,11 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.GMLObject;
 import org.deegree.commons.tom.gml.property.Property;
 import org.deegree.commons.tom.primitive.PrimitiveValue;
 import org.deegree.cs.exceptions.UnknownCRSException;
@@ -57,6 +59,8 @@ import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.property.SimpleProperty;
 import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.xpath.node.GMLObjectNode;
+import org.deegree.feature.xpath.node.XPathNode;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.expression.ValueReference;
 import org.deegree.gml.GMLInputFactory;
@@ -380,6 +384,33 @@ public class GMLObjectXPathTest {
         assertEquals( "POLYGON_1", ( (PrimitiveValue) result[0] ).getAsText() );
     }
 
+    @Test
+    public void testCompiledPathsSelectSameNodesAsJaxen()
+                            throws Exception {
+        String[] xpaths = new String[] { "*/app:Philosopher/app:placeOfBirth/*/app:name",
+                                        "gml:featureMember[3]/*/@gml:id",
+                                        "gml:featureMember/app:Philosopher/app:friend[1]",
+                                        "gml:featureMember/app:Philosopher/name", "gml:featureMember[8]/*" };
+        for ( String xpath : xpaths ) {
+            ValueReference path = new ValueReference( xpath, nsContext );
+            assertTrue( CompiledPath.get( path ) != CompiledPath.UNSUPPORTED );
+            TypedObjectNode[] result = new TypedObjectNodeXPathEvaluator().eval( fc, path );
+
+            GMLObjectXPath jaxenPath = new GMLObjectXPath( xpath, fc );
+            jaxenPath.setNamespaceContext( path.getNsContext() );
+            List<?> expected = jaxenPath.selectNodes( new GMLObjectNode<GMLObject, GMLObject>( null, fc ) );
+            assertEquals( xpath, expected.size(), result.length );
+            for ( int i = 0; i < result.length; i++ ) {
+                TypedObjectNode expectedValue = ( (XPathNode<?>) expected.get( i ) ).getValue();
+                if ( expectedValue instanceof PrimitiveValue ) {
+                    assertEquals( xpath, expectedValue.toString(), result[i].toString() );
+                } else {
+                    assertTrue( xpath, expectedValue == result[i] );
+                }
+            }
+        }
+    }
+
     // @Test
     // public void testXPath23()
     // throws FilterEvaluationException {
@@ -0,0 +1,128 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+
+package org.deegree.commons.index;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive <code>long</code> values, used to collect {@link PackedRTree} query results without
+ * boxing. Instances can be cleared and reused between queries.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class LongList {
+
+    private long[] values;
+
+    private int size;
+
+    /**
+     * Creates a new empty list with a default initial capacity.
+     */
+    public LongList() {
+        this( 16 );
+    }
+
+    /**
+     * @param capacity
+     *            initial capacity, must be >= 0
+     */
+    public LongList( int capacity ) {
+        values = new long[Math.max( capacity, 1 )];
+    }
+
+    /**
+     * @param value
+     *            value to append
+     */
+    public void add( long value ) {
+        if ( size == values.length ) {
+            values = Arrays.copyOf( values, values.length << 1 );
+        }
+        values[size++] = value;
+    }
+
+    /**
+     * @param index
+     *            index of the value, must be smaller than {@link #size()}
+     * @return the value at the given index
+     */
+    public long get( int index ) {
+        if ( index >= size ) {
+            throw new IndexOutOfBoundsException( "Index: " + index + ", size: " + size );
+        }
+        return values[index];
+    }
+
+    /**
+     * @return number of values in this list
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true, if the list contains no values
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all values, but keeps the allocated storage.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Sorts the values in ascending order.
+     */
+    public void sort() {
+        Arrays.sort( values, 0, size );
+    }
+
+    /**
+     * @return a copy of the values, never <code>null</code>
+     */
+    public long[] toArray() {
+        return Arrays.copyOf( values, size );
+    }
+
+}
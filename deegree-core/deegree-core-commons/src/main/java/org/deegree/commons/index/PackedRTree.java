@@ -0,0 +1,487 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+
+package org.deegree.commons.index;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+
+import org.deegree.commons.utils.Pair;
+
+/**
+ * <code>PackedRTree</code> is a static, packed R-tree that keeps all of its nodes in flat primitive storage.
+ * <p>
+ * The entries are ordered along a Hilbert curve (using the centers of their boxes) and the tree is packed bottom-up
+ * with a fixed node size, so no node objects are needed at all: boxes are stored as <code>minx, miny, maxx, maxy</code>
+ * quadruples in one float buffer, the values in a parallel long buffer. For leaf entries the value is the user value
+ * (e.g. a file pointer or an array index), for inner nodes it is the position of the first child node. The leaves
+ * occupy the first {@link #size()} positions, the root is stored last.
+ * </p>
+ * <p>
+ * A tree can be persisted with {@link #write(File)} and memory-mapped again with {@link #load(File)}, in which case the
+ * tree does not occupy any heap memory. Trees are immutable and can be queried concurrently.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PackedRTree {
+
+    /** Number of entries per node that is used if nothing else is specified. */
+    public static final int DEFAULT_NODE_SIZE = 16;
+
+    // 'DRTI'
+    private static final int MAGIC = 0x44525449;
+
+    private static final int VERSION = 2;
+
+    // magic, version, node size, number of items, number of nodes, flags, envelope
+    private static final int HEADER_SIZE = 6 * 4 + 4 * 4;
+
+    private static final int HILBERT_SIZE = 1 << 15;
+
+    private final int nodeSize;
+
+    private final int numItems;
+
+    private final int numNodes;
+
+    private final int[] levelBounds;
+
+    private final FloatBuffer boxes;
+
+    private final LongBuffer values;
+
+    private final float[] envelope;
+
+    private final boolean extraFlag;
+
+    /**
+     * Callback for allocation-free queries.
+     */
+    public interface Visitor {
+
+        /**
+         * Invoked for every leaf entry whose box intersects the query box.
+         * 
+         * @param value
+         *            value of the entry
+         * @return <code>true</code>, if the query should continue, <code>false</code> to stop it
+         */
+        boolean visit( long value );
+    }
+
+    private PackedRTree( int nodeSize, int numItems, FloatBuffer boxes, LongBuffer values, float[] envelope,
+                         boolean extraFlag ) {
+        this.nodeSize = nodeSize;
+        this.numItems = numItems;
+        this.levelBounds = calcLevelBounds( numItems, nodeSize );
+        this.numNodes = levelBounds.length == 0 ? 0 : levelBounds[levelBounds.length - 1];
+        this.boxes = boxes;
+        this.values = values;
+        this.envelope = envelope;
+        this.extraFlag = extraFlag;
+    }
+
+    /**
+     * Builds a new tree in heap memory.
+     * 
+     * @param itemBoxes
+     *            boxes of the entries (<code>minx, miny, maxx, maxy</code> for every entry), must not be
+     *            <code>null</code>
+     * @param itemValues
+     *            values of the entries, must not be <code>null</code>
+     * @param size
+     *            number of entries to use from the given arrays
+     * @param nodeSize
+     *            maximum number of entries per node, values < 2 select the {@link #DEFAULT_NODE_SIZE}
+     * @param extraFlag
+     *            an arbitrary flag that is persisted along with the tree
+     * @return the new tree, never <code>null</code>
+     */
+    public static PackedRTree create( float[] itemBoxes, long[] itemValues, int size, int nodeSize, boolean extraFlag ) {
+        if ( nodeSize < 2 ) {
+            nodeSize = DEFAULT_NODE_SIZE;
+        }
+        int[] bounds = calcLevelBounds( size, nodeSize );
+        int nodes = bounds.length == 0 ? 0 : bounds[bounds.length - 1];
+        float[] b = new float[nodes * 4];
+        long[] v = new long[nodes];
+        if ( size == 0 ) {
+            return new PackedRTree( nodeSize, 0, FloatBuffer.wrap( b ), LongBuffer.wrap( v ), null, extraFlag );
+        }
+
+        float[] env = new float[] { Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY,
+                                   Float.NEGATIVE_INFINITY };
+        for ( int i = 0; i < size; ++i ) {
+            expand( env, itemBoxes, i * 4 );
+        }
+
+        // sort the entries along the hilbert curve, lower 32 bits hold the original index
+        double width = env[2] - env[0];
+        double height = env[3] - env[1];
+        long[] keys = new long[size];
+        for ( int i = 0; i < size; ++i ) {
+            int o = i * 4;
+            int x = 0, y = 0;
+            if ( width > 0 ) {
+                x = (int) ( ( HILBERT_SIZE - 1 ) * ( ( itemBoxes[o] + itemBoxes[o + 2] ) / 2 - env[0] ) / width );
+            }
+            if ( height > 0 ) {
+                y = (int) ( ( HILBERT_SIZE - 1 ) * ( ( itemBoxes[o + 1] + itemBoxes[o + 3] ) / 2 - env[1] ) / height );
+            }
+            keys[i] = ( (long) hilbert( x, y ) << 32 ) | i;
+        }
+        Arrays.sort( keys );
+        for ( int k = 0; k < size; ++k ) {
+            int i = (int) keys[k];
+            System.arraycopy( itemBoxes, i * 4, b, k * 4, 4 );
+            v[k] = itemValues[i];
+        }
+
+        // pack the upper levels
+        int pos = 0;
+        int out = size;
+        for ( int l = 0; l < bounds.length - 1; ++l ) {
+            int end = bounds[l];
+            while ( pos < end ) {
+                int first = pos;
+                int o = out * 4;
+                b[o] = Float.POSITIVE_INFINITY;
+                b[o + 1] = Float.POSITIVE_INFINITY;
+                b[o + 2] = Float.NEGATIVE_INFINITY;
+                b[o + 3] = Float.NEGATIVE_INFINITY;
+                for ( int j = 0; j < nodeSize && pos < end; ++j, ++pos ) {
+                    expand( b, o, b, pos * 4 );
+                }
+                v[out++] = first;
+            }
+        }
+        return new PackedRTree( nodeSize, size, FloatBuffer.wrap( b ), LongBuffer.wrap( v ), env, extraFlag );
+    }
+
+    /**
+     * Builds a new tree in heap memory. Entries with a <code>null</code> box are skipped.
+     * 
+     * @param entries
+     *            boxes and values of the entries, must not be <code>null</code>
+     * @param nodeSize
+     *            maximum number of entries per node, values < 2 select the {@link #DEFAULT_NODE_SIZE}
+     * @param extraFlag
+     *            an arbitrary flag that is persisted along with the tree
+     * @return the new tree, never <code>null</code>
+     */
+    public static PackedRTree create( List<Pair<float[], Long>> entries, int nodeSize, boolean extraFlag ) {
+        float[] itemBoxes = new float[entries.size() * 4];
+        long[] itemValues = new long[entries.size()];
+        int size = 0;
+        for ( Pair<float[], Long> p : entries ) {
+            if ( p.first == null ) {
+                continue;
+            }
+            System.arraycopy( p.first, 0, itemBoxes, size * 4, 4 );
+            itemValues[size++] = p.second;
+        }
+        return create( itemBoxes, itemValues, size, nodeSize, extraFlag );
+    }
+
+    /**
+     * Memory-maps a tree that has been written using {@link #write(File)}.
+     * 
+     * @param file
+     *            index file, must not be <code>null</code>
+     * @return the mapped tree, never <code>null</code>
+     * @throws IOException
+     *             if the file could not be read or is not a (version 2) packed r-tree index
+     */
+    public static PackedRTree load( File file )
+                            throws IOException {
+        RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try {
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            if ( length < HEADER_SIZE || length > Integer.MAX_VALUE ) {
+                throw new IOException( "File '" + file + "' is not a packed r-tree index." );
+            }
+            MappedByteBuffer buffer = channel.map( READ_ONLY, 0, length );
+            buffer.order( LITTLE_ENDIAN );
+            if ( buffer.getInt() != MAGIC ) {
+                throw new IOException( "File '" + file + "' is not a packed r-tree index." );
+            }
+            int version = buffer.getInt();
+            if ( version != VERSION ) {
+                throw new IOException( "Unsupported packed r-tree index version " + version + " in '" + file + "'." );
+            }
+            int nodeSize = buffer.getInt();
+            int size = buffer.getInt();
+            int nodes = buffer.getInt();
+            boolean flag = ( buffer.getInt() & 1 ) != 0;
+            float[] env = new float[] { buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat() };
+
+            int[] bounds = calcLevelBounds( size, nodeSize );
+            int expectedNodes = bounds.length == 0 ? 0 : bounds[bounds.length - 1];
+            if ( nodeSize < 2 || nodes != expectedNodes || length != HEADER_SIZE + nodes * 24L ) {
+                throw new IOException( "Packed r-tree index '" + file + "' is corrupt." );
+            }
+
+            buffer.position( HEADER_SIZE );
+            ByteBuffer slice = buffer.slice().order( LITTLE_ENDIAN );
+            slice.limit( nodes * 16 );
+            FloatBuffer b = slice.asFloatBuffer();
+            buffer.position( HEADER_SIZE + nodes * 16 );
+            LongBuffer v = buffer.slice().order( LITTLE_ENDIAN ).asLongBuffer();
+
+            return new PackedRTree( nodeSize, size, b, v, size == 0 ? null : env, flag );
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Persists this tree to the given file, it can be mapped again using {@link #load(File)}.
+     * 
+     * @param file
+     *            file to write to, must not be <code>null</code>
+     * @throws IOException
+     */
+    public void write( File file )
+                            throws IOException {
+        FileOutputStream out = new FileOutputStream( file );
+        try {
+            FileChannel channel = out.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate( 64 * 1024 ).order( LITTLE_ENDIAN );
+            buffer.putInt( MAGIC );
+            buffer.putInt( VERSION );
+            buffer.putInt( nodeSize );
+            buffer.putInt( numItems );
+            buffer.putInt( numNodes );
+            buffer.putInt( extraFlag ? 1 : 0 );
+            for ( int i = 0; i < 4; ++i ) {
+                buffer.putFloat( envelope == null ? 0 : envelope[i] );
+            }
+            for ( int i = 0; i < numNodes * 4; ++i ) {
+                if ( buffer.remaining() < 4 ) {
+                    flush( buffer, channel );
+                }
+                buffer.putFloat( boxes.get( i ) );
+            }
+            for ( int i = 0; i < numNodes; ++i ) {
+                if ( buffer.remaining() < 8 ) {
+                    flush( buffer, channel );
+                }
+                buffer.putLong( values.get( i ) );
+            }
+            flush( buffer, channel );
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Passes the values of all entries intersecting the given box to the visitor. The order of the visited values is
+     * unspecified.
+     * 
+     * @param bbox
+     *            query box (<code>minx, miny, maxx, maxy</code>), must not be <code>null</code>
+     * @param visitor
+     *            receives the matching values, must not be <code>null</code>
+     */
+    public void query( float[] bbox, Visitor visitor ) {
+        if ( numItems == 0 || !intersects( bbox, envelope, 0 ) ) {
+            return;
+        }
+        float minx = bbox[0], miny = bbox[1], maxx = bbox[2], maxy = bbox[3];
+        int[] stack = new int[levelBounds.length * nodeSize];
+        int top = 0;
+        int node = numNodes - 1;
+        while ( true ) {
+            int end = Math.min( node + nodeSize, upperBound( node ) );
+            boolean leaves = node < numItems;
+            for ( int pos = node; pos < end; ++pos ) {
+                int o = pos * 4;
+                if ( boxes.get( o + 2 ) < minx || boxes.get( o + 3 ) < miny || boxes.get( o ) > maxx
+                     || boxes.get( o + 1 ) > maxy ) {
+                    continue;
+                }
+                long value = values.get( pos );
+                if ( !leaves ) {
+                    stack[top++] = (int) value;
+                } else if ( !visitor.visit( value ) ) {
+                    return;
+                }
+            }
+            if ( top == 0 ) {
+                return;
+            }
+            node = stack[--top];
+        }
+    }
+
+    /**
+     * Appends the values of all entries intersecting the given box to the result list.
+     * 
+     * @param bbox
+     *            query box (<code>minx, miny, maxx, maxy</code>), must not be <code>null</code>
+     * @param result
+     *            list to append to, must not be <code>null</code>
+     * @return the number of values that have been appended
+     */
+    public int query( float[] bbox, final LongList result ) {
+        int before = result.size();
+        query( bbox, new Visitor() {
+            @Override
+            public boolean visit( long value ) {
+                result.add( value );
+                return true;
+            }
+        } );
+        return result.size() - before;
+    }
+
+    /**
+     * @return the number of (leaf) entries in this tree
+     */
+    public int size() {
+        return numItems;
+    }
+
+    /**
+     * @return the envelope of all entries (<code>minx, miny, maxx, maxy</code>), <code>null</code> if the tree is empty
+     */
+    public float[] getEnvelope() {
+        return envelope == null ? null : Arrays.copyOf( envelope, 4 );
+    }
+
+    /**
+     * @return the flag that has been given on creation
+     */
+    public boolean getExtraFlag() {
+        return extraFlag;
+    }
+
+    private int upperBound( int node ) {
+        int lo = 0, hi = levelBounds.length - 1;
+        while ( lo < hi ) {
+            int mid = ( lo + hi ) >>> 1;
+            if ( levelBounds[mid] > node ) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return levelBounds[lo];
+    }
+
+    private static boolean intersects( float[] bbox, float[] other, int o ) {
+        return !( other[o + 2] < bbox[0] || other[o + 3] < bbox[1] || other[o] > bbox[2] || other[o + 1] > bbox[3] );
+    }
+
+    private static void expand( float[] env, float[] boxes, int o ) {
+        expand( env, 0, boxes, o );
+    }
+
+    private static void expand( float[] target, int t, float[] boxes, int o ) {
+        target[t] = Math.min( target[t], boxes[o] );
+        target[t + 1] = Math.min( target[t + 1], boxes[o + 1] );
+        target[t + 2] = Math.max( target[t + 2], boxes[o + 2] );
+        target[t + 3] = Math.max( target[t + 3], boxes[o + 3] );
+    }
+
+    private static void flush( ByteBuffer buffer, FileChannel channel )
+                            throws IOException {
+        buffer.flip();
+        while ( buffer.hasRemaining() ) {
+            channel.write( buffer );
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Calculates the (exclusive) end positions of the levels, from the leaves up to the root.
+     */
+    private static int[] calcLevelBounds( int size, int nodeSize ) {
+        if ( size == 0 ) {
+            return new int[0];
+        }
+        int[] bounds = new int[64];
+        int levels = 0;
+        int n = size;
+        int nodes = n;
+        bounds[levels++] = nodes;
+        do {
+            n = ( n + nodeSize - 1 ) / nodeSize;
+            nodes += n;
+            bounds[levels++] = nodes;
+        } while ( n != 1 );
+        return Arrays.copyOf( bounds, levels );
+    }
+
+    /**
+     * Maps the given cell (0..2^15-1 in both dimensions) to its distance along the hilbert curve.
+     */
+    private static int hilbert( int x, int y ) {
+        int d = 0;
+        for ( int s = HILBERT_SIZE >> 1; s > 0; s >>= 1 ) {
+            int rx = ( x & s ) > 0 ? 1 : 0;
+            int ry = ( y & s ) > 0 ? 1 : 0;
+            d += s * s * ( ( 3 * rx ) ^ ry );
+            if ( ry == 0 ) {
+                if ( rx == 1 ) {
+                    x = HILBERT_SIZE - 1 - x;
+                    y = HILBERT_SIZE - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+}
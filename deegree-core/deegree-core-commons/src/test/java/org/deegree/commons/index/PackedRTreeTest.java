@@ -0,0 +1,155 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.commons.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link PackedRTree}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PackedRTreeTest {
+
+    private static final int NUM_ITEMS = 5000;
+
+    private final Random random = new Random( 42 );
+
+    private final float[] boxes = new float[NUM_ITEMS * 4];
+
+    private final long[] values = new long[NUM_ITEMS];
+
+    {
+        for ( int i = 0; i < NUM_ITEMS; ++i ) {
+            float x = random.nextFloat() * 1000;
+            float y = random.nextFloat() * 1000;
+            boxes[i * 4] = x;
+            boxes[i * 4 + 1] = y;
+            boxes[i * 4 + 2] = x + random.nextFloat() * 20;
+            boxes[i * 4 + 3] = y + random.nextFloat() * 20;
+            values[i] = 100 + i;
+        }
+    }
+
+    @Test
+    public void testQueryMatchesLinearScan() {
+        for ( int nodeSize : new int[] { 2, 4, 16, 128 } ) {
+            PackedRTree tree = PackedRTree.create( boxes, values, NUM_ITEMS, nodeSize, false );
+            assertEquals( NUM_ITEMS, tree.size() );
+            assertQueries( tree );
+        }
+    }
+
+    @Test
+    public void testWriteAndLoad()
+                            throws IOException {
+        File file = File.createTempFile( "packedrtree", ".rti" );
+        file.deleteOnExit();
+        PackedRTree.create( boxes, values, NUM_ITEMS, 16, true ).write( file );
+        PackedRTree tree = PackedRTree.load( file );
+        assertEquals( NUM_ITEMS, tree.size() );
+        assertTrue( tree.getExtraFlag() );
+        assertQueries( tree );
+    }
+
+    @Test(expected = IOException.class)
+    public void testLoadOldFormat()
+                            throws IOException {
+        File file = File.createTempFile( "rtree", ".rti" );
+        file.deleteOnExit();
+        RTree<Long> tree = new RTree<Long>( new float[] { 0, 0, 200, 200 }, 4 );
+        tree.insert( new float[] { 20, 70, 35, 85 }, 8l );
+        tree.writeTreeToDisk( file.getCanonicalPath() );
+        PackedRTree.load( file );
+    }
+
+    @Test
+    public void testEmptyTree() {
+        PackedRTree tree = PackedRTree.create( new float[0], new long[0], 0, 16, false );
+        assertNull( tree.getEnvelope() );
+        LongList result = new LongList();
+        assertEquals( 0, tree.query( new float[] { 0, 0, 1, 1 }, result ) );
+    }
+
+    @Test
+    public void testVisitorStops() {
+        PackedRTree tree = PackedRTree.create( boxes, values, NUM_ITEMS, 16, false );
+        final int[] count = new int[1];
+        tree.query( new float[] { 0, 0, 1020, 1020 }, new PackedRTree.Visitor() {
+            @Override
+            public boolean visit( long value ) {
+                return ++count[0] < 10;
+            }
+        } );
+        assertEquals( 10, count[0] );
+    }
+
+    private void assertQueries( PackedRTree tree ) {
+        LongList result = new LongList();
+        for ( int q = 0; q < 100; ++q ) {
+            float x = random.nextFloat() * 1100 - 50;
+            float y = random.nextFloat() * 1100 - 50;
+            float[] bbox = new float[] { x, y, x + random.nextFloat() * 200, y + random.nextFloat() * 200 };
+            TreeSet<Long> expected = new TreeSet<Long>();
+            for ( int i = 0; i < NUM_ITEMS; ++i ) {
+                int o = i * 4;
+                if ( !( boxes[o + 2] < bbox[0] || boxes[o + 3] < bbox[1] || boxes[o] > bbox[2] || boxes[o + 1] > bbox[3] ) ) {
+                    expected.add( values[i] );
+                }
+            }
+            result.clear();
+            tree.query( bbox, result );
+            TreeSet<Long> actual = new TreeSet<Long>();
+            for ( int i = 0; i < result.size(); ++i ) {
+                actual.add( result.get( i ) );
+            }
+            assertEquals( expected.size(), result.size() );
+            assertEquals( expected, actual );
+        }
+    }
+
+}
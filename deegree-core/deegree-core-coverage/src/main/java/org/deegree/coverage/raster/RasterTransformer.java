@@ -38,9 +38,14 @@ package org.deegree.coverage.raster;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.media.jai.WarpPolynomial;
-import javax.vecmath.Point3d;
 
 import org.deegree.coverage.raster.data.RasterData;
 import org.deegree.coverage.raster.geom.RasterGeoReference;
@@ -72,6 +77,21 @@ public class RasterTransformer extends Transformer {
 
     private static Logger LOG = LoggerFactory.getLogger( RasterTransformer.class );
 
+    /** System property for the number of threads used to warp a raster, defaults to the number of processors. */
+    public static final String WARP_THREADS_PROPERTY = "deegree.raster.warp.threads";
+
+    private static final int WARP_THREADS;
+
+    static {
+        int processors = Runtime.getRuntime().availableProcessors();
+        WARP_THREADS = Math.max( 1, Integer.getInteger( WARP_THREADS_PROPERTY, processors ) );
+    }
+
+    // rasters with less rows per thread are warped on the calling thread
+    static final int MIN_ROWS_PER_BAND = 64;
+
+    private static ExecutorService warpExecutor;
+
     private final int polynomialOrder = 3;
 
     private final int refPointsGridSize = 10;
@@ -155,9 +175,6 @@ public class RasterTransformer extends Transformer {
                 srcData.setNoDataValue( backgroundValue );
             }
 
-            // interpolation is needed.
-            Interpolation interpolation = InterpolationFactory.getInterpolation( interpolationType, srcData );
-
             RasterRect rr = new RasterRect( 0, 0, dstWidth, dstHeight );
             RasterData dstData = srcData.createCompatibleWritableRasterData( rr, null );
             RasterGeoReference dstREnv = RasterGeoReference.create( sourceRaster.getRasterReference().getOriginLocation(),
@@ -167,31 +184,138 @@ public class RasterTransformer extends Transformer {
             // the warp is a cubic polynomial function created of 100 points in the dstEnvelope. This function will map
             // points from the source crs to the target crs very accurate.
             WarpPolynomial warp = createWarp( dstWidth, dstHeight, srcCRS, srcREnv, dstREnv );
-            warpTransform( warp, interpolation, dstData );
+            warpTransform( warp, interpolationType, srcData, dstData, WARP_THREADS );
 
             return new SimpleRaster( dstData, dstEnvelope, dstREnv, null );
         }
     }
 
     /**
+     * Warps the source raster into the destination raster. The rows of the destination raster are split into bands
+     * that are warped concurrently (see {@link #WARP_THREADS_PROPERTY}), small rasters are warped on the calling
+     * thread.
+     * 
      * @param warp
-     * @param interpolation
+     * @param interpolationType
+     * @param srcData
      * @param dstData
+     * @param threads
+     *            the maximum number of bands warped concurrently
+     * @throws TransformationException
+     *             if warping one of the bands failed
      */
-    private void warpTransform( WarpPolynomial warp, Interpolation interpolation, RasterData dstData ) {
+    static void warpTransform( WarpPolynomial warp, InterpolationType interpolationType, RasterData srcData,
+                               RasterData dstData, int threads )
+                            throws TransformationException {
+        int rows = dstData.getRows();
+        int bands = Math.min( threads, rows / MIN_ROWS_PER_BAND );
+        if ( bands <= 1 ) {
+            Interpolation interpolation = InterpolationFactory.getInterpolation( interpolationType, srcData );
+            warpRows( warp, interpolation, dstData, 0, rows );
+            return;
+        }
+        LOG.debug( "Warping {} rows in {} bands.", rows, bands );
+        List<Future<?>> futures = new ArrayList<Future<?>>( bands - 1 );
+        try {
+            int y0 = 0;
+            for ( int i = 0; i < bands; i++ ) {
+                int y1 = (int) ( (long) rows * ( i + 1 ) / bands );
+                // the interpolations are not thread safe, and reading from the raster data depends on the buffer
+                // position, so every band uses its own read only view on the source data
+                Interpolation interpolation = InterpolationFactory.getInterpolation( interpolationType,
+                                                                                     srcData.asReadOnly() );
+                if ( i == bands - 1 ) {
+                    // the calling thread does the last band itself
+                    warpRows( warp, interpolation, dstData, y0, y1 );
+                } else {
+                    futures.add( getWarpExecutor().submit( new WarpTask( warp, interpolation, dstData, y0, y1 ) ) );
+                }
+                y0 = y1;
+            }
+            for ( Future<?> future : futures ) {
+                future.get();
+            }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new TransformationException( "Warping the raster was interrupted.", e );
+        } catch ( ExecutionException e ) {
+            throw new TransformationException( "Warping the raster failed: " + e.getCause().getMessage(),
+                                               e.getCause() );
+        } finally {
+            for ( Future<?> future : futures ) {
+                future.cancel( true );
+            }
+        }
+    }
+
+    /**
+     * Warps the rows [y0, y1) of the destination raster. The interpolation is done for whole rows, the results are
+     * copied to the destination raster row by row.
+     */
+    private static void warpRows( WarpPolynomial warp, Interpolation interpolation, RasterData dstData, int y0, int y1 ) {
+        int columns = dstData.getColumns();
         byte[] pixel = new byte[dstData.getBands() * dstData.getDataType().getSize()];
-        float[] srcCoords = new float[dstData.getColumns() * 2];
-        for ( int y = 0; y < dstData.getRows(); y++ ) {
+        byte[] row = new byte[columns * pixel.length];
+        float[] srcCoords = new float[columns * 2];
+        for ( int y = y0; y < y1; y++ ) {
             // look-up the pixel positions in the source raster for every pixel in this row, the srcCoords will contain
             // the x,y ([2n],[2n+1]) values in the source raster (defined in the native CRS) for this row of pixels.
-            warp.warpRect( 0, y, dstData.getColumns(), 1, srcCoords );
-            for ( int x = 0; x < dstData.getColumns(); x++ ) {
-                // get the interpolated pixel and set the value into the result raster
-                interpolation.getPixel( srcCoords[x * 2], srcCoords[x * 2 + 1], pixel );
-                dstData.setPixel( x, y, pixel );
+            // The polynomial is evaluated incrementally (forward differences) along the row by the warp.
+            warp.warpRect( 0, y, columns, 1, srcCoords );
+            interpolation.getPixels( srcCoords, columns, row );
+            // the rows of the bands are disjoint, but setting pixels moves the position of the shared buffer
+            synchronized ( dstData ) {
+                for ( int x = 0; x < columns; x++ ) {
+                    System.arraycopy( row, x * pixel.length, pixel, 0, pixel.length );
+                    dstData.setPixel( x, y, pixel );
+                }
             }
         }
+    }
+
+    private static synchronized ExecutorService getWarpExecutor() {
+        if ( warpExecutor == null ) {
+            warpExecutor = Executors.newFixedThreadPool( WARP_THREADS, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread( Runnable r ) {
+                    Thread t = new Thread( r, "raster-warp-" + count.incrementAndGet() );
+                    t.setDaemon( true );
+                    return t;
+                }
+            } );
+        }
+        return warpExecutor;
+    }
+
+    /**
+     * Warps a band of rows of the destination raster.
+     */
+    private static class WarpTask implements Runnable {
+
+        private final WarpPolynomial warp;
+
+        private final Interpolation interpolation;
+
+        private final RasterData dstData;
+
+        private final int y0;
+
+        private final int y1;
+
+        WarpTask( WarpPolynomial warp, Interpolation interpolation, RasterData dstData, int y0, int y1 ) {
+            this.warp = warp;
+            this.interpolation = interpolation;
+            this.dstData = dstData;
+            this.y0 = y0;
+            this.y1 = y1;
+        }
 
+        @Override
+        public void run() {
+            warpRows( warp, interpolation, dstData, y0, y1 );
+        }
     }
 
     /**
@@ -242,21 +366,26 @@ public class RasterTransformer extends Transformer {
         float dy = ( dstHeight - 1 ) / (float) ( refPointsGridSize - 1 );
         float[] srcCoords = new float[refPointsGridSize * refPointsGridSize * 2];
         float[] dstCoords = new float[refPointsGridSize * refPointsGridSize * 2];
-        List<Point3d> points = new ArrayList<Point3d>( refPointsGridSize * refPointsGridSize );
+        double[] points = new double[refPointsGridSize * refPointsGridSize * 3];
         for ( int j = 0; j < refPointsGridSize; j++ ) {
             for ( int i = 0; i < refPointsGridSize; i++ ) {
                 dstCoords[k] = i * dx;
                 dstCoords[k + 1] = j * dy;
                 double[] dstWCoords = dstREnv.getWorldCoordinate( (int) dstCoords[k], (int) dstCoords[k + 1] );
-                points.add( new Point3d( dstWCoords[0], dstWCoords[1], Double.NaN ) );
+                int n = ( j * refPointsGridSize + i ) * 3;
+                points[n] = dstWCoords[0];
+                points[n + 1] = dstWCoords[1];
+                points[n + 2] = Double.NaN;
                 k += 2;
             }
         }
-        List<Point3d> resultList = transformDstToSrc( srcCRS, points );
+        // transform all grid points at once
+        CoordinateTransformer transformer = new CoordinateTransformer( srcCRS );
+        transformer.transform( getTargetCRS(), points, 0, refPointsGridSize * refPointsGridSize );
 
         k = 0;
-        for ( Point3d point : resultList ) {
-            double[] srcRCoords = srcREnv.getRasterCoordinateUnrounded( point.x, point.y );
+        for ( int i = 0; i < points.length; i += 3 ) {
+            double[] srcRCoords = srcREnv.getRasterCoordinateUnrounded( points[i], points[i + 1] );
             srcCoords[k] = (float) srcRCoords[0];
             srcCoords[k + 1] = (float) srcRCoords[1];
             k += 2;
@@ -268,12 +397,6 @@ public class RasterTransformer extends Transformer {
         return warp;
     }
 
-    private List<Point3d> transformDstToSrc( ICRS srcCRS, List<Point3d> points )
-                            throws TransformationException {
-        // transform all grid points
-        return new CoordinateTransformer( srcCRS ).transform( getTargetCRS(), points );
-    }
-
     /**
      * Transform a raster to the target coordinate system.
      * 
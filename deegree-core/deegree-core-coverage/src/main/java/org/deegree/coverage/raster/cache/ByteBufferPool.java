@@ -41,12 +41,27 @@ package org.deegree.coverage.raster.cache;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.deegree.commons.utils.StringUtils;
 import org.slf4j.Logger;
 
 /**
- * The <code>ByteBufferPool</code> will be the central place for buffering byte buffers used for rasters. Currently only
- * new byte buffers are created, no pooling is done.
+ * The <code>ByteBufferPool</code> is the central place for buffering byte buffers used for rasters. Buffers of cached
+ * raster tiles which are evicted from the {@link RasterCache} are given back to the pool with
+ * {@link #release(ByteBuffer)} and recycled for the next allocation of the same size (tiles of a raster all have the
+ * same size), instead of allocating a new buffer. Recycled buffers are zeroed, so they are indistinguishable from new
+ * ones. Only heap buffers owning their whole backing array are recycled; direct buffers (which may be memory mapped
+ * files), read-only buffers and slices of other buffers are left to the garbage collector.
+ * <p>
+ * The amount of memory held by the pool can be set with the {@link #DEF_BUFFER_POOL_SIZE} key (default 64m).
+ * </p>
  * 
  * @author <a href="mailto:bezema@lat-lon.de">Rutger Bezema</a>
  * @author last edited by: $Author$
@@ -56,6 +71,23 @@ import org.slf4j.Logger;
 public class ByteBufferPool {
     private static final Logger LOG = getLogger( ByteBufferPool.class );
 
+    /** A key which can be given to the JVM to define the amount of memory kept for recycling buffers (e.g. 64m). */
+    public static final String DEF_BUFFER_POOL_SIZE = "deegree.raster.bufferpool.size";
+
+    private static final long DEFAULT_POOL_SIZE = 64 * 1024 * 1024;
+
+    private static final ConcurrentMap<Integer, Queue<ByteBuffer>> heapBuffers;
+
+    private static final AtomicLong pooledMemory = new AtomicLong();
+
+    private static final long maxPooledMemory;
+
+    static {
+        heapBuffers = new ConcurrentHashMap<Integer, Queue<ByteBuffer>>();
+        long size = StringUtils.parseByteSize( System.getProperty( DEF_BUFFER_POOL_SIZE ) );
+        maxPooledMemory = size > 0 ? size : DEFAULT_POOL_SIZE;
+    }
+
     /**
      * Frees up raster memory and than allocates the ByteBuffer.
      * 
@@ -72,7 +104,10 @@ public class ByteBufferPool {
         if ( direct ) {
             return ByteBuffer.allocateDirect( size );
         }
-
+        ByteBuffer recycled = poll( size );
+        if ( recycled != null ) {
+            return recycled;
+        }
         return ByteBuffer.allocate( size );
     }
 
@@ -85,4 +120,58 @@ public class ByteBufferPool {
     public static ByteBuffer allocate( int size, boolean directAllocation ) {
         return allocate( size, directAllocation, false );
     }
+
+    /**
+     * Gives a buffer back to the pool. The caller must not use the buffer (or any views of it) afterwards. Buffers
+     * which can not be recycled (see the class description) are ignored.
+     * 
+     * @param buffer
+     *            to recycle, may be <code>null</code>
+     */
+    public static void release( ByteBuffer buffer ) {
+        // hasArray() is false for direct and read-only buffers, slices only cover a part of their array
+        if ( buffer == null || !buffer.hasArray() || buffer.arrayOffset() != 0
+             || buffer.array().length != buffer.capacity() ) {
+            return;
+        }
+        int size = buffer.capacity();
+        if ( pooledMemory.addAndGet( size ) > maxPooledMemory ) {
+            pooledMemory.addAndGet( -size );
+            return;
+        }
+        Queue<ByteBuffer> queue = heapBuffers.get( size );
+        if ( queue == null ) {
+            queue = new ConcurrentLinkedQueue<ByteBuffer>();
+            Queue<ByteBuffer> existing = heapBuffers.putIfAbsent( size, queue );
+            if ( existing != null ) {
+                queue = existing;
+            }
+        }
+        queue.offer( buffer );
+    }
+
+    /**
+     * Removes all buffers from the pool.
+     */
+    public static void clear() {
+        for ( Queue<ByteBuffer> queue : heapBuffers.values() ) {
+            ByteBuffer buffer;
+            while ( ( buffer = queue.poll() ) != null ) {
+                pooledMemory.addAndGet( -buffer.capacity() );
+            }
+        }
+    }
+
+    private static ByteBuffer poll( int size ) {
+        Queue<ByteBuffer> queue = heapBuffers.get( size );
+        ByteBuffer buffer = queue == null ? null : queue.poll();
+        if ( buffer == null ) {
+            return null;
+        }
+        pooledMemory.addAndGet( -size );
+        buffer.clear();
+        buffer.order( ByteOrder.BIG_ENDIAN );
+        Arrays.fill( buffer.array(), (byte) 0 );
+        return buffer;
+    }
 }
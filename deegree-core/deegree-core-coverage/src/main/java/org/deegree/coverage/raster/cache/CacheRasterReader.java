@@ -50,6 +50,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.deegree.commons.utils.FileUtils;
 import org.deegree.coverage.raster.AbstractRaster;
@@ -87,9 +88,15 @@ public class CacheRasterReader extends GridFileReader {
 
     private GridWriter gridWriter;
 
-    private long lastReadAccess;
+    private volatile long lastReadAccess;
 
-    private long inMemorySize;
+    private volatile long inMemorySize;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
 
     private RasterCache cacheManager;
 
@@ -240,6 +247,7 @@ public class CacheRasterReader extends GridFileReader {
                             LOG.error( "Could not create tile from buffer because: " + e.getLocalizedMessage(), e );
                         }
                         this.inMemorySize += entry.setBuffer( entryBuffer );
+                        RasterCache.reservationUsed( entryBuffer.capacity() );
                     }
                 }
             }
@@ -334,9 +342,7 @@ public class CacheRasterReader extends GridFileReader {
                     for ( int row = minCRmaxCR[1]; row < getTileRows() && row <= minCRmaxCR[3]; ++row ) {
                         for ( int col = minCRmaxCR[0]; col < getTileColumns() && col <= minCRmaxCR[2]; ++col ) {
                             leaveStreamOpen( true );
-                            // getTileBuffer will get a read only (copy-of the tiles[row][col]) bytebuffer.
-                            ByteBuffer tileBuffer = getTileBuffer( col, row );
-                            copyValuesFromTile( col, row, intersection, tileBuffer, resultBuffer );
+                            copyFromTile( col, row, intersection, resultBuffer );
                         }
                     }
                     leaveStreamOpen( false );
@@ -361,6 +367,9 @@ public class CacheRasterReader extends GridFileReader {
             for ( TileEntry entry : tiles.values() ) {
                 if ( entry != null ) {
                     long r = entry.clear( deleteCacheFile );
+                    if ( r > 0 ) {
+                        evictions.increment();
+                    }
                     inMemorySize -= r;
                     result += r;
                 }
@@ -451,6 +460,27 @@ public class CacheRasterReader extends GridFileReader {
         return lastReadAccess;
     }
 
+    /**
+     * @return the number of tile reads that were served from memory
+     */
+    public long getCacheHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of tile reads that had to load the tile from the cache file or the original reader
+     */
+    public long getCacheMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of tiles that were removed from memory
+     */
+    public long getCacheEvictions() {
+        return evictions.sum();
+    }
+
     /**
      * @return the current amount of memory this cached reader has on byte buffers.
      * 
@@ -546,47 +576,59 @@ public class CacheRasterReader extends GridFileReader {
 //    }
 
     /**
-     * Get a tile buffer from the cache, it will be read only.
+     * Copies the values of a tile to the given buffer, the tile is loaded into the cache if it is not in memory. The
+     * values are copied while holding the lock, so the tile buffer cannot be evicted (and recycled) in the meantime.
      * 
      * @param column
      * @param row
+     * @param dstRect
+     *            the raster rectangle of the destination buffer
+     * @param dstBuffer
+     *            to copy the values to
      */
-    private ByteBuffer getTileBuffer( int column, int row ) {
-        ByteBuffer result = null;
+    private void copyFromTile( int column, int row, RasterRect dstRect, ByteBuffer dstBuffer )
+                            throws IOException {
         TileEntry entry = getEntry( column, row );
-        if ( entry != null ) {
-
-            ByteBuffer entryBuffer = null;
-            synchronized ( LOCK ) {
-                entryBuffer = entry.getBuffer();
-            }
-            if ( entryBuffer == null ) {
-                // allocation of the buffer should not be in the synchronized block, it may cause a dead lock with the
-                // raster cache.
-                entryBuffer = allocateTileBuffer( false, true );
+        if ( entry == null ) {
+            return;
+        }
+        synchronized ( LOCK ) {
+            if ( entry.isInMemory() ) {
+                hits.increment();
+                copyValuesFromTile( column, row, dstRect, entry.getBuffer(), dstBuffer );
+                return;
             }
-
-            synchronized ( LOCK ) {
-                if ( !entry.isInMemory() ) {
-                    // check the cache file
-                    if ( entry.isOnFile() ) {
-                        try {
-                            entryBuffer = super.getTileData( column, row, entryBuffer );
-                        } catch ( IOException e ) {
-                            // could not read from the tile, so get rid of the tilesOnFile
-                            entry.setTileOnFile( false );
-                        }
-                    }
-                    if ( !entry.isOnFile() ) {
-                        // this can happen if the file could not be read from the cache file because of an IOException.
-                        readTileFromReader( entry, entryBuffer );
+        }
+        // allocation of the buffer should not be in the synchronized block, it may cause a dead lock with the
+        // raster cache.
+        ByteBuffer entryBuffer = allocateTileBuffer( false, true );
+        long reserved = entryBuffer.capacity();
+        synchronized ( LOCK ) {
+            if ( entry.isInMemory() ) {
+                // loaded by another thread in the meantime
+                hits.increment();
+                RasterCache.releaseMemory( reserved );
+                ByteBufferPool.release( entryBuffer );
+            } else {
+                misses.increment();
+                // check the cache file
+                if ( entry.isOnFile() ) {
+                    try {
+                        entryBuffer = super.getTileData( column, row, entryBuffer );
+                    } catch ( IOException e ) {
+                        // could not read from the tile, so get rid of the tilesOnFile
+                        entry.setTileOnFile( false );
                     }
-                    this.inMemorySize += entry.setBuffer( entryBuffer );
                 }
+                if ( !entry.isOnFile() ) {
+                    // this can happen if the file could not be read from the cache file because of an IOException.
+                    readTileFromReader( entry, entryBuffer );
+                }
+                this.inMemorySize += entry.setBuffer( entryBuffer );
+                RasterCache.reservationUsed( reserved );
             }
-            result = entryBuffer.asReadOnlyBuffer();
+            copyValuesFromTile( column, row, dstRect, entry.getBuffer(), dstBuffer );
         }
-        return result;
     }
 
     /**
@@ -670,6 +712,7 @@ public class CacheRasterReader extends GridFileReader {
                                 }
                                 if ( clearBuffer ) {
                                     if ( entry.isOnFile() && entry.isInMemory() ) {
+                                        evictions.increment();
                                         long mem = entry.clear( false );
                                         this.inMemorySize -= mem;
                                         freedUpMemory += mem;
@@ -41,14 +41,16 @@ package org.deegree.coverage.raster.cache;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.io.File;
-import java.io.Serializable;
-import java.util.Comparator;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
-import java.util.SortedSet;
+import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.deegree.commons.utils.StringUtils;
 import org.deegree.coverage.raster.SimpleRaster;
@@ -64,6 +66,12 @@ import org.slf4j.Logger;
  * allocate cached memory by using {@link ByteBufferPool#allocate(int, boolean, boolean)}. This will call
  * {@link #freeMemory(long)} which in turn keeps track of reserved memory.
  * <p>
+ * The memory and disk usage is tracked with atomic counters, so allocating cache memory does not block. If the cache
+ * memory is exceeded, the allocating thread evicts the least recently used readers (weighted by the memory they hold)
+ * until the cache is down to half of its size. Only one thread evicts at a time, other threads keep on allocating
+ * in the meantime instead of waiting for the eviction to finish.
+ * </p>
+ * <p>
  * The RasterCache memory size and the amount of disk space can be set by adding the keys
  * {@link #DEF_RASTER_CACHE_MEM_SIZE} and {@link #DEF_RASTER_CACHE_DISK_SIZE} to the JVM.
  * 
@@ -87,16 +95,16 @@ public class RasterCache {
     /** A key which can be given to the JVM to define the amount of disk memory used for caching (e.g. 1024m). */
     public static final String DEF_RASTER_CACHE_DISK_SIZE = "deegree.raster.cache.disksize";
 
-    private static long maxCacheMem;
+    private static volatile long maxCacheMem;
 
-    private static long maxCacheDisk;
+    private static volatile long maxCacheDisk;
 
     /**
      * Standard name for a deegree cache file.
      */
     public static final String FILE_EXTENSION = ".d3rcache";
 
-    private static final Object MEM_LOCK = new Object();
+    private static final ReentrantLock EVICTION_LOCK = new ReentrantLock();
 
     private static final Object CURRENT_CACHE_LOCK = new Object();
 
@@ -104,12 +112,14 @@ public class RasterCache {
 
     private final File cacheDir;
 
-    private static long currentlyUsedMemory = 0;
+    private static final AtomicLong currentlyUsedMemory = new AtomicLong();
+
+    private static final AtomicLong currentlyUsedDisk = new AtomicLong();
 
-    private static long currentlyUsedDisk = 0;
+    // memory reserved with freeMemory(), which is not yet held by a tile of a reader
+    private static final AtomicLong reservedMemory = new AtomicLong();
 
-    private final static ConcurrentSkipListSet<CacheRasterReader> cache = new ConcurrentSkipListSet<CacheRasterReader>(
-                                                                                                                        new CacheComparator() );
+    private final static Queue<CacheRasterReader> cache = new ConcurrentLinkedQueue<CacheRasterReader>();
     static {
         evaluateProperties();
     }
@@ -119,7 +129,7 @@ public class RasterCache {
      * properties in the JVM.
      */
     private static void evaluateProperties() {
-        synchronized ( MEM_LOCK ) {
+        synchronized ( CURRENT_CACHE_LOCK ) {
             String cacheSize = System.getProperty( DEF_RASTER_CACHE_MEM_SIZE );
             long mm = StringUtils.parseByteSize( cacheSize );
             if ( mm == 0 ) {
@@ -256,14 +266,14 @@ public class RasterCache {
      * @return the currentlyUsedMemory
      */
     public static final long getCurrentlyUsedMemory() {
-        return currentlyUsedMemory;
+        return currentlyUsedMemory.get();
     }
 
     /**
      * @return the currentlyUsedDisk
      */
     public static final long getCurrentlyUsedDisk() {
-        return currentlyUsedDisk;
+        return currentlyUsedDisk.get();
     }
 
     /**
@@ -282,17 +292,21 @@ public class RasterCache {
      * 
      */
     public static void clear( boolean deleteCacheFiles ) {
-        synchronized ( MEM_LOCK ) {
-            Iterator<CacheRasterReader> it = cache.iterator();
-            while ( it != null && it.hasNext() ) {
-                CacheRasterReader next = it.next();
-                if ( next != null ) {
-                    next.clear( deleteCacheFiles );
-                }
+        EVICTION_LOCK.lock();
+        try {
+            long freed = 0;
+            long onDisk = 0;
+            for ( CacheRasterReader next : cache ) {
+                onDisk += next.cacheFileSize();
+                freed += next.clear( deleteCacheFiles );
             }
             cache.clear();
-            currentlyUsedMemory = 0;
-            currentlyUsedDisk = 0;
+            // other threads may be allocating, so only subtract what was freed
+            currentlyUsedMemory.addAndGet( -freed );
+            currentlyUsedDisk.addAndGet( -onDisk );
+            ByteBufferPool.clear();
+        } finally {
+            EVICTION_LOCK.unlock();
         }
         synchronized ( CURRENT_CACHE_LOCK ) {
             if ( deleteCacheFiles && currentCaches.values() != null ) {
@@ -321,14 +335,8 @@ public class RasterCache {
      * Writes all current caches to their cache files, but leaves the in memory cached rasters alone.
      */
     public static void flush() {
-        synchronized ( MEM_LOCK ) {
-            Iterator<CacheRasterReader> it = cache.iterator();
-            while ( it != null && it.hasNext() ) {
-                CacheRasterReader next = it.next();
-                if ( next != null ) {
-                    next.flush();
-                }
-            }
+        for ( CacheRasterReader next : cache ) {
+            next.flush();
         }
     }
 
@@ -336,20 +344,22 @@ public class RasterCache {
      * Iterates over all current cache directories and calls dispose on their cache files.
      */
     public static void dispose() {
-        synchronized ( MEM_LOCK ) {
-            Iterator<CacheRasterReader> it = cache.iterator();
+        EVICTION_LOCK.lock();
+        try {
             long allocatedMem = 0;
             int i = 1;
-            while ( it != null && it.hasNext() ) {
-                CacheRasterReader next = it.next();
-                if ( next != null ) {
-                    LOG.debug( "{}: Disposing for file: {}", i++, next.file() );
-                    // currentlyUsedMemory -= next.dispose( false );
-                    allocatedMem += next.dispose( false );
+            for ( CacheRasterReader next : cache ) {
+                if ( LOG.isDebugEnabled() ) {
+                    LOG.debug( "{}: Disposing for file: {} (tile hits: {}, misses: {}, evictions: {})",
+                               new Object[] { i++, next.file(), next.getCacheHits(), next.getCacheMisses(),
+                                             next.getCacheEvictions() } );
                 }
+                allocatedMem += next.dispose( false );
             }
             LOG.debug( "Disposing allocated {} MB on the heap.",
                        ( Math.round( ( allocatedMem / ( 1024 * 1024d ) ) * 100d ) / 100d ) );
+        } finally {
+            EVICTION_LOCK.unlock();
         }
     }
 
@@ -364,87 +374,120 @@ public class RasterCache {
      * @return the amount of currently used cache memory, which is only an approximation.
      */
     public static long freeMemory( long requiredMemory ) {
-        synchronized ( MEM_LOCK ) {
-            LOG.debug( "Currently used cache memory:{} MB, totalCacheMemory:{} MB", currentlyUsedMemory
-                                                                                    / ( 1024d * 1024 ),
-                       maxCacheMem / ( 1024d * 1024 ) );
-            if ( currentlyUsedMemory + requiredMemory > maxCacheMem ) {
-                disposeMemory( requiredMemory );
+        // reserve before counting it as used, see updateCurrentlyUsedSpace()
+        reservedMemory.addAndGet( requiredMemory );
+        long used = currentlyUsedMemory.addAndGet( requiredMemory );
+        if ( used > maxCacheMem && EVICTION_LOCK.tryLock() ) {
+            // if another thread is already evicting, don't wait for it
+            try {
+                LOG.debug( "Currently used cache memory:{} MB, totalCacheMemory:{} MB", used / ( 1024d * 1024 ),
+                           maxCacheMem / ( 1024d * 1024 ) );
+                disposeMemory();
+            } finally {
+                EVICTION_LOCK.unlock();
             }
-            currentlyUsedMemory += requiredMemory;
         }
+        return currentlyUsedMemory.get();
+    }
 
-        return currentlyUsedMemory;
+    /**
+     * Signals the cache that memory which was reserved with {@link #freeMemory(long)} is not used after all.
+     * 
+     * @param memory
+     *            the amount of memory to give back
+     */
+    static void releaseMemory( long memory ) {
+        currentlyUsedMemory.addAndGet( -memory );
+        reservedMemory.addAndGet( -memory );
     }
 
-    private static void disposeMemory( long requiredMemory ) {
-        synchronized ( MEM_LOCK ) {
-            if ( currentlyUsedMemory + requiredMemory > maxCacheMem ) {
-                // make a copy, to reflect the last read access.
-                SortedSet<CacheRasterReader> sort = new ConcurrentSkipListSet<CacheRasterReader>( cache );
-                Iterator<CacheRasterReader> it = sort.iterator();
-                if ( it != null ) {
-                    final double halfMem = maxCacheMem * 0.5;
-                    int readersConsidered = 0;
-                    while ( it.hasNext() ) {
-                        CacheRasterReader next = it.next();
-                        if ( next != null ) {
-                            ++readersConsidered;
-                            long onDisk = next.cacheFileSize();
-                            if ( currentlyUsedDisk > maxCacheDisk && onDisk > 0 ) {
-                                // just delete the cache file and any in memory data from the least recently used cache
-                                // file.
-                                currentlyUsedMemory -= next.clear( true );
-                                currentlyUsedDisk -= onDisk;
-                            } else {
-                                long mem = next.currentApproxMemory();
-                                if ( mem > 0 && next.canCreateCacheFile() ) {
-                                    currentlyUsedMemory -= next.dispose( false );
-                                    // add the new cache file size
-                                    currentlyUsedDisk += ( next.cacheFileSize() - onDisk );
-                                } else if ( mem > 0 ) {
-                                    currentlyUsedMemory -= next.dispose( true );
-                                }
-                            }
-                        }
-                        if ( currentlyUsedMemory + requiredMemory < halfMem ) {
-                            break;
-                        }
-                    }
+    /**
+     * Signals the cache that memory which was reserved with {@link #freeMemory(long)} is now held by a tile of a
+     * reader, i.e. it is part of {@link CacheRasterReader#currentApproxMemory()}. Must be called after the reader has
+     * accounted for the memory.
+     * 
+     * @param memory
+     *            the amount of reserved memory now held by a reader
+     */
+    static void reservationUsed( long memory ) {
+        reservedMemory.addAndGet( -memory );
+    }
 
-                    if ( currentlyUsedMemory > halfMem || readersConsidered > ( cache.size() * 0.5 ) ) {
-                        // disposed more than half of the readers or could not get required memory..., update the real
-                        // memory, it might well be the current values are invalid.
-                        updateCurrentlyUsedSpace();
-                    }
+    /**
+     * Evicts the least recently used readers until the used memory is below half of the cache size, must only be
+     * called by the thread holding the {@link #EVICTION_LOCK}.
+     */
+    private static void disposeMemory() {
+        if ( currentlyUsedMemory.get() <= maxCacheMem ) {
+            return;
+        }
+        // take a snapshot of the access times, they change while evicting
+        List<LruEntry> sort = new ArrayList<LruEntry>();
+        for ( CacheRasterReader reader : cache ) {
+            sort.add( new LruEntry( reader ) );
+        }
+        Collections.sort( sort );
+        final double halfMem = maxCacheMem * 0.5;
+        int readersConsidered = 0;
+        for ( LruEntry entry : sort ) {
+            CacheRasterReader next = entry.reader;
+            ++readersConsidered;
+            long onDisk = next.cacheFileSize();
+            if ( currentlyUsedDisk.get() > maxCacheDisk && onDisk > 0 ) {
+                // just delete the cache file and any in memory data from the least recently used cache
+                // file.
+                currentlyUsedMemory.addAndGet( -next.clear( true ) );
+                currentlyUsedDisk.addAndGet( -onDisk );
+            } else {
+                long mem = next.currentApproxMemory();
+                if ( mem > 0 && next.canCreateCacheFile() ) {
+                    currentlyUsedMemory.addAndGet( -next.dispose( false ) );
+                    // add the new cache file size
+                    currentlyUsedDisk.addAndGet( next.cacheFileSize() - onDisk );
+                } else if ( mem > 0 ) {
+                    currentlyUsedMemory.addAndGet( -next.dispose( true ) );
                 }
             }
+            if ( currentlyUsedMemory.get() < halfMem ) {
+                break;
+            }
+        }
+
+        if ( currentlyUsedMemory.get() > halfMem || readersConsidered > ( sort.size() * 0.5 ) ) {
+            // disposed more than half of the readers or could not get required memory..., update the real
+            // memory, it might well be the current values are invalid.
+            updateCurrentlyUsedSpace();
         }
     }
 
     /**
-     * Iterates over all known readers and (re) calculates their in memory data.
+     * Iterates over all known readers and (re) calculates their in memory data. The memory which is reserved but not
+     * yet held by a reader is added to the estimate. Other threads keep on allocating while the readers are counted, so
+     * the new estimate is only set if the counters did not change in the meantime (a later eviction will retry).
      */
     private static void updateCurrentlyUsedSpace() {
-        synchronized ( MEM_LOCK ) {
-            LOG.debug( "Updating estimation of in-memory cache." );
-            long cum = 0;
-            long onDisk = 0;
-            Iterator<CacheRasterReader> it = cache.iterator();
-            while ( it != null && it.hasNext() ) {
-                CacheRasterReader next = it.next();
-                if ( next != null ) {
-                    cum += next.currentApproxMemory();
-                    onDisk += next.cacheFileSize();
-                }
-            }
-            LOG.debug( "Resetting currently used memory from: {} to: {}", ( currentlyUsedMemory / ( 1024 * 1024d ) ),
+        LOG.debug( "Updating estimation of in-memory cache." );
+        // read the used memory before the reserved memory, a reservation which is counted as used must be included in
+        // the reserved memory (freeMemory() reserves first)
+        long usedMemory = currentlyUsedMemory.get();
+        long usedDisk = currentlyUsedDisk.get();
+        long cum = reservedMemory.get();
+        long onDisk = 0;
+        for ( CacheRasterReader next : cache ) {
+            cum += next.currentApproxMemory();
+            onDisk += next.cacheFileSize();
+        }
+        if ( currentlyUsedMemory.compareAndSet( usedMemory, cum ) ) {
+            LOG.debug( "Resetting currently used memory from: {} to: {}", ( usedMemory / ( 1024 * 1024d ) ),
                        ( cum / ( 1024 * 1024d ) ) );
-
-            LOG.debug( "Resetting currently used space on disk from: {} to: {}",
-                       ( currentlyUsedDisk / ( 1024 * 1024d ) ), ( onDisk / ( 1024 * 1024d ) ) );
-            currentlyUsedMemory = cum;
-            currentlyUsedDisk = onDisk;
+        } else {
+            LOG.debug( "Not resetting currently used memory, it was modified concurrently." );
+        }
+        if ( currentlyUsedDisk.compareAndSet( usedDisk, onDisk ) ) {
+            LOG.debug( "Resetting currently used space on disk from: {} to: {}", ( usedDisk / ( 1024 * 1024d ) ),
+                       ( onDisk / ( 1024 * 1024d ) ) );
+        } else {
+            LOG.debug( "Not resetting currently used space on disk, it was modified concurrently." );
         }
     }
 
@@ -454,15 +497,17 @@ public class RasterCache {
      * @param reader
      */
     private static void addReader( CacheRasterReader reader ) {
-        boolean added = false;
-        synchronized ( MEM_LOCK ) {
-            currentlyUsedMemory += reader.currentApproxMemory();
-            currentlyUsedDisk += reader.cacheFileSize();
-            added = cache.add( reader );
-        }
-        if ( !added ) {
-            LOG.debug( "Not adding reader ({}) to cache because it is already in the cache.", reader );
+        synchronized ( CURRENT_CACHE_LOCK ) {
+            for ( CacheRasterReader cached : cache ) {
+                if ( cached == reader ) {
+                    LOG.debug( "Not adding reader ({}) to cache because it is already in the cache.", reader );
+                    return;
+                }
+            }
+            cache.add( reader );
         }
+        currentlyUsedMemory.addAndGet( reader.currentApproxMemory() );
+        currentlyUsedDisk.addAndGet( reader.cacheFileSize() );
     }
 
     /**
@@ -554,31 +599,22 @@ public class RasterCache {
     }
 
     /**
-     * The <code>CacheComparator</code> class compares two raster readers for their last read access time.
-     * 
-     * @author <a href="mailto:bezema@lat-lon.de">Rutger Bezema</a>
-     * @author last edited by: $Author$
-     * @version $Revision$, $Date$
-     * 
+     * Snapshot of the last read access of a reader, used for sorting the readers from least to most recently used.
      */
-    static class CacheComparator implements Comparator<CacheRasterReader>, Serializable {
+    private static final class LruEntry implements Comparable<LruEntry> {
+
+        final CacheRasterReader reader;
+
+        private final long lastReadAccess;
 
-        /**
-         * just for the Serializable
-         */
-        private static final long serialVersionUID = 957737023397188332L;
+        LruEntry( CacheRasterReader reader ) {
+            this.reader = reader;
+            this.lastReadAccess = reader.lastReadAccess();
+        }
 
         @Override
-        public int compare( CacheRasterReader o1, CacheRasterReader o2 ) {
-            // rb: returning 0 will cause the above 'add' method to discard the new raster.
-            if ( o1 == null ) {
-                return -1;
-            }
-            if ( o2 == null ) {
-                return 1;
-            }
-            int result = o1.lastReadAccess() <= o2.lastReadAccess() ? -1 : 1;
-            return result;
+        public int compareTo( LruEntry o ) {
+            return lastReadAccess < o.lastReadAccess ? -1 : ( lastReadAccess == o.lastReadAccess ? 0 : 1 );
         }
     }
 
@@ -103,7 +103,8 @@ class TileEntry {
     }
 
     /**
-     * Delete the memory buffer of this tile, implicit reset of {@link #getReadTime}.
+     * Delete the memory buffer of this tile, implicit reset of {@link #getReadTime}. The buffer is given back to the
+     * {@link ByteBufferPool}.
      * 
      * @return the size of the freed memory
      */
@@ -113,6 +114,7 @@ class TileEntry {
         }
         long result = memoryTile.capacity();
         this.readFromOriginal = 0;
+        ByteBufferPool.release( memoryTile );
         memoryTile = null;
         return result;
     }
@@ -140,7 +142,8 @@ class TileEntry {
     }
 
     /**
-     * Mark this tile as cleared, e.g. no memory buffer, no last access time, no tile on file.
+     * Mark this tile as cleared, e.g. no memory buffer, no last access time, no tile on file. The memory buffer is
+     * given back to the {@link ByteBufferPool}.
      * 
      * @param clearFileTime
      *            if true, this tile is marked as not on file (tile write time is set to 0).
@@ -149,6 +152,7 @@ class TileEntry {
      */
     public long clear( boolean clearFileTime ) {
         long result = memoryTile == null ? 0 : memoryTile.capacity();
+        ByteBufferPool.release( memoryTile );
         memoryTile = null;
         readFromOriginal = 0;
         writtenToCache = clearFileTime ? 0 : writtenToCache;
@@ -54,6 +54,8 @@ public class BiLinearByteInterpolation implements Interpolation {
 
     private byte[] window = new byte[4];
 
+    private byte[] nullPixel;
+
     /**
      * Create a new bilinear interpolation for given byte {@link RasterData}.
      * 
@@ -61,9 +63,34 @@ public class BiLinearByteInterpolation implements Interpolation {
      */
     public BiLinearByteInterpolation( RasterData rasterData ) {
         raster = rasterData;
+        nullPixel = new byte[raster.getBands()];
     }
 
     public final byte[] getPixel( float x, float y, byte[] result ) {
+        if ( !interpolate( x, y, result, 0 ) ) {
+            raster.getNullPixel( result );
+        }
+        return result;
+    }
+
+    public final byte[] getPixels( float[] srcCoords, int count, byte[] result ) {
+        int bands = raster.getBands();
+        for ( int i = 0; i < count; i++ ) {
+            if ( !interpolate( srcCoords[2 * i], srcCoords[2 * i + 1], result, i * bands ) ) {
+                raster.getNullPixel( nullPixel );
+                System.arraycopy( nullPixel, 0, result, i * bands, bands );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Interpolates the pixel at the given raster coordinate into <code>result</code>, starting at
+     * <code>offset</code>.
+     * 
+     * @return false if the pixel lies (partly) outside the raster
+     */
+    private boolean interpolate( float x, float y, byte[] result, int offset ) {
         try {
             float xfrac = Math.abs( x - (int) x );
             float yfrac = Math.abs( y - (int) y );
@@ -72,15 +99,15 @@ public class BiLinearByteInterpolation implements Interpolation {
                 // (x & 0xFF) converts between signed bytes to unsigned values
                 float h1 = ( window[0] & 0xFF ) + ( ( window[1] & 0xFF ) - ( window[0] & 0xFF ) ) * xfrac;
                 float h2 = ( window[2] & 0xFF ) + ( ( window[3] & 0xFF ) - ( window[2] & 0xFF ) ) * xfrac;
-                result[b] = (byte) ( ( (char) ( h1 + ( h2 - h1 ) * yfrac ) ) & 0xFF );
+                result[offset + b] = (byte) ( ( (char) ( h1 + ( h2 - h1 ) * yfrac ) ) & 0xFF );
             }
         } catch ( IndexOutOfBoundsException ex ) {
-            raster.getNullPixel( result );
+            return false;
         } catch ( IllegalArgumentException ex ) {
-            raster.getNullPixel( result );
+            return false;
         } catch ( BufferUnderflowException ex ) {
-            raster.getNullPixel( result );
+            return false;
         }
-        return result;
+        return true;
     }
 }
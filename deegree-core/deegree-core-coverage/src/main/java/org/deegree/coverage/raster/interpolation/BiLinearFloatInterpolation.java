@@ -57,6 +57,10 @@ public class BiLinearFloatInterpolation implements Interpolation {
 
     private float[] window = new float[4];
 
+    private final int sampleSize = DataType.FLOAT.getSize();
+
+    private byte[] nullPixel;
+
     /**
      * Create a new bilinear interpolation for given float {@link RasterData}.
      * @param rasterData
@@ -66,31 +70,56 @@ public class BiLinearFloatInterpolation implements Interpolation {
             throw new IllegalArgumentException( this.getClass().getName() + " only supports float raster" );
         }
         raster = rasterData;
-        tmp = ByteBuffer.allocate( DataType.FLOAT.getSize() * raster.getBands() );
+        tmp = ByteBuffer.allocate( sampleSize * raster.getBands() );
+        nullPixel = new byte[tmp.capacity()];
 
     }
 
     public final byte[] getPixel( float x, float y, byte[] result ) {
-        try {
+        if ( interpolate( x, y, tmp, 0 ) ) {
             tmp.position( 0 );
+            tmp.get( result );
+        } else {
+            raster.getNullPixel( result );
+        }
+        return result;
+    }
+
+    public final byte[] getPixels( float[] srcCoords, int count, byte[] result ) {
+        ByteBuffer out = ByteBuffer.wrap( result );
+        int pixelSize = tmp.capacity();
+        for ( int i = 0; i < count; i++ ) {
+            if ( !interpolate( srcCoords[2 * i], srcCoords[2 * i + 1], out, i * pixelSize ) ) {
+                raster.getNullPixel( nullPixel );
+                System.arraycopy( nullPixel, 0, result, i * pixelSize, pixelSize );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Interpolates the pixel at the given raster coordinate into <code>out</code>, starting at byte
+     * <code>offset</code>.
+     * 
+     * @return false if the pixel lies (partly) outside the raster
+     */
+    private boolean interpolate( float x, float y, ByteBuffer out, int offset ) {
+        try {
             float xfrac = Math.abs( x - (int) x ); // the fractional part
             float yfrac = Math.abs( y - (int) y );
             for ( int b = 0; b < raster.getBands(); b++ ) {
                 raster.getFloats( (int) x, (int) y, 2, 2, b, window );
                 float h1 = window[0] + ( window[1] - window[0] ) * xfrac;
                 float h2 = window[2] + ( window[3] - window[2] ) * xfrac;
-                tmp.putFloat( h1 + ( h2 - h1 ) * yfrac );
+                out.putFloat( offset + b * sampleSize, h1 + ( h2 - h1 ) * yfrac );
             }
-            tmp.position( 0 );
-            tmp.get( result );
         } catch ( IndexOutOfBoundsException ex ) {
-            raster.getNullPixel( result );
+            return false;
         } catch ( IllegalArgumentException ex ) {
-            raster.getNullPixel( result );
+            return false;
         } catch ( BufferUnderflowException ex ) {
-            raster.getNullPixel( result );
+            return false;
         }
-        return result;
+        return true;
     }
 }
-
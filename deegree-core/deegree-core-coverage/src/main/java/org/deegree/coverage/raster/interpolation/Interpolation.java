@@ -59,4 +59,19 @@ public interface Interpolation {
      * @return the <code>result</code> array
      */
     public byte[] getPixel( float x, float y, byte[] result );
+
+    /**
+     * Returns the interpolated pixels for a number of raster coordinates, typically a whole row of a warped raster.
+     * Pixels that can not be interpolated are set to the null pixel of the raster.
+     *
+     * @param srcCoords
+     *            the raster coordinates as x,y pairs ([2n], [2n+1])
+     * @param count
+     *            the number of pixels to interpolate
+     * @param result
+     *            a byte array to put the values into, the pixels are stored consecutively, so it must have a length of
+     *            at least <code>count</code> times the pixel size
+     * @return the <code>result</code> array
+     */
+    public byte[] getPixels( float[] srcCoords, int count, byte[] result );
 }
@@ -52,6 +52,8 @@ import org.deegree.coverage.raster.data.info.DataType;
 public class NearestNeighborInterpolation implements Interpolation {
     private RasterData raster;
 
+    private byte[] pixel;
+
     /**
      * Create a new nearest neighbor interpolation for given {@link RasterData}.
      *
@@ -59,6 +61,7 @@ public class NearestNeighborInterpolation implements Interpolation {
      */
     public NearestNeighborInterpolation( RasterData rasterData ) {
         raster = rasterData;
+        pixel = new byte[raster.getBands() * raster.getDataType().getSize()];
     }
 
     public final byte[] getPixel( float x, float y, byte[] result ) {
@@ -73,4 +76,12 @@ public class NearestNeighborInterpolation implements Interpolation {
         }
         return result;
     }
+
+    public final byte[] getPixels( float[] srcCoords, int count, byte[] result ) {
+        for ( int i = 0; i < count; i++ ) {
+            getPixel( srcCoords[2 * i], srcCoords[2 * i + 1], pixel );
+            System.arraycopy( pixel, 0, result, i * pixel.length, pixel.length );
+        }
+        return result;
+    }
 }
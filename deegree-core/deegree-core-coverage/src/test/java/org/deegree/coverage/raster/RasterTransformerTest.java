@@ -0,0 +1,143 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.coverage.raster;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+
+import javax.media.jai.WarpGeneralPolynomial;
+import javax.media.jai.WarpPolynomial;
+
+import org.deegree.coverage.raster.data.RasterData;
+import org.deegree.coverage.raster.data.RasterDataFactory;
+import org.deegree.coverage.raster.data.info.BandType;
+import org.deegree.coverage.raster.data.info.DataType;
+import org.deegree.coverage.raster.data.info.InterleaveType;
+import org.deegree.coverage.raster.geom.RasterRect;
+import org.deegree.coverage.raster.interpolation.InterpolationType;
+import org.junit.Test;
+
+/**
+ * Tests for {@link RasterTransformer}, especially that warping a raster in parallel row bands yields the same result as
+ * warping it on a single thread.
+ */
+public class RasterTransformerTest {
+
+    private static final int WIDTH = 97;
+
+    // enough rows for four bands
+    private static final int HEIGHT = 4 * RasterTransformer.MIN_ROWS_PER_BAND + 13;
+
+    // a slightly rotated, scaled and bent mapping, which maps some pixels outside of the source raster
+    private static final float[] X_COEFFS = new float[] { 3f, 0.9f, 0.05f, 0.0004f, 0f, 0f };
+
+    private static final float[] Y_COEFFS = new float[] { -2f, 0.03f, 0.95f, 0f, 0f, 0.0002f };
+
+    private static final WarpPolynomial WARP = new WarpGeneralPolynomial( X_COEFFS, Y_COEFFS );
+
+    @Test
+    public void testParallelWarpNearestNeighbor()
+                            throws Exception {
+        assertParallelWarpEqualsSequential( InterpolationType.NEAREST_NEIGHBOR, DataType.BYTE, InterleaveType.PIXEL );
+        assertParallelWarpEqualsSequential( InterpolationType.NEAREST_NEIGHBOR, DataType.BYTE, InterleaveType.BAND );
+    }
+
+    @Test
+    public void testParallelWarpBiLinearByte()
+                            throws Exception {
+        assertParallelWarpEqualsSequential( InterpolationType.BILINEAR, DataType.BYTE, InterleaveType.PIXEL );
+        assertParallelWarpEqualsSequential( InterpolationType.BILINEAR, DataType.BYTE, InterleaveType.BAND );
+    }
+
+    @Test
+    public void testParallelWarpBiLinearShort()
+                            throws Exception {
+        assertParallelWarpEqualsSequential( InterpolationType.BILINEAR, DataType.SHORT, InterleaveType.BAND );
+    }
+
+    @Test
+    public void testParallelWarpBiLinearFloat()
+                            throws Exception {
+        assertParallelWarpEqualsSequential( InterpolationType.BILINEAR, DataType.FLOAT, InterleaveType.PIXEL );
+    }
+
+    private static void assertParallelWarpEqualsSequential( InterpolationType interpolationType, DataType dataType,
+                                                            InterleaveType interleaveType )
+                            throws Exception {
+        RasterData src = createRasterData( dataType, interleaveType );
+        RasterRect rect = new RasterRect( 0, 0, WIDTH, HEIGHT );
+
+        RasterData sequential = src.createCompatibleWritableRasterData( rect, null );
+        RasterTransformer.warpTransform( WARP, interpolationType, src, sequential, 1 );
+
+        RasterData parallel = src.createCompatibleWritableRasterData( rect, null );
+        RasterTransformer.warpTransform( WARP, interpolationType, src, parallel, 4 );
+
+        int pixelSize = src.getBands() * dataType.getSize();
+        byte[] expected = new byte[pixelSize];
+        byte[] actual = new byte[pixelSize];
+        for ( int y = 0; y < HEIGHT; y++ ) {
+            for ( int x = 0; x < WIDTH; x++ ) {
+                sequential.getPixel( x, y, expected );
+                parallel.getPixel( x, y, actual );
+                assertArrayEquals( interpolationType + " " + dataType + " " + interleaveType + " at " + x + "," + y,
+                                   expected, actual );
+            }
+        }
+    }
+
+    private static RasterData createRasterData( DataType dataType, InterleaveType interleaveType ) {
+        RasterData data = RasterDataFactory.createRasterData( WIDTH, HEIGHT, BandType.RGB, dataType, interleaveType,
+                                                              false );
+        int pixelSize = BandType.RGB.length * dataType.getSize();
+        Random random = new Random( 3 );
+        byte[] pixel = new byte[pixelSize];
+        for ( int y = 0; y < HEIGHT; y++ ) {
+            for ( int x = 0; x < WIDTH; x++ ) {
+                random.nextBytes( pixel );
+                if ( dataType == DataType.FLOAT ) {
+                    // keep the float samples finite
+                    for ( int i = 0; i < pixelSize; i += 4 ) {
+                        pixel[i] &= 0x3f;
+                    }
+                }
+                data.setPixel( x, y, pixel );
+            }
+        }
+        return data;
+    }
+}
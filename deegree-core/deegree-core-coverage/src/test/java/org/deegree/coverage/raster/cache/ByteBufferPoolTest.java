@@ -0,0 +1,148 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.coverage.raster.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ByteBufferPool}.
+ */
+public class ByteBufferPoolTest {
+
+    @Before
+    @After
+    public void clearPool() {
+        ByteBufferPool.clear();
+    }
+
+    @Test
+    public void testReleasedBufferIsRecycled() {
+        ByteBuffer buffer = ByteBufferPool.allocate( 64, false );
+        ByteBufferPool.release( buffer );
+        assertSame( buffer, ByteBufferPool.allocate( 64, false ) );
+        // only once
+        assertNotSame( buffer, ByteBufferPool.allocate( 64, false ) );
+    }
+
+    @Test
+    public void testRecycledBufferIsReset() {
+        ByteBuffer buffer = ByteBufferPool.allocate( 64, false );
+        buffer.order( ByteOrder.LITTLE_ENDIAN );
+        for ( int i = 0; i < 16; ++i ) {
+            buffer.putInt( i + 1 );
+        }
+        buffer.position( 10 );
+        buffer.limit( 20 );
+        ByteBufferPool.release( buffer );
+
+        ByteBuffer recycled = ByteBufferPool.allocate( 64, false );
+        assertSame( buffer, recycled );
+        assertEquals( 0, recycled.position() );
+        assertEquals( 64, recycled.limit() );
+        assertEquals( ByteOrder.BIG_ENDIAN, recycled.order() );
+        for ( int i = 0; i < 64; ++i ) {
+            assertEquals( 0, recycled.get( i ) );
+        }
+    }
+
+    @Test
+    public void testBuffersAreRecycledBySize() {
+        ByteBuffer buffer = ByteBufferPool.allocate( 64, false );
+        ByteBufferPool.release( buffer );
+        ByteBuffer other = ByteBufferPool.allocate( 32, false );
+        assertNotSame( buffer, other );
+        assertEquals( 32, other.capacity() );
+        assertSame( buffer, ByteBufferPool.allocate( 64, false ) );
+    }
+
+    @Test
+    public void testDirectBuffersAreNotRecycled() {
+        ByteBuffer buffer = ByteBufferPool.allocate( 64, true );
+        ByteBufferPool.release( buffer );
+        ByteBuffer direct = ByteBufferPool.allocate( 64, true );
+        assertNotSame( buffer, direct );
+        assertEquals( true, direct.isDirect() );
+        assertNotSame( buffer, ByteBufferPool.allocate( 64, false ) );
+    }
+
+    @Test
+    public void testHeapBufferIsNotReturnedForDirectAllocation() {
+        ByteBuffer buffer = ByteBufferPool.allocate( 64, false );
+        ByteBufferPool.release( buffer );
+        assertEquals( true, ByteBufferPool.allocate( 64, true ).isDirect() );
+        assertSame( buffer, ByteBufferPool.allocate( 64, false ) );
+    }
+
+    @Test
+    public void testViewsAreNotRecycled() {
+        ByteBuffer buffer = ByteBufferPool.allocate( 64, false );
+        ByteBufferPool.release( buffer.asReadOnlyBuffer() );
+        assertNotSame( buffer, ByteBufferPool.allocate( 64, false ) );
+
+        buffer.position( 32 );
+        ByteBuffer slice = buffer.slice();
+        ByteBufferPool.release( slice );
+        assertNotSame( slice, ByteBufferPool.allocate( 32, false ) );
+
+        ByteBuffer head = ByteBuffer.allocate( 64 );
+        head.limit( 32 );
+        ByteBuffer headSlice = head.slice();
+        ByteBufferPool.release( headSlice );
+        assertNotSame( headSlice, ByteBufferPool.allocate( 32, false ) );
+    }
+
+    @Test
+    public void testClear() {
+        ByteBuffer buffer = ByteBufferPool.allocate( 64, false );
+        ByteBufferPool.release( buffer );
+        ByteBufferPool.clear();
+        assertNotSame( buffer, ByteBufferPool.allocate( 64, false ) );
+    }
+
+    @Test
+    public void testReleaseNull() {
+        ByteBufferPool.release( null );
+    }
+}
@@ -0,0 +1,142 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.coverage.raster.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.deegree.coverage.raster.geom.RasterRect;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link TileEntry}, especially that the buffers of cleared tiles are recycled by the {@link ByteBufferPool}.
+ */
+public class TileEntryTest {
+
+    private TileEntry entry;
+
+    @Before
+    public void setUp() {
+        ByteBufferPool.clear();
+        entry = new TileEntry( new RasterRect( 0, 0, 4, 4 ) );
+    }
+
+    @After
+    public void tearDown() {
+        ByteBufferPool.clear();
+    }
+
+    @Test
+    public void testSetBuffer() {
+        ByteBuffer buffer = ByteBufferPool.allocate( 16, false );
+        assertEquals( 16, entry.setBuffer( buffer ) );
+        assertTrue( entry.isInMemory() );
+        assertTrue( entry.getReadTime() > 0 );
+        // replacing an existing buffer does not change the memory size
+        assertEquals( 0, entry.setBuffer( ByteBufferPool.allocate( 16, false ) ) );
+        assertEquals( -16, entry.setBuffer( null ) );
+        assertFalse( entry.isInMemory() );
+        assertEquals( 0, entry.getReadTime() );
+    }
+
+    @Test
+    public void testGetBufferIsReadOnly() {
+        ByteBuffer buffer = ByteBufferPool.allocate( 16, false );
+        buffer.put( 3, (byte) 42 );
+        entry.setBuffer( buffer );
+        ByteBuffer view = entry.getBuffer();
+        assertTrue( view.isReadOnly() );
+        assertEquals( 42, view.get( 3 ) );
+        // the view must not be recycled
+        ByteBufferPool.release( view );
+        assertNotSame( buffer, ByteBufferPool.allocate( 16, false ) );
+    }
+
+    @Test
+    public void testDeletedBufferIsRecycled() {
+        ByteBuffer buffer = ByteBufferPool.allocate( 16, false );
+        buffer.put( 3, (byte) 42 );
+        entry.setBuffer( buffer );
+        entry.setTileOnFile( true );
+
+        assertEquals( 16, entry.deteleBuffer() );
+        assertFalse( entry.isInMemory() );
+        assertNull( entry.getBuffer() );
+        assertEquals( 0, entry.getReadTime() );
+        assertTrue( entry.isOnFile() );
+        assertEquals( 0, entry.deteleBuffer() );
+
+        ByteBuffer recycled = ByteBufferPool.allocate( 16, false );
+        assertSame( buffer, recycled );
+        assertEquals( 0, recycled.get( 3 ) );
+    }
+
+    @Test
+    public void testClearedBufferIsRecycled() {
+        ByteBuffer buffer = ByteBufferPool.allocate( 16, false );
+        entry.setBuffer( buffer );
+        entry.setTileOnFile( true );
+
+        assertEquals( 16, entry.clear( false ) );
+        assertFalse( entry.isInMemory() );
+        assertTrue( entry.isOnFile() );
+        assertSame( buffer, ByteBufferPool.allocate( 16, false ) );
+
+        entry.setBuffer( buffer );
+        assertEquals( 16, entry.clear( true ) );
+        assertFalse( entry.isOnFile() );
+        assertEquals( 0, entry.clear( true ) );
+        assertSame( buffer, ByteBufferPool.allocate( 16, false ) );
+    }
+
+    @Test
+    public void testClearedBufferIsRecycledOnce() {
+        ByteBuffer buffer = ByteBufferPool.allocate( 16, false );
+        entry.setBuffer( buffer );
+        entry.clear( true );
+        entry.clear( true );
+        assertSame( buffer, ByteBufferPool.allocate( 16, false ) );
+        assertNotSame( buffer, ByteBufferPool.allocate( 16, false ) );
+    }
+}
@@ -0,0 +1,170 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.coverage.raster.interpolation;
+
+import static org.deegree.coverage.raster.interpolation.InterpolationType.BILINEAR;
+import static org.deegree.coverage.raster.interpolation.InterpolationType.NEAREST_NEIGHBOR;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.deegree.coverage.raster.data.RasterData;
+import org.deegree.coverage.raster.data.RasterDataFactory;
+import org.deegree.coverage.raster.data.info.BandType;
+import org.deegree.coverage.raster.data.info.DataType;
+import org.deegree.coverage.raster.data.info.InterleaveType;
+import org.junit.Test;
+
+/**
+ * Tests that {@link Interpolation#getPixels(float[], int, byte[])} yields the same pixels as
+ * {@link Interpolation#getPixel(float, float, byte[])}, for all interpolation implementations.
+ */
+public class InterpolationTest {
+
+    private static final int WIDTH = 23;
+
+    private static final int HEIGHT = 17;
+
+    @Test
+    public void testNearestNeighbor() {
+        assertGetPixelsEqualsGetPixel( NEAREST_NEIGHBOR, DataType.BYTE, NearestNeighborInterpolation.class );
+        assertGetPixelsEqualsGetPixel( NEAREST_NEIGHBOR, DataType.FLOAT, NearestNeighborInterpolation.class );
+    }
+
+    @Test
+    public void testBiLinearByte() {
+        assertGetPixelsEqualsGetPixel( BILINEAR, DataType.BYTE, BiLinearByteInterpolation.class );
+    }
+
+    @Test
+    public void testBiLinearShort() {
+        assertGetPixelsEqualsGetPixel( BILINEAR, DataType.SHORT, BiLinearShortInterpolation.class );
+    }
+
+    @Test
+    public void testBiLinearUShort() {
+        assertGetPixelsEqualsGetPixel( BILINEAR, DataType.USHORT, BiLinearShortInterpolation.class );
+    }
+
+    @Test
+    public void testBiLinearFloat() {
+        assertGetPixelsEqualsGetPixel( BILINEAR, DataType.FLOAT, BiLinearFloatInterpolation.class );
+    }
+
+    private static void assertGetPixelsEqualsGetPixel( InterpolationType type, DataType dataType,
+                                                       Class<? extends Interpolation> expectedClass ) {
+        for ( InterleaveType interleaveType : new InterleaveType[] { InterleaveType.PIXEL, InterleaveType.BAND } ) {
+            for ( BandType[] bands : new BandType[][] { { BandType.BAND_0 }, BandType.RGB } ) {
+                RasterData data = createRasterData( dataType, bands, interleaveType );
+                Interpolation interpolation = InterpolationFactory.getInterpolation( type, data );
+                assertEquals( expectedClass, interpolation.getClass() );
+                assertGetPixelsEqualsGetPixel( interpolation, data, interleaveType + ", " + bands.length + " bands" );
+            }
+        }
+    }
+
+    private static void assertGetPixelsEqualsGetPixel( Interpolation interpolation, RasterData data, String msg ) {
+        int pixelSize = data.getBands() * data.getDataType().getSize();
+        float[] srcCoords = createCoordinates( 500 );
+        int count = srcCoords.length / 2;
+
+        // the result may be larger than needed, the remainder must not be touched
+        byte[] pixels = new byte[( count + 1 ) * pixelSize];
+        interpolation.getPixels( srcCoords, count, pixels );
+
+        byte[] pixel = new byte[pixelSize];
+        byte[] expected = new byte[pixels.length];
+        for ( int i = 0; i < count; i++ ) {
+            interpolation.getPixel( srcCoords[2 * i], srcCoords[2 * i + 1], pixel );
+            System.arraycopy( pixel, 0, expected, i * pixelSize, pixelSize );
+        }
+        assertArrayEquals( msg, expected, pixels );
+    }
+
+    /**
+     * @return random raster coordinates inside and outside (and on the border of) the raster, and exact pixel
+     *         positions
+     */
+    private static float[] createCoordinates( int count ) {
+        Random random = new Random( 42 );
+        float[] coords = new float[2 * count];
+        for ( int i = 0; i < count; i++ ) {
+            switch ( i % 4 ) {
+            case 0:
+                // exact pixel positions
+                coords[2 * i] = random.nextInt( WIDTH );
+                coords[2 * i + 1] = random.nextInt( HEIGHT );
+                break;
+            case 1:
+                // the last row and column, the window of the bilinear interpolation is partly outside
+                coords[2 * i] = WIDTH - 1 + random.nextFloat();
+                coords[2 * i + 1] = HEIGHT - 1 + random.nextFloat();
+                break;
+            default:
+                coords[2 * i] = -2 + random.nextFloat() * ( WIDTH + 4 );
+                coords[2 * i + 1] = -2 + random.nextFloat() * ( HEIGHT + 4 );
+            }
+        }
+        return coords;
+    }
+
+    private static RasterData createRasterData( DataType dataType, BandType[] bands, InterleaveType interleaveType ) {
+        RasterData data = RasterDataFactory.createRasterData( WIDTH, HEIGHT, bands, dataType, interleaveType, false );
+        int pixelSize = bands.length * dataType.getSize();
+        byte[] noData = new byte[pixelSize];
+        for ( int i = 0; i < pixelSize; i++ ) {
+            noData[i] = (byte) ( 0x70 + i );
+        }
+        data.setNoDataValue( noData );
+
+        Random random = new Random( 7 );
+        byte[] pixel = new byte[pixelSize];
+        for ( int y = 0; y < HEIGHT; y++ ) {
+            for ( int x = 0; x < WIDTH; x++ ) {
+                random.nextBytes( pixel );
+                if ( dataType == DataType.FLOAT ) {
+                    // keep the float samples finite
+                    for ( int i = 0; i < pixelSize; i += 4 ) {
+                        pixel[i] &= 0x3f;
+                    }
+                }
+                data.setPixel( x, y, pixel );
+            }
+        }
+        return data;
+    }
+}
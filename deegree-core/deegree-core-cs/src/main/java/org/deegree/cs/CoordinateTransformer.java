@@ -200,6 +200,50 @@ public class CoordinateTransformer extends Transformer {
         return result;
     }
 
+    /**
+     * Transforms the given coordinates into the CoordinateTransformer's coordinate system, in place and without
+     * creating an object per point.
+     * 
+     * @param sourceCRS
+     *            crs of the coordinates, must not be <code>null</code>
+     * @param xyz
+     *            the coordinates as x, y, z triples (a missing z value may be {@link Double#NaN}), will receive the
+     *            transformed coordinates, must not be <code>null</code>
+     * @param offset
+     *            index of the x ordinate of the first point
+     * @param numPoints
+     *            number of points to transform
+     * @throws TransformationException
+     *             if no transformation could be created for the given source and target crs or the transformation
+     *             failed
+     * @throws IllegalArgumentException
+     *             if the sourceCRS is <code>null</code>
+     */
+    public void transform( ICRS sourceCRS, double[] xyz, int offset, int numPoints )
+                            throws TransformationException, IllegalArgumentException {
+        if ( numPoints <= 0 ) {
+            return;
+        }
+        Transformation trans = createCRSTransformation( sourceCRS );
+        if ( TransformationFactory.isIdentity( trans ) ) {
+            return;
+        }
+        double[] z = null;
+        if ( sourceCRS.getDimension() == 2 && getTargetCRS().getDimension() == 2 ) {
+            // pass the 3rd coordinate if dimension of source and target CRS is 2
+            z = new double[numPoints];
+            for ( int i = 0; i < numPoints; i++ ) {
+                z[i] = xyz[offset + 3 * i + 2];
+            }
+        }
+        trans.doTransform( xyz, offset, numPoints );
+        if ( z != null ) {
+            for ( int i = 0; i < numPoints; i++ ) {
+                xyz[offset + 3 * i + 2] = z[i];
+            }
+        }
+    }
+
     /**
      * Transforms a given coordinate into the CoordinateTransformer's coordinate system.
      * 
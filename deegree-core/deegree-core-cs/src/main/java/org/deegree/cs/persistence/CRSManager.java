@@ -36,6 +36,7 @@
 package org.deegree.cs.persistence;
 
 import static java.lang.System.currentTimeMillis;
+import static java.util.Collections.synchronizedMap;
 import static org.deegree.commons.xml.stax.XMLStreamUtils.closeQuietly;
 
 import java.io.File;
@@ -43,13 +44,16 @@ import java.io.FilenameFilter;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamReader;
@@ -91,18 +95,41 @@ public class CRSManager implements Initializable, Destroyable {
 
     private static Map<String, CRSStoreProvider> nsToProvider = null;
 
-    private static Map<String, CRSStore> idToCRSStore = Collections.synchronizedMap( new HashMap<String, CRSStore>() );
+    private static Map<String, CRSStore> idToCRSStore = new ConcurrentHashMap<String, CRSStore>();
 
     // store ids in order of requesting, workspace stores should overwrite the default store!
-    private static List<String> storeIds = Collections.synchronizedList( new LinkedList<String>() );
+    private static List<String> storeIds = new CopyOnWriteArrayList<String>();
 
-    private static Map<String, TransformationFactory> idToTransF = new HashMap<String, TransformationFactory>();
+    private static Map<String, TransformationFactory> idToTransF;
+
+    // the least recently used entries are evicted from the caches when exceeding this number of entries
+    private static final int MAX_CACHE_SIZE = 4096;
+
+    // resolved crs, keyed by store id, code and axis order (see #lookup(String, String, boolean))
+    private static final Map<java.lang.Object, ICRS> crsCache;
+
+    // assembled transformation chains, keyed by store id, source and target crs, only copies are handed out
+    private static final Map<TransformationKey, Transformation> transformationCache;
+
+    // incremented whenever the registered stores change, results computed for an older generation are not cached
+    private static final AtomicLong cacheGeneration = new AtomicLong();
+
+    private static final AtomicLong crsCacheHits = new AtomicLong();
+
+    private static final AtomicLong crsCacheMisses = new AtomicLong();
+
+    private static final AtomicLong transformationCacheHits = new AtomicLong();
+
+    private static final AtomicLong transformationCacheMisses = new AtomicLong();
 
     private Workspace workspace;
 
     private static boolean defaultInitialized = false;
 
     static {
+        idToTransF = new ConcurrentHashMap<String, TransformationFactory>();
+        crsCache = synchronizedMap( new LruCache<java.lang.Object, ICRS>( MAX_CACHE_SIZE ) );
+        transformationCache = synchronizedMap( new LruCache<TransformationKey, Transformation>( MAX_CACHE_SIZE ) );
         new CRSManager().initDefault();
     }
 
@@ -138,6 +165,7 @@ public class CRSManager implements Initializable, Destroyable {
         idToCRSStore.clear();
         idToTransF.clear();
         storeIds.clear();
+        clearCaches();
         defaultInitialized = false;
         new CRSManager().initDefault();
     }
@@ -281,6 +309,7 @@ public class CRSManager implements Initializable, Destroyable {
             } else {
                 storeIds.add( id );
             }
+            clearCaches();
             crss.init();
         }
     }
@@ -416,7 +445,7 @@ public class CRSManager implements Initializable, Destroyable {
      * @throws UnknownCRSException
      *             if a {@link ICRS} with the name is not known
      */
-    public synchronized static ICRS lookup( String name )
+    public static ICRS lookup( String name )
                             throws UnknownCRSException {
         return lookup( name, false );
     }
@@ -436,7 +465,7 @@ public class CRSManager implements Initializable, Destroyable {
      * @throws UnknownCRSException
      *             if a {@link ICRS} with the name is not known
      */
-    public synchronized static ICRS lookup( String name, boolean forceXY )
+    public static ICRS lookup( String name, boolean forceXY )
                             throws UnknownCRSException {
         return lookup( null, name, forceXY );
     }
@@ -452,7 +481,7 @@ public class CRSManager implements Initializable, Destroyable {
      * @throws UnknownCRSException
      *             if a {@link ICRS} with the name is not known
      */
-    public synchronized static ICRS lookup( CRSCodeType codeType )
+    public static ICRS lookup( CRSCodeType codeType )
                             throws UnknownCRSException {
         return lookup( null, codeType );
     }
@@ -471,7 +500,7 @@ public class CRSManager implements Initializable, Destroyable {
      * @throws UnknownCRSException
      *             if a {@link ICRS} with the name is not known
      */
-    public synchronized static ICRS lookup( String storeId, String name )
+    public static ICRS lookup( String storeId, String name )
                             throws UnknownCRSException {
         return lookup( storeId, name, false );
     }
@@ -493,7 +522,24 @@ public class CRSManager implements Initializable, Destroyable {
      * @throws UnknownCRSException
      *             if a {@link ICRS} with the name is not known
      */
-    public synchronized static ICRS lookup( String storeIdName, String name, boolean forceXY )
+    public static ICRS lookup( String storeIdName, String name, boolean forceXY )
+                            throws UnknownCRSException {
+        String key = storeIdName + '|' + forceXY + '|' + name;
+        ICRS crs = crsCache.get( key );
+        if ( crs != null ) {
+            crsCacheHits.incrementAndGet();
+            return crs;
+        }
+        crsCacheMisses.incrementAndGet();
+        long generation = cacheGeneration.get();
+        synchronized ( CRSManager.class ) {
+            crs = lookupUncached( storeIdName, name, forceXY );
+        }
+        cache( crsCache, key, crs, generation );
+        return crs;
+    }
+
+    private static ICRS lookupUncached( String storeIdName, String name, boolean forceXY )
                             throws UnknownCRSException {
         CRSStore crsStore = get( storeIdName );
         if ( crsStore != null ) {
@@ -527,7 +573,24 @@ public class CRSManager implements Initializable, Destroyable {
      * @throws UnknownCRSException
      *             if a {@link ICRS} with the name is not known
      */
-    public synchronized static ICRS lookup( String storeId, CRSCodeType crsCodeType )
+    public static ICRS lookup( String storeId, CRSCodeType crsCodeType )
+                            throws UnknownCRSException {
+        List<java.lang.Object> key = Arrays.<java.lang.Object> asList( storeId, crsCodeType );
+        ICRS crs = crsCache.get( key );
+        if ( crs != null ) {
+            crsCacheHits.incrementAndGet();
+            return crs;
+        }
+        crsCacheMisses.incrementAndGet();
+        long generation = cacheGeneration.get();
+        synchronized ( CRSManager.class ) {
+            crs = lookupUncached( storeId, crsCodeType );
+        }
+        cache( crsCache, key, crs, generation );
+        return crs;
+    }
+
+    private static ICRS lookupUncached( String storeId, CRSCodeType crsCodeType )
                             throws UnknownCRSException {
         CRSStore crsStore = get( storeId );
         if ( crsStore != null ) {
@@ -657,7 +720,7 @@ public class CRSManager implements Initializable, Destroyable {
      *            of the {@link Transformation}
      * @return the identified {@link Transformation} or <code>null<code> if no such transformation is found.
      */
-    public synchronized static Transformation getTransformation( String storeId, String id ) {
+    public static Transformation getTransformation( String storeId, String id ) {
         CRSStore crsStore = idToCRSStore.get( storeId );
         if ( crsStore == null ) {
             for ( String sId : storeIds ) {
@@ -689,7 +752,7 @@ public class CRSManager implements Initializable, Destroyable {
      * @throws TransformationException
      * @throws IllegalArgumentException
      */
-    public synchronized static Transformation getTransformation( String storeId, ICRS sourceCRS, ICRS targetCRS )
+    public static Transformation getTransformation( String storeId, ICRS sourceCRS, ICRS targetCRS )
                             throws IllegalArgumentException, TransformationException {
         return getTransformation( storeId, sourceCRS, targetCRS, null );
     }
@@ -713,9 +776,58 @@ public class CRSManager implements Initializable, Destroyable {
      * @throws TransformationException
      * @throws IllegalArgumentException
      */
-    public synchronized static Transformation getTransformation( String storeId, ICRS sourceCRS, ICRS targetCRS,
-                                                                 List<Transformation> transformationsToBeUsed )
+    public static Transformation getTransformation( String storeId, ICRS sourceCRS, ICRS targetCRS,
+                                                    List<Transformation> transformationsToBeUsed )
                             throws IllegalArgumentException, TransformationException {
+        if ( transformationsToBeUsed != null && !transformationsToBeUsed.isEmpty() ) {
+            synchronized ( CRSManager.class ) {
+                return getTransformationUncached( storeId, sourceCRS, targetCRS, transformationsToBeUsed );
+            }
+        }
+        TransformationKey key = new TransformationKey( storeId, sourceCRS, targetCRS );
+        Transformation cached = transformationCache.get( key );
+        if ( cached != null ) {
+            Transformation trans = copy( cached );
+            if ( trans != null ) {
+                transformationCacheHits.incrementAndGet();
+                return trans;
+            }
+        }
+        transformationCacheMisses.incrementAndGet();
+        long generation = cacheGeneration.get();
+        Transformation trans;
+        synchronized ( CRSManager.class ) {
+            trans = getTransformationUncached( storeId, sourceCRS, targetCRS, null );
+        }
+        if ( trans != null ) {
+            cached = copy( trans );
+            if ( cached != null ) {
+                cache( transformationCache, key, cached, generation );
+            }
+        }
+        return trans;
+    }
+
+    /**
+     * Creates a deep copy of the given transformation (chain), so the caller may {@link Transformation#inverse()} it
+     * without changing the cached instance.
+     * 
+     * @param trans
+     *            transformation to copy, must not be <code>null</code>
+     * @return a copy of the transformation or <code>null</code>, if it cannot be copied (and must not be cached)
+     */
+    private static Transformation copy( Transformation trans ) {
+        try {
+            return trans.copyTransformation( trans );
+        } catch ( RuntimeException e ) {
+            LOG.debug( "Could not copy transformation " + trans.getCodeAndName() + ": " + e.getMessage() );
+            return null;
+        }
+    }
+
+    private static Transformation getTransformationUncached( String storeId, ICRS sourceCRS, ICRS targetCRS,
+                                                             List<Transformation> transformationsToBeUsed )
+                            throws TransformationException {
         if ( storeId != null ) {
             TransformationFactory fac = getTransformationFactory( storeId );
             return fac.createFromCoordinateSystems( sourceCRS, targetCRS, transformationsToBeUsed );
@@ -741,13 +853,16 @@ public class CRSManager implements Initializable, Destroyable {
      * @throws IllegalArgumentException
      *             if crsStore is null
      */
-    private synchronized static Transformation getTransformation( CRSStore crsStore, String id ) {
+    private static Transformation getTransformation( CRSStore crsStore, String id ) {
         if ( crsStore == null ) {
             throw new IllegalArgumentException( Messages.get( "CRSManager.STORE_NULL" ) );
         }
         CRSResource t = null;
         try {
-            t = crsStore.getDirectTransformation( id );
+            // not cached here, the internal caches of the stores are not safe for concurrent readers
+            synchronized ( CRSManager.class ) {
+                t = crsStore.getDirectTransformation( id );
+            }
         } catch ( Throwable e ) {
             LOG.debug( "Could not retrieve a transformation for id: " + id );
         }
@@ -758,11 +873,127 @@ public class CRSManager implements Initializable, Destroyable {
         return null;
     }
 
+    /**
+     * Returns the number of {@link ICRS} lookups that have been answered from the cache.
+     * 
+     * @return number of cache hits since startup
+     */
+    public static long getCrsCacheHits() {
+        return crsCacheHits.get();
+    }
+
+    /**
+     * Returns the number of {@link ICRS} lookups that had to be resolved by the {@link CRSStore}s.
+     * 
+     * @return number of cache misses since startup
+     */
+    public static long getCrsCacheMisses() {
+        return crsCacheMisses.get();
+    }
+
+    /**
+     * Returns the number of {@link Transformation} (chain) requests that have been answered from the cache.
+     * 
+     * @return number of cache hits since startup
+     */
+    public static long getTransformationCacheHits() {
+        return transformationCacheHits.get();
+    }
+
+    /**
+     * Returns the number of {@link Transformation} (chain) requests that had to be assembled by the
+     * {@link TransformationFactory}s.
+     * 
+     * @return number of cache misses since startup
+     */
+    public static long getTransformationCacheMisses() {
+        return transformationCacheMisses.get();
+    }
+
+    /**
+     * Removes all cached {@link ICRS} and {@link Transformation} instances. Called whenever the registered
+     * {@link CRSStore}s change.
+     */
+    public static void clearCaches() {
+        cacheGeneration.incrementAndGet();
+        crsCache.clear();
+        transformationCache.clear();
+    }
+
+    private static <K, V> void cache( Map<K, V> cache, K key, V value, long generation ) {
+        cache.put( key, value );
+        if ( generation != cacheGeneration.get() ) {
+            // stores changed while resolving, value may be stale
+            cache.remove( key );
+        }
+    }
+
     protected void remove( String id ) {
         if ( id != null ) {
             storeIds.remove( id );
             idToCRSStore.remove( id );
             idToTransF.remove( id );
+            clearCaches();
+        }
+    }
+
+    /**
+     * Map that evicts the least recently accessed entry when exceeding its maximum size. Not thread-safe.
+     */
+    static final class LruCache<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 4327436525311402349L;
+
+        private final int maxSize;
+
+        LruCache( int maxSize ) {
+            super( 16, 0.75f, true );
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<K, V> eldest ) {
+            return size() > maxSize;
+        }
+    }
+
+    private static final class TransformationKey {
+
+        private final String storeId;
+
+        private final ICRS source;
+
+        private final ICRS target;
+
+        private final int hashCode;
+
+        private TransformationKey( String storeId, ICRS source, ICRS target ) {
+            this.storeId = storeId;
+            this.source = source;
+            this.target = target;
+            int code = storeId == null ? 0 : storeId.hashCode();
+            code = code * 37 + ( source == null ? 0 : source.hashCode() );
+            code = code * 37 + ( target == null ? 0 : target.hashCode() );
+            this.hashCode = code;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals( java.lang.Object other ) {
+            if ( !( other instanceof TransformationKey ) ) {
+                return false;
+            }
+            TransformationKey that = (TransformationKey) other;
+            return hashCode == that.hashCode && equal( storeId, that.storeId ) && equal( source, that.source )
+                   && equal( target, that.target );
+        }
+
+        private static boolean equal( java.lang.Object a, java.lang.Object b ) {
+            return a == null ? b == null : a.equals( b );
         }
     }
 
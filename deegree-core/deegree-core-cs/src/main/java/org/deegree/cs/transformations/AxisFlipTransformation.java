@@ -73,6 +73,15 @@ public class AxisFlipTransformation extends Transformation {
         return srcPts;
     }
 
+    @Override
+    public void doTransform( double[] xyz, int offset, int numPoints ) {
+        for ( int i = offset, end = offset + numPoints * 3; i < end; i += 3 ) {
+            double tmpX = xyz[i];
+            xyz[i] = xyz[i + 1];
+            xyz[i + 1] = tmpX;
+        }
+    }
+
     @Override
     public boolean isIdentity() {
         return false;
@@ -36,6 +36,8 @@
 
 package org.deegree.cs.transformations;
 
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -83,6 +85,9 @@ import org.deegree.cs.transformations.polynomial.LeastSquareApproximation;
  */
 public abstract class Transformation extends CRSIdentifiable {
 
+    // number of points copied at once when transforming a buffer which is not backed by an array
+    private static final int BUFFER_CHUNK_POINTS = 1024;
+
     private ICRS sourceCRS;
 
     private ICRS targetCRS;
@@ -144,10 +149,11 @@ public abstract class Transformation extends CRSIdentifiable {
     }
 
     /**
-     * Wraps the incoming coordinates into a List<Point3d> and calls the {@link #doTransform(List)}. The source array
-     * will be read according to the dimension of the source CRS {@link #getSourceDimension()} and the target
-     * coordinates will be put according to the dimension of the targetCRS {@link #getTargetDimension()}. If the
-     * sourceDim &lt; 2 or &gt; 3 a transformation exception will be thrown.
+     * Copies the incoming coordinates into an array of x, y, z triples and calls
+     * {@link #doTransform(double[], int, int)}. The source array will be read according to the dimension of the source
+     * CRS {@link #getSourceDimension()} and the target coordinates will be put according to the dimension of the
+     * targetCRS {@link #getTargetDimension()}. If the sourceDim &lt; 2 or &gt; 3 a transformation exception will be
+     * thrown.
      * 
      * @param srcOrdinates
      *            the array holding the source ('original') coordinates.
@@ -199,19 +205,24 @@ public abstract class Transformation extends CRSIdentifiable {
             throw new IllegalArgumentException( Messages.getMessage( "CRS_TRANSFORM_LAST_LT_START" ) );
         }
 
-        List<Point3d> sourceCoords = new LinkedList<Point3d>();
         final int dim = getSourceDimension();
         if ( dim > 3 || dim < 2 ) {
             throw new TransformationException( Messages.getMessage( "CRS_TRANSFORM_WRONG_CRS_DIM", "source" ) );
         }
-        for ( int i = startPositionSrc; ( ( i + ( dim - 1 ) ) < ( startPositionSrc + length ) ); i += dim ) {
-            sourceCoords.add( new Point3d( srcOrdinates[i], srcOrdinates[i + 1], ( dim == 3 ) ? srcOrdinates[i + 2] : 0 ) );
+        // the coordinates are copied into a single array instead of wrapping each of them into a point
+        final int numPoints = Math.max( 0, length / dim );
+        double[] xyz = new double[numPoints * 3];
+        int k = 0;
+        for ( int i = startPositionSrc; k < xyz.length; i += dim ) {
+            xyz[k++] = srcOrdinates[i];
+            xyz[k++] = srcOrdinates[i + 1];
+            xyz[k++] = ( dim == 3 ) ? srcOrdinates[i + 2] : 0;
         }
-        List<Point3d> result = doTransform( sourceCoords );
+        doTransform( xyz, 0, numPoints );
         if ( startPositionDest < 0 ) {
             startPositionDest = 0;
         }
-        final int requiredSpace = result.size() * getTargetDimension();
+        final int requiredSpace = numPoints * getTargetDimension();
         if ( destOrdinates == null ) {
             startPositionDest = 0;
             destOrdinates = new double[requiredSpace];
@@ -227,15 +238,75 @@ public abstract class Transformation extends CRSIdentifiable {
             throw new TransformationException( Messages.getMessage( "CRS_TRANSFORM_WRONG_CRS_DIM", "target" ) );
         }
         int arrayPos = startPositionDest;
-        for ( Point3d coord : result ) {
-            destOrdinates[arrayPos++] = coord.x;
-            destOrdinates[arrayPos++] = coord.y;
+        for ( int i = 0; i < xyz.length; i += 3 ) {
+            destOrdinates[arrayPos++] = xyz[i];
+            destOrdinates[arrayPos++] = xyz[i + 1];
             if ( dimDest == 3 ) {
-                destOrdinates[arrayPos++] = coord.z;
+                destOrdinates[arrayPos++] = xyz[i + 2];
             }
         }
     }
 
+    /**
+     * Transforms the given coordinates in place. The coordinates are stored as x, y, z triples regardless of the
+     * dimension of the source and target crs, a missing z value may be given as {@link Double#NaN}.
+     * <p>
+     * This implementation wraps the coordinates into {@link Point3d}s and calls {@link #doTransform(List)}. The
+     * commonly used transformations override it to work on the array directly, without creating an object per point.
+     * </p>
+     * 
+     * @param xyz
+     *            the coordinates to transform, will receive the transformed coordinates, must not be <code>null</code>
+     * @param offset
+     *            the index of the x ordinate of the first point
+     * @param numPoints
+     *            the number of points to transform
+     * @throws TransformationException
+     *             if a transform could not be calculated.
+     */
+    public void doTransform( double[] xyz, int offset, int numPoints )
+                            throws TransformationException {
+        List<Point3d> points = new ArrayList<Point3d>( numPoints );
+        for ( int i = 0, k = offset; i < numPoints; ++i, k += 3 ) {
+            points.add( new Point3d( xyz[k], xyz[k + 1], xyz[k + 2] ) );
+        }
+        int k = offset;
+        for ( Point3d p : doTransform( points ) ) {
+            xyz[k++] = p.x;
+            xyz[k++] = p.y;
+            xyz[k++] = p.z;
+        }
+    }
+
+    /**
+     * Transforms the coordinates between the position and the limit of the given buffer in place, see
+     * {@link #doTransform(double[], int, int)}. The position and limit of the buffer are not changed.
+     * 
+     * @param xyz
+     *            the coordinates to transform as x, y, z triples, must not be <code>null</code>
+     * @throws TransformationException
+     *             if a transform could not be calculated.
+     */
+    public void doTransform( DoubleBuffer xyz )
+                            throws TransformationException {
+        int numPoints = xyz.remaining() / 3;
+        if ( xyz.hasArray() ) {
+            doTransform( xyz.array(), xyz.arrayOffset() + xyz.position(), numPoints );
+            return;
+        }
+        double[] chunk = new double[Math.min( numPoints, BUFFER_CHUNK_POINTS ) * 3];
+        DoubleBuffer view = xyz.duplicate();
+        for ( int done = 0; done < numPoints; ) {
+            int count = Math.min( numPoints - done, BUFFER_CHUNK_POINTS );
+            int start = view.position();
+            view.get( chunk, 0, count * 3 );
+            doTransform( chunk, 0, count );
+            view.position( start );
+            view.put( chunk, 0, count * 3 );
+            done += count;
+        }
+    }
+
     /**
      * Transforms a single point3d (by calling the doTransform( List<Point3d>).
      * 
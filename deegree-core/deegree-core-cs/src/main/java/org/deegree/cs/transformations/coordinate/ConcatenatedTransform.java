@@ -125,6 +125,15 @@ public class ConcatenatedTransform extends Transformation {
         return srcPts;
     }
 
+    @Override
+    public void doTransform( double[] xyz, int offset, int numPoints )
+                            throws TransformationException {
+        if ( !isIdentitiy ) {
+            firstTransform.doTransform( xyz, offset, numPoints );
+            secondTransform.doTransform( xyz, offset, numPoints );
+        }
+    }
+
     @Override
     public void inverse() {
         super.inverse();
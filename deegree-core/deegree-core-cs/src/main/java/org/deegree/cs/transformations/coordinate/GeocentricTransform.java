@@ -191,6 +191,15 @@ public class GeocentricTransform extends Transformation {
         return result;
     }
 
+    @Override
+    public void doTransform( double[] xyz, int offset, int numPoints ) {
+        if ( isInverseTransform() ) {
+            toGeographic( xyz, offset, numPoints );
+        } else {
+            toGeoCentric( xyz, offset, numPoints );
+        }
+    }
+
     /**
      * Converts geocentric coordinates (x, y, z) to geodetic coordinates (longitude, latitude, height), according to the
      * current ellipsoid parameters. The method used here is derived from "An Improved Algorithm for Geocentric to
@@ -200,17 +209,42 @@ public class GeocentricTransform extends Transformation {
      *            the points which must be transformed.
      */
     protected void toGeographic( List<Point3d> srcPts ) {
+        double[] xyz = new double[3];
         for ( Point3d p : srcPts ) {
+            xyz[0] = p.x;
+            xyz[1] = p.y;
+            xyz[2] = p.z;
+            toGeographic( xyz, 0, 1 );
+            p.set( xyz );
+        }
+    }
+
+    /**
+     * Converts the cartesian (x,y,z) triples of the given array to geographic (longitude, latitude, height)
+     * coordinates in place, see {@link #toGeographic(List)}.
+     * 
+     * @param xyz
+     *            the coordinates to convert
+     * @param offset
+     *            index of the first ordinate
+     * @param numPoints
+     *            number of points to convert
+     */
+    protected void toGeographic( double[] xyz, int offset, int numPoints ) {
+        for ( int i = offset, end = offset + numPoints * 3; i < end; i += 3 ) {
             // Note: Variable names follow the notation used in Toms, Feb 1996
+            final double x = xyz[i];
+            final double y = xyz[i + 1];
+            final double z = xyz[i + 2];
 
-            final double T0 = p.z * AD_C; // initial estimate of vertical component
-            final double W = length( p.x, p.y );// distance from Z axis
+            final double T0 = z * AD_C; // initial estimate of vertical component
+            final double W = length( x, y );// distance from Z axis
             final double S0 = length( T0, W );// initial estimate of horizontal component
 
             final double sin_B0 = T0 / S0; // sin(B0), B0 is estimate of Bowring variable
             final double cos_B0 = W / S0; // cos(B0)
             final double sin3_B0 = sin_B0 * sin_B0 * sin_B0; // cube of sin(B0)
-            final double T1 = p.z + semiMinorAxis * ep2 * sin3_B0; // corrected estimate of vertical component
+            final double T1 = z + semiMinorAxis * ep2 * sin3_B0; // corrected estimate of vertical component
 
             // numerator of cos(phi1)
             final double sum = W - semiMajorAxis * squaredEccentricity * ( cos_B0 * cos_B0 * cos_B0 );
@@ -223,8 +257,8 @@ public class GeocentricTransform extends Transformation {
             final double cosPhi = sum / S1; // cos(phi)
 
             // Lambda in tom.
-            p.x = Math.atan2( p.y, p.x );// longitude;
-            p.y = Math.atan( sinPhi / cosPhi );// latitude;
+            xyz[i] = Math.atan2( y, x );// longitude;
+            xyz[i + 1] = Math.atan( sinPhi / cosPhi );// latitude;
             if ( hasHeight ) {
                 double height;
                 // rn = radius of curvature of the prime vertical, of the ellipsoid at location
@@ -235,11 +269,11 @@ public class GeocentricTransform extends Transformation {
                 } else if ( cosPhi <= -COS_67P5 ) {
                     height = W / -cosPhi - rn;
                 } else {
-                    height = p.z / sinPhi + rn * ( squaredEccentricity - 1.0 );
+                    height = z / sinPhi + rn * ( squaredEccentricity - 1.0 );
                 }
-                p.z = height;
+                xyz[i + 2] = height;
             } else {
-                p.z = defaultHeightValue;
+                xyz[i + 2] = defaultHeightValue;
             }
         }
     }
@@ -251,23 +285,45 @@ public class GeocentricTransform extends Transformation {
      *            to convert.
      */
     protected void toGeoCentric( List<Point3d> srcPts ) {
+        double[] xyz = new double[3];
         for ( Point3d p : srcPts ) {
-            final double lambda = p.x; // Longitude
-            final double phi = p.y; // Latitude
-            // first check the p.z value if it is defined, if not, use the defaultheight value, which will be
+            xyz[0] = p.x;
+            xyz[1] = p.y;
+            xyz[2] = p.z;
+            toGeoCentric( xyz, 0, 1 );
+            p.set( xyz );
+        }
+    }
+
+    /**
+     * Converts the geographic (longitude, latitude, height) triples of the given array to cartesian (x,y,z)
+     * coordinates in place, see {@link #toGeoCentric(List)}.
+     * 
+     * @param xyz
+     *            the coordinates to convert
+     * @param offset
+     *            index of the first ordinate
+     * @param numPoints
+     *            number of points to convert
+     */
+    protected void toGeoCentric( double[] xyz, int offset, int numPoints ) {
+        for ( int i = offset, end = offset + numPoints * 3; i < end; i += 3 ) {
+            final double lambda = xyz[i]; // Longitude
+            final double phi = xyz[i + 1]; // Latitude
+            // first check the z value if it is defined, if not, use the defaultheight value, which will be
             // initialized with 0 or the configured compound crs value.
-            if ( Double.isNaN( p.z ) || Math.abs( p.z ) < EPS11 ) {
-                p.z = defaultHeightValue;
+            if ( Double.isNaN( xyz[i + 2] ) || Math.abs( xyz[i + 2] ) < EPS11 ) {
+                xyz[i + 2] = defaultHeightValue;
             }
-            final double h = hasHeight ? p.z : 0; // Height above the ellipsoid (metres).
+            final double h = hasHeight ? xyz[i + 2] : 0; // Height above the ellipsoid (metres).
 
             final double cosPhi = Math.cos( phi );
             final double sinPhi = Math.sin( phi );
             final double rn = semiMajorAxis / Math.sqrt( 1 - squaredEccentricity * ( sinPhi * sinPhi ) );
 
-            p.x = ( rn + h ) * cosPhi * Math.cos( lambda );
-            p.y = ( rn + h ) * cosPhi * Math.sin( lambda );
-            p.z = ( rn * ( 1 - squaredEccentricity ) + h ) * sinPhi;
+            xyz[i] = ( rn + h ) * cosPhi * Math.cos( lambda );
+            xyz[i + 1] = ( rn + h ) * cosPhi * Math.sin( lambda );
+            xyz[i + 2] = ( rn * ( 1 - squaredEccentricity ) + h ) * sinPhi;
         }
     }
 
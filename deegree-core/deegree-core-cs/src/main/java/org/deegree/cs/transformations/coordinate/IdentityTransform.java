@@ -69,6 +69,11 @@ public class IdentityTransform extends Transformation {
         return srcPts;
     }
 
+    @Override
+    public void doTransform( double[] xyz, int offset, int numPoints ) {
+        // nothing to do
+    }
+
     @Override
     public String getImplementationName() {
         return "Identity";
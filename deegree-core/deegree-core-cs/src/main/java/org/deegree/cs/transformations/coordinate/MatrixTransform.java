@@ -296,6 +296,20 @@ public class MatrixTransform extends Transformation {
         return srcPts;
     }
 
+    @Override
+    public void doTransform( double[] xyz, int offset, int numPoints ) {
+        if ( isIdentity() ) {
+            return;
+        }
+        if ( matrix3D != null ) {
+            transform( isInverseTransform() ? invertMatrix3D : matrix3D, xyz, offset, numPoints );
+        } else if ( matrix4D != null ) {
+            transform( isInverseTransform() ? invertMatrix4D : matrix4D, xyz, offset, numPoints );
+        } else {
+            transform( isInverseTransform() ? invertMatrix : matrix, xyz, offset, numPoints );
+        }
+    }
+
     /**
      * @return the dimension of input points.
      */
@@ -498,6 +512,65 @@ public class MatrixTransform extends Transformation {
         }
     }
 
+    private void transform( GMatrix gm, double[] xyz, int offset, int numPoints ) {
+        final int inputDimension = numCol - 1;
+        final int outputDimension = numRow - 1;
+        if ( inputDimension > 3 || outputDimension > 3 ) {
+            throw new IllegalArgumentException( "The dimension of the given matrix (" + numRow + "x" + numCol
+                                                + ") exceeds the maximum dimension (3) supported by this "
+                                                + "Transformation" );
+        }
+        final double[] tmpPoint = new double[numRow];
+        for ( int i = offset, end = offset + numPoints * 3; i < end; i += 3 ) {
+            final double z = ( !Double.isNaN( xyz[i + 2] ) && !Double.isInfinite( xyz[i + 2] ) ) ? xyz[i + 2] : 1;
+            for ( int row = 0; row < numRow; ++row ) {
+                tmpPoint[row] = gm.getElement( row, 0 ) * xyz[i];
+                if ( numCol >= 2 ) {
+                    tmpPoint[row] += gm.getElement( row, 1 ) * xyz[i + 1];
+                    if ( numCol >= 3 ) {
+                        tmpPoint[row] += gm.getElement( row, 2 ) * z;
+                        if ( numCol == 4 ) { // assume 1
+                            tmpPoint[row] += gm.getElement( row, 3 );
+                        }
+                    }
+                }
+            }
+            final double w = tmpPoint[outputDimension];
+            if ( outputDimension >= 1 ) {
+                xyz[i] = tmpPoint[0] / w;
+                if ( outputDimension >= 2 ) {
+                    xyz[i + 1] = tmpPoint[1] / w;
+                    if ( outputDimension == 3 ) {
+                        xyz[i + 2] = tmpPoint[2] / w;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void transform( Matrix4d m, double[] xyz, int offset, int numPoints ) {
+        for ( int i = offset, end = offset + numPoints * 3; i < end; i += 3 ) {
+            final double x = xyz[i];
+            final double y = xyz[i + 1];
+            final double z = xyz[i + 2];
+            xyz[i] = m.m00 * x + m.m01 * y + m.m02 * z + m.m03;
+            xyz[i + 1] = m.m10 * x + m.m11 * y + m.m12 * z + m.m13;
+            xyz[i + 2] = m.m20 * x + m.m21 * y + m.m22 * z + m.m23;
+        }
+    }
+
+    private static void transform( Matrix3d m, double[] xyz, int offset, int numPoints ) {
+        for ( int i = offset, end = offset + numPoints * 3; i < end; i += 3 ) {
+            final double x = xyz[i];
+            final double y = xyz[i + 1];
+            final boolean zIsNaN = Double.isNaN( xyz[i + 2] );
+            final double z = zIsNaN ? 1 : xyz[i + 2];
+            xyz[i] = m.m00 * x + m.m01 * y + m.m02 * z;
+            xyz[i + 1] = m.m10 * x + m.m11 * y + m.m12 * z;
+            xyz[i + 2] = zIsNaN ? Double.NaN : m.m20 * x + m.m21 * y + m.m22 * z;
+        }
+    }
+
     /**
      * @return the matrix.
      */
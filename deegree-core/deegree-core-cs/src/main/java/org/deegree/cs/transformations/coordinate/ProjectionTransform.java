@@ -150,6 +150,27 @@ public class ProjectionTransform extends Transformation {
         return srcPts;
     }
 
+    @Override
+    public void doTransform( double[] xyz, int offset, int numPoints ) {
+        final boolean inverse = isInverseTransform();
+        // on the inverse, the projected ordinates are read and the geographic ordinates are written
+        final boolean swapIn = inverse ? swapAxisTarget : swapAxisSource;
+        final boolean swapOut = inverse ? swapAxisSource : swapAxisTarget;
+        for ( int i = offset, end = offset + numPoints * 3; i < end; i += 3 ) {
+            final double first = swapIn ? xyz[i + 1] : xyz[i];
+            final double second = swapIn ? xyz[i] : xyz[i + 1];
+            try {
+                Point2d tmp = inverse ? projectedCRS.doInverseProjection( first, second )
+                                     : projectedCRS.doProjection( first, second );
+                xyz[i] = swapOut ? tmp.y : tmp.x;
+                xyz[i + 1] = swapOut ? tmp.x : tmp.y;
+            } catch ( ProjectionException e ) {
+                LOG.trace( "Stack trace:", e );
+                LOG.warn( "Transformation error: {}", e.getLocalizedMessage() );
+            }
+        }
+    }
+
     /**
      * @param srcPts
      */
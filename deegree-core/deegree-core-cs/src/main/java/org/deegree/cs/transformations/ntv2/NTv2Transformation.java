@@ -231,62 +231,81 @@ public class NTv2Transformation extends Transformation {
     public List<Point3d> doTransform( List<Point3d> srcPts )
                             throws TransformationException {
         GridShift shifter = new GridShift();
-
+        double[] xyz = new double[3];
         for ( Point3d p : srcPts ) {
-            // rb: only degrees are supported :-)
-            shifter.setLonPositiveEastDegrees( p.x * ProjectionUtils.RTD );
-            shifter.setLatDegrees( p.y * ProjectionUtils.RTD );
-            boolean shift = false;
-            try {
-                if ( isInverseTransform() ) {
-                    shift = gsf.gridShiftReverse( shifter );
-                } else {
-                    shift = gsf.gridShiftForward( shifter );
-                }
-            } catch ( IOException e ) {
-                LOG.debug( "Exception occurred: " + e.getLocalizedMessage(), e );
-                LOG.error( "Exception occurred: " + e.getLocalizedMessage() );
+            xyz[0] = p.x;
+            xyz[1] = p.y;
+            shift( shifter, xyz, 0 );
+            p.x = xyz[0];
+            p.y = xyz[1];
+        }
+        return srcPts;
+    }
+
+    @Override
+    public void doTransform( double[] xyz, int offset, int numPoints ) {
+        GridShift shifter = new GridShift();
+        for ( int i = offset, end = offset + numPoints * 3; i < end; i += 3 ) {
+            shift( shifter, xyz, i );
+        }
+    }
+
+    /**
+     * Shifts the longitude and latitude (in radians) at the given index of the array in place.
+     */
+    private void shift( GridShift shifter, double[] xyz, int i ) {
+        // rb: only degrees are supported :-)
+        shifter.setLonPositiveEastDegrees( xyz[i] * ProjectionUtils.RTD );
+        shifter.setLatDegrees( xyz[i + 1] * ProjectionUtils.RTD );
+        boolean shift = false;
+        try {
+            if ( isInverseTransform() ) {
+                shift = gsf.gridShiftReverse( shifter );
+            } else {
+                shift = gsf.gridShiftForward( shifter );
             }
-            if ( !shift ) {
-                StringBuilder sb = new StringBuilder( "Could not do " );
-                sb.append( ( isInverseTransform() ? "an inverse" : "a forward" ) ).append( " transform because: " );
-                sb.append( "gridfile is loaded: " ).append( gsf.isLoaded() );
-                SubGrid[] subGridTree = gsf.getSubGridTree();
-                if ( subGridTree == null ) {
-                    sb.append( "no sub grid tree could be retrieved." );
-                } else {
-                    sb.append( "Getting SubGrid for coordinates: " );
-                    sb.append( shifter.getLonPositiveEastDegrees() ).append( "," ).append( shifter.getLatDegrees() );
-                    SubGrid sg = subGridTree[0];
-                    SubGrid forCoord = sg.getSubGridForCoord( shifter.getLonPositiveWestSeconds(),
-                                                              shifter.getLatSeconds() );
-                    if ( forCoord == null ) {
-                        sb.append( ". Retrieval of SubGrid for coordinates: " );
-                        sb.append( shifter.getLonPositiveEastDegrees() ).append( "," );
-                        sb.append( shifter.getLatDegrees() );
-                        sb.append( " Failed." );
-                    }
-                }
-                LOG.info( sb.toString() );
+        } catch ( IOException e ) {
+            LOG.debug( "Exception occurred: " + e.getLocalizedMessage(), e );
+            LOG.error( "Exception occurred: " + e.getLocalizedMessage() );
+        }
+        if ( !shift ) {
+            StringBuilder sb = new StringBuilder( "Could not do " );
+            sb.append( ( isInverseTransform() ? "an inverse" : "a forward" ) ).append( " transform because: " );
+            sb.append( "gridfile is loaded: " ).append( gsf.isLoaded() );
+            SubGrid[] subGridTree = gsf.getSubGridTree();
+            if ( subGridTree == null ) {
+                sb.append( "no sub grid tree could be retrieved." );
             } else {
-                StringBuilder sb = new StringBuilder( "Successfully applied " );
-                sb.append( ( isInverseTransform() ? "an inverse" : "a forward" ) ).append(
-                                                                                           " transform for incoming points: " );
+                sb.append( "Getting SubGrid for coordinates: " );
                 sb.append( shifter.getLonPositiveEastDegrees() ).append( "," ).append( shifter.getLatDegrees() );
-                sb.append( ", result->" );
-                sb.append( shifter.getShiftedLonPositiveEastDegrees() ).append( "," ).append(
-                                                                                              shifter.getShiftedLatDegrees() );
-                LOG.debug( sb.toString() );
+                SubGrid sg = subGridTree[0];
+                SubGrid forCoord = sg.getSubGridForCoord( shifter.getLonPositiveWestSeconds(),
+                                                          shifter.getLatSeconds() );
+                if ( forCoord == null ) {
+                    sb.append( ". Retrieval of SubGrid for coordinates: " );
+                    sb.append( shifter.getLonPositiveEastDegrees() ).append( "," );
+                    sb.append( shifter.getLatDegrees() );
+                    sb.append( " Failed." );
+                }
             }
-            // if ( swapToTarget ) {
-            // p.x = shifter.getShiftedLatDegrees() * DTR;
-            // p.y = shifter.getShiftedLonPositiveEastDegrees() * DTR;
-            // } else {
-            p.x = shifter.getShiftedLonPositiveEastDegrees() * DTR;
-            p.y = shifter.getShiftedLatDegrees() * DTR;
-            // }
+            LOG.info( sb.toString() );
+        } else if ( LOG.isDebugEnabled() ) {
+            StringBuilder sb = new StringBuilder( "Successfully applied " );
+            sb.append( ( isInverseTransform() ? "an inverse" : "a forward" ) );
+            sb.append( " transform for incoming points: " );
+            sb.append( shifter.getLonPositiveEastDegrees() ).append( "," ).append( shifter.getLatDegrees() );
+            sb.append( ", result->" );
+            sb.append( shifter.getShiftedLonPositiveEastDegrees() ).append( "," );
+            sb.append( shifter.getShiftedLatDegrees() );
+            LOG.debug( sb.toString() );
         }
-        return srcPts;
+        // if ( swapToTarget ) {
+        // p.x = shifter.getShiftedLatDegrees() * DTR;
+        // p.y = shifter.getShiftedLonPositiveEastDegrees() * DTR;
+        // } else {
+        xyz[i] = shifter.getShiftedLonPositiveEastDegrees() * DTR;
+        xyz[i + 1] = shifter.getShiftedLatDegrees() * DTR;
+        // }
     }
 
     @Override
@@ -0,0 +1,132 @@
+//$HeadURL: svn+ssh://lbuesching@svn.wald.intevation.de/deegree/base/trunk/resources/eclipse/files_template.xml $
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://ICoordinateSystem.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.cs.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.exceptions.TransformationException;
+import org.deegree.cs.exceptions.UnknownCRSException;
+import org.deegree.cs.transformations.Transformation;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ICRS} and {@link Transformation} caches of the {@link CRSManager}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class CRSManagerCacheTest {
+
+    @Test
+    public void testLookupIsCached()
+                            throws UnknownCRSException {
+        ICRS first = CRSManager.lookup( "EPSG:31467", true );
+        long hits = CRSManager.getCrsCacheHits();
+        ICRS second = CRSManager.lookup( "EPSG:31467", true );
+        assertSame( first, second );
+        assertEquals( hits + 1, CRSManager.getCrsCacheHits() );
+    }
+
+    @Test
+    public void testLookupDistinguishesAxisOrder()
+                            throws UnknownCRSException {
+        ICRS xy = CRSManager.lookup( "urn:ogc:def:crs:EPSG::4326", true );
+        ICRS latLon = CRSManager.lookup( "urn:ogc:def:crs:EPSG::4326", false );
+        assertNotNull( xy );
+        assertNotNull( latLon );
+        assertEquals( xy.getAxis()[0].getOrientation(), latLon.getAxis()[1].getOrientation() );
+    }
+
+    @Test
+    public void testClearCaches()
+                            throws UnknownCRSException {
+        CRSManager.lookup( "EPSG:25832" );
+        CRSManager.clearCaches();
+        long misses = CRSManager.getCrsCacheMisses();
+        CRSManager.lookup( "EPSG:25832" );
+        assertEquals( misses + 1, CRSManager.getCrsCacheMisses() );
+    }
+
+    @Test
+    public void testTransformationIsCached()
+                            throws UnknownCRSException, TransformationException {
+        ICRS source = CRSManager.lookup( "EPSG:31467" );
+        ICRS target = CRSManager.lookup( "EPSG:4326" );
+        Transformation first = CRSManager.getTransformation( null, source, target );
+        long hits = CRSManager.getTransformationCacheHits();
+        Transformation second = CRSManager.getTransformation( null, source, target );
+        assertNotNull( first );
+        assertNotSame( first, second );
+        assertEquals( first, second );
+        assertEquals( hits + 1, CRSManager.getTransformationCacheHits() );
+    }
+
+    @Test
+    public void testInverseDoesNotAffectCachedTransformation()
+                            throws UnknownCRSException, TransformationException {
+        ICRS source = CRSManager.lookup( "EPSG:31466" );
+        ICRS target = CRSManager.lookup( "EPSG:4258" );
+        Transformation first = CRSManager.getTransformation( null, source, target );
+        boolean inverse = first.isInverseTransform();
+        first.inverse();
+        Transformation second = CRSManager.getTransformation( null, source, target );
+        assertEquals( inverse, second.isInverseTransform() );
+        assertTrue( first.isInverseTransform() != second.isInverseTransform() );
+    }
+
+    @Test
+    public void testLruCacheEvictsLeastRecentlyUsed() {
+        Map<String, String> cache = new CRSManager.LruCache<String, String>( 2 );
+        cache.put( "a", "A" );
+        cache.put( "b", "B" );
+        cache.get( "a" );
+        cache.put( "c", "C" );
+        assertEquals( 2, cache.size() );
+        assertTrue( cache.containsKey( "a" ) );
+        assertFalse( cache.containsKey( "b" ) );
+        assertTrue( cache.containsKey( "c" ) );
+    }
+
+}
@@ -0,0 +1,157 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.cs.transformations;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.vecmath.Point3d;
+
+import org.deegree.cs.CoordinateTransformer;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.exceptions.TransformationException;
+import org.deegree.cs.exceptions.UnknownCRSException;
+import org.deegree.cs.persistence.CRSManager;
+import org.junit.Test;
+
+/**
+ * Checks that the bulk (array based) transformation gives the same results as the transformation of point lists.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class BulkTransformationTest {
+
+    private static final double[] XY_31466 = { 2365253.9171053073, 5838184.758315763, 2580000, 5650000, 2500000,
+                                              5700000 };
+
+    private static final double[] XY_4326 = { 4.00788999689501, 52.659800083701924, 7.1, 50.7, 13.4, 52.5 };
+
+    @Test
+    public void test31466To4326()
+                            throws TransformationException, UnknownCRSException {
+        assertBulkEqualsList( "epsg:31466", "epsg:4326", XY_31466 );
+    }
+
+    @Test
+    public void test4326To31466()
+                            throws TransformationException, UnknownCRSException {
+        assertBulkEqualsList( "epsg:4326", "epsg:31466", XY_4326 );
+    }
+
+    @Test
+    public void test4326To900913()
+                            throws TransformationException, UnknownCRSException {
+        assertBulkEqualsList( "epsg:4326", "epsg:900913", XY_4326 );
+    }
+
+    @Test
+    public void test4326To4314()
+                            throws TransformationException, UnknownCRSException {
+        assertBulkEqualsList( "epsg:4326", "epsg:4314", XY_4326 );
+    }
+
+    @Test
+    public void testDirectBuffer()
+                            throws TransformationException, UnknownCRSException {
+        ICRS source = CRSManager.lookup( "epsg:31466" );
+        ICRS target = CRSManager.lookup( "epsg:4326" );
+        double[] expected = toXyz( XY_31466 );
+        new CoordinateTransformer( target ).transform( source, expected, 0, expected.length / 3 );
+
+        Transformation trans = new TestTransformer( target ).createCRSTransformation( source );
+        DoubleBuffer buffer = ByteBuffer.allocateDirect( expected.length * 8 ).asDoubleBuffer();
+        buffer.put( toXyz( XY_31466 ) );
+        buffer.flip();
+        trans.doTransform( buffer );
+        assertEquals( 0, buffer.position() );
+        for ( int i = 0; i < expected.length; i += 3 ) {
+            assertEquals( expected[i], buffer.get( i ), 1e-9 );
+            assertEquals( expected[i + 1], buffer.get( i + 1 ), 1e-9 );
+        }
+    }
+
+    private void assertBulkEqualsList( String sourceCode, String targetCode, double[] xy )
+                            throws TransformationException, UnknownCRSException {
+        ICRS source = CRSManager.lookup( sourceCode );
+        ICRS target = CRSManager.lookup( targetCode );
+        CoordinateTransformer transformer = new CoordinateTransformer( target );
+
+        List<Point3d> points = new ArrayList<Point3d>();
+        for ( int i = 0; i < xy.length; i += 2 ) {
+            points.add( new Point3d( xy[i], xy[i + 1], Double.NaN ) );
+        }
+        List<Point3d> expected = transformer.transform( source, points );
+
+        double[] xyz = toXyz( xy );
+        transformer.transform( source, xyz, 0, expected.size() );
+        for ( int i = 0; i < expected.size(); i++ ) {
+            assertEquals( expected.get( i ).x, xyz[3 * i], 1e-9 );
+            assertEquals( expected.get( i ).y, xyz[3 * i + 1], 1e-9 );
+        }
+    }
+
+    private static double[] toXyz( double[] xy ) {
+        double[] xyz = new double[xy.length / 2 * 3];
+        for ( int i = 0, k = 0; i < xy.length; i += 2 ) {
+            xyz[k++] = xy[i];
+            xyz[k++] = xy[i + 1];
+            xyz[k++] = Double.NaN;
+        }
+        return xyz;
+    }
+
+    /**
+     * Gives access to the transformation chain used by the {@link CoordinateTransformer}.
+     */
+    private static class TestTransformer extends CoordinateTransformer {
+
+        TestTransformer( ICRS target ) {
+            super( target );
+        }
+
+        @Override
+        protected Transformation createCRSTransformation( ICRS sourceCRS )
+                                throws TransformationException {
+            return super.createCRSTransformation( sourceCRS );
+        }
+    }
+}
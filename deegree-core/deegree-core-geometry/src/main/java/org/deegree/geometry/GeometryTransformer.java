@@ -42,7 +42,6 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
-import javax.vecmath.Point3d;
 
 import org.deegree.commons.uom.Length;
 import org.deegree.cs.Transformer;
@@ -110,6 +109,7 @@ import org.deegree.geometry.primitive.segments.LineStringSegment;
 import org.deegree.geometry.primitive.segments.OffsetCurve;
 import org.deegree.geometry.primitive.segments.CurveSegment.CurveSegmentType;
 import org.deegree.geometry.standard.curvesegments.AffinePlacement;
+import org.deegree.geometry.standard.points.PackedPoints;
 import org.deegree.geometry.standard.points.PointsList;
 import org.slf4j.Logger;
 
@@ -538,29 +538,31 @@ public class GeometryTransformer extends Transformer {
         double axis0Step = span0 / ( pointsPerSide + 1 );
         double axis1Step = span1 / ( pointsPerSide + 1 );
 
-        List<Point3d> points = new ArrayList<Point3d>( pointsPerSide * 4 + 4 );
         double zValue = Double.NaN;
         if ( trans.getSourceCRS() != null ) {
             zValue = trans.getSourceCRS().getDimension() == 3 ? 1 : Double.NaN;
         }
 
+        int numSamples = ( pointsPerSide + 2 ) * 4;
+        double[] xyz = new double[numSamples * 3];
+        int k = 0;
         for ( int i = 0; i <= pointsPerSide + 1; i++ ) {
-            points.add( new Point3d( axis0Min + i * axis0Step, axis1Min, zValue ) );
-            points.add( new Point3d( axis0Min + i * axis0Step, axis1Max, zValue ) );
-            points.add( new Point3d( axis0Min, axis1Min + i * axis1Step, zValue ) );
-            points.add( new Point3d( axis0Max, axis1Min + i * axis1Step, zValue ) );
+            k = setOrdinates( xyz, k, axis0Min + i * axis0Step, axis1Min, zValue );
+            k = setOrdinates( xyz, k, axis0Min + i * axis0Step, axis1Max, zValue );
+            k = setOrdinates( xyz, k, axis0Min, axis1Min + i * axis1Step, zValue );
+            k = setOrdinates( xyz, k, axis0Max, axis1Min + i * axis1Step, zValue );
         }
 
-        points = trans.doTransform( points );
+        trans.doTransform( xyz, 0, numSamples );
         axis0Min = Double.MAX_VALUE;
         axis1Min = Double.MAX_VALUE;
         axis0Max = Double.NEGATIVE_INFINITY;
         axis1Max = Double.NEGATIVE_INFINITY;
-        for ( Point3d p : points ) {
-            axis0Min = Math.min( p.x, axis0Min );
-            axis1Min = Math.min( p.y, axis1Min );
-            axis0Max = Math.max( p.x, axis0Max );
-            axis1Max = Math.max( p.y, axis1Max );
+        for ( int i = 0; i < xyz.length; i += 3 ) {
+            axis0Min = Math.min( xyz[i], axis0Min );
+            axis1Min = Math.min( xyz[i + 1], axis1Min );
+            axis0Max = Math.max( xyz[i], axis0Max );
+            axis1Max = Math.max( xyz[i + 1], axis1Max );
         }
 
         // pass the 3rd coordinate if exist and dimension of source and target CRS is 2
@@ -578,6 +580,13 @@ public class GeometryTransformer extends Transformer {
         return geomFactory.createEnvelope( min, max, CRSManager.getCRSRef( this.getTargetCRS() ) );
     }
 
+    private static int setOrdinates( double[] xyz, int k, double x, double y, double z ) {
+        xyz[k] = x;
+        xyz[k + 1] = y;
+        xyz[k + 2] = z;
+        return k + 3;
+    }
+
     private LineString transform( LineString geo, Transformation trans )
                             throws TransformationException {
         LineStringSegment segment = (LineStringSegment) geo.getCurveSegments().get( 0 ); // only one for a line string?
@@ -816,23 +825,58 @@ public class GeometryTransformer extends Transformer {
     private Points transform( Points points, Transformation trans )
                             throws TransformationException {
 
-        List<Point> result = new ArrayList<Point>( points.size() );
+        int numPoints = points.size();
+        double[] xyz = new double[numPoints * 3];
+        boolean has2d = false;
+        boolean has3d = false;
+        boolean hasIds = false;
+        int k = 0;
         for ( Point point : points ) {
-            Point3d coord = new Point3d( point.get0(), point.get1(), point.get2() );
-            Point3d tmp = new Point3d( coord );
+            k = setOrdinates( xyz, k, point.get0(), point.get1(), point.get2() );
+            if ( Double.isNaN( point.get2() ) ) {
+                has2d = true;
+            } else {
+                has3d = true;
+            }
+            hasIds = hasIds || point.getId() != null;
+        }
+        double[] z = null;
+        if ( has3d && trans.getSourceCRS().getDimension() == 2 && trans.getTargetCRS().getDimension() == 2 ) {
+            // pass the 3rd coordinate if exist and dimension of source and target CRS is 2
+            z = new double[numPoints];
+            for ( int i = 0; i < numPoints; i++ ) {
+                z[i] = xyz[3 * i + 2];
+            }
+        }
 
-            tmp = trans.doTransform( coord );
+        trans.doTransform( xyz, 0, numPoints );
+
+        if ( !hasIds && !( has2d && has3d ) ) {
+            // the common case: all points have the same dimension, keep the ordinates packed
+            int dim = has3d ? 3 : 2;
+            double[] coords = new double[numPoints * dim];
+            for ( int i = 0, j = 0; i < numPoints; i++ ) {
+                coords[j++] = xyz[3 * i];
+                coords[j++] = xyz[3 * i + 1];
+                if ( dim == 3 ) {
+                    coords[j++] = z != null ? z[i] : xyz[3 * i + 2];
+                }
+            }
+            return new PackedPoints( getTargetCRS(), coords, dim );
+        }
 
+        List<Point> result = new ArrayList<Point>( numPoints );
+        int i = 0;
+        for ( Point point : points ) {
+            double x = xyz[3 * i];
+            double y = xyz[3 * i + 1];
             if ( Double.isNaN( point.get2() ) ) {
-                result.add( geomFactory.createPoint( point.getId(), new double[] { tmp.x, tmp.y }, getTargetCRS() ) );
+                result.add( geomFactory.createPoint( point.getId(), new double[] { x, y }, getTargetCRS() ) );
             } else {
-                // pass the 3rd coordinate if exist and dimension of source and target CRS is 2
-                if ( trans.getSourceCRS().getDimension() == 2 && trans.getTargetCRS().getDimension() == 2 ) {
-                    tmp.z = point.get2();
-                }
-                result.add( geomFactory.createPoint( point.getId(), new double[] { tmp.x, tmp.y, tmp.z },
-                                                     getTargetCRS() ) );
+                double zi = z != null ? z[i] : xyz[3 * i + 2];
+                result.add( geomFactory.createPoint( point.getId(), new double[] { x, y, zi }, getTargetCRS() ) );
             }
+            i++;
         }
         return new PointsList( result );
     }
@@ -845,17 +889,15 @@ public class GeometryTransformer extends Transformer {
     private Point transform( Point geo, Transformation trans )
                             throws TransformationException {
 
-        Point3d coord = new Point3d( geo.get0(), geo.get1(), geo.get2() );
-        Point3d result = new Point3d( coord );
-
-        result = trans.doTransform( coord );
+        double[] xyz = new double[] { geo.get0(), geo.get1(), geo.get2() };
+        trans.doTransform( xyz, 0, 1 );
         if ( Double.isNaN( geo.get2() ) ) {
-            return geomFactory.createPoint( geo.getId(), new double[] { result.x, result.y }, getTargetCRS() );
+            return geomFactory.createPoint( geo.getId(), new double[] { xyz[0], xyz[1] }, getTargetCRS() );
         } else if ( trans.getSourceCRS().getDimension() == 2 && trans.getTargetCRS().getDimension() == 2 ) {
             // pass the 3rd coordinate if exist and dimension of source and target CRS is 2
-            result.z = geo.get2();
+            xyz[2] = geo.get2();
         }
-        return geomFactory.createPoint( geo.getId(), new double[] { result.x, result.y, result.z }, getTargetCRS() );
+        return geomFactory.createPoint( geo.getId(), xyz, getTargetCRS() );
     }
 
     /**
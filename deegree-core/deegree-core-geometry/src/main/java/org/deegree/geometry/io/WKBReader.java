@@ -35,21 +35,41 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.geometry.io;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.geometry.Geometry;
-import org.deegree.geometry.standard.AbstractDefaultGeometry;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.standard.multi.DefaultMultiGeometry;
+import org.deegree.geometry.standard.multi.DefaultMultiLineString;
+import org.deegree.geometry.standard.multi.DefaultMultiPoint;
+import org.deegree.geometry.standard.multi.DefaultMultiPolygon;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.deegree.geometry.standard.primitive.DefaultLineString;
+import org.deegree.geometry.standard.primitive.DefaultLinearRing;
 import org.deegree.geometry.standard.primitive.DefaultPoint;
+import org.deegree.geometry.standard.primitive.DefaultPolygon;
 
-import org.locationtech.jts.io.InputStreamInStream;
 import org.locationtech.jts.io.ParseException;
 
 /**
  * Reads {@link Geometry} objects encoded as Well-Known Binary (WKB).
+ * <p>
+ * The WKB is decoded directly into deegree geometries (coordinates end up in {@link PackedPoints}), no intermediate JTS
+ * geometries are created. Besides OGC/ISO WKB (including the ISO Z/M type codes), the PostGIS EWKB flags for Z, M and
+ * SRID are understood. M values and embedded SRIDs are skipped, the CRS of the returned geometry is always the one
+ * passed by the caller.
+ * </p>
  * 
- * TODO re-implement without delegating to JTS TODO add support for non-SFS geometries (e.g. non-linear curves)
+ * TODO add support for non-SFS geometries (e.g. non-linear curves)
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author$
@@ -58,20 +78,273 @@ import org.locationtech.jts.io.ParseException;
  */
 public class WKBReader {
 
-    // TODO remove the need for this object
-    private static AbstractDefaultGeometry defaultGeom = new DefaultPoint( null, null, null, new double[] { 0.0, 0.0 } );
+    static final int WKB_POINT = 1;
 
+    static final int WKB_LINESTRING = 2;
+
+    static final int WKB_POLYGON = 3;
+
+    static final int WKB_MULTIPOINT = 4;
+
+    static final int WKB_MULTILINESTRING = 5;
+
+    static final int WKB_MULTIPOLYGON = 6;
+
+    static final int WKB_GEOMETRYCOLLECTION = 7;
+
+    static final int EWKB_Z = 0x80000000;
+
+    static final int EWKB_M = 0x40000000;
+
+    static final int EWKB_SRID = 0x20000000;
+
+    /**
+     * Decodes the given WKB.
+     * 
+     * @param wkb
+     *            WKB or EWKB encoded geometry, must not be <code>null</code>
+     * @param crs
+     *            crs of the geometry, may be <code>null</code>
+     * @return decoded geometry, <code>null</code> if the WKB encodes an empty geometry
+     * @throws ParseException
+     *             if the WKB is truncated or contains an unsupported geometry type
+     */
     public static Geometry read( byte[] wkb, ICRS crs )
                             throws ParseException {
-        // org.locationtech.jts.io.WKBReader() is not thread safe
-        return defaultGeom.createFromJTS( new org.locationtech.jts.io.WKBReader().read( wkb ), crs );
+        // decoder is not thread safe, but cheap
+        return new Decoder( wkb, crs ).readGeometry();
     }
 
+    /**
+     * Decodes the WKB read from the given stream. The stream is consumed completely, but not closed.
+     * 
+     * @param is
+     *            stream to read the WKB or EWKB encoded geometry from, must not be <code>null</code>
+     * @param crs
+     *            crs of the geometry, may be <code>null</code>
+     * @return decoded geometry, <code>null</code> if the WKB encodes an empty geometry
+     * @throws IOException
+     * @throws ParseException
+     *             if the WKB is truncated or contains an unsupported geometry type
+     */
     public static Geometry read( InputStream is, ICRS crs )
                             throws IOException, ParseException {
-        // org.locationtech.jts.io.WKBReader() is not thread safe
-        return defaultGeom.createFromJTS(
-                                          new org.locationtech.jts.io.WKBReader().read( new InputStreamInStream( is ) ),
-                                          crs );
+        ByteArrayOutputStream bos = new ByteArrayOutputStream( 1024 );
+        byte[] buffer = new byte[4096];
+        int read;
+        while ( ( read = is.read( buffer ) ) != -1 ) {
+            bos.write( buffer, 0, read );
+        }
+        return read( bos.toByteArray(), crs );
+    }
+
+    private static final class Decoder {
+
+        private final byte[] wkb;
+
+        private final ICRS crs;
+
+        private int pos;
+
+        private boolean littleEndian;
+
+        Decoder( byte[] wkb, ICRS crs ) {
+            this.wkb = wkb;
+            this.crs = crs;
+        }
+
+        Geometry readGeometry()
+                                throws ParseException {
+            require( 5 );
+            byte byteOrder = wkb[pos++];
+            if ( byteOrder == 0 ) {
+                littleEndian = false;
+            } else if ( byteOrder == 1 ) {
+                littleEndian = true;
+            } else {
+                throw new ParseException( "Invalid WKB byte order marker: " + byteOrder );
+            }
+            int typeInt = readInt();
+            boolean hasZ = ( typeInt & EWKB_Z ) != 0;
+            boolean hasM = ( typeInt & EWKB_M ) != 0;
+            if ( ( typeInt & EWKB_SRID ) != 0 ) {
+                require( 4 );
+                readInt();
+            }
+            int type = typeInt & 0x0fffffff;
+            // ISO WKB: 1000 (Z), 2000 (M), 3000 (ZM) offsets
+            int isoDim = type / 1000;
+            type = type % 1000;
+            if ( isoDim == 1 || isoDim == 3 ) {
+                hasZ = true;
+            }
+            if ( isoDim == 2 || isoDim == 3 ) {
+                hasM = true;
+            }
+            int ordinates = 2 + ( hasZ ? 1 : 0 ) + ( hasM ? 1 : 0 );
+            switch ( type ) {
+            case WKB_POINT:
+                return readPoint( hasZ, ordinates );
+            case WKB_LINESTRING: {
+                Points points = readPoints( hasZ, ordinates );
+                return points == null ? null : new DefaultLineString( null, crs, null, points );
+            }
+            case WKB_POLYGON:
+                return readPolygon( hasZ, ordinates );
+            case WKB_MULTIPOINT: {
+                List<Point> members = readMembers( Point.class );
+                return members.isEmpty() ? null : new DefaultMultiPoint( null, crs, null, members );
+            }
+            case WKB_MULTILINESTRING: {
+                List<LineString> members = readMembers( LineString.class );
+                return members.isEmpty() ? null : new DefaultMultiLineString( null, crs, null, members );
+            }
+            case WKB_MULTIPOLYGON: {
+                List<Polygon> members = readMembers( Polygon.class );
+                return members.isEmpty() ? null : new DefaultMultiPolygon( null, crs, null, members );
+            }
+            case WKB_GEOMETRYCOLLECTION: {
+                List<Geometry> members = readMembers( Geometry.class );
+                return members.isEmpty() ? null : new DefaultMultiGeometry<Geometry>( null, crs, null, members );
+            }
+            default:
+                throw new ParseException( "Unknown WKB type " + type );
+            }
+        }
+
+        private Point readPoint( boolean hasZ, int ordinates )
+                                throws ParseException {
+            require( ordinates * 8 );
+            double x = readDouble();
+            double y = readDouble();
+            double z = hasZ ? readDouble() : Double.NaN;
+            if ( ordinates > ( hasZ ? 3 : 2 ) ) {
+                pos += 8;
+            }
+            if ( Double.isNaN( x ) && Double.isNaN( y ) ) {
+                // POINT EMPTY
+                return null;
+            }
+            if ( Double.isNaN( z ) ) {
+                return new DefaultPoint( null, crs, null, new double[] { x, y } );
+            }
+            return new DefaultPoint( null, crs, null, new double[] { x, y, z } );
+        }
+
+        private Polygon readPolygon( boolean hasZ, int ordinates )
+                                throws ParseException {
+            int numRings = readCount( 4 );
+            if ( numRings == 0 ) {
+                return null;
+            }
+            Points exterior = readPoints( hasZ, ordinates );
+            List<Ring> interiors = new ArrayList<Ring>( numRings - 1 );
+            for ( int i = 1; i < numRings; i++ ) {
+                Points interior = readPoints( hasZ, ordinates );
+                if ( interior != null ) {
+                    interiors.add( new DefaultLinearRing( null, crs, null, interior ) );
+                }
+            }
+            if ( exterior == null ) {
+                // POLYGON EMPTY
+                return null;
+            }
+            return new DefaultPolygon( null, crs, null, new DefaultLinearRing( null, crs, null, exterior ), interiors );
+        }
+
+        private <T extends Geometry> List<T> readMembers( Class<T> memberType )
+                                throws ParseException {
+            int numMembers = readCount( 5 );
+            List<T> members = new ArrayList<T>( numMembers );
+            for ( int i = 0; i < numMembers; i++ ) {
+                // every member carries its own byte order marker
+                Geometry member = readGeometry();
+                if ( member == null ) {
+                    continue;
+                }
+                if ( !memberType.isInstance( member ) ) {
+                    throw new ParseException( "Invalid member geometry type in WKB multi geometry: "
+                                              + member.getClass().getSimpleName() );
+                }
+                members.add( memberType.cast( member ) );
+            }
+            return members;
+        }
+
+        /**
+         * Reads a WKB point array into a {@link PackedPoints} instance. Like the JTS based conversion, a z value of NaN
+         * in the first point yields two dimensional points.
+         */
+        private Points readPoints( boolean hasZ, int ordinates )
+                                throws ParseException {
+            int numPoints = readCount( ordinates * 8 );
+            if ( numPoints == 0 ) {
+                return null;
+            }
+            boolean keepZ = hasZ && !Double.isNaN( getDouble( pos + 16 ) );
+            int dim = keepZ ? 3 : 2;
+            double[] coords = new double[numPoints * dim];
+            int skip = ( ordinates - dim ) * 8;
+            int j = 0;
+            for ( int i = 0; i < numPoints; i++ ) {
+                coords[j++] = readDouble();
+                coords[j++] = readDouble();
+                if ( keepZ ) {
+                    coords[j++] = readDouble();
+                }
+                pos += skip;
+            }
+            return new PackedPoints( crs, coords, dim );
+        }
+
+        /**
+         * Reads an element count and checks that the remaining input can hold at least that many elements of the given
+         * minimum size, so corrupt counts fail early instead of triggering huge allocations.
+         */
+        private int readCount( int minElementSize )
+                                throws ParseException {
+            require( 4 );
+            int count = readInt();
+            if ( count < 0 || (long) count * minElementSize > wkb.length - pos ) {
+                throw new ParseException( "Invalid element count " + count + " in WKB (offset " + ( pos - 4 ) + ")." );
+            }
+            return count;
+        }
+
+        private void require( int numBytes )
+                                throws ParseException {
+            if ( pos + numBytes > wkb.length ) {
+                throw new ParseException( "Unexpected end of WKB data (offset " + pos + ")." );
+            }
+        }
+
+        private int readInt() {
+            int i = getInt( pos );
+            pos += 4;
+            return i;
+        }
+
+        private double readDouble() {
+            double d = getDouble( pos );
+            pos += 8;
+            return d;
+        }
+
+        private int getInt( int offset ) {
+            byte[] b = wkb;
+            if ( littleEndian ) {
+                return ( b[offset] & 0xff ) | ( b[offset + 1] & 0xff ) << 8 | ( b[offset + 2] & 0xff ) << 16
+                       | ( b[offset + 3] & 0xff ) << 24;
+            }
+            return ( b[offset] & 0xff ) << 24 | ( b[offset + 1] & 0xff ) << 16 | ( b[offset + 2] & 0xff ) << 8
+                   | ( b[offset + 3] & 0xff );
+        }
+
+        private double getDouble( int offset ) {
+            long hi = getInt( offset ) & 0xffffffffL;
+            long lo = getInt( offset + 4 ) & 0xffffffffL;
+            long bits = littleEndian ? ( lo << 32 ) | hi : ( hi << 32 ) | lo;
+            return Double.longBitsToDouble( bits );
+        }
     }
-}
\ No newline at end of file
+}
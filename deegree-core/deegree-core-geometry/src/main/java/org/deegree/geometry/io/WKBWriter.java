@@ -35,21 +35,42 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.geometry.io;
 
+import static org.deegree.geometry.io.WKBReader.EWKB_Z;
+import static org.deegree.geometry.io.WKBReader.WKB_GEOMETRYCOLLECTION;
+import static org.deegree.geometry.io.WKBReader.WKB_LINESTRING;
+import static org.deegree.geometry.io.WKBReader.WKB_MULTILINESTRING;
+import static org.deegree.geometry.io.WKBReader.WKB_MULTIPOINT;
+import static org.deegree.geometry.io.WKBReader.WKB_MULTIPOLYGON;
+import static org.deegree.geometry.io.WKBReader.WKB_POINT;
+import static org.deegree.geometry.io.WKBReader.WKB_POLYGON;
+
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.List;
 
 import org.deegree.geometry.Geometry;
+import org.deegree.geometry.multi.MultiGeometry;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.geometry.primitive.LinearRing;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
 import org.deegree.geometry.refs.GeometryReference;
 import org.deegree.geometry.standard.AbstractDefaultGeometry;
-import org.deegree.geometry.standard.primitive.DefaultPoint;
 
 import org.locationtech.jts.io.OutputStreamOutStream;
 import org.locationtech.jts.io.ParseException;
 
 /**
  * Writes {@link Geometry} objects encoded as Well-Known Binary (WKB).
+ * <p>
+ * Points, line strings, polygons (with linear rings) and multi geometries of these are encoded directly (big endian,
+ * EWKB Z flag for three dimensional output) into a single exactly sized byte array. All other geometries are still
+ * encoded via their JTS representation.
+ * </p>
  * 
- * TODO re-implement without delegating to JTS TODO add support for non-SFS geometries (e.g. non-linear curves)
+ * TODO add support for non-SFS geometries (e.g. non-linear curves)
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author$
@@ -58,24 +79,210 @@ import org.locationtech.jts.io.ParseException;
  */
 public class WKBWriter {
 
-    // TODO remove the need for this object
-    private static AbstractDefaultGeometry defaultGeom = new DefaultPoint( null, null, null, new double[] { 0.0, 0.0 } );
-
     public static byte[] write( Geometry geom )
                             throws ParseException {
         if ( geom instanceof GeometryReference ) {
             geom = ( (GeometryReference<Geometry>) geom ).getReferencedObject();
         }
-        // org.locationtech.jts.io.WKBWriter is not thread safe
         int dim = geom.getCoordinateDimension();
+        byte[] wkb = encode( geom, dim );
+        if ( wkb != null ) {
+            return wkb;
+        }
+        // org.locationtech.jts.io.WKBWriter is not thread safe
         return new org.locationtech.jts.io.WKBWriter(dim).write( ( (AbstractDefaultGeometry) geom ).getJTSGeometry() );
     }
 
     public static void write( Geometry geom, OutputStream os )
                             throws IOException, ParseException {
+        byte[] wkb = encode( geom, 2 );
+        if ( wkb != null ) {
+            os.write( wkb );
+            return;
+        }
         // org.locationtech.jts.io.WKBWriter is not thread safe
         //TODO: test for dimentionality here aswell?
         new org.locationtech.jts.io.WKBWriter().write( ( (AbstractDefaultGeometry) geom ).getJTSGeometry(),
                                                          new OutputStreamOutStream( os ) );
     }
-}
\ No newline at end of file
+
+    /**
+     * Encodes the geometry without going through JTS.
+     * 
+     * @return WKB, or <code>null</code> if the geometry (or one of its members) cannot be encoded directly
+     */
+    private static byte[] encode( Geometry geom, int dim ) {
+        if ( dim != 2 && dim != 3 ) {
+            return null;
+        }
+        Encoder encoder = new Encoder( dim );
+        int size = encoder.size( geom );
+        if ( size < 0 ) {
+            return null;
+        }
+        encoder.buffer = new byte[size];
+        encoder.write( geom );
+        return encoder.buffer;
+    }
+
+    private static final class Encoder {
+
+        private final int dim;
+
+        private final int typeFlags;
+
+        private byte[] buffer;
+
+        private int pos;
+
+        Encoder( int dim ) {
+            this.dim = dim;
+            this.typeFlags = dim == 3 ? EWKB_Z : 0;
+        }
+
+        /**
+         * Determines the number of bytes of the encoded geometry.
+         * 
+         * @return number of bytes, -1 if the geometry is not supported by the encoder
+         */
+        int size( Geometry geom ) {
+            if ( geom instanceof Point ) {
+                return 5 + dim * 8;
+            }
+            if ( geom instanceof LineString ) {
+                return 9 + size( ( (LineString) geom ).getControlPoints() );
+            }
+            if ( geom instanceof Polygon ) {
+                Polygon polygon = (Polygon) geom;
+                int size = size( polygon.getExteriorRing() );
+                if ( size < 0 ) {
+                    return -1;
+                }
+                size += 9;
+                List<Ring> interiors = polygon.getInteriorRings();
+                if ( interiors != null ) {
+                    for ( Ring ring : interiors ) {
+                        int ringSize = size( ring );
+                        if ( ringSize < 0 ) {
+                            return -1;
+                        }
+                        size += ringSize;
+                    }
+                }
+                return size;
+            }
+            if ( geom instanceof MultiGeometry<?> ) {
+                int memberType = getMemberType( (MultiGeometry<?>) geom );
+                if ( memberType < 0 ) {
+                    return -1;
+                }
+                int size = 9;
+                for ( Geometry member : (MultiGeometry<?>) geom ) {
+                    int memberSize = size( member );
+                    if ( memberSize < 0 ) {
+                        return -1;
+                    }
+                    size += memberSize;
+                }
+                return size;
+            }
+            return -1;
+        }
+
+        private int size( Ring ring ) {
+            if ( !( ring instanceof LinearRing ) ) {
+                return -1;
+            }
+            return size( ( (LinearRing) ring ).getControlPoints() );
+        }
+
+        private int size( Points points ) {
+            return 4 + points.size() * dim * 8;
+        }
+
+        void write( Geometry geom ) {
+            if ( geom instanceof Point ) {
+                writeHeader( WKB_POINT );
+                writePoint( (Point) geom );
+            } else if ( geom instanceof LineString ) {
+                writeHeader( WKB_LINESTRING );
+                writePoints( ( (LineString) geom ).getControlPoints() );
+            } else if ( geom instanceof Polygon ) {
+                Polygon polygon = (Polygon) geom;
+                List<Ring> interiors = polygon.getInteriorRings();
+                writeHeader( WKB_POLYGON );
+                writeInt( 1 + ( interiors == null ? 0 : interiors.size() ) );
+                writePoints( ( (LinearRing) polygon.getExteriorRing() ).getControlPoints() );
+                if ( interiors != null ) {
+                    for ( Ring ring : interiors ) {
+                        writePoints( ( (LinearRing) ring ).getControlPoints() );
+                    }
+                }
+            } else {
+                MultiGeometry<?> multi = (MultiGeometry<?>) geom;
+                writeHeader( getMemberType( multi ) );
+                writeInt( multi.size() );
+                for ( Geometry member : multi ) {
+                    write( member );
+                }
+            }
+        }
+
+        private int getMemberType( MultiGeometry<?> multi ) {
+            switch ( multi.getMultiGeometryType() ) {
+            case MULTI_POINT:
+                return WKB_MULTIPOINT;
+            case MULTI_LINE_STRING:
+                return WKB_MULTILINESTRING;
+            case MULTI_POLYGON:
+                return WKB_MULTIPOLYGON;
+            case MULTI_GEOMETRY:
+                return WKB_GEOMETRYCOLLECTION;
+            default:
+                return -1;
+            }
+        }
+
+        private void writeHeader( int type ) {
+            // big endian
+            buffer[pos++] = 0;
+            writeInt( type | typeFlags );
+        }
+
+        private void writePoint( Point p ) {
+            writeDouble( p.get0() );
+            writeDouble( p.get1() );
+            if ( dim == 3 ) {
+                writeDouble( p.getCoordinateDimension() > 2 ? p.get2() : Double.NaN );
+            }
+        }
+
+        private void writePoints( Points points ) {
+            int n = points.size();
+            boolean hasZ = points.getDimension() > 2;
+            writeInt( n );
+            for ( int i = 0; i < n; i++ ) {
+                writeDouble( points.getX( i ) );
+                writeDouble( points.getY( i ) );
+                if ( dim == 3 ) {
+                    writeDouble( hasZ ? points.getOrdinate( i, 2 ) : Double.NaN );
+                }
+            }
+        }
+
+        private void writeInt( int i ) {
+            byte[] b = buffer;
+            b[pos] = (byte) ( i >>> 24 );
+            b[pos + 1] = (byte) ( i >>> 16 );
+            b[pos + 2] = (byte) ( i >>> 8 );
+            b[pos + 3] = (byte) i;
+            pos += 4;
+        }
+
+        private void writeDouble( double d ) {
+            long bits = Double.doubleToLongBits( d );
+            writeInt( (int) ( bits >>> 32 ) );
+            writeInt( (int) bits );
+        }
+    }
+}
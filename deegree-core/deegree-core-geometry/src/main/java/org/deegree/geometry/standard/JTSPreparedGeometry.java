@@ -0,0 +1,162 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+
+package org.deegree.geometry.standard;
+
+import org.deegree.commons.uom.Measure;
+import org.deegree.geometry.Geometry;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+
+/**
+ * A {@link Geometry} that has been prepared for evaluating many topological predicates against other geometries, e.g.
+ * the literal of a spatial filter operator that is applied to every feature of a result set.
+ * <p>
+ * Uses a JTS {@link PreparedGeometry} (which indexes the segments of the geometry once) and rejects candidates by
+ * envelope before converting them. The predicates have the same semantics as the corresponding methods of
+ * {@link Geometry} invoked on the prepared geometry. Instances are thread-safe.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public final class JTSPreparedGeometry {
+
+    private final Geometry geometry;
+
+    private final org.locationtech.jts.geom.Geometry jtsGeometry;
+
+    private final PreparedGeometry prepared;
+
+    private final Envelope envelope;
+
+    private JTSPreparedGeometry( Geometry geometry, org.locationtech.jts.geom.Geometry jtsGeometry ) {
+        this.geometry = geometry;
+        this.jtsGeometry = jtsGeometry;
+        this.prepared = PreparedGeometryFactory.prepare( jtsGeometry );
+        this.envelope = jtsGeometry.getEnvelopeInternal();
+    }
+
+    /**
+     * Prepares the given geometry.
+     * 
+     * @param geometry
+     *            geometry to be prepared, must not be <code>null</code>
+     * @return prepared geometry, never <code>null</code>
+     */
+    public static JTSPreparedGeometry prepare( Geometry geometry ) {
+        return new JTSPreparedGeometry( geometry, toJTS( geometry ) );
+    }
+
+    /**
+     * @return the original geometry, never <code>null</code>
+     */
+    public Geometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * @see Geometry#intersects(Geometry)
+     */
+    public boolean intersects( Geometry other ) {
+        org.locationtech.jts.geom.Geometry g = toJTS( other );
+        return envelope.intersects( g.getEnvelopeInternal() ) && prepared.intersects( g );
+    }
+
+    /**
+     * @see Geometry#isDisjoint(Geometry)
+     */
+    public boolean isDisjoint( Geometry other ) {
+        org.locationtech.jts.geom.Geometry g = toJTS( other );
+        return !envelope.intersects( g.getEnvelopeInternal() ) || prepared.disjoint( g );
+    }
+
+    /**
+     * @see Geometry#touches(Geometry)
+     */
+    public boolean touches( Geometry other ) {
+        org.locationtech.jts.geom.Geometry g = toJTS( other );
+        return envelope.intersects( g.getEnvelopeInternal() ) && prepared.touches( g );
+    }
+
+    /**
+     * @see Geometry#overlaps(Geometry)
+     */
+    public boolean overlaps( Geometry other ) {
+        org.locationtech.jts.geom.Geometry g = toJTS( other );
+        return envelope.intersects( g.getEnvelopeInternal() ) && prepared.overlaps( g );
+    }
+
+    /**
+     * @see Geometry#crosses(Geometry)
+     */
+    public boolean crosses( Geometry other ) {
+        org.locationtech.jts.geom.Geometry g = toJTS( other );
+        return envelope.intersects( g.getEnvelopeInternal() ) && prepared.crosses( g );
+    }
+
+    /**
+     * @see Geometry#contains(Geometry)
+     */
+    public boolean contains( Geometry other ) {
+        org.locationtech.jts.geom.Geometry g = toJTS( other );
+        return envelope.covers( g.getEnvelopeInternal() ) && prepared.contains( g );
+    }
+
+    /**
+     * @see Geometry#isWithin(Geometry)
+     */
+    public boolean isWithin( Geometry other ) {
+        org.locationtech.jts.geom.Geometry g = toJTS( other );
+        return g.getEnvelopeInternal().covers( envelope ) && prepared.within( g );
+    }
+
+    /**
+     * @see Geometry#isWithinDistance(Geometry, Measure)
+     */
+    public boolean isWithinDistance( Geometry other, Measure distance ) {
+        org.locationtech.jts.geom.Geometry g = toJTS( other );
+        double d = distance.getValueAsDouble();
+        return envelope.distance( g.getEnvelopeInternal() ) <= d && jtsGeometry.isWithinDistance( g, d );
+    }
+
+    private static org.locationtech.jts.geom.Geometry toJTS( Geometry geometry ) {
+        return AbstractDefaultGeometry.getAsDefaultGeometry( geometry ).getJTSGeometry();
+    }
+
+}
@@ -50,6 +50,19 @@ import org.deegree.geometry.Geometry;
  */
 public interface GeometryParticleConverter extends ParticleConverter<Geometry> {
 
+    /**
+     * Returns an SQL snippet for selecting the geometry generalized to the given tolerance (e.g. for rendering small
+     * scale maps). The selected value must be decodable by {@link #toParticle(java.sql.ResultSet, int)}.
+     * 
+     * @param tableAlias
+     *            alias to use for qualifying the column, can be <code>null</code>
+     * @param tolerance
+     *            generalization tolerance in units of the stored geometries (see {@link #getCrs()}), must be positive
+     * @return select snippet, never <code>null</code> (same as {@link #getSelectSnippet(String)} if the database
+     *         cannot generalize geometries)
+     */
+    public String getGeneralizedSelectSnippet( String tableAlias, double tolerance );
+
     public String getSrid();
 
     public ICRS getCrs();
@@ -0,0 +1,218 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2011 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.geometry.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.multi.MultiGeometry;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.Curve;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.geometry.primitive.LinearRing;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.primitive.Surface;
+import org.deegree.geometry.standard.multi.DefaultMultiCurve;
+import org.deegree.geometry.standard.multi.DefaultMultiGeometry;
+import org.deegree.geometry.standard.multi.DefaultMultiLineString;
+import org.deegree.geometry.standard.multi.DefaultMultiPolygon;
+import org.deegree.geometry.standard.multi.DefaultMultiSurface;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.deegree.geometry.standard.primitive.DefaultLineString;
+import org.deegree.geometry.standard.primitive.DefaultLinearRing;
+import org.deegree.geometry.standard.primitive.DefaultPolygon;
+
+/**
+ * Generalizes linear geometries for display purposes by dropping vertices that are closer than a given tolerance to
+ * the previously kept vertex (radial distance simplification).
+ * <p>
+ * This is a single pass over the control points and meant as an in-memory replacement for the generalization
+ * functions of spatial databases. Start and end points are always kept and rings are never reduced below four points,
+ * so small features still render as (at least) a pixel. Geometry types other than line strings, polygons with linear
+ * rings and multi geometries of these are returned unchanged.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public final class GeometrySimplifier {
+
+    private GeometrySimplifier() {
+        // avoid instantiation
+    }
+
+    /**
+     * Returns a generalized version of the given geometry.
+     * 
+     * @param geom
+     *            geometry to be generalized, can be <code>null</code>
+     * @param tolerance
+     *            minimum distance between kept vertices (in units of the geometry's crs)
+     * @return generalized geometry, the given instance if no vertex can be dropped
+     */
+    public static Geometry simplify( Geometry geom, double tolerance ) {
+        if ( geom == null || !( tolerance > 0 ) ) {
+            return geom;
+        }
+        if ( geom instanceof LineString ) {
+            return simplify( (LineString) geom, tolerance * tolerance );
+        }
+        if ( geom instanceof Polygon ) {
+            return simplify( (Polygon) geom, tolerance * tolerance );
+        }
+        if ( geom instanceof MultiGeometry<?> ) {
+            return simplify( (MultiGeometry<?>) geom, tolerance );
+        }
+        return geom;
+    }
+
+    private static LineString simplify( LineString line, double sqTolerance ) {
+        Points points = simplify( line.getControlPoints(), sqTolerance, 2, line.getCoordinateSystem() );
+        if ( points == null ) {
+            return line;
+        }
+        return new DefaultLineString( line.getId(), line.getCoordinateSystem(), line.getPrecision(), points );
+    }
+
+    private static Polygon simplify( Polygon polygon, double sqTolerance ) {
+        if ( !( polygon.getExteriorRing() instanceof LinearRing ) ) {
+            return polygon;
+        }
+        LinearRing exterior = (LinearRing) polygon.getExteriorRing();
+        Ring simplifiedExterior = simplify( exterior, sqTolerance );
+        boolean changed = simplifiedExterior != exterior;
+        List<Ring> interiors = polygon.getInteriorRings();
+        List<Ring> simplifiedInteriors = new ArrayList<Ring>( interiors == null ? 0 : interiors.size() );
+        if ( interiors != null ) {
+            for ( Ring interior : interiors ) {
+                if ( !( interior instanceof LinearRing ) ) {
+                    return polygon;
+                }
+                Ring simplified = simplify( (LinearRing) interior, sqTolerance );
+                changed |= simplified != interior;
+                simplifiedInteriors.add( simplified );
+            }
+        }
+        if ( !changed ) {
+            return polygon;
+        }
+        return new DefaultPolygon( polygon.getId(), polygon.getCoordinateSystem(), polygon.getPrecision(),
+                                   simplifiedExterior, simplifiedInteriors );
+    }
+
+    private static Ring simplify( LinearRing ring, double sqTolerance ) {
+        Points points = simplify( ring.getControlPoints(), sqTolerance, 4, ring.getCoordinateSystem() );
+        if ( points == null ) {
+            return ring;
+        }
+        return new DefaultLinearRing( ring.getId(), ring.getCoordinateSystem(), ring.getPrecision(), points );
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Geometry simplify( MultiGeometry<?> multi, double tolerance ) {
+        List<Geometry> members = new ArrayList<Geometry>( multi.size() );
+        boolean changed = false;
+        for ( Geometry member : multi ) {
+            Geometry simplified = simplify( member, tolerance );
+            changed |= simplified != member;
+            members.add( simplified );
+        }
+        if ( !changed ) {
+            return multi;
+        }
+        String id = multi.getId();
+        ICRS crs = multi.getCoordinateSystem();
+        switch ( multi.getMultiGeometryType() ) {
+        case MULTI_LINE_STRING:
+            return new DefaultMultiLineString( id, crs, multi.getPrecision(), (List<LineString>) (List<?>) members );
+        case MULTI_CURVE:
+            return new DefaultMultiCurve( id, crs, multi.getPrecision(), (List<Curve>) (List<?>) members );
+        case MULTI_POLYGON:
+            return new DefaultMultiPolygon( id, crs, multi.getPrecision(), (List<Polygon>) (List<?>) members );
+        case MULTI_SURFACE:
+            return new DefaultMultiSurface( id, crs, multi.getPrecision(), (List<Surface>) (List<?>) members );
+        case MULTI_GEOMETRY:
+            return new DefaultMultiGeometry<Geometry>( id, crs, multi.getPrecision(), members );
+        default:
+            return multi;
+        }
+    }
+
+    /**
+     * @return the remaining points, or <code>null</code> if no point has been dropped (or too few would remain)
+     */
+    private static Points simplify( Points points, double sqTolerance, int minPoints, ICRS crs ) {
+        int n = points.size();
+        if ( n <= minPoints ) {
+            return null;
+        }
+        int dim = points.getDimension();
+        double[] kept = new double[n * dim];
+        int numKept = 0;
+        double lastX = 0;
+        double lastY = 0;
+        for ( int i = 0; i < n; i++ ) {
+            double x = points.getX( i );
+            double y = points.getY( i );
+            if ( i > 0 && i < n - 1 ) {
+                double dx = x - lastX;
+                double dy = y - lastY;
+                if ( dx * dx + dy * dy < sqTolerance ) {
+                    continue;
+                }
+            }
+            int offset = numKept * dim;
+            kept[offset] = x;
+            kept[offset + 1] = y;
+            for ( int k = 2; k < dim; k++ ) {
+                kept[offset + k] = points.getOrdinate( i, k );
+            }
+            numKept++;
+            lastX = x;
+            lastY = y;
+        }
+        if ( numKept == n || numKept < minPoints ) {
+            return null;
+        }
+        double[] coords = new double[numKept * dim];
+        System.arraycopy( kept, 0, coords, 0, coords.length );
+        return new PackedPoints( crs, coords, dim );
+    }
+}
@@ -0,0 +1,145 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.geometry.io;
+
+import static java.util.Arrays.copyOf;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.persistence.CRSManager;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.standard.AbstractDefaultGeometry;
+import org.deegree.geometry.standard.primitive.DefaultPoint;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.io.ByteOrderValues;
+import org.locationtech.jts.io.ParseException;
+
+/**
+ * Tests that {@link WKBReader} and {@link WKBWriter} produce the same results as the JTS based WKB encoding.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class WKBReaderWriterTest {
+
+    private static final String[] WKT = { "POINT (1.5 2.5)", "POINT (1 2 3)", "LINESTRING (0 0, 10 0, 10 10)",
+                                         "LINESTRING (0 0 1, 10 0 2, 10 10 3)",
+                                         "POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 4 2, 4 4, 2 4, 2 2))",
+                                         "MULTIPOINT ((0 0), (1 1))",
+                                         "MULTILINESTRING ((0 0, 1 1), (2 2, 3 3, 4 4))",
+                                         "MULTIPOLYGON (((0 0, 1 0, 1 1, 0 0)), ((5 5, 6 5, 6 6, 5 5)))",
+                                         "GEOMETRYCOLLECTION (POINT (1 1), LINESTRING (0 0, 1 1))" };
+
+    private static final AbstractDefaultGeometry defaultGeom = new DefaultPoint( null, null, null,
+                                                                                 new double[] { 0.0, 0.0 } );
+
+    private ICRS crs;
+
+    @Before
+    public void setUp() {
+        crs = CRSManager.getCRSRef( "EPSG:4326" );
+    }
+
+    @Test
+    public void testWriteMatchesJTS()
+                            throws ParseException {
+        for ( String wkt : WKT ) {
+            Geometry geom = new WKTReader( crs ).read( wkt );
+            int dim = geom.getCoordinateDimension();
+            byte[] expected = new org.locationtech.jts.io.WKBWriter( dim ).write( jts( geom ) );
+            assertArrayEquals( wkt, expected, WKBWriter.write( geom ) );
+        }
+    }
+
+    @Test
+    public void testReadMatchesJTS()
+                            throws ParseException {
+        for ( String wkt : WKT ) {
+            Geometry geom = new WKTReader( crs ).read( wkt );
+            org.locationtech.jts.geom.Geometry jtsGeom = jts( geom );
+            int dim = geom.getCoordinateDimension();
+            jtsGeom.setSRID( 4326 );
+            int littleEndian = ByteOrderValues.LITTLE_ENDIAN;
+            byte[][] encodings = { new org.locationtech.jts.io.WKBWriter( dim ).write( jtsGeom ),
+                                  new org.locationtech.jts.io.WKBWriter( dim, littleEndian ).write( jtsGeom ),
+                                  new org.locationtech.jts.io.WKBWriter( dim, true ).write( jtsGeom ) };
+            for ( byte[] wkb : encodings ) {
+                Geometry expected = defaultGeom.createFromJTS( new org.locationtech.jts.io.WKBReader().read( wkb ),
+                                                               crs );
+                Geometry actual = WKBReader.read( wkb, crs );
+                assertEquals( wkt, expected.getClass(), actual.getClass() );
+                assertEquals( wkt, expected.getCoordinateDimension(), actual.getCoordinateDimension() );
+                assertTrue( wkt, jts( expected ).equalsExact( jts( actual ) ) );
+                assertEquals( crs, actual.getCoordinateSystem() );
+            }
+        }
+    }
+
+    @Test
+    public void testReadEmpty()
+                            throws ParseException {
+        Geometry geom = new WKTReader( crs ).read( "MULTIPOINT ((0 0))" );
+        byte[] wkb = WKBWriter.write( geom );
+        // patch number of members to zero
+        wkb[5] = wkb[6] = wkb[7] = wkb[8] = 0;
+        assertNull( WKBReader.read( copyOf( wkb, 9 ), crs ) );
+    }
+
+    @Test(expected = ParseException.class)
+    public void testReadTruncated()
+                            throws ParseException {
+        Geometry geom = new WKTReader( crs ).read( "LINESTRING (0 0, 10 0, 10 10)" );
+        byte[] wkb = WKBWriter.write( geom );
+        WKBReader.read( copyOf( wkb, wkb.length - 4 ), crs );
+    }
+
+    @Test(expected = ParseException.class)
+    public void testReadTruncatedSrid()
+                            throws ParseException {
+        // EWKB point header (little endian, SRID flag set) followed by only two bytes of the SRID
+        byte[] wkb = { 1, 1, 0, 0, 0x20, (byte) 0xe6, 0x10 };
+        WKBReader.read( wkb, crs );
+    }
+
+    private static org.locationtech.jts.geom.Geometry jts( Geometry geom ) {
+        return ( (AbstractDefaultGeometry) geom ).getJTSGeometry();
+    }
+}
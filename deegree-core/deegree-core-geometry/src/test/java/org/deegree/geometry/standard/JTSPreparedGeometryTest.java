@@ -0,0 +1,109 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.geometry.standard;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.deegree.commons.uom.Measure;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.persistence.CRSManager;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.primitive.LinearRing;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that the predicates of {@link JTSPreparedGeometry} give the same results as the ones of {@link Geometry}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class JTSPreparedGeometryTest {
+
+    private static final GeometryFactory fac = new GeometryFactory();
+
+    private final List<Geometry> geometries = new ArrayList<Geometry>();
+
+    private ICRS crs;
+
+    @Before
+    public void setUp() {
+        crs = CRSManager.getCRSRef( "EPSG:4326" );
+        geometries.add( polygon( 0, 0, 10, 0, 10, 10, 0, 10, 0, 0 ) );
+        geometries.add( polygon( 0, 0, 10, 0, 5, 8, 0, 0 ) );
+        geometries.add( polygon( 2, 2, 4, 2, 4, 4, 2, 4, 2, 2 ) );
+        geometries.add( polygon( 10, 0, 20, 0, 20, 10, 10, 10, 10, 0 ) );
+        geometries.add( polygon( 30, 30, 40, 30, 40, 40, 30, 30 ) );
+        geometries.add( fac.createPoint( null, 5, 5, crs ) );
+        geometries.add( fac.createPoint( null, 10, 5, crs ) );
+        geometries.add( fac.createPoint( null, 50, 50, crs ) );
+        geometries.add( fac.createLineString( null, crs, new PackedPoints( crs, new double[] { -5, 5, 15, 5 }, 2 ) ) );
+        geometries.add( fac.createLineString( null, crs, new PackedPoints( crs, new double[] { 1, 1, 3, 3 }, 2 ) ) );
+        geometries.add( fac.createEnvelope( 5, 5, 15, 15, crs ) );
+    }
+
+    private Polygon polygon( double... ordinates ) {
+        LinearRing ring = fac.createLinearRing( null, crs, new PackedPoints( crs, ordinates, 2 ) );
+        return fac.createPolygon( null, crs, ring, null );
+    }
+
+    @Test
+    public void testPredicates() {
+        Measure distance = new Measure( "3", null );
+        for ( Geometry literal : geometries ) {
+            JTSPreparedGeometry prepared = JTSPreparedGeometry.prepare( literal );
+            for ( Geometry g : geometries ) {
+                String msg = literal + " / " + g;
+                assertEquals( msg, literal.intersects( g ), prepared.intersects( g ) );
+                assertEquals( msg, literal.isDisjoint( g ), prepared.isDisjoint( g ) );
+                assertEquals( msg, literal.touches( g ), prepared.touches( g ) );
+                assertEquals( msg, literal.overlaps( g ), prepared.overlaps( g ) );
+                assertEquals( msg, literal.crosses( g ), prepared.crosses( g ) );
+                assertEquals( msg, literal.contains( g ), prepared.contains( g ) );
+                assertEquals( msg, literal.isWithin( g ), prepared.isWithin( g ) );
+                assertEquals( msg, literal.isWithinDistance( g, distance ), prepared.isWithinDistance( g, distance ) );
+            }
+        }
+    }
+
+}
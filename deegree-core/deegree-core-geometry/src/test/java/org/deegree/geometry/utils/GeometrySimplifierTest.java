@@ -0,0 +1,113 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.geometry.utils;
+
+import static org.deegree.geometry.utils.GeometrySimplifier.simplify;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.io.WKTReader;
+import org.deegree.geometry.multi.MultiPolygon;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Polygon;
+import org.junit.Test;
+
+/**
+ * Tests for {@link GeometrySimplifier}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class GeometrySimplifierTest {
+
+    private final WKTReader reader = new WKTReader( null );
+
+    @Test
+    public void testLineString()
+                            throws Exception {
+        Geometry line = reader.read( "LINESTRING (0 0, 0.1 0, 0.2 0, 1 0, 1.05 0, 2 0, 2.1 0)" );
+        LineString simplified = (LineString) simplify( line, 0.5 );
+        assertArrayEquals( new double[] { 0, 0, 1, 0, 2, 0, 2.1, 0 }, simplified.getControlPoints().getAsArray(),
+                           0.0 );
+    }
+
+    @Test
+    public void testNothingToDrop()
+                            throws Exception {
+        Geometry line = reader.read( "LINESTRING (0 0, 1 0, 2 0)" );
+        assertSame( line, simplify( line, 0.5 ) );
+        Geometry point = reader.read( "POINT (0 0)" );
+        assertSame( point, simplify( point, 100 ) );
+        assertSame( line, simplify( line, 0 ) );
+    }
+
+    @Test
+    public void testSmallRingsAreKept()
+                            throws Exception {
+        Geometry polygon = reader.read( "POLYGON ((0 0, 10 0, 10 0.1, 10 10, 0 10, 0 0), "
+                                        + "(1 1, 1.1 1, 1.1 1.1, 1 1.1, 1 1))" );
+        Polygon simplified = (Polygon) simplify( polygon, 1 );
+        assertEquals( 5, simplified.getExteriorRing().getControlPoints().size() );
+        assertSame( ( (Polygon) polygon ).getInteriorRings().get( 0 ), simplified.getInteriorRings().get( 0 ) );
+    }
+
+    @Test
+    public void testMultiPolygon()
+                            throws Exception {
+        Geometry multi = reader.read( "MULTIPOLYGON (((0 0, 10 0, 10 0.1, 10 10, 0 10, 0 0)), "
+                                      + "((20 20, 21 20, 21 21, 20 20)))" );
+        MultiPolygon simplified = (MultiPolygon) simplify( multi, 1 );
+        assertEquals( 2, simplified.size() );
+        assertEquals( 5, simplified.get( 0 ).getExteriorRing().getControlPoints().size() );
+        assertSame( ( (MultiPolygon) multi ).get( 1 ), simplified.get( 1 ) );
+    }
+
+    @Test
+    public void testKeepsEndPoints()
+                            throws Exception {
+        LineString line = (LineString) reader.read( "LINESTRING (0 0, 0.1 0.1, 0.2 0.2)" );
+        LineString simplified = (LineString) simplify( line, 1 );
+        Point start = simplified.getStartPoint();
+        Point end = simplified.getEndPoint();
+        assertEquals( 2, simplified.getControlPoints().size() );
+        assertEquals( 0.0, start.get0(), 0.0 );
+        assertEquals( 0.2, end.get0(), 0.0 );
+    }
+}
@@ -0,0 +1,71 @@
+//$HeadURL: svn+ssh://aschmitz@wald.intevation.org/deegree/base/trunk/resources/eclipse/files_template.xml $
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.layer;
+
+import org.deegree.rendering.r2d.context.RenderContext;
+
+/**
+ * {@link LayerData} that can retrieve its data independently of (and before) rendering it.
+ * <p>
+ * This allows map services to fetch the data of all requested layers concurrently, while still painting them
+ * sequentially and in layer order. {@link #fetch()} may be invoked from a different thread than
+ * {@link #render(RenderContext)}, but never concurrently to it. Implementations must still work if
+ * {@link #render(RenderContext)} is called without a preceding {@link #fetch()}.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public interface PrefetchableLayerData extends LayerData {
+
+    /**
+     * Retrieves the data that will be painted by {@link #render(RenderContext)} (e.g. queries the feature store or
+     * fetches the remote map).
+     * 
+     * @throws InterruptedException
+     *             if the fetching thread has been interrupted (e.g. because the request timed out)
+     */
+    void fetch()
+                            throws InterruptedException;
+
+    /**
+     * Releases any resources held by fetched data that is not going to be rendered (e.g. open feature streams). Must
+     * be safe to call more than once and concurrently to {@link #fetch()}.
+     */
+    void discard();
+
+}
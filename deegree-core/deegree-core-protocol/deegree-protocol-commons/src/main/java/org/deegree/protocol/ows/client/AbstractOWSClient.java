@@ -160,14 +160,16 @@ public abstract class AbstractOWSClient<T extends OWSCapabilitiesAdapter> {
 
         if ( shouldUseGet( capaUrl ) ) {
             OwsHttpResponse response = httpClient.doGet( capaUrl, null, null );
-            response.assertHttpStatus200();
-            XMLStreamReader responseAsXMLStream = response.getAsXMLStream();
-
             try {
-                XMLAdapter xmlAdapter = new XMLAdapter( responseAsXMLStream );
-                initCapabilities( xmlAdapter );
+                response.assertHttpStatus200();
+                XMLStreamReader responseAsXMLStream = response.getAsXMLStream();
+                try {
+                    XMLAdapter xmlAdapter = new XMLAdapter( responseAsXMLStream );
+                    initCapabilities( xmlAdapter );
+                } finally {
+                    responseAsXMLStream.close();
+                }
             } finally {
-                responseAsXMLStream.close();
                 response.close();
             }
         } else {
@@ -244,6 +246,13 @@ public abstract class AbstractOWSClient<T extends OWSCapabilitiesAdapter> {
         return metadata;
     }
 
+    /**
+     * Releases the resources (e.g. pooled connections) of the HTTP client. The client must not be used afterwards.
+     */
+    public void close() {
+        httpClient.close();
+    }
+
     protected boolean isOperationSupported( String operationName ) {
         if ( metadata == null ) {
             return false;
@@ -90,4 +90,9 @@ public interface OwsHttpClient {
      */
     OwsHttpResponse doPost( URL endPoint, String contentType, StreamBufferStore body, Map<String, String> headers )
                             throws IOException;
+
+    /**
+     * Releases the resources (e.g. pooled connections) held by this client. The client must not be used afterwards.
+     */
+    void close();
 }
@@ -35,30 +35,45 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.protocol.ows.http;
 
+import static java.lang.System.currentTimeMillis;
 import static org.deegree.commons.utils.net.HttpUtils.handleProxies;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.net.UnknownHostException;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.http.HttpResponse;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.params.ClientPNames;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
 import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
 import org.deegree.commons.utils.io.StreamBufferStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Default implementation of {@link OwsHttpClient}.
+ * <p>
+ * All requests of an instance share one pool of keep-alive connections, so an instance should be created once per
+ * remote service and be reused for all requests to it. {@link #close()} releases the pooled connections.
+ * </p>
  * 
  * @author <a href="mailto:schneider@occamlabs.de">Markus Schneider</a>
  * @author last edited by: $Author$
@@ -69,10 +84,32 @@ public class OwsHttpClientImpl implements OwsHttpClient {
 
     private static final Logger LOG = LoggerFactory.getLogger( OwsHttpClientImpl.class );
 
+    /**
+     * System property for the default maximum number of pooled connections of a client (default: 50).
+     */
+    public static final String MAX_CONNECTIONS_PROPERTY = "deegree.ows.http.maxConnections";
+
+    /**
+     * System property for the default maximum number of pooled connections to a single host (default: 20).
+     */
+    public static final String MAX_CONNECTIONS_PER_HOST_PROPERTY = "deegree.ows.http.maxConnectionsPerHost";
+
+    /**
+     * System property for the time (in milliseconds) idle connections are kept open if the server does not send a
+     * keep-alive timeout (default: 30000).
+     */
+    public static final String KEEP_ALIVE_PROPERTY = "deegree.ows.http.keepAlive";
+
     private static final int DEFAULT_CONNECTION_TIMEOUT_MILLIS = 5 * 1000;
 
     private static final int DEFAULT_READ_TIMEOUT_MILLIS = 30 * 1000;
 
+    private static final int DEFAULT_MAX_CONNECTIONS = 50;
+
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+
+    private static final int DEFAULT_KEEP_ALIVE_MILLIS = 30 * 1000;
+
     private final String user;
 
     private final String pass;
@@ -81,6 +118,15 @@ public class OwsHttpClientImpl implements OwsHttpClient {
 
     private final int readTimeoutMillis;
 
+    private final PoolingClientConnectionManager connManager;
+
+    // proxy and credentials depend on the host, so there is one client per scheme/host/port (all sharing the pool)
+    private final Map<String, DefaultHttpClient> clients = new ConcurrentHashMap<String, DefaultHttpClient>();
+
+    private final AtomicLong numRequests = new AtomicLong();
+
+    private final AtomicLong totalLatencyMillis = new AtomicLong();
+
     /**
      * Creates a new {@link OwsHttpClientImpl} instance.
      * 
@@ -92,9 +138,15 @@ public class OwsHttpClientImpl implements OwsHttpClient {
      *            user name for http basic authentication, can be <code>null</code> (no authentication)
      * @param httpBasicPass
      *            password for http basic authentication, can be <code>null</code> (no authentication)
+     * @param maxConnections
+     *            maximum number of pooled connections, if zero or negative, the value of
+     *            {@link #MAX_CONNECTIONS_PROPERTY} is used
+     * @param maxConnectionsPerHost
+     *            maximum number of pooled connections to a single host, if zero or negative, the value of
+     *            {@link #MAX_CONNECTIONS_PER_HOST_PROPERTY} is used
      */
     public OwsHttpClientImpl( int connectionTimeoutMillis, int readTimeoutMillis, String httpBasicUser,
-                              String httpBasicPass ) {
+                              String httpBasicPass, int maxConnections, int maxConnectionsPerHost ) {
         if ( connectionTimeoutMillis > 0 ) {
             this.connectionTimeoutMillis = connectionTimeoutMillis;
         } else {
@@ -107,6 +159,33 @@ public class OwsHttpClientImpl implements OwsHttpClient {
         }
         this.user = httpBasicUser;
         this.pass = httpBasicPass;
+        if ( maxConnections <= 0 ) {
+            maxConnections = Integer.getInteger( MAX_CONNECTIONS_PROPERTY, DEFAULT_MAX_CONNECTIONS );
+        }
+        if ( maxConnectionsPerHost <= 0 ) {
+            maxConnectionsPerHost = Integer.getInteger( MAX_CONNECTIONS_PER_HOST_PROPERTY,
+                                                        DEFAULT_MAX_CONNECTIONS_PER_HOST );
+        }
+        connManager = new PoolingClientConnectionManager();
+        connManager.setMaxTotal( maxConnections );
+        connManager.setDefaultMaxPerRoute( Math.min( maxConnections, maxConnectionsPerHost ) );
+    }
+
+    /**
+     * Creates a new {@link OwsHttpClientImpl} instance with the default connection pool limits.
+     * 
+     * @param connectionTimeoutMillis
+     *            timeout for establishing the connection, not applied if zero or negative
+     * @param readTimeoutMillis
+     *            timeout for reading from the connection, not applied if zero or negative
+     * @param httpBasicUser
+     *            user name for http basic authentication, can be <code>null</code> (no authentication)
+     * @param httpBasicPass
+     *            password for http basic authentication, can be <code>null</code> (no authentication)
+     */
+    public OwsHttpClientImpl( int connectionTimeoutMillis, int readTimeoutMillis, String httpBasicUser,
+                              String httpBasicPass ) {
+        this( connectionTimeoutMillis, readTimeoutMillis, httpBasicUser, httpBasicPass, -1, -1 );
     }
 
     /**
@@ -141,12 +220,15 @@ public class OwsHttpClientImpl implements OwsHttpClient {
 
             query = new URI( sb.toString() );
             HttpGet httpGet = new HttpGet( query );
-            DefaultHttpClient httpClient = getInitializedHttpClient( endPoint );
             LOG.debug( "Performing GET request: " + query );
-            HttpResponse httpResponse = httpClient.execute( httpGet );
-            response = new OwsHttpResponseImpl( httpResponse, httpClient.getConnectionManager(), sb.toString() );
+            HttpResponse httpResponse = execute( endPoint, httpGet );
+            response = new OwsHttpResponseImpl( httpResponse, httpGet, sb.toString() );
+        } catch ( SocketTimeoutException e ) {
+            throw e;
+        } catch ( UnknownHostException e ) {
+            throw e;
         } catch ( Throwable e ) {
-            e.printStackTrace();
+            LOG.trace( "Stack trace:", e );
             String msg = "Error performing GET request on '" + query + "': " + e.getMessage();
             throw new IOException( msg );
         }
@@ -160,14 +242,17 @@ public class OwsHttpClientImpl implements OwsHttpClient {
         OwsHttpResponse response = null;
         try {
             HttpPost httpPost = new HttpPost( endPoint.toURI() );
-            DefaultHttpClient httpClient = getInitializedHttpClient( endPoint );
             LOG.debug( "Performing POST request on " + endPoint );
             LOG.debug( "post size: " + body.size() );
             InputStreamEntity entity = new InputStreamEntity( body.getInputStream(), (long) body.size() );
             entity.setContentType( contentType );
             httpPost.setEntity( entity );
-            HttpResponse httpResponse = httpClient.execute( httpPost );
-            response = new OwsHttpResponseImpl( httpResponse, httpClient.getConnectionManager(), endPoint.toString() );
+            HttpResponse httpResponse = execute( endPoint, httpPost );
+            response = new OwsHttpResponseImpl( httpResponse, httpPost, endPoint.toString() );
+        } catch ( SocketTimeoutException e ) {
+            throw e;
+        } catch ( UnknownHostException e ) {
+            throw e;
         } catch ( Throwable e ) {
             String msg = "Error performing POST request on '" + endPoint + "': " + e.getMessage();
             throw new IOException( msg );
@@ -175,9 +260,73 @@ public class OwsHttpClientImpl implements OwsHttpClient {
         return response;
     }
 
+    @Override
+    public void close() {
+        if ( getNumRequests() > 0 ) {
+            LOG.info( "Closing HTTP client after {} requests (average latency {} ms), connection pool: {}",
+                      new Object[] { getNumRequests(), getAverageLatencyMillis(), getPoolStats() } );
+        }
+        connManager.shutdown();
+        clients.clear();
+    }
+
+    /**
+     * Returns the current statistics of the connection pool.
+     * 
+     * @return statistics of the connection pool (leased, pending and available connections), never <code>null</code>
+     */
+    public PoolStats getPoolStats() {
+        return connManager.getTotalStats();
+    }
+
+    /**
+     * Returns the number of requests that have been performed successfully.
+     * 
+     * @return number of performed requests
+     */
+    public long getNumRequests() {
+        return numRequests.get();
+    }
+
+    /**
+     * Returns the average time the remote services took to respond (until the response header had been received).
+     * 
+     * @return average latency in milliseconds, 0 if no request has been performed yet
+     */
+    public long getAverageLatencyMillis() {
+        long num = numRequests.get();
+        return num == 0 ? 0 : totalLatencyMillis.get() / num;
+    }
+
+    private HttpResponse execute( URL url, HttpRequestBase request )
+                            throws IOException {
+        long start = currentTimeMillis();
+        HttpResponse response = getHttpClient( url ).execute( request );
+        long latency = currentTimeMillis() - start;
+        numRequests.incrementAndGet();
+        totalLatencyMillis.addAndGet( latency );
+        if ( LOG.isDebugEnabled() ) {
+            LOG.debug( "Response received after {} ms (average {} ms), connection pool: {}",
+                       new Object[] { latency, getAverageLatencyMillis(), getPoolStats() } );
+        }
+        return response;
+    }
+
+    private DefaultHttpClient getHttpClient( URL url ) {
+        String key = url.getProtocol().toLowerCase() + "://" + url.getHost() + ":" + url.getPort();
+        DefaultHttpClient client = clients.get( key );
+        if ( client == null ) {
+            // a concurrently created client for the same host is equivalent, so the last one just wins
+            client = getInitializedHttpClient( url );
+            clients.put( key, client );
+        }
+        return client;
+    }
+
     private DefaultHttpClient getInitializedHttpClient( URL url ) {
-        DefaultHttpClient client = new DefaultHttpClient();
+        DefaultHttpClient client = new DefaultHttpClient( connManager );
         setTimeouts( client );
+        setKeepAlive( client );
         setProxies( url, client );
         setCredentials( url, client );
         return client;
@@ -192,6 +341,22 @@ public class OwsHttpClientImpl implements OwsHttpClient {
     private void setTimeouts( DefaultHttpClient client ) {
         HttpConnectionParams.setConnectionTimeout( client.getParams(), connectionTimeoutMillis );
         HttpConnectionParams.setSoTimeout( client.getParams(), readTimeoutMillis );
+        // don't block forever if all pooled connections are leased, wait as long as for establishing a connection
+        client.getParams().setLongParameter( ClientPNames.CONN_MANAGER_TIMEOUT, connectionTimeoutMillis );
+    }
+
+    private void setKeepAlive( DefaultHttpClient client ) {
+        final long defaultKeepAlive = Integer.getInteger( KEEP_ALIVE_PROPERTY, DEFAULT_KEEP_ALIVE_MILLIS );
+        client.setKeepAliveStrategy( new DefaultConnectionKeepAliveStrategy() {
+            @Override
+            public long getKeepAliveDuration( HttpResponse response, HttpContext context ) {
+                long keepAlive = super.getKeepAliveDuration( response, context );
+                if ( keepAlive == -1 ) {
+                    keepAlive = defaultKeepAlive;
+                }
+                return keepAlive;
+            }
+        } );
     }
 
     private void setCredentials( URL url, DefaultHttpClient client ) {
@@ -65,6 +65,11 @@ public class OwsHttpClientMock implements OwsHttpClient {
         return response;
     }
 
+    @Override
+    public void close() {
+        // nothing to do
+    }
+
     /**
      * Sets the {@link OwsHttpResponse} that will be returned by the next call to {@link #doGet(URL, Map, Map)} or
      * {@link #doPost(URL, String, StreamBufferStore, Map)}.
@@ -52,7 +52,7 @@ import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
-import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.deegree.commons.ows.exception.OWSException;
 import org.deegree.protocol.ows.exception.OWSExceptionReport;
 import org.slf4j.Logger;
@@ -74,7 +74,7 @@ public class OwsHttpResponseImpl implements OwsHttpResponse {
 
     private final HttpResponse httpResponse;
 
-    private final ClientConnectionManager connManager;
+    private final HttpRequestBase request;
 
     private final String url;
 
@@ -84,15 +84,17 @@ public class OwsHttpResponseImpl implements OwsHttpResponse {
      * Creates a new {@link OwsHttpResponseImpl} instance.
      * 
      * @param httpResponse
-     * @param httpClient
+     * @param request
+     *            request that produced the response, aborted if the connection cannot be released cleanly, must not
+     *            be <code>null</code>
      * @param url
      * @throws IllegalStateException
      * @throws IOException
      */
-    OwsHttpResponseImpl( HttpResponse httpResponse, ClientConnectionManager connManager, String url )
+    OwsHttpResponseImpl( HttpResponse httpResponse, HttpRequestBase request, String url )
                             throws IllegalStateException, IOException {
         this.httpResponse = httpResponse;
-        this.connManager = connManager;
+        this.request = request;
         this.url = url;
         HttpEntity entity = httpResponse.getEntity();
         if ( entity == null ) {
@@ -147,6 +149,9 @@ public class OwsHttpResponseImpl implements OwsHttpResponse {
                 throw e;
             } catch ( Exception e ) {
                 throwHttpStatusException( statusLine );
+            } finally {
+                // the caller never gets hold of a failed response, so the connection has to be released here
+                close();
             }
             throwHttpStatusException( statusLine );
         }
@@ -176,6 +181,12 @@ public class OwsHttpResponseImpl implements OwsHttpResponse {
 
     @Override
     public void close() {
-        connManager.shutdown();
+        try {
+            // consumes the remaining content, so the connection can be reused by the pool
+            is.close();
+        } catch ( IOException e ) {
+            LOG.debug( "Error releasing connection, aborting request: {}", e.getMessage() );
+            request.abort();
+        }
     }
 }
@@ -0,0 +1,213 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.protocol.ows.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+
+import org.deegree.protocol.ows.exception.OWSExceptionReport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests for {@link OwsHttpClientImpl} against a local HTTP server.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class OwsHttpClientImplTest {
+
+    private HttpServer server;
+
+    private URL okUrl;
+
+    private URL errorUrl;
+
+    private OwsHttpClientImpl client;
+
+    @Before
+    public void setup()
+                            throws IOException {
+        server = HttpServer.create( new InetSocketAddress( "localhost", 0 ), 0 );
+        server.createContext( "/ok", new FixedResponseHandler( 200, "<ok/>" ) );
+        server.createContext( "/error", new FixedResponseHandler( 500, "Internal error" ) );
+        server.start();
+        int port = server.getAddress().getPort();
+        okUrl = new URL( "http://localhost:" + port + "/ok" );
+        errorUrl = new URL( "http://localhost:" + port + "/error" );
+        client = new OwsHttpClientImpl( 500, 5000, null, null, 1, 1 );
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        server.stop( 0 );
+    }
+
+    @Test
+    public void testConnectionIsReused()
+                            throws IOException {
+        for ( int i = 0; i < 3; i++ ) {
+            OwsHttpResponse response = client.doGet( okUrl, null, null );
+            assertEquals( "<ok/>", readAndClose( response ) );
+            assertEquals( 0, client.getPoolStats().getLeased() );
+        }
+        assertEquals( 3, client.getNumRequests() );
+        assertEquals( 1, client.getPoolStats().getAvailable() );
+    }
+
+    @Test
+    public void testFailedStatusReleasesConnection()
+                            throws IOException {
+        OwsHttpResponse response = client.doGet( errorUrl, null, null );
+        assertEquals( 1, client.getPoolStats().getLeased() );
+        try {
+            response.assertHttpStatus200();
+            fail( "Expected an OWSExceptionReport for HTTP status 500." );
+        } catch ( OWSExceptionReport e ) {
+            // expected
+        }
+        assertEquals( 0, client.getPoolStats().getLeased() );
+        // the only pooled connection is available again
+        response = client.doGet( okUrl, null, null );
+        assertEquals( "<ok/>", readAndClose( response ) );
+    }
+
+    @Test(expected = IOException.class)
+    public void testWaitingForLeasedConnectionTimesOut()
+                            throws IOException {
+        OwsHttpResponse leased = client.doGet( okUrl, null, null );
+        try {
+            client.doGet( okUrl, null, null );
+        } finally {
+            leased.close();
+        }
+    }
+
+    @Test
+    public void testMaxConnectionsPerHost()
+                            throws IOException {
+        OwsHttpClientImpl limitedClient = new OwsHttpClientImpl( 500, 5000, null, null, 10, 2 );
+        try {
+            OwsHttpResponse first = limitedClient.doGet( okUrl, null, null );
+            OwsHttpResponse second = limitedClient.doGet( okUrl, null, null );
+            try {
+                limitedClient.doGet( okUrl, null, null );
+                fail( "Expected an IOException, as both connections to the host are leased." );
+            } catch ( IOException e ) {
+                // expected
+            }
+            readAndClose( first );
+            // the released connection is reused
+            OwsHttpResponse third = limitedClient.doGet( okUrl, null, null );
+            assertEquals( 2, limitedClient.getPoolStats().getLeased() );
+            readAndClose( second );
+            readAndClose( third );
+            assertEquals( 0, limitedClient.getPoolStats().getLeased() );
+            assertEquals( 2, limitedClient.getPoolStats().getAvailable() );
+        } finally {
+            limitedClient.close();
+        }
+    }
+
+    @Test
+    public void testDefaultPoolLimits()
+                            throws IOException {
+        OwsHttpClientImpl defaultClient = new OwsHttpClientImpl( 500, 5000, null, null );
+        try {
+            OwsHttpResponse first = defaultClient.doGet( okUrl, null, null );
+            OwsHttpResponse second = defaultClient.doGet( okUrl, null, null );
+            assertEquals( 2, defaultClient.getPoolStats().getLeased() );
+            readAndClose( first );
+            readAndClose( second );
+            assertEquals( 0, defaultClient.getPoolStats().getLeased() );
+        } finally {
+            defaultClient.close();
+        }
+    }
+
+    private static String readAndClose( OwsHttpResponse response )
+                            throws IOException {
+        InputStream is = response.getAsBinaryStream();
+        try {
+            StringBuilder sb = new StringBuilder();
+            int b;
+            while ( ( b = is.read() ) != -1 ) {
+                sb.append( (char) b );
+            }
+            return sb.toString();
+        } finally {
+            is.close();
+        }
+    }
+
+    private static class FixedResponseHandler implements HttpHandler {
+
+        private final int status;
+
+        private final byte[] body;
+
+        FixedResponseHandler( int status, String body ) {
+            this.status = status;
+            this.body = body.getBytes();
+        }
+
+        @Override
+        public void handle( HttpExchange exchange )
+                                throws IOException {
+            exchange.getResponseHeaders().set( "Content-Type", "text/plain" );
+            exchange.sendResponseHeaders( status, body.length );
+            OutputStream os = exchange.getResponseBody();
+            try {
+                os.write( body );
+            } finally {
+                os.close();
+            }
+        }
+    }
+}
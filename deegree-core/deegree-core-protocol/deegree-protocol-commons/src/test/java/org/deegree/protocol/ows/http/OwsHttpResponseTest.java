@@ -38,6 +38,7 @@ package org.deegree.protocol.ows.http;
 import static junit.framework.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 
 import java.io.ByteArrayInputStream;
@@ -50,7 +51,7 @@ import javax.xml.stream.XMLStreamReader;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
-import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.deegree.protocol.ows.exception.OWSExceptionReport;
 import org.h2.util.IOUtils;
 import org.junit.Before;
@@ -90,12 +91,14 @@ public class OwsHttpResponseTest {
 
     private OwsHttpResponse scenario4;
 
-    private ClientConnectionManager connManager;
+    private InputStream scenario1Payload;
+
+    private HttpRequestBase request;
 
     @Before
     public void setup()
                             throws Exception {
-        connManager = mock( ClientConnectionManager.class );
+        request = mock( HttpRequestBase.class );
         scenario1 = createScenario1();
         scenario2 = createScenario2();
         scenario3 = createScenario3();
@@ -239,37 +242,38 @@ public class OwsHttpResponseTest {
     @Test
     public void testClose()
                             throws IOException {
-        Mockito.verify( connManager, times( 0 ) ).shutdown();
+        Mockito.verify( scenario1Payload, times( 0 ) ).close();
         scenario1.close();
-        Mockito.verify( connManager, times( 1 ) ).shutdown();
+        Mockito.verify( scenario1Payload, times( 1 ) ).close();
+        Mockito.verify( request, times( 0 ) ).abort();
     }
 
     private OwsHttpResponse createScenario1()
                             throws Exception {
-        InputStream payload = OwsHttpResponseTest.class.getResourceAsStream( SCENARIO1_RESPONSE );
-        HttpResponse httpResponse = mockHttpResponse( payload, 200 );
-        return new OwsHttpResponseImpl( httpResponse, connManager, "" );
+        scenario1Payload = spy( OwsHttpResponseTest.class.getResourceAsStream( SCENARIO1_RESPONSE ) );
+        HttpResponse httpResponse = mockHttpResponse( scenario1Payload, 200 );
+        return new OwsHttpResponseImpl( httpResponse, request, "" );
     }
 
     private OwsHttpResponse createScenario2()
                             throws Exception {
         InputStream payload = OwsHttpResponseTest.class.getResourceAsStream( SCENARIO2_RESPONSE );
         HttpResponse httpResponse = mockHttpResponse( payload, 200 );
-        return new OwsHttpResponseImpl( httpResponse, connManager, "" );
+        return new OwsHttpResponseImpl( httpResponse, request, "" );
     }
 
     private OwsHttpResponse createScenario3()
                             throws Exception {
         InputStream payload = OwsHttpResponseTest.class.getResourceAsStream( SCENARIO3_RESPONSE );
         HttpResponse httpResponse = mockHttpResponse( payload, 200 );
-        return new OwsHttpResponseImpl( httpResponse, connManager, "" );
+        return new OwsHttpResponseImpl( httpResponse, request, "" );
     }
 
     private OwsHttpResponse createScenario4()
                             throws Exception {
         InputStream payload = new ByteArrayInputStream( new byte[0] );
         HttpResponse httpResponse = mockHttpResponse( payload, 500 );
-        return new OwsHttpResponseImpl( httpResponse, connManager, "" );
+        return new OwsHttpResponseImpl( httpResponse, request, "" );
     }
 
     private HttpResponse mockHttpResponse( InputStream payload, int status )
@@ -39,8 +39,6 @@ package org.deegree.protocol.wms.client;
 import static java.awt.image.BufferedImage.TYPE_4BYTE_ABGR;
 import static java.lang.Math.abs;
 import static org.deegree.commons.ows.exception.OWSException.NO_APPLICABLE_CODE;
-import static org.deegree.commons.proxy.ProxySettings.getHttpProxyPassword;
-import static org.deegree.commons.proxy.ProxySettings.getHttpProxyUser;
 import static org.deegree.commons.utils.ArrayUtils.join;
 import static org.deegree.commons.utils.kvp.KVPUtils.toQueryString;
 import static org.deegree.commons.utils.math.MathUtils.round;
@@ -65,7 +63,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -79,9 +76,9 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 
 import org.apache.axiom.om.OMElement;
+import org.apache.http.Header;
 import org.deegree.commons.concurrent.Executor;
 import org.deegree.commons.ows.exception.OWSException;
-import org.deegree.commons.proxy.ProxySettings;
 import org.deegree.commons.struct.Tree;
 import org.deegree.commons.tom.ows.Version;
 import org.deegree.commons.utils.Pair;
@@ -162,7 +159,32 @@ public class WMSClient extends AbstractOWSClient<WMSCapabilitiesAdapter> {
      */
     public WMSClient( URL url, int connectionTimeout, int requestTimeout, String user, String pass )
                             throws IOException, OWSExceptionReport, XMLStreamException {
-        super( url, new OwsHttpClientImpl( connectionTimeout * 1000, requestTimeout * 1000, user, pass ) );
+        this( url, connectionTimeout, requestTimeout, user, pass, -1, -1 );
+    }
+
+    /**
+     * @param url
+     * @param connectionTimeout
+     *            default is 5 seconds
+     * @param requestTimeout
+     *            default is 60 seconds
+     * @param user
+     *            http basic username
+     * @param pass
+     *            http basic password
+     * @param maxConnections
+     *            maximum number of pooled connections, -1 for the default
+     * @param maxConnectionsPerHost
+     *            maximum number of pooled connections to a single host, -1 for the default
+     * @throws XMLStreamException
+     * @throws OWSExceptionReport
+     * @throws IOException
+     */
+    public WMSClient( URL url, int connectionTimeout, int requestTimeout, String user, String pass,
+                      int maxConnections, int maxConnectionsPerHost ) throws IOException, OWSExceptionReport,
+                            XMLStreamException {
+        super( url, new OwsHttpClientImpl( connectionTimeout * 1000, requestTimeout * 1000, user, pass,
+                                           maxConnections, maxConnectionsPerHost ) );
         this.connectionTimeout = connectionTimeout;
         this.requestTimeout = requestTimeout;
         capaDoc.parseWMSSpecificCapabilities( getOperations() );
@@ -193,9 +215,7 @@ public class WMSClient extends AbstractOWSClient<WMSCapabilitiesAdapter> {
      * @throws OWSExceptionReport
      */
     public WMSClient( URL url ) throws OWSExceptionReport, XMLStreamException, IOException {
-        super( url, null );
-        capaDoc.parseWMSSpecificCapabilities( getOperations() );
-        checkCapabilities();
+        this( url, 5, 60 );
     }
 
     /**
@@ -563,29 +583,24 @@ public class WMSClient extends AbstractOWSClient<WMSCapabilitiesAdapter> {
 
                 URL theUrl = new URL( url );
                 LOG.debug( "Connecting to URL " + theUrl );
-                URLConnection conn = ProxySettings.openURLConnection( theUrl, ProxySettings.getHttpProxyUser( true ),
-                                                                      ProxySettings.getHttpProxyPassword( true ),
-                                                                      httpBasicUser, httpBasicPass );
-                conn.setConnectTimeout( connectionTimeout * 1000 );
-                conn.setReadTimeout( requestTimeout * 1000 );
-                conn.connect();
-                LOG.debug( "Connected." );
-                if ( LOG.isTraceEnabled() ) {
-                    LOG.trace( "Requesting from " + theUrl );
-                    LOG.trace( "Content type is " + conn.getContentType() );
-                    LOG.trace( "Content encoding is " + conn.getContentEncoding() );
-                }
-                if ( conn.getContentType() != null && conn.getContentType().startsWith( format ) ) {
-                    res.first = IMAGE.work( conn.getInputStream() );
-                } else if ( conn.getContentType() != null
-                            && conn.getContentType().startsWith( "application/vnd.ogc.se_xml" ) ) {
-                    res.second = XmlHttpUtils.XML.work( conn.getInputStream() ).toString();
-                } else { // try and find out the hard way
-                    res.first = IMAGE.work( conn.getInputStream() );
-                    if ( res.first == null ) {
-                        conn = theUrl.openConnection();
-                        res.second = XmlHttpUtils.XML.work( conn.getInputStream() ).toString();
+                OwsHttpResponse response = httpClient.doGet( theUrl, null, null );
+                try {
+                    String contentType = getContentType( response );
+                    LOG.trace( "Content type is " + contentType );
+                    if ( contentType != null && contentType.startsWith( format ) ) {
+                        res.first = IMAGE.work( response.getAsBinaryStream() );
+                    } else if ( contentType != null && contentType.startsWith( "application/vnd.ogc.se_xml" ) ) {
+                        res.second = XmlHttpUtils.XML.work( response.getAsBinaryStream() ).toString();
+                    } else { // try and find out the hard way
+                        res.first = IMAGE.work( response.getAsBinaryStream() );
+                        if ( res.first == null ) {
+                            closeQuietly( response );
+                            response = httpClient.doGet( theUrl, null, null );
+                            res.second = XmlHttpUtils.XML.work( response.getAsBinaryStream() ).toString();
+                        }
                     }
+                } finally {
+                    closeQuietly( response );
                 }
 
                 // hack to ensure correct raster transformations. 4byte_abgr seems to be working best with current api
@@ -775,26 +790,29 @@ public class WMSClient extends AbstractOWSClient<WMSCapabilitiesAdapter> {
 
         URL theUrl = new URL( query );
         LOG.debug( "Connecting to URL " + theUrl );
-        URLConnection conn = ProxySettings.openURLConnection( theUrl, getHttpProxyUser( true ),
-                                                              getHttpProxyPassword( true ), httpBasicUser,
-                                                              httpBasicPass );
-        conn.setConnectTimeout( connectionTimeout * 1000 );
-        conn.setReadTimeout( requestTimeout * 1000 );
-        conn.connect();
-        LOG.debug( "Connected." );
-
-        String fld = conn.getHeaderField( "Content-Type" );
+        OwsHttpResponse response = httpClient.doGet( theUrl, null, null );
+
+        String fld = getContentType( response );
         if ( fld != null && !( fld.startsWith( getMap.getFormat() ) || fld.startsWith( "image" ) ) ) {
             XMLInputFactory fac = XMLInputFactory.newInstance();
             try {
-                OWSExceptionReport rep = OWSExceptionReader.parseExceptionReport( fac.createXMLStreamReader( conn.getInputStream() ) );
+                XMLStreamReader xmlStream = fac.createXMLStreamReader( response.getAsBinaryStream() );
+                OWSExceptionReport rep = OWSExceptionReader.parseExceptionReport( xmlStream );
                 throw rep.getExceptions().get( 0 );
             } catch ( Throwable e ) {
                 throw new OWSException( e.getMessage(), e, NO_APPLICABLE_CODE );
+            } finally {
+                closeQuietly( response );
             }
         }
 
-        return conn.getInputStream();
+        // closing the stream releases the connection
+        return response.getAsBinaryStream();
+    }
+
+    private static String getContentType( OwsHttpResponse response ) {
+        Header header = response.getAsHttpResponse().getFirstHeader( "Content-Type" );
+        return header == null ? null : header.getValue();
     }
 
     private boolean axisFlipped( ICRS crs ) {
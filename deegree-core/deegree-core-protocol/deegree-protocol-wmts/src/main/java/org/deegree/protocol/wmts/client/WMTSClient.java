@@ -193,8 +193,7 @@ public class WMTSClient extends AbstractOWSClient<WMTSCapabilitiesAdapter> {
         }
         URL endPoint = getGetUrl( WMTSConstants.WMTSRequestType.GetTile.name() );
         OwsHttpResponse response = httpClient.doGet( endPoint, kvp, null );
-        response.assertHttpStatus200();
-        response.assertNoXmlContentTypeAndExceptionReport();
+        assertSuccessful( response );
         return new GetTileResponse( response );
     }
 
@@ -226,11 +225,33 @@ public class WMTSClient extends AbstractOWSClient<WMTSCapabilitiesAdapter> {
         }
         URL endPoint = getGetUrl( WMTSConstants.WMTSRequestType.GetTile.name() );
         OwsHttpResponse response = httpClient.doGet( endPoint, kvp, null );
-        response.assertHttpStatus200();
-        response.assertNoXmlContentTypeAndExceptionReport();
+        assertSuccessful( response );
         return new GetFeatureInfoResponse( response, request );
     }
 
+    /**
+     * Checks the status and content type of a response that is handed over to the caller on success.
+     * 
+     * @param response
+     *            response to check, closed if the check fails, must not be <code>null</code>
+     * @throws OWSExceptionReport
+     *             if the server replied with an error status or a service exception report
+     * @throws XMLStreamException
+     */
+    private void assertSuccessful( OwsHttpResponse response )
+                            throws OWSExceptionReport, XMLStreamException {
+        boolean successful = false;
+        try {
+            response.assertHttpStatus200();
+            response.assertNoXmlContentTypeAndExceptionReport();
+            successful = true;
+        } finally {
+            if ( !successful ) {
+                closeQuietly( response );
+            }
+        }
+    }
+
     private Map<String, String> buildGetFeatureInfoKvpMap( GetFeatureInfo request ) {
         Map<String, String> kvp = new LinkedHashMap<String, String>();
         kvp.put( "service", "WMTS" );
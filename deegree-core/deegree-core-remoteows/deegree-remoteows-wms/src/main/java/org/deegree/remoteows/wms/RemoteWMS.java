@@ -67,7 +67,7 @@ public class RemoteWMS implements RemoteOWS {
 
     @Override
     public void destroy() {
-        // nothing to do
+        client.close();
     }
 
     @Override
@@ -63,6 +63,8 @@ public class RemoteWmsBuilder implements ResourceBuilder<RemoteOWS> {
 
             int connTimeout = cfg.getConnectionTimeout() == null ? 5 : cfg.getConnectionTimeout();
             int reqTimeout = cfg.getRequestTimeout() == null ? 60 : cfg.getRequestTimeout();
+            int maxConnections = cfg.getMaxConnections() == null ? -1 : cfg.getMaxConnections();
+            int maxConnectionsPerHost = cfg.getMaxConnectionsPerHost() == null ? -1 : cfg.getMaxConnectionsPerHost();
 
             WMSClient client;
 
@@ -74,7 +76,8 @@ public class RemoteWmsBuilder implements ResourceBuilder<RemoteOWS> {
                 user = basic.getUsername();
                 pass = basic.getPassword();
             }
-            client = new WMSClient( capas, connTimeout, reqTimeout, user, pass );
+            client = new WMSClient( capas, connTimeout, reqTimeout, user, pass, maxConnections,
+                                    maxConnectionsPerHost );
 
             return new org.deegree.remoteows.wms.RemoteWMS( client, metadata );
         } catch ( Exception e ) {
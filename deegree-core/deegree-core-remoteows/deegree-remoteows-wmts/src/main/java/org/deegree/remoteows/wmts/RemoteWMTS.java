@@ -78,7 +78,7 @@ public class RemoteWMTS implements RemoteOWS {
 
     @Override
     public void destroy() {
-        // nothing to do
+        client.close();
     }
 
     @Override
@@ -95,6 +95,15 @@ public class RemoteWmtsBuilder implements ResourceBuilder<RemoteOWS> {
         if ( config.getRequestTimeout() != null ) {
             reqTimeout = config.getRequestTimeout();
         }
+        // values <= 0 select the defaults of the HTTP client
+        int maxConnections = -1;
+        if ( config.getMaxConnections() != null ) {
+            maxConnections = config.getMaxConnections();
+        }
+        int maxConnectionsPerHost = -1;
+        if ( config.getMaxConnectionsPerHost() != null ) {
+            maxConnectionsPerHost = config.getMaxConnectionsPerHost();
+        }
 
         AuthenticationType type = config.getAuthentication() == null ? null : config.getAuthentication().getValue();
         String user = null;
@@ -104,7 +113,8 @@ public class RemoteWmtsBuilder implements ResourceBuilder<RemoteOWS> {
             user = basic.getUsername();
             pass = basic.getPassword();
         }
-        return new OwsHttpClientImpl( connTimeout * 1000, reqTimeout * 1000, user, pass );
+        return new OwsHttpClientImpl( connTimeout * 1000, reqTimeout * 1000, user, pass, maxConnections,
+                                      maxConnectionsPerHost );
     }
 
 }
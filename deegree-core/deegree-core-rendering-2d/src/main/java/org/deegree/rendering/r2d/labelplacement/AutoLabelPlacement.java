@@ -39,6 +39,7 @@ import static org.slf4j.LoggerFactory.getLogger;
 import org.slf4j.Logger;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.deegree.rendering.r2d.Label;
@@ -46,6 +47,7 @@ import org.deegree.rendering.r2d.Renderer;
 import org.deegree.rendering.r2d.RendererContext;
 import org.deegree.rendering.r2d.Java2DRenderer;
 import org.deegree.style.utils.UomCalculator;
+import org.locationtech.jts.geom.Envelope;
 
 /**
  * <code>Automatic Label Placement, based on org.deegree.graphics.optimizers.LabelOptimizer from deegree2 </code>
@@ -66,10 +68,18 @@ public class AutoLabelPlacement {
     
     private static final Logger LOG = getLogger( AutoLabelPlacement.class );
 
+    /**
+     * Default time budget (in milliseconds) for optimizing the label positions of a single map.
+     */
+    public static final long DEFAULT_TIME_BUDGET = 1000;
+
+    // upper bound for the number of grid cells per label (limits memory for sparse label distributions)
+    private static final int MAX_CELLS_PER_LABEL = 4;
+
     private ArrayList<PointLabelPositionOptions> labelPositionsList;
     
-    // collision matrix of PointLabelPositionOptions that may overlap
-    private boolean[][] collisionMatrix;
+    // for every PointLabelPositionOptions, the indexes of the ones it may overlap with
+    private int[][] collisions;
     
     float placementQuality = 0.0f;
     int intersectionQuality = 0;
@@ -82,7 +92,23 @@ public class AutoLabelPlacement {
      */
     public AutoLabelPlacement( List<Label> labelList, Renderer renderer )
                             throws Exception {
+        this( labelList, renderer, DEFAULT_TIME_BUDGET );
+    }
+
+    /**
+     * Finds optimized {@link Label} positions for all Labels in the List. Labels should have {@link TextStyling}.auto
+     * set to true. If the optimization takes longer than the given time budget, it is stopped and the placement
+     * reached so far is used (if collision detection did not finish, all labels keep their default position).
+     * 
+     * @param labelList
+     *            List of Labels to optimize
+     * @param timeBudget
+     *            maximum time to spend in milliseconds
+     */
+    public AutoLabelPlacement( List<Label> labelList, Renderer renderer, long timeBudget )
+                            throws Exception {
 
+        long deadline = System.currentTimeMillis() + timeBudget;
         UomCalculator uomCalculator = ((Java2DRenderer)renderer).rendererContext.uomCalculator;
 
         labelPositionsList = new ArrayList<PointLabelPositionOptions>(); 
@@ -94,13 +120,18 @@ public class AutoLabelPlacement {
         LOG.debug( "Added "+labelPositionsList.size() + " Labels of " + labelList.size() + " to auto placement" );
     
         if( labelPositionsList.size() > 1 ){
-            buildCollisionMatrix();
+            if ( !buildCollisionLists( deadline ) ) {
+                LOG.warn( "Time budget of {} ms exceeded while detecting label collisions, using default positions.",
+                          timeBudget );
+                return;
+            }
     
             // do the magic
             try {
-                anneal();
+                anneal( deadline );
             } catch ( Exception e ) {
-                e.printStackTrace();
+                LOG.warn( "Label placement optimization failed: {}", e.getLocalizedMessage() );
+                LOG.trace( "Stack trace:", e );
             }
     
             //Update labels with new position
@@ -112,8 +143,11 @@ public class AutoLabelPlacement {
 
     /**
      * Performs "Simulated Annealing" on the array of {@link PointLabelPositionOptions}.
+     * 
+     * @param deadline
+     *            point in time (milliseconds) when the annealing must stop
      */
-    private void anneal() {
+    private void anneal( long deadline ) {
 
         objectiveFunction();
         float currentQuality = placementQuality + intersectionQuality;
@@ -131,6 +165,11 @@ public class AutoLabelPlacement {
 
         while ( counter <= 2500 && currentQuality > ( n + 0.8 * 40 ) ) {
 
+            if ( ( counter & 63 ) == 0 && System.currentTimeMillis() > deadline ) {
+                LOG.debug( "Time budget exceeded, stopping annealing after " + counter + " iterations." );
+                break;
+            }
+
             counter++;
             if ( successCounter == 5 ) {
                 successCounter = 0;
@@ -178,26 +217,182 @@ public class AutoLabelPlacement {
     }
 
     /**
-     * Builds the collision matrix for all <code>PointLabelPositionOptions</code>.
+     * Determines, for every <code>PointLabelPositionOptions</code>, the other ones whose possible positions overlap
+     * with its own. Candidates are found with a uniform grid over the bounding boxes of all possible positions, so
+     * only labels that share a grid cell are tested against each other.
+     * 
+     * @param deadline
+     *            point in time (milliseconds) when building must be given up
+     * @return <code>true</code>, if the collision lists have been built, <code>false</code> if the deadline has been
+     *         exceeded
      */
-    private void buildCollisionMatrix() {
-        
+    private boolean buildCollisionLists( long deadline ) {
+
         long now = System.currentTimeMillis();
-        collisionMatrix = new boolean[labelPositionsList.size()][labelPositionsList.size()];
-        
-        for ( int i = 0; i < labelPositionsList.size(); i++ ) {
-            PointLabelPositionOptions choice1 = labelPositionsList.get( i );
-            
-            for ( int j = i + 1; j < labelPositionsList.size(); j++ ) {
-                PointLabelPositionOptions choice2 = labelPositionsList.get( j );
-                collisionMatrix[i][j] = choice1.intersectsAny( choice2 );
+        int n = labelPositionsList.size();
+
+        // bounding boxes of all possible positions (rotated labels: envelope of the rotated box)
+        double[] minX = new double[n], minY = new double[n], maxX = new double[n], maxY = new double[n];
+        for ( int i = 0; i < n; i++ ) {
+            PointLabelPositionOptions option = labelPositionsList.get( i );
+            if ( option.label.getStyling().rotation != 0 ) {
+                Envelope env = option.totalPolygon.getEnvelopeInternal();
+                minX[i] = env.getMinX();
+                minY[i] = env.getMinY();
+                maxX[i] = env.getMaxX();
+                maxY[i] = env.getMaxY();
+            } else {
+                minX[i] = option.getMinX();
+                minY[i] = option.getMinY();
+                maxX[i] = option.getMaxX();
+                maxY[i] = option.getMaxY();
             }
-            
         }
-        
-        LOG.debug( "Building of collision matrix took: " + ( System.currentTimeMillis() - now ) + " millis." );
+
+        final List<PointLabelPositionOptions> options = labelPositionsList;
+        int[][] lists = findCollisions( minX, minY, maxX, maxY, new PairTest() {
+            @Override
+            public boolean intersects( int a, int b ) {
+                return options.get( a ).intersectsAny( options.get( b ) );
+            }
+        }, deadline );
+        if ( lists == null ) {
+            return false;
+        }
+
+        collisions = lists;
+        int numCollisions = 0;
+        for ( int i = 0; i < n; i++ ) {
+            numCollisions += collisions[i].length;
+        }
+
+        LOG.debug( "Building of collision lists took: " + ( System.currentTimeMillis() - now ) + " millis ("
+                   + ( numCollisions / 2 ) + " potential collisions)." );
+        return true;
     }
-    
+
+    /**
+     * Tests two labels (given by their indexes) for a possible overlap.
+     */
+    interface PairTest {
+        boolean intersects( int a, int b );
+    }
+
+    /**
+     * Determines the pairs of boxes that pass the given test. Only boxes that share a cell of a uniform grid (cells
+     * about the size of an average box) are tested, every pair at most once.
+     * 
+     * @param minX
+     *            minimum x of the boxes, must not be <code>null</code>
+     * @param minY
+     *            minimum y of the boxes, must not be <code>null</code>
+     * @param maxX
+     *            maximum x of the boxes, must not be <code>null</code>
+     * @param maxY
+     *            maximum y of the boxes, must not be <code>null</code>
+     * @param test
+     *            test for overlapping labels, only called for boxes that share a grid cell, must not be <code>null</code>
+     * @param deadline
+     *            point in time (milliseconds) when building must be given up
+     * @return for every box, the indexes of the boxes it overlaps with, <code>null</code> if the deadline has been
+     *         exceeded
+     */
+    static int[][] findCollisions( double[] minX, double[] minY, double[] maxX, double[] maxY, PairTest test,
+                                   long deadline ) {
+        int n = minX.length;
+        double extentMinX = Double.MAX_VALUE, extentMinY = Double.MAX_VALUE;
+        double extentMaxX = -Double.MAX_VALUE, extentMaxY = -Double.MAX_VALUE;
+        double sumWidth = 0, sumHeight = 0;
+        for ( int i = 0; i < n; i++ ) {
+            extentMinX = Math.min( extentMinX, minX[i] );
+            extentMinY = Math.min( extentMinY, minY[i] );
+            extentMaxX = Math.max( extentMaxX, maxX[i] );
+            extentMaxY = Math.max( extentMaxY, maxY[i] );
+            sumWidth += maxX[i] - minX[i];
+            sumHeight += maxY[i] - minY[i];
+        }
+
+        // cells about the size of an average label
+        double extentWidth = Math.max( extentMaxX - extentMinX, 1.0 );
+        double extentHeight = Math.max( extentMaxY - extentMinY, 1.0 );
+        double cellWidth = Math.max( sumWidth / n, 1.0 );
+        double cellHeight = Math.max( sumHeight / n, 1.0 );
+        double maxCells = (double) MAX_CELLS_PER_LABEL * n;
+        double cells = Math.ceil( extentWidth / cellWidth ) * Math.ceil( extentHeight / cellHeight );
+        if ( cells > maxCells ) {
+            double scale = Math.sqrt( cells / maxCells );
+            cellWidth *= scale;
+            cellHeight *= scale;
+        }
+        Grid grid = new Grid( extentMinX, extentMinY, cellWidth, cellHeight,
+                              Math.max( 1, (int) Math.ceil( extentWidth / cellWidth ) ),
+                              Math.max( 1, (int) Math.ceil( extentHeight / cellHeight ) ) );
+
+        // grid cell -> labels (compressed: members of cell c are cellMembers[cellStart[c]..cellStart[c+1]-1])
+        int[] cellStart = new int[grid.cols * grid.rows + 1];
+        for ( int i = 0; i < n; i++ ) {
+            for ( int row = grid.row( minY[i] ); row <= grid.row( maxY[i] ); row++ ) {
+                for ( int col = grid.col( minX[i] ); col <= grid.col( maxX[i] ); col++ ) {
+                    cellStart[row * grid.cols + col + 1]++;
+                }
+            }
+        }
+        for ( int c = 1; c < cellStart.length; c++ ) {
+            cellStart[c] += cellStart[c - 1];
+        }
+        int[] cellMembers = new int[cellStart[cellStart.length - 1]];
+        int[] fill = new int[grid.cols * grid.rows];
+        for ( int i = 0; i < n; i++ ) {
+            for ( int row = grid.row( minY[i] ); row <= grid.row( maxY[i] ); row++ ) {
+                for ( int col = grid.col( minX[i] ); col <= grid.col( maxX[i] ); col++ ) {
+                    int c = row * grid.cols + col;
+                    cellMembers[cellStart[c] + fill[c]++] = i;
+                }
+            }
+        }
+
+        // narrow phase, each pair is only tested in the cell that contains the top-left corner of the intersection
+        int[][] lists = new int[n][];
+        int[] sizes = new int[n];
+        for ( int c = 0; c < fill.length; c++ ) {
+            if ( System.currentTimeMillis() > deadline ) {
+                return null;
+            }
+            int row = c / grid.cols;
+            int col = c % grid.cols;
+            for ( int k = cellStart[c]; k < cellStart[c + 1]; k++ ) {
+                int a = cellMembers[k];
+                for ( int l = k + 1; l < cellStart[c + 1]; l++ ) {
+                    int b = cellMembers[l];
+                    if ( grid.col( Math.max( minX[a], minX[b] ) ) != col
+                         || grid.row( Math.max( minY[a], minY[b] ) ) != row ) {
+                        continue;
+                    }
+                    if ( test.intersects( a, b ) ) {
+                        add( lists, sizes, a, b );
+                        add( lists, sizes, b, a );
+                    }
+                }
+            }
+        }
+
+        int[][] collisions = new int[n][];
+        for ( int i = 0; i < n; i++ ) {
+            collisions[i] = lists[i] == null ? new int[0] : Arrays.copyOf( lists[i], sizes[i] );
+        }
+        return collisions;
+    }
+
+    private static void add( int[][] lists, int[] sizes, int i, int value ) {
+        int[] list = lists[i];
+        if ( list == null ) {
+            list = lists[i] = new int[4];
+        } else if ( sizes[i] == list.length ) {
+            list = lists[i] = Arrays.copyOf( list, list.length * 2 );
+        }
+        list[sizes[i]++] = value;
+    }
+
     /**
      * Updates the quality value for the currently selected combination of {@link Label}s and lets the label select a new random position
      * 
@@ -209,53 +404,30 @@ public class AutoLabelPlacement {
      */
     private void updateChoiceAndQuality(PointLabelPositionOptions changedLabel, int choice) {
        
-        int changedLabelIntersectionQuality = 0;
-        
-        
-        //calculate, how much the (to bee) changedLabel does contribute to the intersectionQuality
-        for ( int i = 0; i < choice; i++ ) {
-            PointLabelPositionOptions choice1 = labelPositionsList.get( i );
-            if ( collisionMatrix[i][choice] && ( changedLabel.intersectsSelection(choice1) )) {
-                changedLabelIntersectionQuality += 40;
-            }
-        }
-        
-        for (int i = choice+1; i <  labelPositionsList.size(); i++ ) {
-            PointLabelPositionOptions choice1 = labelPositionsList.get( i );
-            if ( collisionMatrix[choice][i] && ( changedLabel.intersectsSelection(choice1) )) {
-                changedLabelIntersectionQuality += 40;
-            }
-        }
-        
         //subtract the qualities of the label which is going to be changed
-        intersectionQuality -= changedLabelIntersectionQuality;
+        intersectionQuality -= getIntersectionQuality( changedLabel, choice );
         placementQuality -= changedLabel.getQuality();
 
-
         //select a new position randomly
         changedLabel.selectLabelPositionRandomly();
 
-        
-        //calculate, how much the changedLabel does contribute to the intersectionQuality
-        changedLabelIntersectionQuality = 0;
-        for ( int i = 0; i < choice; i++ ) {
-            PointLabelPositionOptions choice1 = labelPositionsList.get( i );
-            if ( collisionMatrix[i][choice] && ( changedLabel.intersectsSelection(choice1) )) {
-                changedLabelIntersectionQuality += 40;
-            }
-        }
-        
-        for (int i = choice+1; i <  labelPositionsList.size(); i++ ) {
-            PointLabelPositionOptions choice1 = labelPositionsList.get( i );
-            if ( collisionMatrix[choice][i] && ( changedLabel.intersectsSelection(choice1) )) {
-                changedLabelIntersectionQuality += 40;
-            }
-        }
-        
         //add the new qualities
-        intersectionQuality += changedLabelIntersectionQuality;
+        intersectionQuality += getIntersectionQuality( changedLabel, choice );
         placementQuality += changedLabel.getQuality();
     }
+
+    /**
+     * Calculates how much the currently selected position of a label contributes to the intersectionQuality.
+     */
+    private int getIntersectionQuality( PointLabelPositionOptions label, int index ) {
+        int quality = 0;
+        for ( int other : collisions[index] ) {
+            if ( label.intersectsSelection( labelPositionsList.get( other ) ) ) {
+                quality += 40;
+            }
+        }
+        return quality;
+    }
     
     /**
      * Calculates the initial quality values for the currently selected combination of {@link Label}s.
@@ -271,8 +443,8 @@ public class AutoLabelPlacement {
             //placementQuality += choice1.getQuality() + 1.0f;
             placementQuality += choice1.getQuality();
             
-            for ( int j = i + 1; j < labelPositionsList.size(); j++ ) {
-                if ( collisionMatrix[i][j] ) {
+            for ( int j : collisions[i] ) {
+                if ( j > i ) {
                     PointLabelPositionOptions choice2 = labelPositionsList.get( j );
                     if ( choice1.intersectsSelection( choice2 ) ) {
                         intersectionQuality += 40;
@@ -281,6 +453,32 @@ public class AutoLabelPlacement {
             }
         }
     }
+
+    /**
+     * Uniform grid over the label extent.
+     */
+    private static class Grid {
+
+        private final double originX, originY, cellWidth, cellHeight;
+
+        private final int cols, rows;
+
+        private Grid( double originX, double originY, double cellWidth, double cellHeight, int cols, int rows ) {
+            this.originX = originX;
+            this.originY = originY;
+            this.cellWidth = cellWidth;
+            this.cellHeight = cellHeight;
+            this.cols = cols;
+            this.rows = rows;
+        }
+
+        private int col( double x ) {
+            return Math.min( cols - 1, Math.max( 0, (int) ( ( x - originX ) / cellWidth ) ) );
+        }
+
+        private int row( double y ) {
+            return Math.min( rows - 1, Math.max( 0, (int) ( ( y - originY ) / cellHeight ) ) );
+        }
+    }
     
 }
-
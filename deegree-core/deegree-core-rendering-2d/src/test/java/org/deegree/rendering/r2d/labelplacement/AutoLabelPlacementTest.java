@@ -0,0 +1,129 @@
+//$HeadURL$
+/*---------------------------------------------------------------------------- 
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d.labelplacement;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.deegree.rendering.r2d.labelplacement.AutoLabelPlacement.PairTest;
+import org.junit.Test;
+
+/**
+ * Tests for the grid based collision lists of {@link AutoLabelPlacement}.
+ */
+public class AutoLabelPlacementTest {
+
+    @Test
+    public void testCollisionsMatchBruteForce() {
+        Random random = new Random( 42 );
+        for ( int run = 0; run < 50; run++ ) {
+            int n = 1 + random.nextInt( 400 );
+            double[][] boxes = randomBoxes( random, n, 1000, 5 + random.nextInt( 80 ) );
+            assertCollisions( boxes );
+        }
+    }
+
+    @Test
+    public void testTouchingBoxesCollide() {
+        // boxes on a regular raster, every box touches its neighbours
+        int n = 100;
+        double[][] boxes = new double[4][n];
+        for ( int i = 0; i < n; i++ ) {
+            boxes[0][i] = ( i % 10 ) * 10;
+            boxes[1][i] = ( i / 10 ) * 10;
+            boxes[2][i] = boxes[0][i] + 10;
+            boxes[3][i] = boxes[1][i] + 10;
+        }
+        assertCollisions( boxes );
+    }
+
+    @Test
+    public void testIdenticalAndDegenerateBoxes() {
+        double[][] boxes = { { 5, 5, 5, 0, 5 }, { 5, 5, 5, 0, 7 }, { 5, 5, 9, 0, 5 }, { 5, 5, 9, 0, 7 } };
+        assertCollisions( boxes );
+    }
+
+    @Test
+    public void testDeadlineExceeded() {
+        double[][] boxes = randomBoxes( new Random( 7 ), 10, 100, 10 );
+        assertNull( AutoLabelPlacement.findCollisions( boxes[0], boxes[1], boxes[2], boxes[3], intersects( boxes ),
+                                                       System.currentTimeMillis() - 1 ) );
+    }
+
+    private static void assertCollisions( double[][] boxes ) {
+        int n = boxes[0].length;
+        PairTest test = intersects( boxes );
+        int[][] actual = AutoLabelPlacement.findCollisions( boxes[0], boxes[1], boxes[2], boxes[3], test,
+                                                            Long.MAX_VALUE );
+        for ( int i = 0; i < n; i++ ) {
+            int[] expected = new int[n];
+            int size = 0;
+            for ( int j = 0; j < n; j++ ) {
+                if ( i != j && test.intersects( i, j ) ) {
+                    expected[size++] = j;
+                }
+            }
+            int[] sorted = actual[i].clone();
+            Arrays.sort( sorted );
+            assertArrayEquals( "Collisions of box " + i, Arrays.copyOf( expected, size ), sorted );
+        }
+    }
+
+    private static PairTest intersects( final double[][] boxes ) {
+        return new PairTest() {
+            @Override
+            public boolean intersects( int a, int b ) {
+                return boxes[0][a] <= boxes[2][b] && boxes[0][b] <= boxes[2][a] && boxes[1][a] <= boxes[3][b]
+                       && boxes[1][b] <= boxes[3][a];
+            }
+        };
+    }
+
+    private static double[][] randomBoxes( Random random, int n, double extent, double maxSize ) {
+        double[][] boxes = new double[4][n];
+        for ( int i = 0; i < n; i++ ) {
+            boxes[0][i] = random.nextDouble() * extent;
+            boxes[1][i] = random.nextDouble() * extent;
+            boxes[2][i] = boxes[0][i] + random.nextDouble() * maxSize;
+            boxes[3][i] = boxes[1][i] + random.nextDouble() * maxSize;
+        }
+        return boxes;
+    }
+
+}
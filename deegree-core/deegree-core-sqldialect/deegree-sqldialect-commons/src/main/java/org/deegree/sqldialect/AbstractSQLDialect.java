@@ -46,6 +46,33 @@ public abstract class AbstractSQLDialect implements SQLDialect{
 
     private char defaultEscapeChar =  Character.UNASSIGNED;
 
+    @Override
+    public boolean appendLimitOffset( StringBuilder sql, boolean ordered, String keyColumns, int offset, int limit ) {
+        return false;
+    }
+
+    /**
+     * Appends the key columns to the <code>ORDER BY</code> clause of the statement, or adds one if the statement is
+     * unordered.
+     * 
+     * @param sql
+     *            <code>SELECT</code> statement, must not be <code>null</code>
+     * @param ordered
+     *            <code>true</code>, if the statement ends with an <code>ORDER BY</code> clause
+     * @param keyColumns
+     *            comma-separated, qualified columns that identify a row uniquely, can be <code>null</code> (nothing
+     *            is appended)
+     * @return <code>true</code>, if the statement is ordered afterwards
+     */
+    protected static boolean appendKeyOrder( StringBuilder sql, boolean ordered, String keyColumns ) {
+        if ( keyColumns == null ) {
+            return ordered;
+        }
+        sql.append( ordered ? ", " : " ORDER BY " );
+        sql.append( keyColumns );
+        return true;
+    }
+
     @Override
     public char getLeadingEscapeChar() {
         return defaultEscapeChar;
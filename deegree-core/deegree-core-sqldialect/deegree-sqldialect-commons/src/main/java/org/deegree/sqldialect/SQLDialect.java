@@ -212,6 +212,30 @@ public interface SQLDialect {
      */
     String getSelectSequenceNextVal( String sequence );
 
+    /**
+     * Appends a clause to the given <code>SELECT</code> statement that restricts the returned rows to the specified
+     * window (paging).
+     * <p>
+     * If key columns are given, they are appended to the sort order of the statement (or become the sort order if the
+     * statement is unordered), so consecutive windows neither overlap nor skip rows.
+     * </p>
+     * 
+     * @param sql
+     *            <code>SELECT</code> statement, must not be <code>null</code>
+     * @param ordered
+     *            <code>true</code>, if the statement ends with an <code>ORDER BY</code> clause
+     * @param keyColumns
+     *            comma-separated, qualified columns that identify a row uniquely, can be <code>null</code> (row order
+     *            is not made stable)
+     * @param offset
+     *            number of rows to skip, must be >= 0
+     * @param limit
+     *            maximum number of rows to return, -1 for no limit
+     * @return <code>true</code>, if the window has been applied, <code>false</code> if the dialect does not support
+     *         restricting the rows (the statement is not modified in this case)
+     */
+    boolean appendLimitOffset( StringBuilder sql, boolean ordered, String keyColumns, int offset, int limit );
+
     /**
      * Returns the leading escape char for the SQLDialect
      *
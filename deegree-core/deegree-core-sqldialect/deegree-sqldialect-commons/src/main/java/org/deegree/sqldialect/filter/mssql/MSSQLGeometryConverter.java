@@ -97,6 +97,14 @@ public class MSSQLGeometryConverter implements GeometryParticleConverter {
         return tableAlias + "." + column + ".ToString()";
     }
 
+    @Override
+    public String getGeneralizedSelectSnippet( String tableAlias, double tolerance ) {
+        if ( !is2d ) {
+            return getSelectSnippet( tableAlias );
+        }
+        return ( tableAlias == null ? "" : ( tableAlias + "." ) ) + column + ".Reduce(" + tolerance + ").STAsBinary()";
+    }
+
     public String getSetSnippet( Geometry particle ) {
         if ( is2d )
             return "geometry::STGeomFromWKB(?, " + srid + ")";
@@ -200,4 +200,31 @@ public class MSSQLDialect extends AbstractSQLDialect implements SQLDialect {
                                                  "Using DB sequences for FIDs is currently not supported on Microsoft SQL Server." );
     }
 
+    @Override
+    public boolean appendLimitOffset( StringBuilder sql, boolean ordered, String keyColumns, int offset, int limit ) {
+        if ( offset == 0 ) {
+            if ( limit >= 0 ) {
+                if ( !sql.toString().startsWith( "SELECT " ) ) {
+                    return false;
+                }
+                sql.insert( 7, "TOP " + limit + " " );
+                appendKeyOrder( sql, ordered, keyColumns );
+            }
+            return true;
+        }
+        // OFFSET / FETCH (SQL Server 2012+) requires an ORDER BY clause
+        if ( !appendKeyOrder( sql, ordered, keyColumns ) ) {
+            sql.append( " ORDER BY (SELECT NULL)" );
+        }
+        sql.append( " OFFSET " );
+        sql.append( offset );
+        sql.append( " ROWS" );
+        if ( limit >= 0 ) {
+            sql.append( " FETCH NEXT " );
+            sql.append( limit );
+            sql.append( " ROWS ONLY" );
+        }
+        return true;
+    }
+
 }
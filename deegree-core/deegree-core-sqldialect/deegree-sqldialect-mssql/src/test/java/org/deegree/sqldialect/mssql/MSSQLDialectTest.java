@@ -0,0 +1,93 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2026 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.sqldialect.mssql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the paging SQL of the {@link MSSQLDialect}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class MSSQLDialectTest {
+
+    private static final String FROM = " X1.fid,X1.name FROM ft X1";
+
+    private final MSSQLDialect dialect = new MSSQLDialect();
+
+    @Test
+    public void testFirstPageUsesTop() {
+        StringBuilder sql = new StringBuilder( "SELECT" + FROM );
+        assertTrue( dialect.appendLimitOffset( sql, false, "X1.fid", 0, 10 ) );
+        assertEquals( "SELECT TOP 10" + FROM + " ORDER BY X1.fid", sql.toString() );
+    }
+
+    @Test
+    public void testOffsetFetchOrderedByKey() {
+        StringBuilder sql = new StringBuilder( "SELECT" + FROM );
+        assertTrue( dialect.appendLimitOffset( sql, false, "X1.fid", 20, 10 ) );
+        assertEquals( "SELECT" + FROM + " ORDER BY X1.fid OFFSET 20 ROWS FETCH NEXT 10 ROWS ONLY", sql.toString() );
+    }
+
+    @Test
+    public void testKeyBreaksTiesOfSortOrder() {
+        StringBuilder sql = new StringBuilder( "SELECT" + FROM + " ORDER BY X1.name" );
+        assertTrue( dialect.appendLimitOffset( sql, true, "X1.fid", 20, -1 ) );
+        assertEquals( "SELECT" + FROM + " ORDER BY X1.name, X1.fid OFFSET 20 ROWS", sql.toString() );
+    }
+
+    @Test
+    public void testOffsetWithoutKeyColumnsRequiresOrderBy() {
+        StringBuilder sql = new StringBuilder( "SELECT" + FROM );
+        assertTrue( dialect.appendLimitOffset( sql, false, null, 20, 10 ) );
+        assertEquals( "SELECT" + FROM + " ORDER BY (SELECT NULL) OFFSET 20 ROWS FETCH NEXT 10 ROWS ONLY",
+                      sql.toString() );
+    }
+
+    @Test
+    public void testTopRequiresPlainSelect() {
+        StringBuilder sql = new StringBuilder( "WITH t AS (SELECT 1) SELECT * FROM t" );
+        assertFalse( dialect.appendLimitOffset( sql, false, "t.fid", 0, 10 ) );
+        assertEquals( "WITH t AS (SELECT 1) SELECT * FROM t", sql.toString() );
+    }
+
+}
@@ -268,4 +268,43 @@ public class OracleDialect extends AbstractSQLDialect implements SQLDialect {
         return "SELECT " + sequence + ".NEXTVAL from DUAL";
     }
 
+    @Override
+    public boolean appendLimitOffset( StringBuilder sql, boolean ordered, String keyColumns, int offset, int limit ) {
+        appendKeyOrder( sql, ordered, keyColumns );
+        // row limiting clause is available since Oracle 12c
+        if ( versionMajor < 12 ) {
+            appendRownumWindow( sql, offset, limit );
+            return true;
+        }
+        if ( offset > 0 ) {
+            sql.append( " OFFSET " );
+            sql.append( offset );
+            sql.append( " ROWS" );
+        }
+        if ( limit >= 0 ) {
+            sql.append( " FETCH NEXT " );
+            sql.append( limit );
+            sql.append( " ROWS ONLY" );
+        }
+        return true;
+    }
+
+    /**
+     * ROWNUM is assigned before the rows are sorted, so the (ordered) statement has to be nested. The outer query
+     * returns the additional column RNUM after the columns of the statement.
+     */
+    private void appendRownumWindow( StringBuilder sql, int offset, int limit ) {
+        sql.insert( 0, "SELECT * FROM (SELECT PAGED.*, ROWNUM RNUM FROM (" );
+        sql.append( ") PAGED" );
+        if ( limit >= 0 ) {
+            sql.append( " WHERE ROWNUM <= " );
+            sql.append( (long) offset + limit );
+        }
+        sql.append( ')' );
+        if ( offset > 0 ) {
+            sql.append( " WHERE RNUM > " );
+            sql.append( offset );
+        }
+    }
+
 }
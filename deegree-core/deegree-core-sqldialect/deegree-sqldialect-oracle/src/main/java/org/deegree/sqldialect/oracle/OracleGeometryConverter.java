@@ -34,6 +34,8 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.sqldialect.oracle;
 
+import static org.deegree.cs.coordinatesystems.CRS.CRSType.GEOGRAPHIC;
+
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -63,6 +65,9 @@ public class OracleGeometryConverter implements GeometryParticleConverter {
 
     private static Logger LOG = LoggerFactory.getLogger( OracleGeometryConverter.class );
 
+    // length of one degree on the equator (WGS84)
+    private static final double METERS_PER_DEGREE = 111319.49079327357;
+
     private final String column;
 
     private final ICRS crs;
@@ -102,6 +107,18 @@ public class OracleGeometryConverter implements GeometryParticleConverter {
         return column;
     }
 
+    @Override
+    public String getGeneralizedSelectSnippet( String tableAlias, double tolerance ) {
+        String qualifiedColumn = getSelectSnippet( tableAlias );
+        double threshold = tolerance;
+        if ( crs != null && crs.getType() == GEOGRAPHIC ) {
+            // SDO_UTIL.SIMPLIFY expects the threshold in meters for geodetic geometries
+            threshold = tolerance * METERS_PER_DEGREE;
+        }
+        // SDO_UTIL.SIMPLIFY may return NULL if the geometry collapses, keep the original one in that case
+        return "NVL(SDO_UTIL.SIMPLIFY(" + qualifiedColumn + "," + threshold + ")," + qualifiedColumn + ")";
+    }
+
     @Override
     public String getSetSnippet( Geometry particle ) {
         return "?";
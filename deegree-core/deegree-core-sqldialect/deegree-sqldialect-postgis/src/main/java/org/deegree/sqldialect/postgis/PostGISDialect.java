@@ -287,6 +287,20 @@ public class PostGISDialect extends AbstractSQLDialect implements SQLDialect {
         return "SELECT nextval('" + sequence + "')";
     }
 
+    @Override
+    public boolean appendLimitOffset( StringBuilder sql, boolean ordered, String keyColumns, int offset, int limit ) {
+        appendKeyOrder( sql, ordered, keyColumns );
+        if ( limit >= 0 ) {
+            sql.append( " LIMIT " );
+            sql.append( limit );
+        }
+        if ( offset > 0 ) {
+            sql.append( " OFFSET " );
+            sql.append( offset );
+        }
+        return true;
+    }
+
     @Override
     public char getLeadingEscapeChar() {
         return escapeChar;
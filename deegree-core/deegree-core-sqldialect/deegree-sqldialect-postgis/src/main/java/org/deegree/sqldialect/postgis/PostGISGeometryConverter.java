@@ -97,6 +97,15 @@ public class PostGISGeometryConverter implements GeometryParticleConverter {
         return asewkb + "(" + column + ")";
     }
 
+    @Override
+    public String getGeneralizedSelectSnippet( String tableAlias, double tolerance ) {
+        String asewkb = useLegacyPredicates ? "AsEWKB" : "ST_AsEWKB";
+        // topology preserving variant keeps polygons valid (and non-empty) for rendering
+        String simplify = useLegacyPredicates ? "Simplify" : "ST_SimplifyPreserveTopology";
+        String qualifiedColumn = tableAlias != null ? tableAlias + "." + column : column;
+        return asewkb + "(" + simplify + "(" + qualifiedColumn + "," + tolerance + "))";
+    }
+
     @Override
     public Geometry toParticle( ResultSet rs, int colIndex )
                             throws SQLException {
@@ -0,0 +1,84 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2026 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.sqldialect.postgis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the paging SQL of the {@link PostGISDialect}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PostGISDialectTest {
+
+    private static final String SELECT = "SELECT X1.fid,X1.name FROM ft X1";
+
+    private final PostGISDialect dialect = new PostGISDialect( "2.1" );
+
+    @Test
+    public void testLimitOffsetOrderedByKey() {
+        StringBuilder sql = new StringBuilder( SELECT );
+        assertTrue( dialect.appendLimitOffset( sql, false, "X1.fid", 20, 10 ) );
+        assertEquals( SELECT + " ORDER BY X1.fid LIMIT 10 OFFSET 20", sql.toString() );
+    }
+
+    @Test
+    public void testKeyBreaksTiesOfSortOrder() {
+        StringBuilder sql = new StringBuilder( SELECT + " ORDER BY X1.name" );
+        assertTrue( dialect.appendLimitOffset( sql, true, "X1.fid", 0, 10 ) );
+        assertEquals( SELECT + " ORDER BY X1.name, X1.fid LIMIT 10", sql.toString() );
+    }
+
+    @Test
+    public void testOffsetOnly() {
+        StringBuilder sql = new StringBuilder( SELECT );
+        assertTrue( dialect.appendLimitOffset( sql, false, "X1.fid", 5, -1 ) );
+        assertEquals( SELECT + " ORDER BY X1.fid OFFSET 5", sql.toString() );
+    }
+
+    @Test
+    public void testWithoutKeyColumns() {
+        StringBuilder sql = new StringBuilder( SELECT );
+        assertTrue( dialect.appendLimitOffset( sql, false, null, 5, 10 ) );
+        assertEquals( SELECT + " LIMIT 10 OFFSET 5", sql.toString() );
+    }
+
+}
@@ -0,0 +1,224 @@
+//$HeadURL$
+/*---------------------------------------------------------------------------- 
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.style.se.unevaluated;
+
+import static java.util.Arrays.asList;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.Feature;
+import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.expression.ValueReference;
+import org.slf4j.Logger;
+
+/**
+ * Memoises a feature dependent evaluation (e.g. of a {@link Symbolizer}) by the values of the value references that it
+ * evaluates.
+ * <p>
+ * The value references are recorded while evaluating (they are passed to the {@link XPathEvaluator}), so expressions
+ * that do not depend on the feature lead to a single cached result. An evaluation that reads additional value
+ * references extends the key and clears the cache. Features with non-primitive values (e.g. geometries) and features
+ * with extra properties (which functions may access without the evaluator) are evaluated without the cache. The cache
+ * disables itself if it does not get any hits at all.
+ * </p>
+ * <p>
+ * Instances are not thread safe and are meant to be used for a single request.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ * @param <V>
+ */
+abstract class EvaluationCache<V> {
+
+    private static final Logger LOG = getLogger( EvaluationCache.class );
+
+    static final int MAX_SIZE = 1024;
+
+    // key component for properties without value
+    private static final Object NIL = new Object();
+
+    private final List<ValueReference> refs = new ArrayList<ValueReference>();
+
+    private boolean usesId;
+
+    private final Map<List<Object>, V> cache = new LinkedHashMap<List<Object>, V>( 16, 0.75f, true ) {
+        private static final long serialVersionUID = 4462377373453564102L;
+
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<List<Object>, V> eldest ) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    private int hits;
+
+    private int misses;
+
+    private boolean disabled;
+
+    /**
+     * Performs the actual evaluation.
+     * 
+     * @param f
+     *            feature, can be <code>null</code>
+     * @param evaluator
+     *            evaluator to use for all accesses to the feature, never <code>null</code>
+     * @return the result, must not be <code>null</code>
+     */
+    abstract V compute( Feature f, XPathEvaluator<Feature> evaluator );
+
+    /**
+     * @param f
+     *            feature, can be <code>null</code> (evaluated without the cache)
+     * @param evaluator
+     *            must not be <code>null</code>
+     * @return the cached or computed result, never <code>null</code>
+     */
+    V get( Feature f, XPathEvaluator<Feature> evaluator ) {
+        if ( disabled || f == null || f.getExtraProperties() != null ) {
+            return compute( f, evaluator );
+        }
+        List<Object> key = getKey( f, evaluator );
+        if ( key != null ) {
+            V value = cache.get( key );
+            if ( value != null ) {
+                ++hits;
+                return value;
+            }
+        }
+        Recorder recorder = new Recorder( evaluator );
+        V value = compute( f, recorder );
+        if ( recorder.extended ) {
+            // results cached so far are keyed by too few values
+            cache.clear();
+        } else if ( key != null ) {
+            cache.put( key, value );
+        }
+        if ( ++misses > MAX_SIZE && hits == 0 ) {
+            LOG.debug( "Disabling cache, evaluated values are all distinct." );
+            disabled = true;
+            cache.clear();
+        }
+        return value;
+    }
+
+    private List<Object> getKey( Feature f, XPathEvaluator<Feature> evaluator ) {
+        Object[] key = new Object[refs.size() + 1];
+        key[0] = usesId ? evaluator.getId( f ) : null;
+        for ( int i = 0; i < refs.size(); i++ ) {
+            try {
+                key[i + 1] = toKey( evaluator.eval( f, refs.get( i ) ) );
+            } catch ( FilterEvaluationException e ) {
+                return null;
+            }
+            if ( key[i + 1] == null ) {
+                return null;
+            }
+        }
+        return asList( key );
+    }
+
+    private static Object toKey( TypedObjectNode[] values ) {
+        if ( values.length == 1 ) {
+            return toKey( values[0] );
+        }
+        Object[] keys = new Object[values.length];
+        for ( int i = 0; i < values.length; i++ ) {
+            keys[i] = toKey( values[i] );
+            if ( keys[i] == null ) {
+                return null;
+            }
+        }
+        return asList( keys );
+    }
+
+    private static Object toKey( TypedObjectNode value ) {
+        if ( value instanceof Property ) {
+            value = ( (Property) value ).getValue();
+        }
+        if ( value == null ) {
+            return NIL;
+        }
+        if ( value instanceof PrimitiveValue ) {
+            PrimitiveValue primitive = (PrimitiveValue) value;
+            return asList( primitive.getType().getBaseType(), primitive.getAsText() );
+        }
+        return null;
+    }
+
+    /**
+     * Adds the value references passed to the evaluator to the key.
+     */
+    private class Recorder implements XPathEvaluator<Feature> {
+
+        private final XPathEvaluator<Feature> evaluator;
+
+        private boolean extended;
+
+        Recorder( XPathEvaluator<Feature> evaluator ) {
+            this.evaluator = evaluator;
+        }
+
+        @Override
+        public TypedObjectNode[] eval( Feature context, ValueReference valueRef )
+                                throws FilterEvaluationException {
+            if ( !refs.contains( valueRef ) ) {
+                refs.add( valueRef );
+                extended = true;
+            }
+            return evaluator.eval( context, valueRef );
+        }
+
+        @Override
+        public String getId( Feature context ) {
+            if ( !usesId ) {
+                usesId = true;
+                extended = true;
+            }
+            return evaluator.getId( context );
+        }
+    }
+}
@@ -122,6 +122,9 @@ public class Style implements Copyable<Style> {
 
     private boolean prefersGetLegendGraphicUrl;
 
+    // only for styles filtered for a request, null otherwise
+    private HashMap<Symbolizer<?>, EvaluationCache<Object>> stylingCaches;
+
     /**
      * @param rules
      * @param labels
@@ -201,6 +204,10 @@ public class Style implements Copyable<Style> {
     }
 
     /**
+     * Returns a style with the rules for the given scale. The returned style is meant to be used for rendering a single
+     * request: evaluated stylings of data-driven symbolizers are cached by the values they depend on, so features with
+     * the same values share a styling.
+     * 
      * @param scale
      * @return a filtered list of symbolizers
      */
@@ -217,7 +224,9 @@ public class Style implements Copyable<Style> {
                 LOG.debug( "Not using rule because of scale constraints, in style with name '{}'.", name );
             }
         }
-        return new Style( rules, labels, null, name, featureType );
+        Style style = new Style( rules, labels, null, name, featureType );
+        style.stylingCaches = new HashMap<Symbolizer<?>, EvaluationCache<Object>>();
+        return style;
     }
 
     /**
@@ -268,19 +277,38 @@ public class Style implements Copyable<Style> {
 
         String text = null;
         for ( Symbolizer<?> s : list ) {
-            Pair<?, ?> p = s.evaluate( f, evaluator );
+            LinkedList<Geometry> geoms = s.evaluateGeometries( f, evaluator );
+            Object styling = evaluateStyling( s, f, evaluator );
 
-            if ( labels.containsKey( s ) ) {
+            Continuation<StringBuffer> label = labels.get( s );
+            if ( label != null ) {
                 sb.setLength( 0 );
-                labels.get( s ).evaluate( sb, f, evaluator );
+                label.evaluate( sb, f, evaluator );
                 text = sb.toString();
             }
-            res.add( new Triple<Object, Object, String>( p.first, p.second, text ) );
+            res.add( new Triple<Object, Object, String>( styling, geoms, text ) );
         }
 
         return (LinkedList) res;
     }
 
+    private Object evaluateStyling( final Symbolizer<?> s, Feature f, XPathEvaluator<Feature> evaluator ) {
+        if ( stylingCaches == null || s.isEvaluated() || f == null ) {
+            return s.evaluateStyling( f, evaluator );
+        }
+        EvaluationCache<Object> cache = stylingCaches.get( s );
+        if ( cache == null ) {
+            cache = new EvaluationCache<Object>() {
+                @Override
+                Object compute( Feature f, XPathEvaluator<Feature> evaluator ) {
+                    return s.evaluateStyling( f, evaluator );
+                }
+            };
+            stylingCaches.put( s, cache );
+        }
+        return cache.get( f, evaluator );
+    }
+
     /**
      * @return the live list of rules
      */
@@ -461,6 +489,9 @@ public class Style implements Copyable<Style> {
         style.legendFile = legendFile;
         style.legendUrl = legendUrl;
         style.prefersGetLegendGraphicUrl = prefersGetLegendGraphicUrl;
+        if ( stylingCaches != null ) {
+            style.stylingCaches = new HashMap<Symbolizer<?>, EvaluationCache<Object>>();
+        }
         return style;
     }
 }
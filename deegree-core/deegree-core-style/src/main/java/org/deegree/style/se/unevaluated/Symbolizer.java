@@ -70,10 +70,6 @@ public class Symbolizer<T extends Styling<T>> {
 
     private T base;
 
-    // TODO improve the caching, eg. implement a real cache with a limit etc.
-    // NOTE: Using a synchronized map here is strictly necessary (race condition), RB / MS
-    // private Map<String, T> cache = new ConcurrentHashMap<String, T>();
-
     private Continuation<T> next;
 
     private Expression geometry;
@@ -173,6 +169,16 @@ public class Symbolizer<T extends Styling<T>> {
      * @return the styling with the geometries, p.second may be null if no geoms were found
      */
     public Pair<T, LinkedList<Geometry>> evaluate( Feature f, XPathEvaluator<Feature> evaluator ) {
+        LinkedList<Geometry> geoms = evaluateGeometries( f, evaluator );
+        return new Pair<T, LinkedList<Geometry>>( evaluateStyling( f, evaluator ), geoms );
+    }
+
+    /**
+     * @param f
+     * @param evaluator
+     * @return the geometries to be styled, never <code>null</code>
+     */
+    LinkedList<Geometry> evaluateGeometries( Feature f, XPathEvaluator<Feature> evaluator ) {
         LinkedList<Geometry> geoms = new LinkedList<Geometry>();
         if ( geometry != null && evaluator != null ) {
             try {
@@ -222,37 +228,34 @@ public class Symbolizer<T extends Styling<T>> {
                 LOG.warn( "Style was applied to a feature without a geometry." );
             }
         }
+        return geoms;
+    }
 
+    /**
+     * Evaluates the styling for the given feature. The result only depends on the values that the continuations
+     * evaluate using the given evaluator, so it can be shared between features with the same values (see
+     * {@link EvaluationCache}). The styling of an already evaluated symbolizer is always shared. Without a feature (e.g.
+     * for coverages), a copy of the evaluated or base styling is returned.
+     * 
+     * @param f
+     *            feature, can be <code>null</code>
+     * @param evaluator
+     * @return the styling, never <code>null</code>
+     */
+    T evaluateStyling( Feature f, XPathEvaluator<Feature> evaluator ) {
         if ( f == null ) {
-            return new Pair<T, LinkedList<Geometry>>( evaluated == null ? base.copy() : evaluated.copy(), geoms );
+            return evaluated == null ? base.copy() : evaluated.copy();
         }
-
-        // String id = f.getId();
-        // if ( id != null && cache.containsKey( id ) ) {
-        // return new Pair<T, LinkedList<Geometry>>( cache.get( id ), geoms );
-        // }
-
         if ( evaluated != null ) {
-            Pair<T, LinkedList<Geometry>> pair = new Pair<T, LinkedList<Geometry>>( evaluated, geoms );
-            // if ( id != null ) {
-            // cache.put( id, pair.first );
-            // }
-            return pair;
+            return evaluated;
         }
-
         T evald = base.copy();
-        Pair<T, LinkedList<Geometry>> pair = new Pair<T, LinkedList<Geometry>>( evald, geoms );
         if ( next == null ) {
             LOG.warn( "Something wrong with SE/SLD parsing. No continuation found, and no evaluated style." );
-            return pair;
+            return evald;
         }
-
         next.evaluate( evald, f, evaluator );
-        // if ( id != null ) {
-        // cache.put( id, pair.first );
-        // }
-
-        return pair;
+        return evald;
     }
 
     /**
@@ -0,0 +1,262 @@
+//$HeadURL$
+/*---------------------------------------------------------------------------- 
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.style.se.unevaluated;
+
+import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2;
+import static org.deegree.feature.types.property.ValueRepresentation.BOTH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.BaseType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.Feature;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.property.SimpleProperty;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.GeometryPropertyType;
+import org.deegree.feature.types.property.GeometryPropertyType.GeometryType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
+import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.primitive.Point;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link EvaluationCache}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class EvaluationCacheTest {
+
+    private static final String NS = "http://www.deegree.org/test";
+
+    private static final ValueReference KIND = new ValueReference( new QName( NS, "kind" ) );
+
+    private static final ValueReference WIDTH = new ValueReference( new QName( NS, "width" ) );
+
+    private static final ValueReference GEOM = new ValueReference( new QName( NS, "geom" ) );
+
+    @SuppressWarnings("unchecked")
+    private final XPathEvaluator<Feature> evaluator = (XPathEvaluator) new TypedObjectNodeXPathEvaluator();
+
+    private FeatureType ft;
+
+    private int computed;
+
+    private int fid;
+
+    @Before
+    public void setUp() {
+        List<PropertyType> pts = new ArrayList<PropertyType>();
+        pts.add( new SimplePropertyType( KIND.getAsQName(), 0, 1, BaseType.STRING, null, null ) );
+        pts.add( new SimplePropertyType( WIDTH.getAsQName(), 0, 1, BaseType.STRING, null, null ) );
+        pts.add( new GeometryPropertyType( GEOM.getAsQName(), 0, 1, null, null, GeometryType.POINT, DIM_2, BOTH ) );
+        ft = new GenericFeatureType( new QName( NS, "Water" ), pts, false );
+        computed = 0;
+    }
+
+    @Test
+    public void testEqualValuesShareResult() {
+        EvaluationCache<String[]> cache = new EvaluationCache<String[]>() {
+            @Override
+            String[] compute( Feature f, XPathEvaluator<Feature> evaluator ) {
+                ++computed;
+                return new String[] { eval( f, evaluator, KIND ) };
+            }
+        };
+        Feature road1 = feature( "road", "1", 0 );
+        Feature road2 = feature( "road", "2", 1 );
+        Feature path = feature( "path", "1", 2 );
+
+        // the first evaluation records the value references, so it is not cached
+        assertEquals( "road", cache.get( road1, evaluator )[0] );
+        String[] road = cache.get( road2, evaluator );
+        assertEquals( "road", road[0] );
+        assertSame( road, cache.get( road1, evaluator ) );
+        assertSame( road, cache.get( road2, evaluator ) );
+        assertEquals( "path", cache.get( path, evaluator )[0] );
+        assertEquals( "path", cache.get( path, evaluator )[0] );
+        assertEquals( 3, computed );
+    }
+
+    @Test
+    public void testReferenceReadOnConditionalBranch() {
+        EvaluationCache<String> cache = new EvaluationCache<String>() {
+            @Override
+            String compute( Feature f, XPathEvaluator<Feature> evaluator ) {
+                ++computed;
+                String kind = eval( f, evaluator, KIND );
+                if ( "river".equals( kind ) ) {
+                    return kind + ":" + eval( f, evaluator, WIDTH );
+                }
+                return kind;
+            }
+        };
+        Feature lake = feature( "lake", "10", 0 );
+        Feature river10 = feature( "river", "10", 1 );
+        Feature river20 = feature( "river", "20", 2 );
+        Feature otherRiver10 = feature( "river", "10", 3 );
+
+        assertEquals( "lake", cache.get( lake, evaluator ) );
+        // reads the width for the first time, so the key is extended and the cache cleared
+        assertEquals( "river:10", cache.get( river10, evaluator ) );
+        assertEquals( "river:20", cache.get( river20, evaluator ) );
+        assertEquals( "river:10", cache.get( otherRiver10, evaluator ) );
+        assertEquals( "lake", cache.get( lake, evaluator ) );
+        assertEquals( 5, computed );
+        assertEquals( "river:10", cache.get( river10, evaluator ) );
+        assertEquals( "river:20", cache.get( river20, evaluator ) );
+        assertEquals( "lake", cache.get( lake, evaluator ) );
+        assertEquals( 5, computed );
+    }
+
+    @Test
+    public void testGeometryValuesBypassCache() {
+        EvaluationCache<String> cache = new EvaluationCache<String>() {
+            @Override
+            String compute( Feature f, XPathEvaluator<Feature> evaluator ) {
+                ++computed;
+                return "x=" + getX( f, evaluator );
+            }
+        };
+        Feature f1 = feature( "lake", "10", 1 );
+        Feature f2 = feature( "lake", "10", 2 );
+        for ( int i = 0; i < 3; i++ ) {
+            assertEquals( "x=1.0", cache.get( f1, evaluator ) );
+            assertEquals( "x=2.0", cache.get( f2, evaluator ) );
+        }
+        assertEquals( 6, computed );
+    }
+
+    @Test
+    public void testDisabledAfterMissesWithoutHits() {
+        EvaluationCache<String> cache = kindCache();
+        for ( int i = 0; i <= EvaluationCache.MAX_SIZE; i++ ) {
+            assertEquals( "kind" + i, cache.get( feature( "kind" + i, "1", i ), evaluator ) );
+        }
+        assertEquals( EvaluationCache.MAX_SIZE + 1, computed );
+
+        // disabled: equal values are evaluated again
+        Feature f = feature( "kind0", "1", 0 );
+        assertEquals( "kind0", cache.get( f, evaluator ) );
+        assertEquals( "kind0", cache.get( f, evaluator ) );
+        assertEquals( EvaluationCache.MAX_SIZE + 3, computed );
+    }
+
+    @Test
+    public void testNotDisabledWithHits() {
+        EvaluationCache<String> cache = kindCache();
+        Feature repeated = feature( "repeated", "1", 0 );
+        cache.get( repeated, evaluator );
+        for ( int i = 0; i < 2 * EvaluationCache.MAX_SIZE; i++ ) {
+            assertEquals( "kind" + i, cache.get( feature( "kind" + i, "1", i ), evaluator ) );
+            assertEquals( "repeated", cache.get( repeated, evaluator ) );
+        }
+        // the repeated feature has only been evaluated twice (before and after the key was recorded)
+        assertEquals( 2 * EvaluationCache.MAX_SIZE + 2, computed );
+    }
+
+    @Test
+    public void testWithoutFeature() {
+        EvaluationCache<String> cache = kindCache();
+        assertEquals( "none", cache.get( null, evaluator ) );
+        assertEquals( "none", cache.get( null, evaluator ) );
+        assertEquals( 2, computed );
+        assertEquals( "lake", cache.get( feature( "lake", "10", 0 ), evaluator ) );
+    }
+
+    private EvaluationCache<String> kindCache() {
+        return new EvaluationCache<String>() {
+            @Override
+            String compute( Feature f, XPathEvaluator<Feature> evaluator ) {
+                ++computed;
+                return f == null ? "none" : eval( f, evaluator, KIND );
+            }
+        };
+    }
+
+    private Feature feature( String kind, String width, double x ) {
+        List<Property> props = new ArrayList<Property>();
+        props.add( new SimpleProperty( (SimplePropertyType) ft.getPropertyDeclaration( KIND.getAsQName() ), kind ) );
+        props.add( new SimpleProperty( (SimplePropertyType) ft.getPropertyDeclaration( WIDTH.getAsQName() ), width ) );
+        Point p = new GeometryFactory().createPoint( null, x, 0, null );
+        props.add( new GenericProperty( ft.getPropertyDeclaration( GEOM.getAsQName() ), p ) );
+        return ft.newFeature( "WATER_" + fid++, props, null );
+    }
+
+    private static String eval( Feature f, XPathEvaluator<Feature> evaluator, ValueReference ref ) {
+        try {
+            for ( TypedObjectNode node : evaluator.eval( f, ref ) ) {
+                if ( node instanceof Property ) {
+                    node = ( (Property) node ).getValue();
+                }
+                if ( node instanceof PrimitiveValue ) {
+                    return ( (PrimitiveValue) node ).getAsText();
+                }
+            }
+        } catch ( FilterEvaluationException e ) {
+            throw new RuntimeException( e );
+        }
+        return null;
+    }
+
+    private static double getX( Feature f, XPathEvaluator<Feature> evaluator ) {
+        try {
+            TypedObjectNode node = evaluator.eval( f, GEOM )[0];
+            if ( node instanceof Property ) {
+                node = ( (Property) node ).getValue();
+            }
+            return ( (Point) node ).get0();
+        } catch ( FilterEvaluationException e ) {
+            throw new RuntimeException( e );
+        }
+    }
+}
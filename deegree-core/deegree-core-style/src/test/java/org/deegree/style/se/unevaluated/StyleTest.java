@@ -0,0 +1,175 @@
+//$HeadURL$
+/*---------------------------------------------------------------------------- 
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.style.se.unevaluated;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.BaseType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.utils.Triple;
+import org.deegree.feature.Feature;
+import org.deegree.feature.property.SimpleProperty;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
+import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.geometry.Geometry;
+import org.deegree.style.styling.LineStyling;
+import org.deegree.style.styling.Styling;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the evaluation of {@link Style}s, especially the sharing of evaluated stylings.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class StyleTest {
+
+    private static final String NS = "http://www.deegree.org/test";
+
+    private static final ValueReference WIDTH = new ValueReference( new QName( NS, "width" ) );
+
+    @SuppressWarnings("unchecked")
+    private final XPathEvaluator<Feature> evaluator = (XPathEvaluator) new TypedObjectNodeXPathEvaluator();
+
+    private SimplePropertyType widthPt;
+
+    private FeatureType ft;
+
+    private LineStyling base;
+
+    private Symbolizer<LineStyling> symbolizer;
+
+    @Before
+    public void setUp() {
+        widthPt = new SimplePropertyType( WIDTH.getAsQName(), 0, 1, BaseType.STRING, null, null );
+        List<PropertyType> pts = new ArrayList<PropertyType>();
+        pts.add( widthPt );
+        ft = new GenericFeatureType( new QName( NS, "Road" ), pts, false );
+
+        base = new LineStyling();
+        Continuation<LineStyling> contn = new Continuation<LineStyling>() {
+            @Override
+            public void updateStep( LineStyling base, Feature obj, XPathEvaluator<Feature> evaluator ) {
+                try {
+                    TypedObjectNode node = evaluator.eval( obj, WIDTH )[0];
+                    String width = ( (PrimitiveValue) ( (Property) node ).getValue() ).getAsText();
+                    base.stroke.width = Double.parseDouble( width );
+                } catch ( FilterEvaluationException e ) {
+                    throw new RuntimeException( e );
+                }
+            }
+        };
+        symbolizer = new Symbolizer<LineStyling>( base, contn, null, "test", null, 0, 0 );
+    }
+
+    @Test
+    public void testEvaluateWithoutFeature() {
+        Style style = new Style( symbolizer, null, "test", null ).filter( 1000 );
+        Styling styling1 = evaluate( style, null );
+        Styling styling2 = evaluate( style, null );
+        assertNotSame( base, styling1 );
+        assertNotSame( styling1, styling2 );
+        assertEquals( 1.0, ( (LineStyling) styling1 ).stroke.width, 0.0 );
+    }
+
+    @Test
+    public void testEvaluateEvaluatedWithoutFeature() {
+        LineStyling evaluated = new LineStyling();
+        evaluated.stroke.width = 5;
+        Symbolizer<LineStyling> s = new Symbolizer<LineStyling>( evaluated, null, "test", null, 0, 0 );
+        Style style = new Style( s, null, "test", null ).filter( 1000 );
+
+        // without feature, a copy is returned (callers may modify it), otherwise the evaluated styling is shared
+        Styling copy = evaluate( style, null );
+        assertNotSame( evaluated, copy );
+        assertEquals( 5.0, ( (LineStyling) copy ).stroke.width, 0.0 );
+        assertSame( evaluated, evaluate( style, feature( "1" ) ) );
+    }
+
+    @Test
+    public void testEqualValuesShareStyling() {
+        Style style = new Style( symbolizer, null, "test", null ).filter( 1000 );
+        evaluate( style, feature( "2" ) );
+        Styling styling = evaluate( style, feature( "2" ) );
+        assertEquals( 2.0, ( (LineStyling) styling ).stroke.width, 0.0 );
+        assertSame( styling, evaluate( style, feature( "2" ) ) );
+
+        Styling other = evaluate( style, feature( "3" ) );
+        assertEquals( 3.0, ( (LineStyling) other ).stroke.width, 0.0 );
+        assertSame( styling, evaluate( style, feature( "2" ) ) );
+        assertEquals( 1.0, base.stroke.width, 0.0 );
+    }
+
+    @Test
+    public void testUnfilteredStyleDoesNotShareStyling() {
+        Style style = new Style( symbolizer, null, "test", null );
+        Styling styling = evaluate( style, feature( "2" ) );
+        assertEquals( 2.0, ( (LineStyling) styling ).stroke.width, 0.0 );
+        assertNotSame( styling, evaluate( style, feature( "2" ) ) );
+    }
+
+    private Styling evaluate( Style style, Feature f ) {
+        // like for coverages, no evaluator is passed without a feature
+        XPathEvaluator<Feature> e = f == null ? null : evaluator;
+        LinkedList<Triple<Styling, LinkedList<Geometry>, String>> list = style.evaluate( f, e );
+        assertEquals( 1, list.size() );
+        return list.get( 0 ).first;
+    }
+
+    private Feature feature( String width ) {
+        List<Property> props = new ArrayList<Property>();
+        props.add( new SimpleProperty( widthPt, width ) );
+        return ft.newFeature( null, props, null );
+    }
+}
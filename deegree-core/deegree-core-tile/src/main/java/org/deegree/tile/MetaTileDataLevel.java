@@ -0,0 +1,77 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+ http://www.occamlabs.de/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile;
+
+/**
+ * A {@link TileDataLevel} that can retrieve blocks of adjacent tiles (metatiles) with a single backend operation.
+ * <p>
+ * Rendering a metatile is usually much cheaper than rendering each of its tiles separately (one remote request or
+ * rendering pass instead of many, labels and symbols are not cut at the inner tile borders). This is used for filling
+ * tile caches.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public interface MetaTileDataLevel extends TileDataLevel {
+
+    /**
+     * Retrieves a block of adjacent tiles.
+     * <p>
+     * The block is clipped to the extent of the tile matrix. The data of all returned tiles is fetched by a single
+     * backend operation when the first of them is accessed.
+     * </p>
+     * 
+     * @param x
+     *            column index of the upper left tile of the block, counting from zero
+     * @param y
+     *            row index of the upper left tile of the block, counting from zero
+     * @param columns
+     *            number of columns of the block, must be positive
+     * @param rows
+     *            number of rows of the block, must be positive
+     * @return the tiles, indexed by <code>[column - x][row - y]</code>, an empty array if the block does not intersect
+     *         the tile matrix, never <code>null</code>
+     */
+    Tile[][] getMetaTile( long x, long y, int columns, int rows );
+
+}
@@ -41,6 +41,8 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.workspace.standard;
 
+import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static org.deegree.workspace.ResourceStates.ResourceState.Built;
 import static org.deegree.workspace.ResourceStates.ResourceState.Deactivated;
 import static org.deegree.workspace.ResourceStates.ResourceState.Error;
@@ -61,6 +63,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.deegree.workspace.Destroyable;
 import org.deegree.workspace.ErrorHandler;
@@ -94,6 +100,16 @@ public class DefaultWorkspace implements Workspace {
 
     private static final Logger LOG = getLogger( DefaultWorkspace.class );
 
+    /**
+     * Name of the system property that sets the number of threads used for initializing the resources. Defaults to 1,
+     * which initializes the resources one after another. Larger values should only be used if resources do not
+     * initialize other resources (see {@link #init(ResourceIdentifier, PreparedResources)}) from their
+     * <code>init()</code> method.
+     */
+    public static final String INIT_THREADS_PROPERTY = "deegree.workspace.init.threads";
+
+    private static final int DEFAULT_INIT_THREADS = 1;
+
     private final File directory;
 
     private ClassLoader moduleClassLoader;
@@ -138,44 +154,124 @@ public class DefaultWorkspace implements Workspace {
             graph.insertNode( md );
         }
 
-        outer: for ( ResourceMetadata<? extends Resource> md : graph.toSortedList() ) {
-            if ( states.getState( md.getIdentifier() ) == Deactivated ) {
-                LOG.warn( "Not building resource {} (deactivated).", md.getIdentifier() );
-                continue;
-            }
-            LOG.info( "Building resource {}.", md.getIdentifier() );
-            for ( ResourceIdentifier<? extends Resource> dep : md.getDependencies() ) {
-                if ( states.getState( dep ) != Initialized ) {
-                    states.setState( md.getIdentifier(), Error );
-                    String msg = "Dependent resource " + dep + " failed to initialize.";
-                    LOG.error( "Unable to build resource {}: " + msg, md.getIdentifier() );
-                    errors.registerError( md.getIdentifier(), msg );
-                    continue outer;
+        initResources( graph.toSortedList(), prepared );
+    }
+
+    /**
+     * Builds and initializes the given resources on a pool of threads (see {@link #INIT_THREADS_PROPERTY}). A resource
+     * is started as soon as all of its (hard and soft) dependencies have been processed, so independent resources are
+     * initialized concurrently.
+     * 
+     * @param sorted
+     *            resources sorted by initialization order, never <code>null</code>
+     * @param prepared
+     *            the prepared builders, never <code>null</code>
+     */
+    private void initResources( List<ResourceMetadata<? extends Resource>> sorted, final PreparedResources prepared ) {
+        if ( sorted.isEmpty() ) {
+            return;
+        }
+        long start = currentTimeMillis();
+        int threads = Math.max( 1, Integer.getInteger( INIT_THREADS_PROPERTY, DEFAULT_INIT_THREADS ) );
+        LOG.info( "Initializing {} resources using {} threads.", sorted.size(), threads );
+        ExecutorService executor = createInitExecutor( threads );
+        try {
+            ResourceInitScheduler.ResourceInitializer initializer = new ResourceInitScheduler.ResourceInitializer() {
+                @Override
+                public boolean init( ResourceMetadata<? extends Resource> md ) {
+                    return initResource( md, prepared );
                 }
-            }
-            try {
-                Resource res = prepared.getBuilder( md.getIdentifier() ).build();
-                if ( res == null ) {
-                    errors.registerError( md.getIdentifier(), "Unable to prepare." );
-                    states.setState( md.getIdentifier(), Error );
-                    LOG.error( "Unable to build resource {}.", md.getIdentifier() );
-                    continue;
+
+                @Override
+                public void skip( ResourceMetadata<? extends Resource> md, ResourceIdentifier<?> failedDependency ) {
+                    dependencyFailed( md, failedDependency );
                 }
-                states.setState( md.getIdentifier(), Built );
-                LOG.info( "Initializing resource {}.", md.getIdentifier() );
-                res.init();
-                states.setState( md.getIdentifier(), Initialized );
-                resources.put( res.getMetadata().getIdentifier(), res );
-            } catch ( Exception ex ) {
+            };
+            new ResourceInitScheduler( sorted, graph, initializer, executor ).run();
+        } catch ( InterruptedException e ) {
+            LOG.warn( "Interrupted while initializing resources." );
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        LOG.info( "Initialized resources in {} ms.", currentTimeMillis() - start );
+    }
+
+    private static ExecutorService createInitExecutor( int threads ) {
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread( Runnable r ) {
+                Thread t = new Thread( r, "workspace-init-" + count.incrementAndGet() );
+                t.setDaemon( true );
+                t.setContextClassLoader( contextClassLoader );
+                return t;
+            }
+        };
+        return newFixedThreadPool( threads, threadFactory );
+    }
+
+    /**
+     * Builds and initializes a single resource. Its dependencies must have been processed before.
+     * 
+     * @param md
+     *            metadata of the resource, never <code>null</code>
+     * @param prepared
+     *            the prepared builders, never <code>null</code>
+     * @return <code>true</code>, if the resource is available afterwards, <code>false</code> otherwise
+     */
+    private boolean initResource( ResourceMetadata<? extends Resource> md, PreparedResources prepared ) {
+        if ( states.getState( md.getIdentifier() ) == Deactivated ) {
+            LOG.warn( "Not building resource {} (deactivated).", md.getIdentifier() );
+            return false;
+        }
+        if ( resources.get( md.getIdentifier() ) != null ) {
+            // initialized by another resource already
+            LOG.info( "Resource {} already available.", md.getIdentifier() );
+            return true;
+        }
+        LOG.info( "Building resource {}.", md.getIdentifier() );
+        for ( ResourceIdentifier<? extends Resource> dep : md.getDependencies() ) {
+            if ( states.getState( dep ) != Initialized ) {
+                dependencyFailed( md, dep );
+                return false;
+            }
+        }
+        long start = currentTimeMillis();
+        try {
+            Resource res = prepared.getBuilder( md.getIdentifier() ).build();
+            if ( res == null ) {
+                errors.registerError( md.getIdentifier(), "Unable to prepare." );
                 states.setState( md.getIdentifier(), Error );
-                String msg = "Unable to build resource " + md.getIdentifier() + ": " + ex.getLocalizedMessage();
-                errors.registerError( md.getIdentifier(), msg );
-                LOG.error( msg );
-                LOG.trace( "Stack trace:", ex );
+                LOG.error( "Unable to build resource {}.", md.getIdentifier() );
+                return false;
             }
+            states.setState( md.getIdentifier(), Built );
+            LOG.info( "Initializing resource {}.", md.getIdentifier() );
+            res.init();
+            states.setState( md.getIdentifier(), Initialized );
+            resources.put( res.getMetadata().getIdentifier(), res );
+            LOG.info( "Initialized resource {} in {} ms.", md.getIdentifier(), currentTimeMillis() - start );
+            return true;
+        } catch ( Exception ex ) {
+            states.setState( md.getIdentifier(), Error );
+            String msg = "Unable to build resource " + md.getIdentifier() + ": " + ex.getLocalizedMessage();
+            errors.registerError( md.getIdentifier(), msg );
+            LOG.error( msg + " (after " + ( currentTimeMillis() - start ) + " ms)" );
+            LOG.trace( "Stack trace:", ex );
+            return false;
         }
     }
 
+    private void dependencyFailed( ResourceMetadata<? extends Resource> md, ResourceIdentifier<?> dep ) {
+        states.setState( md.getIdentifier(), Error );
+        String msg = "Dependent resource " + dep + " failed to initialize.";
+        LOG.error( "Unable to build resource {}: " + msg, md.getIdentifier() );
+        errors.registerError( md.getIdentifier(), msg );
+    }
+
     @Override
     public void destroy() {
         List<ResourceMetadata<? extends Resource>> list = graph.toSortedList();
@@ -315,7 +411,7 @@ public class DefaultWorkspace implements Workspace {
         wsModules = new ArrayList<ModuleInfo>();
         resourceManagers = new HashMap<Class<? extends ResourceProvider<? extends Resource>>, ResourceManager<? extends Resource>>();
         resourceMetadata = new HashMap<ResourceIdentifier<? extends Resource>, ResourceMetadata<? extends Resource>>();
-        resources = new HashMap<ResourceIdentifier<? extends Resource>, Resource>();
+        resources = new ConcurrentHashMap<ResourceIdentifier<? extends Resource>, Resource>();
         initializables.clear();
         graph = new ResourceGraph();
         states = new ResourceStates();
@@ -360,9 +456,12 @@ public class DefaultWorkspace implements Workspace {
         List<ResourceMetadata<? extends Resource>> mdList = new ArrayList<ResourceMetadata<? extends Resource>>();
         ResourceMetadata<? extends Resource> md = resourceMetadata.get( id );
         mdList.add( md );
-        graph.insertNode( md );
         List<ResourceMetadata<? extends Resource>> dependencies = new ArrayList<ResourceMetadata<?>>();
-        WorkspaceUtils.collectDependencies( dependencies, graph.getNode( id ) );
+        // may be called by resources that are initialized concurrently (see initAll())
+        synchronized ( graph ) {
+            graph.insertNode( md );
+            WorkspaceUtils.collectDependencies( dependencies, graph.getNode( id ) );
+        }
         mdList.addAll( dependencies );
 
         ResourceGraph g = new ResourceGraph( mdList );
@@ -475,7 +574,9 @@ public class DefaultWorkspace implements Workspace {
         if ( builder == null ) {
             states.setState( id, Error );
         } else {
-            graph.insertNode( md );
+            synchronized ( graph ) {
+                graph.insertNode( md );
+            }
             states.setState( id, Prepared );
         }
         return builder;
@@ -0,0 +1,219 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.workspace.standard;
+
+import static java.util.Collections.newSetFromMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.workspace.Resource;
+import org.deegree.workspace.ResourceIdentifier;
+import org.deegree.workspace.ResourceMetadata;
+import org.deegree.workspace.graph.ResourceGraph;
+import org.deegree.workspace.graph.ResourceNode;
+
+/**
+ * Schedules the initialization of resources on an executor, so that every resource is submitted once all of its (hard
+ * and soft) dependencies have been processed. Resources whose hard dependencies failed are not initialized, but
+ * reported as skipped.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+final class ResourceInitScheduler {
+
+    /**
+     * Callback that does the actual work.
+     */
+    interface ResourceInitializer {
+
+        /**
+         * Builds and initializes a resource.
+         * 
+         * @param md
+         *            metadata of the resource, never <code>null</code>
+         * @return <code>true</code>, if the resource has been initialized, <code>false</code> otherwise
+         */
+        boolean init( ResourceMetadata<? extends Resource> md );
+
+        /**
+         * Called instead of {@link #init(ResourceMetadata)} if a hard dependency of the resource failed.
+         * 
+         * @param md
+         *            metadata of the resource, never <code>null</code>
+         * @param failedDependency
+         *            the dependency that failed, never <code>null</code>
+         */
+        void skip( ResourceMetadata<? extends Resource> md, ResourceIdentifier<?> failedDependency );
+    }
+
+    private final Map<ResourceIdentifier<? extends Resource>, AtomicInteger> pending;
+
+    private final Map<ResourceIdentifier<? extends Resource>, List<ResourceMetadata<? extends Resource>>> dependents;
+
+    private final Map<ResourceIdentifier<? extends Resource>, List<ResourceIdentifier<?>>> hardDependencies;
+
+    private final Set<ResourceIdentifier<? extends Resource>> failed;
+
+    private final List<ResourceMetadata<? extends Resource>> roots;
+
+    private final ResourceInitializer initializer;
+
+    private final ExecutorService executor;
+
+    private final CountDownLatch done;
+
+    /**
+     * @param sorted
+     *            resources sorted by initialization order, never <code>null</code>
+     * @param graph
+     *            dependency graph that contains the resources, never <code>null</code>
+     * @param initializer
+     *            initializes the resources, never <code>null</code>
+     * @param executor
+     *            used for initializing the resources, never <code>null</code>
+     */
+    ResourceInitScheduler( List<ResourceMetadata<? extends Resource>> sorted, ResourceGraph graph,
+                           ResourceInitializer initializer, ExecutorService executor ) {
+        this.initializer = initializer;
+        this.executor = executor;
+        this.done = new CountDownLatch( sorted.size() );
+        pending = new HashMap<ResourceIdentifier<? extends Resource>, AtomicInteger>();
+        dependents = new HashMap<ResourceIdentifier<? extends Resource>, List<ResourceMetadata<? extends Resource>>>();
+        hardDependencies = new HashMap<ResourceIdentifier<? extends Resource>, List<ResourceIdentifier<?>>>();
+        failed = newSetFromMap( new ConcurrentHashMap<ResourceIdentifier<? extends Resource>, Boolean>() );
+        roots = new ArrayList<ResourceMetadata<? extends Resource>>();
+        for ( ResourceMetadata<? extends Resource> md : sorted ) {
+            pending.put( md.getIdentifier(), new AtomicInteger() );
+            dependents.put( md.getIdentifier(), new ArrayList<ResourceMetadata<? extends Resource>>() );
+            hardDependencies.put( md.getIdentifier(), new ArrayList<ResourceIdentifier<?>>() );
+        }
+        // resources may modify the graph while initializing, so the dependencies are collected up front
+        synchronized ( graph ) {
+            for ( ResourceMetadata<? extends Resource> md : sorted ) {
+                ResourceNode<? extends Resource> node = graph.getNode( md.getIdentifier() );
+                for ( ResourceNode<? extends Resource> dep : node.getDependencies() ) {
+                    if ( addDependency( md, dep ) ) {
+                        hardDependencies.get( md.getIdentifier() ).add( dep.getMetadata().getIdentifier() );
+                    }
+                }
+                for ( ResourceNode<? extends Resource> dep : node.getSoftDependencies() ) {
+                    addDependency( md, dep );
+                }
+                if ( pending.get( md.getIdentifier() ).get() == 0 ) {
+                    roots.add( md );
+                }
+            }
+        }
+    }
+
+    private boolean addDependency( ResourceMetadata<? extends Resource> md, ResourceNode<? extends Resource> dep ) {
+        List<ResourceMetadata<? extends Resource>> list = dependents.get( dep.getMetadata().getIdentifier() );
+        if ( list == null ) {
+            return false;
+        }
+        list.add( md );
+        pending.get( md.getIdentifier() ).incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Initializes all resources and waits until they have been processed.
+     * 
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    void run()
+                            throws InterruptedException {
+        for ( ResourceMetadata<? extends Resource> md : roots ) {
+            submit( md );
+        }
+        done.await();
+    }
+
+    private void submit( final ResourceMetadata<? extends Resource> md ) {
+        executor.execute( new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    process( md );
+                } finally {
+                    for ( ResourceMetadata<? extends Resource> dependent : dependents.get( md.getIdentifier() ) ) {
+                        if ( pending.get( dependent.getIdentifier() ).decrementAndGet() == 0 ) {
+                            submit( dependent );
+                        }
+                    }
+                    done.countDown();
+                }
+            }
+        } );
+    }
+
+    private void process( ResourceMetadata<? extends Resource> md ) {
+        ResourceIdentifier<? extends Resource> id = md.getIdentifier();
+        for ( ResourceIdentifier<?> dep : hardDependencies.get( id ) ) {
+            if ( failed.contains( dep ) ) {
+                failed.add( id );
+                initializer.skip( md, dep );
+                return;
+            }
+        }
+        boolean initialized = false;
+        try {
+            initialized = initializer.init( md );
+        } finally {
+            if ( !initialized ) {
+                failed.add( id );
+            }
+        }
+    }
+
+}
@@ -0,0 +1,227 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.workspace.standard;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import org.deegree.workspace.Resource;
+import org.deegree.workspace.ResourceBuilder;
+import org.deegree.workspace.ResourceIdentifier;
+import org.deegree.workspace.ResourceMetadata;
+import org.deegree.workspace.ResourceProvider;
+import org.deegree.workspace.graph.ResourceGraph;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests for {@link ResourceInitScheduler}. */
+public class ResourceInitSchedulerTest {
+
+    private final Map<String, AbstractResourceMetadata<?>> metadata;
+
+    // events in the order they happened: "start:<id>", "end:<id>", "skip:<id>:<failed dependency>"
+    private final List<String> events = Collections.synchronizedList( new ArrayList<String>() );
+
+    private ExecutorService executor;
+
+    public ResourceInitSchedulerTest() {
+        metadata = new HashMap<String, AbstractResourceMetadata<?>>();
+    }
+
+    @Before
+    public void setUp() {
+        executor = newFixedThreadPool( 4 );
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testDependenciesAreInitializedFirst()
+                            throws InterruptedException {
+        add( "a" );
+        add( "b", "a" );
+        add( "c", "a" );
+        add( "d", "b", "c" );
+        add( "e" );
+        addSoft( "f", "d" );
+
+        run( "none" );
+
+        assertEquals( 12, events.size() );
+        for ( String id : metadata.keySet() ) {
+            assertTrue( events.indexOf( "start:" + id ) < events.indexOf( "end:" + id ) );
+        }
+        assertBefore( "a", "b" );
+        assertBefore( "a", "c" );
+        assertBefore( "b", "d" );
+        assertBefore( "c", "d" );
+        assertBefore( "d", "f" );
+    }
+
+    @Test
+    public void testFailuresArePropagatedToDependents()
+                            throws InterruptedException {
+        add( "a" );
+        add( "b", "a" );
+        add( "c", "b" );
+        add( "d" );
+        add( "e", "d", "c" );
+        addSoft( "f", "a" );
+
+        run( "a" );
+
+        assertTrue( events.contains( "end:a" ) );
+        assertTrue( events.contains( "skip:b:a" ) );
+        assertTrue( events.contains( "skip:c:b" ) );
+        assertTrue( events.contains( "skip:e:c" ) );
+        assertFalse( events.contains( "start:b" ) );
+        assertFalse( events.contains( "start:c" ) );
+        assertFalse( events.contains( "start:e" ) );
+        // independent resources and soft dependencies are not affected
+        assertTrue( events.contains( "end:d" ) );
+        assertTrue( events.contains( "end:f" ) );
+        assertBefore( "a", "f" );
+    }
+
+    @Test
+    public void testDependenciesOutsideTheListAreIgnored()
+                            throws InterruptedException {
+        add( "a" );
+        add( "b", "a" );
+        ResourceGraph graph = new ResourceGraph();
+        for ( AbstractResourceMetadata<?> md : metadata.values() ) {
+            graph.insertNode( md );
+        }
+        List<ResourceMetadata<? extends Resource>> sorted = new ArrayList<ResourceMetadata<? extends Resource>>();
+        sorted.add( metadata.get( "b" ) );
+        new ResourceInitScheduler( sorted, graph, new RecordingInitializer( "none" ), executor ).run();
+        assertEquals( 2, events.size() );
+        assertTrue( events.contains( "end:b" ) );
+    }
+
+    private void run( String failing )
+                            throws InterruptedException {
+        ResourceGraph graph = new ResourceGraph();
+        for ( AbstractResourceMetadata<?> md : metadata.values() ) {
+            graph.insertNode( md );
+        }
+        new ResourceInitScheduler( graph.toSortedList(), graph, new RecordingInitializer( failing ), executor ).run();
+    }
+
+    private void assertBefore( String dependency, String dependent ) {
+        assertTrue( dependency + " must be initialized before " + dependent,
+                    events.indexOf( "end:" + dependency ) < events.indexOf( "start:" + dependent ) );
+    }
+
+    private void add( String id, String... dependencies ) {
+        AbstractResourceMetadata<?> md = createMetadata( id );
+        for ( String dep : dependencies ) {
+            md.dependencies.add( identifier( dep ) );
+        }
+        metadata.put( id, md );
+    }
+
+    private void addSoft( String id, String... dependencies ) {
+        AbstractResourceMetadata<?> md = createMetadata( id );
+        for ( String dep : dependencies ) {
+            md.softDependencies.add( identifier( dep ) );
+        }
+        metadata.put( id, md );
+    }
+
+    private static ResourceIdentifier identifier( String id ) {
+        return new DefaultResourceIdentifier( ResourceProvider.class, id );
+    }
+
+    private static AbstractResourceMetadata<?> createMetadata( String id ) {
+        DefaultResourceLocation loc = new DefaultResourceLocation( new File( "/tmp/" ), identifier( id ) );
+        return new AbstractResourceMetadata( null, loc, null ) {
+            @Override
+            public ResourceBuilder prepare() {
+                return null;
+            }
+        };
+    }
+
+    private class RecordingInitializer implements ResourceInitScheduler.ResourceInitializer {
+
+        private final String failing;
+
+        RecordingInitializer( String failing ) {
+            this.failing = failing;
+        }
+
+        @Override
+        public boolean init( ResourceMetadata<? extends Resource> md ) {
+            String id = md.getIdentifier().getId();
+            events.add( "start:" + id );
+            try {
+                // give other resources the chance to start too early
+                Thread.sleep( 10 );
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+            events.add( "end:" + id );
+            return !failing.equals( id );
+        }
+
+        @Override
+        public void skip( ResourceMetadata<? extends Resource> md, ResourceIdentifier<?> failedDependency ) {
+            events.add( "skip:" + md.getIdentifier().getId() + ":" + failedDependency.getId() );
+        }
+    }
+
+}
@@ -40,6 +40,9 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence;
 
+import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.stream.FeatureInputStream;
+import org.deegree.feature.stream.PagingFeatureInputStream;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.geometry.Envelope;
 
@@ -80,4 +83,43 @@ public class FeatureStores {
         return env;
     }
 
+    /**
+     * Returns whether the query restricts the features to a window (start index and/or maximum number of features).
+     * 
+     * @param query
+     *            query, must not be <code>null</code>
+     * @return <code>true</code>, if the query is paged
+     */
+    public static boolean isPaged( Query query ) {
+        return query.getStartIndex() > 0 || query.getMaxFeatures() > 0;
+    }
+
+    /**
+     * Returns the maximum number of features of the query.
+     * 
+     * @param query
+     *            query, must not be <code>null</code>
+     * @return maximum number of features, -1 for no limit
+     */
+    public static int getLimit( Query query ) {
+        return query.getMaxFeatures() > 0 ? query.getMaxFeatures() : -1;
+    }
+
+    /**
+     * Applies the window (start index and maximum number of features) of the query in memory, for stores that
+     * cannot restrict the features when fetching them.
+     * 
+     * @param rs
+     *            stream that contains all features of the query, must not be <code>null</code>
+     * @param query
+     *            query, must not be <code>null</code>
+     * @return stream that returns the window of the query, the given stream if the query is not paged
+     */
+    public static FeatureInputStream applyPaging( FeatureInputStream rs, Query query ) {
+        if ( !isPaged( query ) ) {
+            return rs;
+        }
+        return new PagingFeatureInputStream( rs, query.getStartIndex(), getLimit( query ) );
+    }
+
 }
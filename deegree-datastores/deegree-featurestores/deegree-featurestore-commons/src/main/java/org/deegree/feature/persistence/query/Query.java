@@ -39,6 +39,7 @@ import static java.util.Collections.emptyList;
 import static org.deegree.feature.persistence.query.Query.QueryHint.HINT_RESOLUTION;
 import static org.deegree.feature.persistence.query.Query.QueryHint.HINT_SCALE;
 import static org.deegree.filter.Filters.extractPrefilterBBoxConstraint;
+import static org.slf4j.LoggerFactory.getLogger;
 
 import java.util.HashMap;
 import java.util.List;
@@ -55,7 +56,9 @@ import org.deegree.filter.projection.ProjectionClause;
 import org.deegree.filter.sort.SortProperty;
 import org.deegree.filter.spatial.BBOX;
 import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryTransformer;
 import org.deegree.protocol.wfs.getfeature.TypeName;
+import org.slf4j.Logger;
 
 /**
  * Encapsulates the parameter of a query to a {@link FeatureStore}.
@@ -67,6 +70,8 @@ import org.deegree.protocol.wfs.getfeature.TypeName;
  */
 public class Query {
 
+    private static final Logger LOG = getLogger( Query.class );
+
     /**
      * Names for hints and additional parameters that a {@link FeatureStore} implementation may take into account to
      * increase efficient query processing.
@@ -97,6 +102,8 @@ public class Query {
 
     private int maxFeatures = -1;
 
+    private int startIndex = 0;
+
     private final List<ProjectionClause> projections;
 
     /**
@@ -194,6 +201,45 @@ public class Query {
         return hints.get( code );
     }
 
+    /**
+     * Returns the tolerance that geometries can be generalized with before they are rendered, derived from the
+     * {@link QueryHint#HINT_RESOLUTION} hint.
+     * <p>
+     * The tolerance is half the resolution (so generalization stays below one pixel). The resolution is assumed to be
+     * given in units of the crs of the prefilter bbox (see {@link #getPrefilterBBoxEnvelope()}), for other crs it is
+     * scaled by the ratio of the bbox spans.
+     * </p>
+     * 
+     * @param crs
+     *            crs of the geometries to be generalized, can be <code>null</code> (units unknown, so -1 is returned)
+     * @return tolerance in units of the given crs, or -1 if the query has no resolution hint or it cannot be converted
+     */
+    public double getGeneralizationTolerance( ICRS crs ) {
+        Object hint = hints.get( HINT_RESOLUTION );
+        if ( !( hint instanceof Double ) ) {
+            return -1;
+        }
+        Envelope bbox = getPrefilterBBoxEnvelope();
+        if ( crs == null || bbox == null || bbox.getCoordinateSystem() == null ) {
+            // units unknown
+            return -1;
+        }
+        double tolerance = (Double) hint / 2;
+        if ( crs.equals( bbox.getCoordinateSystem() ) ) {
+            return tolerance;
+        }
+        try {
+            Envelope transformed = new GeometryTransformer( crs ).transform( bbox );
+            if ( !( bbox.getSpan0() > 0 ) ) {
+                return -1;
+            }
+            return tolerance * transformed.getSpan0() / bbox.getSpan0();
+        } catch ( Exception e ) {
+            LOG.debug( "Cannot convert resolution hint to crs {}: {}", crs.getAlias(), e.getMessage() );
+            return -1;
+        }
+    }
+
     /**
      * Tries to extract a {@link BBOX} constraint from the query {@link Filter} that can be used as a pre-filtering step
      * to narrow the result set.
@@ -272,9 +318,42 @@ public class Query {
     }
 
     /**
+     * Returns the maximum number of features to be returned. {@link FeatureStore} implementations may use it to limit
+     * the result set, but callers must not rely on it.
+     * 
      * @return -1, if no limit has been set
      */
     public int getMaxFeatures() {
         return maxFeatures;
     }
+
+    /**
+     * Sets the maximum number of features to be returned.
+     * 
+     * @param maxFeatures
+     *            may be -1 if no limit needs to be exercised
+     */
+    public void setMaxFeatures( int maxFeatures ) {
+        this.maxFeatures = maxFeatures;
+    }
+
+    /**
+     * Returns the index of the first feature to be returned (paging). {@link FeatureStore} implementations must skip
+     * the features before this index, either in the backend or in memory.
+     * 
+     * @return index of the first feature to be returned, 0 if no features have to be skipped
+     */
+    public int getStartIndex() {
+        return startIndex;
+    }
+
+    /**
+     * Sets the index of the first feature to be returned.
+     * 
+     * @param startIndex
+     *            index of the first feature to be returned, must be >= 0
+     */
+    public void setStartIndex( int startIndex ) {
+        this.startIndex = startIndex;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,225 @@
+//$HeadURL$
+/*---------------------------------------------------------------------------- 
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.deegree.commons.index.LongList;
+import org.deegree.commons.index.PackedRTree;
+import org.deegree.feature.Feature;
+import org.deegree.geometry.Envelope;
+
+/**
+ * Immutable spatial index for the features of one type, maps feature envelopes to {@link FeatureSlots} slots.
+ * <p>
+ * The index consists of a few static {@link PackedRTree}s (levels) of decreasing size. New entries are bulk loaded into
+ * a new small level that is merged with the following levels as long as these are not larger (logarithmic method), so
+ * every entry is only rebuilt <code>O(log(n))</code> times. Removed features are not removed from the trees, their
+ * (empty) slots are skipped and dropped with the next merge. Updated features get an additional entry, the outdated
+ * one is a false positive that is removed by the (exact) evaluation of the query filter.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class FeatureIndex {
+
+    static final FeatureIndex EMPTY = new FeatureIndex( new Level[0] );
+
+    private final Level[] levels;
+
+    private final int entries;
+
+    private FeatureIndex( Level[] levels ) {
+        this.levels = levels;
+        int entries = 0;
+        for ( Level level : levels ) {
+            entries += level.slots.length;
+        }
+        this.entries = entries;
+    }
+
+    /**
+     * Builds an index for all features of the given slots.
+     * 
+     * @param features
+     *            features to be indexed, must not be <code>null</code>
+     * @return index, never <code>null</code>
+     */
+    static FeatureIndex build( FeatureSlots features ) {
+        int[] slots = new int[features.length()];
+        for ( int i = 0; i < slots.length; i++ ) {
+            slots[i] = i;
+        }
+        return EMPTY.add( features, slots, slots.length );
+    }
+
+    /**
+     * Returns an index that additionally contains the given slots.
+     * 
+     * @param features
+     *            features, must not be <code>null</code>
+     * @param newSlots
+     *            slots of new or modified features, must not be <code>null</code>
+     * @param n
+     *            number of slots to use from the array
+     * @return index, never <code>null</code>
+     */
+    FeatureIndex add( FeatureSlots features, int[] newSlots, int n ) {
+        List<Level> merged = new ArrayList<Level>( Arrays.asList( levels ) );
+        int[] slots = Arrays.copyOf( newSlots, n );
+        while ( !merged.isEmpty() && merged.get( merged.size() - 1 ).slots.length <= slots.length ) {
+            int[] last = merged.remove( merged.size() - 1 ).slots;
+            int[] union = Arrays.copyOf( last, last.length + slots.length );
+            System.arraycopy( slots, 0, union, last.length, slots.length );
+            slots = union;
+        }
+        Level level = Level.build( features, slots );
+        if ( level != null ) {
+            merged.add( level );
+        }
+        return new FeatureIndex( merged.toArray( new Level[merged.size()] ) );
+    }
+
+    /**
+     * Returns the number of index entries (including outdated ones).
+     * 
+     * @return number of index entries
+     */
+    int getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns the number of stored features with an envelope that intersects the given box.
+     * 
+     * @param features
+     *            indexed features, must not be <code>null</code>
+     * @param bbox
+     *            query box, must not be <code>null</code>
+     * @return number of matching features
+     */
+    int count( FeatureSlots features, Envelope bbox ) {
+        final double minx = bbox.getMin().get0(), miny = bbox.getMin().get1();
+        final double maxx = bbox.getMax().get0(), maxy = bbox.getMax().get1();
+        int count = 0;
+        for ( Feature f : query( features, StoredFeatures.toFloats( bbox ) ) ) {
+            // the trees only store float boxes (and may be outdated), so verify against the exact envelope
+            Envelope env = f.getEnvelope();
+            if ( env != null
+                 && !( env.getMax().get0() < minx || env.getMax().get1() < miny || env.getMin().get0() > maxx
+                       || env.getMin().get1() > maxy ) ) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the stored features whose index entry intersects the given box.
+     * 
+     * @param features
+     *            indexed features, must not be <code>null</code>
+     * @param bbox
+     *            query box, must not be <code>null</code>
+     * @return matching features in slot order, never <code>null</code>
+     */
+    List<Feature> query( FeatureSlots features, float[] bbox ) {
+        LongList positions = new LongList();
+        for ( Level level : levels ) {
+            level.tree.query( bbox, positions );
+        }
+        positions.sort();
+        List<Feature> result = new ArrayList<Feature>( positions.size() );
+        long last = -1;
+        for ( int i = 0; i < positions.size(); ++i ) {
+            long slot = positions.get( i );
+            if ( slot != last ) {
+                Feature f = features.get( (int) slot );
+                if ( f != null ) {
+                    result.add( f );
+                }
+                last = slot;
+            }
+        }
+        return result;
+    }
+
+    private static class Level {
+
+        private final PackedRTree tree;
+
+        private final int[] slots;
+
+        private Level( PackedRTree tree, int[] slots ) {
+            this.tree = tree;
+            this.slots = slots;
+        }
+
+        /**
+         * @return level for the distinct, non-empty slots with an envelope, <code>null</code> if there are none
+         */
+        static Level build( FeatureSlots features, int[] candidates ) {
+            Arrays.sort( candidates );
+            int[] slots = new int[candidates.length];
+            float[] boxes = new float[candidates.length * 4];
+            long[] values = new long[candidates.length];
+            int size = 0;
+            for ( int i = 0; i < candidates.length; i++ ) {
+                int slot = candidates[i];
+                if ( i > 0 && slot == candidates[i - 1] ) {
+                    continue;
+                }
+                Feature f = features.get( slot );
+                Envelope env = f == null ? null : f.getEnvelope();
+                if ( env != null ) {
+                    System.arraycopy( StoredFeatures.toFloats( env ), 0, boxes, size * 4, 4 );
+                    slots[size] = slot;
+                    values[size] = slot;
+                    size++;
+                }
+            }
+            if ( size == 0 ) {
+                return null;
+            }
+            PackedRTree tree = PackedRTree.create( boxes, values, size, PackedRTree.DEFAULT_NODE_SIZE, false );
+            return new Level( tree, Arrays.copyOf( slots, size ) );
+        }
+    }
+}
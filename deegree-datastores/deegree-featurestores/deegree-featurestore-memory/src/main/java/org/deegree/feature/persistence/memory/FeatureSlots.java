@@ -0,0 +1,210 @@
+//$HeadURL$
+/*---------------------------------------------------------------------------- 
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.deegree.feature.Feature;
+
+/**
+ * Array of stored features with stable positions (slots), the storage of one feature type in {@link StoredFeatures}.
+ * <p>
+ * Slots are organized in fixed-size chunks. {@link #copy()} returns a working copy that shares all chunks with the
+ * original, a chunk is only copied when the working copy modifies it for the first time. Removed features leave an
+ * empty slot, so the slots of the remaining features (and the spatial index entries that refer to them) stay valid.
+ * Iteration returns the features in slot (i.e. insertion) order.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class FeatureSlots implements Iterable<Feature> {
+
+    static final int CHUNK_SIZE = 1024;
+
+    private static final int CHUNK_BITS = 10;
+
+    private Feature[][] chunks;
+
+    // null: chunk table is shared with another instance
+    private boolean[] owned;
+
+    private int length;
+
+    private int size;
+
+    /**
+     * Creates a new, empty {@link FeatureSlots} instance.
+     */
+    FeatureSlots() {
+        this.chunks = new Feature[0][];
+        this.owned = new boolean[0];
+    }
+
+    private FeatureSlots( FeatureSlots original ) {
+        this.chunks = original.chunks;
+        this.length = original.length;
+        this.size = original.size;
+    }
+
+    /**
+     * Returns a copy of this instance that shares the unmodified chunks. This instance must not be modified afterwards.
+     * 
+     * @return copy, never <code>null</code>
+     */
+    FeatureSlots copy() {
+        return new FeatureSlots( this );
+    }
+
+    /**
+     * Returns the feature in the given slot.
+     * 
+     * @param slot
+     *            slot, must be less than {@link #length()}
+     * @return feature, or <code>null</code> if the slot is empty
+     */
+    Feature get( int slot ) {
+        return chunks[slot >>> CHUNK_BITS][slot & ( CHUNK_SIZE - 1 )];
+    }
+
+    /**
+     * Stores the given feature in a new slot.
+     * 
+     * @param feature
+     *            feature to be stored, must not be <code>null</code>
+     * @return the slot of the feature
+     */
+    int add( Feature feature ) {
+        int slot = length;
+        int chunk = slot >>> CHUNK_BITS;
+        if ( chunk == chunks.length ) {
+            makeTableWritable( chunk + 1 );
+            chunks[chunk] = new Feature[CHUNK_SIZE];
+            owned[chunk] = true;
+        } else {
+            makeChunkWritable( chunk );
+        }
+        chunks[chunk][slot & ( CHUNK_SIZE - 1 )] = feature;
+        length++;
+        size++;
+        return slot;
+    }
+
+    /**
+     * Clears the given slot.
+     * 
+     * @param slot
+     *            slot, must be less than {@link #length()} and not be empty
+     */
+    void remove( int slot ) {
+        int chunk = slot >>> CHUNK_BITS;
+        makeChunkWritable( chunk );
+        chunks[chunk][slot & ( CHUNK_SIZE - 1 )] = null;
+        size--;
+    }
+
+    /**
+     * Returns the number of used slots (including empty ones).
+     * 
+     * @return number of used slots
+     */
+    int length() {
+        return length;
+    }
+
+    /**
+     * Returns the number of stored features.
+     * 
+     * @return number of stored features
+     */
+    int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<Feature> iterator() {
+        return new Iterator<Feature>() {
+
+            private int slot = advance( 0 );
+
+            @Override
+            public boolean hasNext() {
+                return slot < length;
+            }
+
+            @Override
+            public Feature next() {
+                if ( slot >= length ) {
+                    throw new NoSuchElementException();
+                }
+                Feature f = get( slot );
+                slot = advance( slot + 1 );
+                return f;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private int advance( int slot ) {
+        while ( slot < length && get( slot ) == null ) {
+            slot++;
+        }
+        return slot;
+    }
+
+    private void makeTableWritable( int minChunks ) {
+        if ( owned == null || chunks.length < minChunks ) {
+            int n = Math.max( chunks.length, minChunks );
+            chunks = Arrays.copyOf( chunks, n );
+            owned = owned == null ? new boolean[n] : Arrays.copyOf( owned, n );
+        }
+    }
+
+    private void makeChunkWritable( int chunk ) {
+        makeTableWritable( chunk + 1 );
+        if ( !owned[chunk] ) {
+            chunks[chunk] = chunks[chunk].clone();
+            owned[chunk] = true;
+        }
+    }
+}
@@ -35,6 +35,8 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence.memory;
 
+import static org.deegree.feature.persistence.FeatureStores.applyPaging;
+
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -43,7 +45,6 @@ import javax.xml.namespace.QName;
 import org.deegree.commons.tom.gml.GMLObject;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.db.ConnectionProvider;
-import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.i18n.Messages;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
@@ -53,8 +54,8 @@ import org.deegree.feature.persistence.lock.LockManager;
 import org.deegree.feature.persistence.query.Query;
 import org.deegree.feature.stream.CombinedFeatureInputStream;
 import org.deegree.feature.stream.FeatureInputStream;
+import org.deegree.feature.stream.GeneralizingFeatureInputStream;
 import org.deegree.feature.types.AppSchema;
-import org.deegree.feature.types.FeatureType;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.geometry.Envelope;
 import org.deegree.workspace.Resource;
@@ -83,7 +84,8 @@ public class MemoryFeatureStore implements FeatureStore {
 
     private DefaultLockManager lockManager;
 
-    private StoredFeatures storedFeatures;
+    // committed snapshot, replaced (never modified) by transactions
+    private volatile StoredFeatures storedFeatures;
 
     private MemoryFeatureStoreMetadata metadata;
 
@@ -125,7 +127,13 @@ public class MemoryFeatureStore implements FeatureStore {
     @Override
     public FeatureInputStream query( Query query )
                             throws FilterEvaluationException, FeatureStoreException {
-        return storedFeatures.query( query );
+        FeatureInputStream rs = applyPaging( storedFeatures.query( query ), query );
+        double tolerance = query.getGeneralizationTolerance( storageCRS );
+        if ( tolerance > 0 ) {
+            // stored features are shared, generalized ones are copies
+            rs = new GeneralizingFeatureInputStream( rs, tolerance );
+        }
+        return rs;
     }
 
     @Override
@@ -165,7 +173,13 @@ public class MemoryFeatureStore implements FeatureStore {
     @Override
     public int queryHits( org.deegree.feature.persistence.query.Query query )
                             throws FilterEvaluationException, FeatureStoreException {
-        return query( query ).toCollection().size();
+        int hits = storedFeatures.queryHits( query );
+        // same as paging the result of #query(Query)
+        hits = Math.max( 0, hits - query.getStartIndex() );
+        if ( query.getMaxFeatures() > 0 ) {
+            hits = Math.min( hits, query.getMaxFeatures() );
+        }
+        return hits;
     }
 
     @Override
@@ -257,15 +271,10 @@ public class MemoryFeatureStore implements FeatureStore {
 
     @Override
     public Envelope calcEnvelope( QName ftName ) {
-        Envelope ftEnv = null;
-        FeatureType ft = schema.getFeatureType( ftName );
-        if ( ft != null ) {
-            FeatureCollection fc = storedFeatures.getFeatures( ft );
-            if ( fc != null ) {
-                ftEnv = fc.getEnvelope();
-            }
+        if ( schema.getFeatureType( ftName ) == null ) {
+            return null;
         }
-        return ftEnv;
+        return storedFeatures.getEnvelope( ftName );
     }
 
     @Override
@@ -0,0 +1,343 @@
+//$HeadURL$
+/*---------------------------------------------------------------------------- 
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+/**
+ * Immutable hash map that shares structure between versions (hash array mapped trie).
+ * <p>
+ * {@link #plus(Object, Object)} and {@link #minus(Object)} return a new map and leave the receiver untouched. Only the
+ * nodes on the path to the modified entry are copied, so a modification costs <code>O(log32(n))</code> time and
+ * memory, and older versions can be read by other threads without any locking.
+ * </p>
+ * 
+ * @param <K>
+ *            key type, keys must not be <code>null</code>
+ * @param <V>
+ *            value type, values must not be <code>null</code>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+final class PersistentHashMap<K, V> {
+
+    private static final int BITS = 5;
+
+    private static final int MASK = ( 1 << BITS ) - 1;
+
+    @SuppressWarnings("rawtypes")
+    private static final PersistentHashMap EMPTY = new PersistentHashMap( null, 0 );
+
+    private static final BitmapNode EMPTY_NODE = new BitmapNode( 0, new Object[0] );
+
+    private final Node root;
+
+    private final int size;
+
+    private PersistentHashMap( Node root, int size ) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns the empty map.
+     * 
+     * @return the empty map, never <code>null</code>
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentHashMap<K, V> empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns the value that is mapped to the given key.
+     * 
+     * @param key
+     *            key, must not be <code>null</code>
+     * @return mapped value, or <code>null</code> if the key is not mapped
+     */
+    @SuppressWarnings("unchecked")
+    V get( Object key ) {
+        if ( root == null ) {
+            return null;
+        }
+        return (V) root.find( 0, hash( key ), key );
+    }
+
+    /**
+     * Returns a map that additionally maps the given key to the given value (replacing a former mapping of the key).
+     * 
+     * @param key
+     *            key, must not be <code>null</code>
+     * @param value
+     *            value, must not be <code>null</code>
+     * @return modified map, never <code>null</code> (this map, if the key is already mapped to the value)
+     */
+    PersistentHashMap<K, V> plus( K key, V value ) {
+        boolean[] added = new boolean[1];
+        Node node = root == null ? EMPTY_NODE : root;
+        Node newRoot = node.put( 0, hash( key ), key, value, added );
+        if ( newRoot == root ) {
+            return this;
+        }
+        return new PersistentHashMap<K, V>( newRoot, added[0] ? size + 1 : size );
+    }
+
+    /**
+     * Returns a map without the mapping for the given key.
+     * 
+     * @param key
+     *            key, must not be <code>null</code>
+     * @return modified map, never <code>null</code> (this map, if the key is not mapped)
+     */
+    PersistentHashMap<K, V> minus( Object key ) {
+        if ( root == null ) {
+            return this;
+        }
+        Node newRoot = root.remove( 0, hash( key ), key );
+        if ( newRoot == root ) {
+            return this;
+        }
+        if ( newRoot == null ) {
+            return empty();
+        }
+        return new PersistentHashMap<K, V>( newRoot, size - 1 );
+    }
+
+    /**
+     * Returns the number of mappings.
+     * 
+     * @return number of mappings
+     */
+    int size() {
+        return size;
+    }
+
+    private static int hash( Object key ) {
+        int h = key.hashCode();
+        // spread the bits, keys such as generated ids often only differ in the high bits
+        return h ^ ( h >>> 16 );
+    }
+
+    private abstract static class Node {
+
+        /**
+         * @return the mapped value, or <code>null</code>
+         */
+        abstract Object find( int shift, int hash, Object key );
+
+        /**
+         * @return the modified node, or this node if nothing changed
+         */
+        abstract Node put( int shift, int hash, Object key, Object value, boolean[] added );
+
+        /**
+         * @return the modified node, this node if nothing changed, or <code>null</code> if the node became empty
+         */
+        abstract Node remove( int shift, int hash, Object key );
+    }
+
+    /**
+     * Inner node with up to 32 slots, a slot holds either a key/value pair or (<code>null</code>, child node).
+     */
+    private static final class BitmapNode extends Node {
+
+        private final int bitmap;
+
+        private final Object[] array;
+
+        BitmapNode( int bitmap, Object[] array ) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        @Override
+        Object find( int shift, int hash, Object key ) {
+            int bit = 1 << ( ( hash >>> shift ) & MASK );
+            if ( ( bitmap & bit ) == 0 ) {
+                return null;
+            }
+            int i = 2 * Integer.bitCount( bitmap & ( bit - 1 ) );
+            Object k = array[i];
+            if ( k == null ) {
+                return ( (Node) array[i + 1] ).find( shift + BITS, hash, key );
+            }
+            return key.equals( k ) ? array[i + 1] : null;
+        }
+
+        @Override
+        Node put( int shift, int hash, Object key, Object value, boolean[] added ) {
+            int bit = 1 << ( ( hash >>> shift ) & MASK );
+            int i = 2 * Integer.bitCount( bitmap & ( bit - 1 ) );
+            if ( ( bitmap & bit ) == 0 ) {
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy( array, 0, newArray, 0, i );
+                newArray[i] = key;
+                newArray[i + 1] = value;
+                System.arraycopy( array, i, newArray, i + 2, array.length - i );
+                added[0] = true;
+                return new BitmapNode( bitmap | bit, newArray );
+            }
+            Object k = array[i];
+            Object v = array[i + 1];
+            if ( k == null ) {
+                Node child = ( (Node) v ).put( shift + BITS, hash, key, value, added );
+                return child == v ? this : with( i, null, child );
+            }
+            if ( key.equals( k ) ) {
+                return v == value ? this : with( i, k, value );
+            }
+            added[0] = true;
+            return with( i, null, createNode( shift + BITS, hash( k ), k, v, hash, key, value ) );
+        }
+
+        @Override
+        Node remove( int shift, int hash, Object key ) {
+            int bit = 1 << ( ( hash >>> shift ) & MASK );
+            if ( ( bitmap & bit ) == 0 ) {
+                return this;
+            }
+            int i = 2 * Integer.bitCount( bitmap & ( bit - 1 ) );
+            Object k = array[i];
+            if ( k == null ) {
+                Node child = (Node) array[i + 1];
+                Node newChild = child.remove( shift + BITS, hash, key );
+                if ( newChild == child ) {
+                    return this;
+                }
+                if ( newChild != null ) {
+                    return with( i, null, newChild );
+                }
+            } else if ( !key.equals( k ) ) {
+                return this;
+            }
+            if ( bitmap == bit ) {
+                return null;
+            }
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy( array, 0, newArray, 0, i );
+            System.arraycopy( array, i + 2, newArray, i, newArray.length - i );
+            return new BitmapNode( bitmap & ~bit, newArray );
+        }
+
+        private BitmapNode with( int i, Object key, Object value ) {
+            Object[] newArray = array.clone();
+            newArray[i] = key;
+            newArray[i + 1] = value;
+            return new BitmapNode( bitmap, newArray );
+        }
+
+        private static Node createNode( int shift, int hash1, Object key1, Object value1, int hash2, Object key2,
+                                        Object value2 ) {
+            if ( hash1 == hash2 ) {
+                return new CollisionNode( hash1, new Object[] { key1, value1, key2, value2 } );
+            }
+            boolean[] added = new boolean[1];
+            return EMPTY_NODE.put( shift, hash1, key1, value1, added ).put( shift, hash2, key2, value2, added );
+        }
+    }
+
+    /**
+     * Leaf node for keys with identical hash codes.
+     */
+    private static final class CollisionNode extends Node {
+
+        private final int hash;
+
+        private final Object[] array;
+
+        CollisionNode( int hash, Object[] array ) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        @Override
+        Object find( int shift, int hash, Object key ) {
+            int i = indexOf( hash, key );
+            return i < 0 ? null : array[i + 1];
+        }
+
+        @Override
+        Node put( int shift, int hash, Object key, Object value, boolean[] added ) {
+            if ( hash != this.hash ) {
+                // nest this node into a bitmap node that can distinguish the hashes
+                int bit = 1 << ( ( this.hash >>> shift ) & MASK );
+                return new BitmapNode( bit, new Object[] { null, this } ).put( shift, hash, key, value, added );
+            }
+            int i = indexOf( hash, key );
+            if ( i >= 0 ) {
+                if ( array[i + 1] == value ) {
+                    return this;
+                }
+                Object[] newArray = array.clone();
+                newArray[i + 1] = value;
+                return new CollisionNode( hash, newArray );
+            }
+            Object[] newArray = new Object[array.length + 2];
+            System.arraycopy( array, 0, newArray, 0, array.length );
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode( hash, newArray );
+        }
+
+        @Override
+        Node remove( int shift, int hash, Object key ) {
+            int i = indexOf( hash, key );
+            if ( i < 0 ) {
+                return this;
+            }
+            if ( array.length == 2 ) {
+                return null;
+            }
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy( array, 0, newArray, 0, i );
+            System.arraycopy( array, i + 2, newArray, i, newArray.length - i );
+            return new CollisionNode( hash, newArray );
+        }
+
+        private int indexOf( int hash, Object key ) {
+            if ( hash == this.hash ) {
+                for ( int i = 0; i < array.length; i += 2 ) {
+                    if ( key.equals( array[i] ) ) {
+                        return i;
+                    }
+                }
+            }
+            return -1;
+        }
+    }
+}
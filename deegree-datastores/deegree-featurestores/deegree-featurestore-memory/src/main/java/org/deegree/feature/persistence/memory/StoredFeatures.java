@@ -35,7 +35,6 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence.memory;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -44,37 +43,47 @@ import java.util.Set;
 
 import javax.xml.namespace.QName;
 
-import org.deegree.commons.index.RTree;
 import org.deegree.commons.tom.Reference;
 import org.deegree.commons.tom.gml.GMLObject;
-import org.deegree.commons.utils.Pair;
 import org.deegree.cs.coordinatesystems.ICRS;
-import org.deegree.cs.exceptions.UnknownCRSException;
 import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
-import org.deegree.feature.Features;
 import org.deegree.feature.GenericFeatureCollection;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.persistence.transaction.FeatureUpdater;
 import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.feature.stream.MemoryFeatureInputStream;
+import org.deegree.feature.stream.SortingFeatureInputStream;
 import org.deegree.feature.types.AppSchema;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
+import org.deegree.filter.Filter;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.IdFilter;
+import org.deegree.filter.Operator;
+import org.deegree.filter.OperatorFilter;
 import org.deegree.filter.ResourceId;
 import org.deegree.filter.sort.SortProperty;
+import org.deegree.filter.spatial.BBOX;
 import org.deegree.geometry.Envelope;
 import org.deegree.geometry.Geometry;
 import org.deegree.geometry.GeometryTransformer;
 import org.deegree.gml.utils.GMLObjectVisitor;
 import org.deegree.gml.utils.GMLObjectWalker;
+import org.deegree.protocol.wfs.transaction.action.ParsedPropertyReplacement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Encapsulates stored feature instances plus index structures for id and spatial queries.
+ * <p>
+ * An instance is either a committed snapshot (never modified, safe for concurrent readers) or the working copy of a
+ * transaction. Working copies share all unmodified data with the snapshot they have been created from (see
+ * {@link FeatureSlots}, {@link PersistentHashMap} and {@link FeatureIndex}), so creating one is cheap and the cost of a
+ * transaction is roughly proportional to the number of modified features. The spatial indexes and envelopes of a
+ * working copy are brought up to date by {@link #updateIndexes()}.
+ * </p>
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author$
@@ -91,11 +100,11 @@ class StoredFeatures {
 
     private final TypedObjectNodeXPathEvaluator evaluator = new TypedObjectNodeXPathEvaluator();
 
-    private final Map<FeatureType, FeatureCollection> ftToFeatures = new HashMap<FeatureType, FeatureCollection>();
+    private final Map<FeatureType, StoredType> ftToStored = new HashMap<FeatureType, StoredType>();
 
-    private final Map<String, GMLObject> idToObject = new HashMap<String, GMLObject>();
+    private PersistentHashMap<String, GMLObject> idToObject;
 
-    private final Map<FeatureType, RTree<Feature>> ftToIndex = new HashMap<FeatureType, RTree<Feature>>();
+    private PersistentHashMap<String, Integer> fidToSlot;
 
     /**
      * Creates a new {@link StoredFeatures} instance.
@@ -105,28 +114,24 @@ class StoredFeatures {
      * @param storageCRS
      *            target CRS for stored geometries, can be <code>null</code> (no CRS normalization)
      * @param former
-     *            stored features to copy from, can be <code>null</code> (new instance will be empty)
-     * @throws FeatureStoreException
+     *            stored features to copy from, can be <code>null</code> (new instance will be empty), must not be
+     *            modified afterwards
      */
-    StoredFeatures( AppSchema schema, ICRS storageCRS, StoredFeatures former ) throws FeatureStoreException {
+    StoredFeatures( AppSchema schema, ICRS storageCRS, StoredFeatures former ) {
         this.schema = schema;
         this.storageCRS = storageCRS;
-        initFtToFeaturesMap( schema, former );
-        try {
-            rebuildIndexes();
-        } catch ( UnknownCRSException e ) {
-            throw new FeatureStoreException( e.getMessage(), e );
-        }
-    }
-
-    private void initFtToFeaturesMap( AppSchema schema, StoredFeatures former ) {
-        for ( FeatureType ft : schema.getFeatureTypes( null, true, false ) ) {
-            FeatureCollection fc = new GenericFeatureCollection();
-            if ( former != null ) {
-                FeatureCollection oldFc = former.ftToFeatures.get( ft );
-                fc.addAll( oldFc );
+        if ( former != null ) {
+            for ( Map.Entry<FeatureType, StoredType> entry : former.ftToStored.entrySet() ) {
+                ftToStored.put( entry.getKey(), new StoredType( entry.getValue() ) );
             }
-            ftToFeatures.put( ft, fc );
+            idToObject = former.idToObject;
+            fidToSlot = former.fidToSlot;
+        } else {
+            for ( FeatureType ft : schema.getFeatureTypes( null, true, false ) ) {
+                ftToStored.put( ft, new StoredType() );
+            }
+            idToObject = PersistentHashMap.empty();
+            fidToSlot = PersistentHashMap.empty();
         }
     }
 
@@ -135,10 +140,19 @@ class StoredFeatures {
      * 
      * @param ft
      *            feature type, must not be <code>null</code>
-     * @return stored features of the given type, never <code>null</code>
+     * @return stored features of the given type (copy), can be <code>null</code> (type not stored)
      */
     FeatureCollection getFeatures( FeatureType ft ) {
-        return ftToFeatures.get( ft );
+        StoredType stored = ftToStored.get( ft );
+        if ( stored == null ) {
+            return null;
+        }
+        FeatureCollection fc = new GenericFeatureCollection();
+        for ( Feature f : stored.features ) {
+            fc.add( f );
+        }
+        fc.setEnvelope( stored.envelope );
+        return fc;
     }
 
     /**
@@ -168,25 +182,15 @@ class StoredFeatures {
             }
 
             // determine / filter features
-            fc = ftToFeatures.get( ft );
+            StoredType stored = ftToStored.get( ft );
 
             // perform index filtering
-            Envelope ftEnv = ftToFeatures.get( ft ).getEnvelope();
-            if ( query.getPrefilterBBoxEnvelope() != null && ftEnv != null && storageCRS != null ) {
-                Envelope prefilterBox = query.getPrefilterBBoxEnvelope();
-                if ( prefilterBox.getCoordinateSystem() != null
-                     && !prefilterBox.getCoordinateSystem().equals( storageCRS ) ) {
-                    try {
-                        GeometryTransformer t = new GeometryTransformer( storageCRS );
-                        prefilterBox = t.transform( prefilterBox );
-                    } catch ( Exception e ) {
-                        throw new FeatureStoreException( e.getMessage(), e );
-                    }
-                }
-
-                float[] floats = toFloats( prefilterBox );
-                RTree<Feature> index = ftToIndex.get( ft );
-                fc = new GenericFeatureCollection( null, index.query( floats ) );
+            Envelope prefilterBox = getPrefilterBox( query, stored );
+            if ( prefilterBox != null ) {
+                List<Feature> candidates = stored.index.query( stored.features, toFloats( prefilterBox ) );
+                fc = new GenericFeatureCollection( null, candidates );
+            } else {
+                fc = getFeatures( ft );
             }
 
             if ( query.getFilter() != null ) {
@@ -208,13 +212,94 @@ class StoredFeatures {
             fc = new GenericFeatureCollection( null, features );
         }
 
-        // sort features
+        FeatureInputStream rs = new MemoryFeatureInputStream( fc );
+
+        // sort features (only the ones before the end of the requested page)
         SortProperty[] sortCrit = query.getSortProperties();
         if ( sortCrit.length > 0 ) {
-            fc = Features.sortFc( fc, sortCrit );
+            int maxFeatures = query.getMaxFeatures() > 0 ? query.getMaxFeatures() : -1;
+            int limit = SortingFeatureInputStream.getLimit( query.getStartIndex(), maxFeatures );
+            rs = new SortingFeatureInputStream( rs, sortCrit, limit, Integer.MAX_VALUE );
+        }
+        return rs;
+    }
+
+    /**
+     * Determines the number of features that the given {@link Query} returns (before paging) without sorting or
+     * collecting them. Queries that only consist of a {@link BBOX} on the feature envelope are answered from the
+     * spatial index.
+     * 
+     * @param query
+     *            query to be performed, must not be <code>null</code>
+     * @return number of matching features
+     * @throws FilterEvaluationException
+     * @throws FeatureStoreException
+     */
+    int queryHits( Query query )
+                            throws FilterEvaluationException, FeatureStoreException {
+
+        if ( query.getTypeNames() == null || query.getTypeNames().length != 1 ) {
+            // id filter queries select only a few features
+            return query( query ).count();
+        }
+
+        QName ftName = query.getTypeNames()[0].getFeatureTypeName();
+        FeatureType ft = schema.getFeatureType( ftName );
+        if ( ft == null ) {
+            String msg = "Feature type '" + ftName + "' is not served by this feature store.";
+            throw new FeatureStoreException( msg );
+        }
+
+        Filter filter = query.getFilter();
+        StoredType stored = ftToStored.get( ft );
+        Iterable<Feature> candidates = stored.features;
+        Envelope prefilterBox = getPrefilterBox( query, stored );
+        if ( prefilterBox != null ) {
+            if ( isEnvelopeBBox( filter ) ) {
+                return stored.index.count( stored.features, prefilterBox );
+            }
+            candidates = stored.index.query( stored.features, toFloats( prefilterBox ) );
+        } else if ( filter == null ) {
+            return stored.features.size();
+        }
+        int hits = 0;
+        for ( Feature f : candidates ) {
+            if ( filter.evaluate( f, evaluator ) ) {
+                ++hits;
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * @return the prefilter bbox of the query in the storage crs, or <code>null</code> if the index cannot be used
+     */
+    private Envelope getPrefilterBox( Query query, StoredType stored )
+                            throws FeatureStoreException {
+        Envelope prefilterBox = query.getPrefilterBBoxEnvelope();
+        if ( prefilterBox == null || stored.envelope == null || storageCRS == null ) {
+            return null;
         }
+        if ( prefilterBox.getCoordinateSystem() != null && !prefilterBox.getCoordinateSystem().equals( storageCRS ) ) {
+            try {
+                GeometryTransformer t = new GeometryTransformer( storageCRS );
+                prefilterBox = t.transform( prefilterBox );
+            } catch ( Exception e ) {
+                throw new FeatureStoreException( e.getMessage(), e );
+            }
+        }
+        return prefilterBox;
+    }
 
-        return new MemoryFeatureInputStream( fc );
+    /**
+     * @return true, if the filter is a single {@link BBOX} without property name (i.e. on the feature envelope)
+     */
+    private static boolean isEnvelopeBBox( Filter filter ) {
+        if ( filter instanceof OperatorFilter ) {
+            Operator op = ( (OperatorFilter) filter ).getOperator();
+            return op instanceof BBOX && ( (BBOX) op ).getParam1() == null;
+        }
+        return false;
     }
 
     GMLObject getObjectById( String id ) {
@@ -229,105 +314,121 @@ class StoredFeatures {
      * @return envelope, can be <code>null</code>
      */
     Envelope getEnvelope( QName ftName ) {
-        return ftToFeatures.get( schema.getFeatureType( ftName ) ).getEnvelope();
+        StoredType stored = ftToStored.get( schema.getFeatureType( ftName ) );
+        return stored == null ? null : stored.envelope;
     }
 
     /**
-     * Adds the given {@link Feature} instance and updates the index structures.
+     * Adds the given {@link Feature} instance and updates the id index. The spatial index and envelope of the feature
+     * type are updated by {@link #updateIndexes()}.
      * 
-     * @param features
+     * @param feature
      *            feature to be added, must not be <code>null</code> and must have an id (as well as every geometry)
      */
     void addFeature( Feature feature ) {
         FeatureType ft = feature.getType();
-        FeatureCollection fc = ftToFeatures.get( ft );
-        if ( fc == null ) {
-            fc = new GenericFeatureCollection();
-            ftToFeatures.put( ft, fc );
-        }
-        fc.add( feature );
-        idToObject.put( feature.getId(), feature );
-        if ( feature.getEnvelope() != null ) {
-            RTree<Feature> rTree = ftToIndex.get( ft );
-            float[] insertBox = toFloats( feature.getEnvelope() );
-            if ( rTree == null ) {
-                rTree = new RTree<Feature>( insertBox, 16 );
-            }
-            rTree.insert( insertBox, feature );
+        StoredType stored = ftToStored.get( ft );
+        if ( stored == null ) {
+            stored = new StoredType();
+            ftToStored.put( ft, stored );
         }
+        int slot = stored.features.add( feature );
+        stored.added( slot, feature.getEnvelope() );
+        fidToSlot = fidToSlot.plus( feature.getId(), slot );
+        register( feature );
     }
 
     /**
-     * Removes the given {@link Feature} instance and updates the index structures.
+     * Removes the given {@link Feature} instance and updates the id index. The spatial index and envelope of the
+     * feature type are updated by {@link #updateIndexes()}.
      * 
      * @param feature
      *            feature to be removed, must not be <code>null</code>
      */
     void removeFeature( Feature feature ) {
-        idToObject.remove( feature.getId() );
-        FeatureType ft = feature.getType();
-        RTree<Feature> rTree = ftToIndex.get( ft );
-        if ( rTree != null ) {
-            rTree.remove( feature );
-        }
-        FeatureCollection fc = ftToFeatures.get( ft );
-        if ( fc != null ) {
-            fc.remove( feature );
+        StoredType stored = ftToStored.get( feature.getType() );
+        Integer slot = fidToSlot.get( feature.getId() );
+        if ( stored != null && slot != null && stored.features.get( slot ) == feature ) {
+            stored.features.remove( slot );
+            stored.removed( feature.getEnvelope() );
+            fidToSlot = fidToSlot.minus( feature.getId() );
         }
+        unregister( feature );
     }
 
-    void rebuildIndexes()
-                            throws UnknownCRSException {
+    /**
+     * Applies the given property replacements to a stored {@link Feature} instance and updates the id index. The
+     * spatial index and envelope of the feature type are updated by {@link #updateIndexes()}.
+     * 
+     * @param feature
+     *            stored feature to be updated, must not be <code>null</code>
+     * @param replacementProps
+     *            properties to be replaced, must not be <code>null</code>
+     * @throws FeatureStoreException
+     *             if the update would result in an invalid feature instance
+     */
+    void updateFeature( Feature feature, List<ParsedPropertyReplacement> replacementProps )
+                            throws FeatureStoreException {
+        Envelope oldEnv = feature.getEnvelope();
+        unregister( feature );
+        try {
+            new FeatureUpdater().update( feature, replacementProps );
+        } finally {
+            feature.setEnvelope( feature.calcEnvelope() );
+            register( feature );
+        }
+        StoredType stored = ftToStored.get( feature.getType() );
+        Integer slot = fidToSlot.get( feature.getId() );
+        if ( stored != null && slot != null && stored.features.get( slot ) == feature ) {
+            stored.removed( oldEnv );
+            stored.added( slot, feature.getEnvelope() );
+        }
+    }
 
+    /**
+     * Brings the spatial indexes and envelopes of the modified feature types up to date.
+     */
+    void updateIndexes() {
         long begin = System.currentTimeMillis();
-        rebuildFeatureCollectionEnvelopes();
+        for ( StoredType stored : ftToStored.values() ) {
+            if ( stored.features.length() - stored.features.size() > Math.max( FeatureSlots.CHUNK_SIZE,
+                                                                               stored.features.size() ) ) {
+                compact( stored );
+            }
+            stored.updateIndex();
+        }
         long elapsed = System.currentTimeMillis() - begin;
-        LOG.debug( "Recalculating bounding boxes took {} [ms]", elapsed );
-
-        begin = System.currentTimeMillis();
-        rebuildRtrees();
-        elapsed = System.currentTimeMillis() - begin;
-        LOG.debug( "Building spatial indexes took {} [ms]", elapsed );
-
-        begin = System.currentTimeMillis();
-        rebuildIdToObjectMap();
-        elapsed = System.currentTimeMillis() - begin;
-        LOG.debug( "Building id lookup table took {} [ms]", elapsed );
+        LOG.debug( "Updating envelopes and spatial indexes took {} [ms]", elapsed );
     }
 
-    private void rebuildFeatureCollectionEnvelopes() {
-        for ( FeatureCollection fc : ftToFeatures.values() ) {
-            fc.setEnvelope( fc.calcEnvelope() );
+    /**
+     * Drops the empty slots of the given type (slots of all features change).
+     */
+    private void compact( StoredType stored ) {
+        FeatureSlots compacted = new FeatureSlots();
+        for ( Feature f : stored.features ) {
+            fidToSlot = fidToSlot.plus( f.getId(), compacted.add( f ) );
         }
+        stored.features = compacted;
+        stored.index = null;
     }
 
-    private void rebuildRtrees() {
-        ftToIndex.clear();
-        for ( FeatureType ft : ftToFeatures.keySet() ) {
-            FeatureCollection fc = ftToFeatures.get( ft );
-            Envelope env = fc.getEnvelope();
-            if ( env != null ) {
-                RTree<Feature> index = new RTree<Feature>( toFloats( env ), 16 );
-                List<Pair<float[], Feature>> fBboxes = new ArrayList<Pair<float[], Feature>>( fc.size() );
-                for ( Feature f : fc ) {
-                    Envelope fEnv = f.getEnvelope();
-                    if ( fEnv != null ) {
-                        float[] floats = toFloats( fEnv );
-                        fBboxes.add( new Pair<float[], Feature>( floats, f ) );
-                    }
-                }
-                index.insertBulk( fBboxes );
-                ftToIndex.put( ft, index );
-            }
-        }
+    private boolean isStored( Feature feature ) {
+        StoredType stored = ftToStored.get( feature.getType() );
+        Integer slot = fidToSlot.get( feature.getId() );
+        return stored != null && slot != null && stored.features.get( slot ) == feature;
     }
 
-    private void rebuildIdToObjectMap() {
-        idToObject.clear();
+    /**
+     * Adds the feature and the geometries and features it contains to the id index.
+     */
+    private void register( Feature feature ) {
         GMLObjectVisitor visitor = new GMLObjectVisitor() {
             @Override
             public boolean visitGeometry( Geometry geom ) {
-                idToObject.put( geom.getId(), geom );
+                if ( geom.getId() != null ) {
+                    idToObject = idToObject.plus( geom.getId(), geom );
+                }
                 return true;
             }
 
@@ -336,7 +437,9 @@ class StoredFeatures {
                 if ( feature instanceof Reference<?> ) {
                     return false;
                 }
-                idToObject.put( feature.getId(), feature );
+                if ( feature.getId() != null ) {
+                    idToObject = idToObject.plus( feature.getId(), feature );
+                }
                 return true;
             }
 
@@ -350,16 +453,127 @@ class StoredFeatures {
                 return false;
             }
         };
+        new GMLObjectWalker( visitor ).traverse( feature );
+    }
 
-        for ( FeatureCollection fc : ftToFeatures.values() ) {
-            for ( Feature f : fc ) {
-                new GMLObjectWalker( visitor ).traverse( f );
+    /**
+     * Removes the feature and the geometries and features it contains from the id index (except for contained features
+     * that are stored themselves).
+     */
+    private void unregister( final Feature root ) {
+        GMLObjectVisitor visitor = new GMLObjectVisitor() {
+            @Override
+            public boolean visitGeometry( Geometry geom ) {
+                remove( geom.getId(), geom );
+                return true;
             }
-        }
+
+            @Override
+            public boolean visitFeature( Feature feature ) {
+                if ( feature instanceof Reference<?> || ( feature != root && isStored( feature ) ) ) {
+                    return false;
+                }
+                remove( feature.getId(), feature );
+                return true;
+            }
+
+            @Override
+            public boolean visitObject( GMLObject o ) {
+                return true;
+            }
+
+            @Override
+            public boolean visitReference( Reference<?> ref ) {
+                return false;
+            }
+
+            private void remove( String id, GMLObject o ) {
+                if ( id != null && idToObject.get( id ) == o ) {
+                    idToObject = idToObject.minus( id );
+                }
+            }
+        };
+        new GMLObjectWalker( visitor ).traverse( root );
     }
 
-    private float[] toFloats( Envelope env ) {
+    static float[] toFloats( Envelope env ) {
         return new float[] { (float) env.getMin().get0(), (float) env.getMin().get1(), (float) env.getMax().get0(),
                             (float) env.getMax().get1() };
     }
+
+    /**
+     * The stored features of one type, plus envelope and spatial index.
+     */
+    private static class StoredType {
+
+        private FeatureSlots features;
+
+        // null: must be rebuilt
+        private FeatureIndex index;
+
+        private Envelope envelope;
+
+        private boolean envelopeOutdated;
+
+        // slots of added / updated features that are not indexed yet
+        private int[] pending = new int[16];
+
+        private int numPending;
+
+        StoredType() {
+            features = new FeatureSlots();
+            index = FeatureIndex.EMPTY;
+        }
+
+        StoredType( StoredType original ) {
+            features = original.features.copy();
+            index = original.index;
+            envelope = original.envelope;
+        }
+
+        void added( int slot, Envelope env ) {
+            if ( numPending == pending.length ) {
+                int[] newPending = new int[pending.length * 2];
+                System.arraycopy( pending, 0, newPending, 0, numPending );
+                pending = newPending;
+            }
+            pending[numPending++] = slot;
+            if ( env != null && !envelopeOutdated ) {
+                envelope = envelope == null ? env : envelope.merge( env );
+            }
+        }
+
+        void removed( Envelope env ) {
+            if ( env != null && envelope != null && !isInterior( env, envelope ) ) {
+                // the envelope may shrink
+                envelopeOutdated = true;
+            }
+        }
+
+        void updateIndex() {
+            if ( envelopeOutdated ) {
+                envelope = null;
+                for ( Feature f : features ) {
+                    Envelope env = f.getEnvelope();
+                    if ( env != null ) {
+                        envelope = envelope == null ? env : envelope.merge( env );
+                    }
+                }
+                envelopeOutdated = false;
+            }
+            if ( index == null || index.getEntries() + numPending > 2 * features.size() + FeatureSlots.CHUNK_SIZE ) {
+                // too many outdated entries
+                index = FeatureIndex.build( features );
+            } else if ( numPending > 0 ) {
+                index = index.add( features, pending, numPending );
+            }
+            pending = new int[16];
+            numPending = 0;
+        }
+
+        private static boolean isInterior( Envelope env, Envelope outer ) {
+            return env.getMin().get0() > outer.getMin().get0() && env.getMin().get1() > outer.getMin().get1()
+                   && env.getMax().get0() < outer.getMax().get0() && env.getMax().get1() < outer.getMax().get1();
+        }
+    }
 }
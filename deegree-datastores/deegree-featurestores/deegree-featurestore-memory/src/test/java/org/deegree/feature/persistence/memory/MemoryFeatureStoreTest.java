@@ -187,6 +187,17 @@ public class MemoryFeatureStoreTest {
         Assert.assertEquals( 2, fc.size() );
     }
 
+    @Test
+    public void testQueryHits()
+                            throws FilterEvaluationException, FeatureStoreException {
+        QName philosopher = QName.valueOf( "{http://www.deegree.org/app}Philosopher" );
+        TypeName[] typeNames = new TypeName[] { new TypeName( philosopher, null ) };
+        Assert.assertEquals( 7, store.queryHits( new Query( typeNames, null, null, null, null ) ) );
+        Filter filter = new IdFilter( "PHILOSOPHER_1", "PHILOSOPHER_2" );
+        Assert.assertEquals( 2, store.queryHits( new Query( typeNames, filter, null, null, null ) ) );
+        Assert.assertEquals( 3, store.queryHits( new Query( philosopher, null, -1, 3, -1 ) ) );
+    }
+
     @Test
     public void testGetObjectByIdFeature() {
         Object o = store.getObjectById( "PHILOSOPHER_7" );
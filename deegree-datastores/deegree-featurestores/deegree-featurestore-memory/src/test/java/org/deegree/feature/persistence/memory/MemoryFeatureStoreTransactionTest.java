@@ -0,0 +1,275 @@
+//$HeadURL$
+/*---------------------------------------------------------------------------- 
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2;
+import static org.deegree.feature.types.property.ValueRepresentation.BOTH;
+import static org.deegree.protocol.wfs.transaction.action.IDGenMode.USE_EXISTING;
+import static org.deegree.protocol.wfs.transaction.action.UpdateAction.REPLACE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.BaseType;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.persistence.CRSManager;
+import org.deegree.db.ConnectionProvider;
+import org.deegree.db.ConnectionProviderProvider;
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.GenericFeatureCollection;
+import org.deegree.feature.persistence.FeatureStoreTransaction;
+import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.property.SimpleProperty;
+import org.deegree.feature.stream.FeatureInputStream;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericAppSchema;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.GeometryPropertyType;
+import org.deegree.feature.types.property.GeometryPropertyType.GeometryType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.filter.IdFilter;
+import org.deegree.filter.OperatorFilter;
+import org.deegree.filter.spatial.BBOX;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.protocol.wfs.transaction.action.ParsedPropertyReplacement;
+import org.deegree.workspace.standard.DefaultWorkspace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the transactions of the {@link MemoryFeatureStore} (inserts, updates and deletes, as seen by spatial and
+ * hits queries).
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class MemoryFeatureStoreTransactionTest {
+
+    private static final String NS = "http://www.deegree.org/test";
+
+    private static final QName FT_NAME = new QName( NS, "Site" );
+
+    private static final ICRS CRS = CRSManager.getCRSRef( "EPSG:4326" );
+
+    private static final GeometryFactory GEOM_FAC = new GeometryFactory();
+
+    private SimplePropertyType namePt;
+
+    private GeometryPropertyType geomPt;
+
+    private FeatureType ft;
+
+    private DefaultWorkspace workspace;
+
+    private MemoryFeatureStore store;
+
+    @Before
+    public void setUp()
+                            throws Exception {
+        namePt = new SimplePropertyType( new QName( NS, "name" ), 0, 1, BaseType.STRING, null, null );
+        geomPt = new GeometryPropertyType( new QName( NS, "geometry" ), 0, 1, null, null, GeometryType.POINT, DIM_2,
+                                           BOTH );
+        List<PropertyType> pts = new ArrayList<PropertyType>();
+        pts.add( namePt );
+        pts.add( geomPt );
+        ft = new GenericFeatureType( FT_NAME, pts, false );
+        AppSchema schema = new GenericAppSchema( new FeatureType[] { ft }, null, null, null, null, null );
+
+        workspace = new DefaultWorkspace( new File( "nix" ) );
+        workspace.initAll();
+        ConnectionProvider prov = workspace.getResource( ConnectionProviderProvider.class, "LOCK_DB" );
+        store = new MemoryFeatureStore( schema, CRS, null, prov );
+
+        // 40 x 40 grid of sites, ids SITE_<x>_<y>
+        FeatureCollection fc = new GenericFeatureCollection();
+        for ( int y = 0; y < 40; y++ ) {
+            for ( int x = 0; x < 40; x++ ) {
+                fc.add( createFeature( x, y ) );
+            }
+        }
+        FeatureStoreTransaction ta = store.acquireTransaction();
+        assertEquals( 1600, ta.performInsert( fc, USE_EXISTING ).size() );
+        ta.commit();
+    }
+
+    @After
+    public void shutDown() {
+        workspace.destroy();
+    }
+
+    @Test
+    public void testInsert()
+                            throws Exception {
+        assertEquals( 1600, hits( null ) );
+        assertEquals( 100, hits( box( 9.5, 9.5, 19.5, 19.5 ) ) );
+        assertEquals( ids( "SITE_0_0", "SITE_0_1", "SITE_1_0", "SITE_1_1" ), query( box( -0.5, -0.5, 1.5, 1.5 ) ) );
+
+        // inserted geometries are stored in the storage crs
+        Feature f = (Feature) store.getObjectById( "SITE_3_4" );
+        assertEquals( CRS, ( (Point) f.getProperties( geomPt.getName() ).get( 0 ).getValue() ).getCoordinateSystem() );
+
+        FeatureCollection fc = new GenericFeatureCollection();
+        fc.add( createFeature( 100, 100 ) );
+        FeatureStoreTransaction ta = store.acquireTransaction();
+        ta.performInsert( fc, USE_EXISTING );
+        ta.commit();
+        assertEquals( 1601, hits( null ) );
+        assertEquals( ids( "SITE_100_100" ), query( box( 99.5, 99.5, 100.5, 100.5 ) ) );
+        assertEquals( 100.0, store.calcEnvelope( FT_NAME ).getMax().get0(), 0.0 );
+    }
+
+    @Test
+    public void testUpdateGeometry()
+                            throws Exception {
+        List<ParsedPropertyReplacement> replacements = new ArrayList<ParsedPropertyReplacement>();
+        Property newGeom = new GenericProperty( geomPt, GEOM_FAC.createPoint( null, 500, 500, CRS ) );
+        replacements.add( new ParsedPropertyReplacement( newGeom, REPLACE, null, 0 ) );
+
+        FeatureStoreTransaction ta = store.acquireTransaction();
+        assertEquals( 1, ta.performUpdate( FT_NAME, replacements, new IdFilter( "SITE_5_5" ), null ).size() );
+        ta.commit();
+
+        assertEquals( 1600, hits( null ) );
+        assertEquals( ids(), query( box( 4.5, 4.5, 5.5, 5.5 ) ) );
+        assertEquals( 0, hits( box( 4.5, 4.5, 5.5, 5.5 ) ) );
+        assertEquals( ids( "SITE_5_5" ), query( box( 499.5, 499.5, 500.5, 500.5 ) ) );
+        assertEquals( 1, hits( box( 499.5, 499.5, 500.5, 500.5 ) ) );
+        assertEquals( 99, hits( box( -0.5, -0.5, 9.5, 9.5 ) ) );
+        assertEquals( 500.0, store.calcEnvelope( FT_NAME ).getMax().get0(), 0.0 );
+    }
+
+    @Test
+    public void testDelete()
+                            throws Exception {
+        FeatureStoreTransaction ta = store.acquireTransaction();
+        assertEquals( 2, ta.performDelete( new IdFilter( "SITE_0_0", "SITE_39_39" ), null ) );
+        assertEquals( 399, ta.performDelete( FT_NAME, new OperatorFilter( new BBOX( box( 19.5, 19.5, 39.5, 39.5 ) ) ),
+                                             null ) );
+        ta.commit();
+
+        assertEquals( 1199, hits( null ) );
+        assertEquals( 0, hits( box( 19.5, 19.5, 39.5, 39.5 ) ) );
+        assertEquals( ids( "SITE_0_1", "SITE_1_0", "SITE_1_1" ), query( box( -0.5, -0.5, 1.5, 1.5 ) ) );
+        assertNull( store.getObjectById( "SITE_0_0" ) );
+        assertNull( store.getObjectById( "SITE_30_30" ) );
+        assertNotNull( store.getObjectById( "SITE_30_10" ) );
+    }
+
+    @Test
+    public void testRollback()
+                            throws Exception {
+        FeatureCollection fc = new GenericFeatureCollection();
+        fc.add( createFeature( 100, 100 ) );
+        FeatureStoreTransaction ta = store.acquireTransaction();
+        ta.performInsert( fc, USE_EXISTING );
+        ta.performDelete( new IdFilter( "SITE_0_0" ), null );
+        ta.rollback();
+
+        assertEquals( 1600, hits( null ) );
+        assertEquals( 0, hits( box( 99.5, 99.5, 100.5, 100.5 ) ) );
+        assertNull( store.getObjectById( "SITE_100_100" ) );
+        assertNotNull( store.getObjectById( "SITE_0_0" ) );
+    }
+
+    @Test
+    public void testQueryResultUnaffectedByLaterCommit()
+                            throws Exception {
+        FeatureInputStream rs = store.query( new Query( FT_NAME, new OperatorFilter( new BBOX( box( -0.5, -0.5, 9.5,
+                                                                                                     9.5 ) ) ), -1,
+                                                        -1, -1 ) );
+        FeatureStoreTransaction ta = store.acquireTransaction();
+        ta.performDelete( FT_NAME, new OperatorFilter( new BBOX( box( -0.5, -0.5, 4.5, 4.5 ) ) ), null );
+        FeatureCollection fc = new GenericFeatureCollection();
+        fc.add( createFeature( 2.25, 2.25 ) );
+        ta.performInsert( fc, USE_EXISTING );
+        ta.commit();
+
+        assertEquals( 100, rs.toCollection().size() );
+        assertEquals( 76, hits( box( -0.5, -0.5, 9.5, 9.5 ) ) );
+    }
+
+    private Feature createFeature( double x, double y ) {
+        String fid = "SITE_" + (int) x + "_" + (int) y;
+        List<Property> props = new ArrayList<Property>();
+        props.add( new SimpleProperty( namePt, fid ) );
+        props.add( new GenericProperty( geomPt, GEOM_FAC.createPoint( null, x, y, null ) ) );
+        return ft.newFeature( fid, props, null );
+    }
+
+    private Envelope box( double minX, double minY, double maxX, double maxY ) {
+        return GEOM_FAC.createEnvelope( minX, minY, maxX, maxY, null );
+    }
+
+    private int hits( Envelope bbox )
+                            throws Exception {
+        OperatorFilter filter = bbox != null ? new OperatorFilter( new BBOX( bbox ) ) : null;
+        return store.queryHits( new Query( FT_NAME, filter, -1, -1, -1 ) );
+    }
+
+    private Set<String> query( Envelope bbox )
+                            throws Exception {
+        Query query = new Query( FT_NAME, new OperatorFilter( new BBOX( bbox ) ), -1, -1, -1 );
+        Set<String> fids = new HashSet<String>();
+        for ( Feature f : store.query( query ).toCollection() ) {
+            fids.add( f.getId() );
+        }
+        return fids;
+    }
+
+    private static Set<String> ids( String... fids ) {
+        Set<String> set = new HashSet<String>();
+        Collections.addAll( set, fids );
+        return set;
+    }
+}
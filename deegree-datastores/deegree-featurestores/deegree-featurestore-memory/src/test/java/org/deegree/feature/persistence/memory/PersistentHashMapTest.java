@@ -0,0 +1,111 @@
+//$HeadURL$
+/*---------------------------------------------------------------------------- 
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link PersistentHashMap}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PersistentHashMapTest {
+
+    @Test
+    public void testPlusMinus() {
+        PersistentHashMap<String, Integer> empty = PersistentHashMap.empty();
+        PersistentHashMap<String, Integer> m1 = empty.plus( "a", 1 ).plus( "b", 2 );
+        PersistentHashMap<String, Integer> m2 = m1.plus( "a", 3 ).minus( "b" );
+        assertEquals( 0, empty.size() );
+        assertEquals( 2, m1.size() );
+        assertEquals( Integer.valueOf( 1 ), m1.get( "a" ) );
+        assertEquals( Integer.valueOf( 2 ), m1.get( "b" ) );
+        assertEquals( 1, m2.size() );
+        assertEquals( Integer.valueOf( 3 ), m2.get( "a" ) );
+        assertNull( m2.get( "b" ) );
+        assertSame( m2, m2.minus( "c" ) );
+        assertEquals( 0, m2.minus( "a" ).size() );
+    }
+
+    @Test
+    public void testCollidingHashCodes() {
+        // "Aa" and "BB" have the same hash code
+        PersistentHashMap<String, Integer> m = PersistentHashMap.empty();
+        m = m.plus( "Aa", 1 ).plus( "BB", 2 );
+        assertEquals( 2, m.size() );
+        assertEquals( Integer.valueOf( 1 ), m.get( "Aa" ) );
+        assertEquals( Integer.valueOf( 2 ), m.get( "BB" ) );
+        m = m.minus( "Aa" );
+        assertNull( m.get( "Aa" ) );
+        assertEquals( Integer.valueOf( 2 ), m.get( "BB" ) );
+    }
+
+    @Test
+    public void testOlderVersionsUnchanged() {
+        Random random = new Random( 42 );
+        Map<String, Integer> expected = new HashMap<String, Integer>();
+        PersistentHashMap<String, Integer> m = PersistentHashMap.empty();
+        for ( int i = 0; i < 10000; i++ ) {
+            String key = "FEATURE_" + random.nextInt( 5000 );
+            if ( random.nextInt( 3 ) == 0 ) {
+                m = m.minus( key );
+                expected.remove( key );
+            } else {
+                m = m.plus( key, i );
+                expected.put( key, i );
+            }
+        }
+        PersistentHashMap<String, Integer> snapshot = m;
+        for ( int i = 0; i < 5000; i++ ) {
+            m = m.minus( "FEATURE_" + i );
+        }
+        assertEquals( 0, m.size() );
+        assertEquals( expected.size(), snapshot.size() );
+        for ( Map.Entry<String, Integer> entry : expected.entrySet() ) {
+            assertEquals( entry.getValue(), snapshot.get( entry.getKey() ) );
+        }
+    }
+}
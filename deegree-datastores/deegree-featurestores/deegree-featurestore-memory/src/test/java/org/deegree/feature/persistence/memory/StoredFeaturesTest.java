@@ -0,0 +1,267 @@
+//$HeadURL$
+/*---------------------------------------------------------------------------- 
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.memory;
+
+import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2;
+import static org.deegree.feature.types.property.ValueRepresentation.BOTH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.BaseType;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.persistence.CRSManager;
+import org.deegree.feature.Feature;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.property.SimpleProperty;
+import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericAppSchema;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.GeometryPropertyType;
+import org.deegree.feature.types.property.GeometryPropertyType.GeometryType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.filter.Filter;
+import org.deegree.filter.OperatorFilter;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.spatial.BBOX;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link StoredFeatures}, especially the consistency of the spatial index (across chunks, level merges and
+ * compactions) and the isolation of committed snapshots from working copies.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class StoredFeaturesTest {
+
+    private static final String NS = "http://www.deegree.org/test";
+
+    private static final QName FT_NAME = new QName( NS, "Site" );
+
+    private static final ICRS CRS = CRSManager.getCRSRef( "EPSG:4326" );
+
+    private static final GeometryFactory GEOM_FAC = new GeometryFactory();
+
+    // query boxes (coordinates are integers, so no feature lies on a box boundary)
+    private static final double[][] BOXES = { { -0.5, -0.5, 10.5, 10.5 }, { 20.5, 5.5, 47.5, 31.5 },
+                                             { 55.5, -10.5, 300.5, 300.5 }, { 3.5, 3.5, 3.7, 3.7 },
+                                             { -100.5, -100.5, 1000.5, 1000.5 } };
+
+    private SimplePropertyType namePt;
+
+    private GeometryPropertyType geomPt;
+
+    private FeatureType ft;
+
+    private AppSchema schema;
+
+    // expected state: fid -> coordinates
+    private Map<String, double[]> expected;
+
+    private int nextId;
+
+    @Before
+    public void setUp() {
+        namePt = new SimplePropertyType( new QName( NS, "name" ), 0, 1, BaseType.STRING, null, null );
+        geomPt = new GeometryPropertyType( new QName( NS, "geometry" ), 0, 1, null, null, GeometryType.POINT, DIM_2,
+                                           BOTH );
+        List<PropertyType> pts = new ArrayList<PropertyType>();
+        pts.add( namePt );
+        pts.add( geomPt );
+        ft = new GenericFeatureType( FT_NAME, pts, false );
+        schema = new GenericAppSchema( new FeatureType[] { ft }, null, null, null, null, null );
+        expected = new HashMap<String, double[]>();
+        nextId = 0;
+    }
+
+    @Test
+    public void testBBoxQueryAcrossChunks()
+                            throws Exception {
+        StoredFeatures sf = new StoredFeatures( schema, CRS, null );
+        addGrid( sf, 0, 0, 60, 50 );
+        sf.updateIndexes();
+        assertEquals( 3000, expected.size() );
+        assertQueries( sf, expected );
+    }
+
+    @Test
+    public void testBBoxQueryAfterLevelMerges()
+                            throws Exception {
+        StoredFeatures sf = new StoredFeatures( schema, CRS, null );
+        for ( int batch = 0; batch < 100; batch++ ) {
+            sf = new StoredFeatures( schema, CRS, sf );
+            for ( int i = 0; i < 37; i++ ) {
+                add( sf, ( batch * 37 + i ) % 61, ( batch * 37 + i ) / 61 );
+            }
+            sf.updateIndexes();
+            if ( batch % 10 == 9 ) {
+                assertQueries( sf, expected );
+            }
+        }
+        assertEquals( 3700, expected.size() );
+    }
+
+    @Test
+    public void testBBoxQueryAfterCompaction()
+                            throws Exception {
+        StoredFeatures sf = new StoredFeatures( schema, CRS, null );
+        addGrid( sf, 0, 0, 60, 50 );
+        sf.updateIndexes();
+
+        // remove two thirds of the features, so the slots get compacted
+        sf = new StoredFeatures( schema, CRS, sf );
+        Set<String> removed = new HashSet<String>();
+        for ( String fid : new ArrayList<String>( expected.keySet() ) ) {
+            if ( Integer.parseInt( fid.substring( 5 ) ) % 3 != 0 ) {
+                sf.removeFeature( (Feature) sf.getObjectById( fid ) );
+                expected.remove( fid );
+                removed.add( fid );
+            }
+        }
+        sf.updateIndexes();
+        assertQueries( sf, expected );
+        for ( String fid : removed ) {
+            assertNull( sf.getObjectById( fid ) );
+        }
+
+        // features added after the compaction must get valid slots as well
+        sf = new StoredFeatures( schema, CRS, sf );
+        addGrid( sf, 100, 100, 20, 20 );
+        sf.updateIndexes();
+        assertQueries( sf, expected );
+        for ( String fid : expected.keySet() ) {
+            assertNotNull( sf.getObjectById( fid ) );
+        }
+    }
+
+    @Test
+    public void testSnapshotUnaffectedByWorkingCopy()
+                            throws Exception {
+        StoredFeatures snapshot = new StoredFeatures( schema, CRS, null );
+        addGrid( snapshot, 0, 0, 50, 40 );
+        snapshot.updateIndexes();
+        Map<String, double[]> committed = new HashMap<String, double[]>( expected );
+
+        StoredFeatures working = new StoredFeatures( schema, CRS, snapshot );
+        for ( String fid : committed.keySet() ) {
+            if ( Integer.parseInt( fid.substring( 5 ) ) % 4 == 0 ) {
+                working.removeFeature( (Feature) working.getObjectById( fid ) );
+                expected.remove( fid );
+            }
+        }
+        addGrid( working, 200, 200, 30, 30 );
+        working.updateIndexes();
+
+        assertQueries( working, expected );
+        assertEquals( 229.0, working.getEnvelope( FT_NAME ).getMax().get0(), 0.0 );
+
+        // the snapshot must still deliver the committed state
+        assertQueries( snapshot, committed );
+        assertEquals( 49.0, snapshot.getEnvelope( FT_NAME ).getMax().get0(), 0.0 );
+        assertEquals( 39.0, snapshot.getEnvelope( FT_NAME ).getMax().get1(), 0.0 );
+        for ( String fid : committed.keySet() ) {
+            assertNotNull( snapshot.getObjectById( fid ) );
+        }
+        for ( String fid : expected.keySet() ) {
+            if ( !committed.containsKey( fid ) ) {
+                assertNull( snapshot.getObjectById( fid ) );
+            }
+        }
+    }
+
+    private void addGrid( StoredFeatures sf, int x0, int y0, int cols, int rows ) {
+        for ( int y = 0; y < rows; y++ ) {
+            for ( int x = 0; x < cols; x++ ) {
+                add( sf, x0 + x, y0 + y );
+            }
+        }
+    }
+
+    private void add( StoredFeatures sf, double x, double y ) {
+        String fid = "SITE_" + nextId++;
+        List<Property> props = new ArrayList<Property>();
+        props.add( new SimpleProperty( namePt, fid ) );
+        props.add( new GenericProperty( geomPt, GEOM_FAC.createPoint( null, x, y, CRS ) ) );
+        sf.addFeature( ft.newFeature( fid, props, null ) );
+        expected.put( fid, new double[] { x, y } );
+    }
+
+    private void assertQueries( StoredFeatures sf, Map<String, double[]> features )
+                            throws Exception {
+        assertEquals( features.size(), sf.queryHits( new Query( FT_NAME, null, -1, -1, -1 ) ) );
+        for ( double[] box : BOXES ) {
+            Set<String> fids = new HashSet<String>();
+            for ( Map.Entry<String, double[]> entry : features.entrySet() ) {
+                double[] p = entry.getValue();
+                if ( p[0] >= box[0] && p[0] <= box[2] && p[1] >= box[1] && p[1] <= box[3] ) {
+                    fids.add( entry.getKey() );
+                }
+            }
+            Envelope bbox = GEOM_FAC.createEnvelope( box[0], box[1], box[2], box[3], null );
+
+            // envelope bbox (hits are counted by the index) and bbox on the geometry property
+            Filter envFilter = new OperatorFilter( new BBOX( bbox ) );
+            Filter propFilter = new OperatorFilter( new BBOX( new ValueReference( geomPt.getName() ), bbox ) );
+            for ( Filter filter : new Filter[] { envFilter, propFilter } ) {
+                Query query = new Query( FT_NAME, filter, -1, -1, -1 );
+                Set<String> actual = new HashSet<String>();
+                for ( Feature f : sf.query( query ).toCollection() ) {
+                    actual.add( f.getId() );
+                }
+                assertEquals( fids, actual );
+                assertEquals( fids.size(), sf.queryHits( query ) );
+            }
+        }
+    }
+}
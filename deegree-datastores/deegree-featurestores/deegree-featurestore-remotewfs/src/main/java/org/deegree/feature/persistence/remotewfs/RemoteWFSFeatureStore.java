@@ -36,6 +36,7 @@
 
 package org.deegree.feature.persistence.remotewfs;
 
+import static org.deegree.feature.persistence.FeatureStores.applyPaging;
 import static org.deegree.gml.GMLVersion.GML_31;
 import static org.deegree.protocol.wfs.WFSVersion.WFS_110;
 
@@ -124,7 +125,9 @@ public class RemoteWFSFeatureStore implements FeatureStore {
 
     @Override
     public void destroy() {
-        // TODO Auto-generated method stub
+        if ( client != null ) {
+            client.close();
+        }
     }
 
     @Override
@@ -171,8 +174,9 @@ public class RemoteWFSFeatureStore implements FeatureStore {
                                              Collections.singletonList( wfsQuery ) );
 
         FeatureInputStream is = null;
+        GetFeatureResponse<Feature> openResponse = null;
         try {
-            final GetFeatureResponse<Feature> response = client.doGetFeature( request );
+            final GetFeatureResponse<Feature> response = openResponse = client.doGetFeature( request );
             final WFSFeatureCollection<Feature> wfsFc = response.getAsWFSFeatureCollection();
             is = new FeatureInputStream() {
 
@@ -202,12 +206,13 @@ public class RemoteWFSFeatureStore implements FeatureStore {
                 }
             };
         } catch ( OWSExceptionReport e ) {
+            closeQuietly( openResponse );
             throw new FeatureStoreException( "Remote WFS responded with exception report: " + e.getMessage() );
         } catch ( Throwable t ) {
+            closeQuietly( openResponse );
             throw new FeatureStoreException( "Error performing GetFeature request to remote WFS: " + t.getMessage() );
         }
-
-        return is;
+        return applyPaging( is, query );
     }
 
     @Override
@@ -265,17 +270,21 @@ public class RemoteWFSFeatureStore implements FeatureStore {
         } catch ( Throwable t ) {
             throw new FeatureStoreException( "Error performing GetFeature request to remote WFS: " + t.getMessage() );
         } finally {
-            if ( response != null ) {
-                try {
-                    response.close();
-                } catch ( IOException e ) {
-                    // nothing to do
-                }
-            }
+            closeQuietly( response );
         }
         return hits;
     }
 
+    private static void closeQuietly( GetFeatureResponse<Feature> response ) {
+        if ( response != null ) {
+            try {
+                response.close();
+            } catch ( IOException e ) {
+                // nothing to do
+            }
+        }
+    }
+
     private org.deegree.protocol.wfs.query.Query toWFSQuery( Query query ) {
         TypeName[] typeNames = query.getTypeNames();
         String featureVersion = null;
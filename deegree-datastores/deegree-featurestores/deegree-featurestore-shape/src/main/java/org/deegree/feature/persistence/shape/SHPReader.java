@@ -52,12 +52,12 @@ import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 
-import org.deegree.commons.index.SpatialIndex;
+import org.deegree.commons.index.LongList;
+import org.deegree.commons.index.PackedRTree;
 import org.deegree.commons.utils.Pair;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.feature.types.property.GeometryPropertyType.GeometryType;
@@ -211,7 +211,7 @@ public class SHPReader {
 
     private Envelope bbox;
 
-    private SpatialIndex<Long> rtree;
+    private PackedRTree rtree;
 
     private boolean recordNumStartsWith0 = false;
 
@@ -229,7 +229,7 @@ public class SHPReader {
      * @param startsWithZero
      * @throws IOException
      */
-    public SHPReader( RandomAccessFile inFile, ICRS crs, SpatialIndex<Long> rtree, boolean startsWithZero )
+    public SHPReader( RandomAccessFile inFile, ICRS crs, PackedRTree rtree, boolean startsWithZero )
                             throws IOException {
         file = inFile;
         channel = file.getChannel();
@@ -362,25 +362,21 @@ public class SHPReader {
 
         ByteBuffer buffer = sharedBuffer.asReadOnlyBuffer();
         buffer.order( ByteOrder.LITTLE_ENDIAN );
-        List<Long> pointers = (List<Long>) rtree.query( createEnvelope( bbox ) );
+        LongList pointers = new LongList();
+        rtree.query( createEnvelope( bbox ), pointers );
+        pointers.sort();
+        double[] box = getExactBox( bbox );
         List<Pair<Integer, Long>> recNums = new ArrayList<Pair<Integer, Long>>( pointers.size() );
-        Collections.sort( pointers );
-        for ( Long ptr : pointers ) {
-            buffer.position( (int) ( ptr - 8 ) );
-            int num = getBEInt( buffer );
-            if ( num == 0 && !recordNumStartsWith0 && rtree != null ) {
-                LOG.error( "PLEASE NOTE THIS: Detected that the shape file starts counting record numbers at 0 and not at 1 as specified!" );
-                LOG.error( "PLEASE NOTE THIS: This should not happen any more, and is a bug! Please report this along with the data!" );
-                recordNumStartsWith0 = true;
-            }
-
-            if ( !recordNumStartsWith0 ) {
-                num -= 1;
-            }
+        for ( int i = 0; i < pointers.size(); ++i ) {
+            long ptr = pointers.get( i );
+            int num = readRecordNumber( buffer, ptr );
 
             if ( ids != null && !ids.contains( num ) ) {
                 continue;
             }
+            if ( !intersectsRecordEnvelope( buffer, ptr, box ) ) {
+                continue;
+            }
 
             recNums.add( new Pair<Integer, Long>( num, ptr ) );
         }
@@ -388,6 +384,91 @@ public class SHPReader {
         return recNums;
     }
 
+    /**
+     * Counts the records matching a bbox, without reading any geometries. The candidates from the index are checked
+     * against the exact (double precision) envelopes stored in the record headers, so the result is the same as the
+     * size of the list returned by {@link #query(Envelope, HashSet)}.
+     * 
+     * @param bbox
+     *            must not be <code>null</code>
+     * @param ids
+     *            if not null, only records contained in this set are counted
+     * @return the number of matching records
+     */
+    public int count( final Envelope bbox, final HashSet<Integer> ids ) {
+
+        LOG.debug( "Counting shp records with bbox {}", bbox );
+
+        final ByteBuffer buffer = sharedBuffer.asReadOnlyBuffer();
+        buffer.order( ByteOrder.LITTLE_ENDIAN );
+        final double[] box = getExactBox( bbox );
+        final int[] count = new int[1];
+        rtree.query( createEnvelope( bbox ), new PackedRTree.Visitor() {
+            @Override
+            public boolean visit( long ptr ) {
+                if ( ids != null && !ids.contains( readRecordNumber( buffer, ptr ) ) ) {
+                    return true;
+                }
+                if ( intersectsRecordEnvelope( buffer, ptr, box ) ) {
+                    ++count[0];
+                }
+                return true;
+            }
+        } );
+        return count[0];
+    }
+
+    private int readRecordNumber( ByteBuffer buffer, long ptr ) {
+        buffer.position( (int) ( ptr - 8 ) );
+        int num = getBEInt( buffer );
+        if ( num == 0 && !recordNumStartsWith0 && rtree != null ) {
+            LOG.error( "PLEASE NOTE THIS: Detected that the shape file starts counting record numbers at 0 and not at 1 as specified!" );
+            LOG.error( "PLEASE NOTE THIS: This should not happen any more, and is a bug! Please report this along with the data!" );
+            recordNumStartsWith0 = true;
+        }
+
+        if ( !recordNumStartsWith0 ) {
+            num -= 1;
+        }
+        return num;
+    }
+
+    private static double[] getExactBox( Envelope bbox ) {
+        if ( bbox == null ) {
+            return null;
+        }
+        return new double[] { bbox.getMin().get0(), bbox.getMin().get1(), bbox.getMax().get0(), bbox.getMax().get1() };
+    }
+
+    /**
+     * Tests the envelope stored in the record header (the point itself for point records) against the box. The index
+     * only stores float envelopes, so its candidates may slightly exceed the box.
+     */
+    private static boolean intersectsRecordEnvelope( ByteBuffer buffer, long ptr, double[] box ) {
+        if ( box == null ) {
+            return true;
+        }
+        buffer.position( (int) ptr );
+        int type = buffer.getInt();
+        double minx, miny, maxx, maxy;
+        switch ( type ) {
+        case NULL:
+            return false;
+        case POINT:
+        case POINTM:
+        case POINTZ:
+            minx = maxx = buffer.getDouble();
+            miny = maxy = buffer.getDouble();
+            break;
+        default:
+            minx = buffer.getDouble();
+            miny = buffer.getDouble();
+            maxx = buffer.getDouble();
+            maxy = buffer.getDouble();
+        }
+        return !( maxx < box[0] || maxy < box[1] || minx > box[2] || miny > box[3] );
+    }
+
     /**
      * @param bbox
      * @param withGeometry
@@ -402,9 +483,11 @@ public class SHPReader {
 
         LinkedList<Pair<Integer, Geometry>> list = new LinkedList<Pair<Integer, Geometry>>();
 
-        List<Long> pointers = (List<Long>) rtree.query( createEnvelope( bbox ) );
-        Collections.sort( pointers );
-        for ( Long ptr : pointers ) {
+        LongList pointers = new LongList();
+        rtree.query( createEnvelope( bbox ), pointers );
+        pointers.sort();
+        for ( int i = 0; i < pointers.size(); ++i ) {
+            long ptr = pointers.get( i );
             buffer.position( (int) ( ptr - 8 ) );
 
             int num = getBEInt( buffer );
@@ -35,11 +35,14 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence.shape;
 
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static org.deegree.commons.utils.CollectionUtils.unzipPair;
+import static org.deegree.feature.persistence.FeatureStores.applyPaging;
+import static org.deegree.feature.persistence.FeatureStores.getLimit;
 import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2_OR_3;
 import static org.deegree.feature.types.property.ValueRepresentation.BOTH;
 import static org.deegree.filter.Filters.splitOffBBoxConstraint;
-import static org.deegree.geometry.utils.GeometryUtils.createEnvelope;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.io.BufferedReader;
@@ -48,6 +51,8 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -62,7 +67,7 @@ import javax.xml.namespace.QName;
 
 import org.apache.commons.io.IOUtils;
 import org.deegree.commons.annotations.LoggingNotes;
-import org.deegree.commons.index.RTree;
+import org.deegree.commons.index.PackedRTree;
 import org.deegree.commons.tom.gml.GMLObject;
 import org.deegree.commons.tom.gml.property.Property;
 import org.deegree.commons.tom.gml.property.PropertyType;
@@ -74,7 +79,6 @@ import org.deegree.cs.exceptions.UnknownCRSException;
 import org.deegree.cs.exceptions.WKTParsingException;
 import org.deegree.cs.persistence.CRSManager;
 import org.deegree.feature.Feature;
-import org.deegree.feature.Features;
 import org.deegree.feature.GenericFeatureCollection;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
@@ -88,8 +92,10 @@ import org.deegree.feature.property.GenericProperty;
 import org.deegree.feature.stream.CombinedFeatureInputStream;
 import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.feature.stream.FilteredFeatureInputStream;
+import org.deegree.feature.stream.GeneralizingFeatureInputStream;
 import org.deegree.feature.stream.IteratorFeatureInputStream;
 import org.deegree.feature.stream.MemoryFeatureInputStream;
+import org.deegree.feature.stream.SortingFeatureInputStream;
 import org.deegree.feature.types.AppSchema;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.feature.types.GenericAppSchema;
@@ -125,7 +131,7 @@ public class ShapeFeatureStore implements FeatureStore {
 
     private static final Logger LOG = getLogger( ShapeFeatureStore.class );
 
-    private SHPReader shp;
+    private volatile SHPReader shp;
 
     private DBFReader dbf;
 
@@ -245,58 +251,72 @@ public class ShapeFeatureStore implements FeatureStore {
     private SHPReader getSHP( boolean forceIndexRebuild )
                             throws IOException {
 
-        shp = null;
-
         File rtfile = new File( shpName + ".rti" );
         RandomAccessFile raf = new RandomAccessFile( shpFile, "r" );
 
         if ( rtfile.exists() && !( rtfile.lastModified() < shpFile.lastModified() ) && !forceIndexRebuild ) {
             try {
                 LOG.debug( "Loading RTree from disk." );
-                RTree<Long> rtree = RTree.loadFromDisk( shpName + ".rti" );
-                shp = new SHPReader( raf, crs, rtree, rtree.getExtraFlag() );
+                PackedRTree rtree = PackedRTree.load( rtfile );
+                return new SHPReader( raf, crs, rtree, rtree.getExtraFlag() );
             } catch ( IOException e ) {
                 LOG.debug( "Stack trace:", e );
                 LOG.warn( "Existing rtree index could not be read. Generating a new one..." );
             }
-            if ( shp != null ) {
-                return shp;
-            }
         }
 
-        shp = new SHPReader( raf, crs, null, false );
+        SHPReader reader = new SHPReader( raf, crs, null, false );
 
         LOG.debug( "Building rtree index in memory for '{}'", new File( shpName ).getName() );
 
-        Pair<RTree<Long>, Boolean> p = createIndex( shp );
+        PackedRTree rtree = createIndex( reader );
         LOG.debug( "done building index." );
-        shp = new SHPReader( raf, crs, p.first, p.second );
-        p.first.writeTreeToDisk( shpName + ".rti" );
-        return shp;
+        writeIndex( rtree, rtfile );
+        return new SHPReader( raf, crs, rtree, rtree.getExtraFlag() );
+    }
+
+    /**
+     * Writes the index to a temporary file and moves it over the old one, as other readers may still have the old index
+     * file mapped.
+     */
+    private static void writeIndex( PackedRTree rtree, File rtfile ) {
+        File tmpFile = null;
+        try {
+            tmpFile = File.createTempFile( rtfile.getName(), ".tmp", rtfile.getAbsoluteFile().getParentFile() );
+            rtree.write( tmpFile );
+            try {
+                Files.move( tmpFile.toPath(), rtfile.toPath(), ATOMIC_MOVE, REPLACE_EXISTING );
+            } catch ( AtomicMoveNotSupportedException e ) {
+                Files.move( tmpFile.toPath(), rtfile.toPath(), REPLACE_EXISTING );
+            }
+        } catch ( IOException e ) {
+            LOG.debug( "Stack trace:", e );
+            LOG.warn( "Rtree index could not be written to '{}': {}", rtfile, e.getLocalizedMessage() );
+            if ( tmpFile != null ) {
+                tmpFile.delete();
+            }
+        }
     }
 
     /**
      * @param shapeReader
      */
-    private static Pair<RTree<Long>, Boolean> createIndex( SHPReader shapeReader ) {
-        Envelope env = shapeReader.getEnvelope();
-        // use 128 values per rect.
-        RTree<Long> result = new RTree<Long>( createEnvelope( env ), -1 );
-        // to work around Java's non-existent variant type
+    private static PackedRTree createIndex( SHPReader shapeReader ) {
         LOG.debug( "Read envelopes from shape file..." );
         Pair<ArrayList<Pair<float[], Long>>, Boolean> p = shapeReader.readEnvelopes();
         LOG.debug( "done reading envelopes." );
-        result.insertBulk( p.first );
-        return new Pair<RTree<Long>, Boolean>( result, p.second );
+        return PackedRTree.create( p.first, PackedRTree.DEFAULT_NODE_SIZE, p.second );
     }
 
     private void checkForUpdate() {
         try {
             synchronized ( shpFile ) {
                 if ( shpLastModified != shpFile.lastModified() ) {
-                    shp.close();
                     LOG.debug( "Re-opening the shape file {}", shpName );
+                    // the new index is complete (and written) before it replaces the old one
+                    SHPReader oldShp = shp;
                     shp = getSHP( true );
+                    oldShp.close();
                     shpLastModified = shpFile.lastModified();
                     cache.clear();
                 }
@@ -387,7 +407,7 @@ public class ShapeFeatureStore implements FeatureStore {
         Envelope bbox = getTransformedEnvelope( query.getPrefilterBBoxEnvelope() );
 
         if ( bbox == null ) {
-            getEnvelope( null );
+            bbox = getEnvelope( null );
         }
 
         boolean queryIndex = filterPair.first == null || !generateAlphanumericIndexes;
@@ -414,7 +434,16 @@ public class ShapeFeatureStore implements FeatureStore {
 
         if ( p.second != null && p.second.length > 0 ) {
             LOG.debug( "Applying in-memory sorting." );
-            rs = new MemoryFeatureInputStream( Features.sortFc( rs.toCollection(), p.second ) );
+            rs = new SortingFeatureInputStream( rs, p.second, SortingFeatureInputStream.getLimit( query.getStartIndex(),
+                                                                                                 getLimit( query ) ) );
+        }
+
+        rs = applyPaging( rs, query );
+
+        double tolerance = query.getGeneralizationTolerance( crs );
+        if ( tolerance > 0 ) {
+            LOG.debug( "Generalizing geometries (tolerance {}).", tolerance );
+            rs = new GeneralizingFeatureInputStream( rs, tolerance );
         }
 
         return rs;
@@ -500,8 +529,60 @@ public class ShapeFeatureStore implements FeatureStore {
     @Override
     public int queryHits( Query query )
                             throws FeatureStoreException, FilterEvaluationException {
-        // TODO
-        return query( query ).toCollection().size();
+
+        if ( query.getTypeNames() == null || query.getTypeNames().length != 1
+             || query.getFilter() instanceof IdFilter ) {
+            // id queries select only a few features
+            FeatureInputStream rs = query( query );
+            return rs == null ? 0 : rs.count();
+        }
+
+        QName featureType = query.getTypeNames()[0].getFeatureTypeName();
+        if ( featureType != null && !featureType.equals( ft.getName() ) ) {
+            return 0;
+        }
+
+        checkForUpdate();
+
+        if ( !available ) {
+            return 0;
+        }
+
+        Pair<Filter, Envelope> filterPair = splitOffBBoxConstraint( query.getFilter() );
+        Envelope bbox = getTransformedEnvelope( query.getPrefilterBBoxEnvelope() );
+        if ( bbox == null ) {
+            bbox = getEnvelope( null );
+        }
+
+        // sort criteria don't change the number of hits, so the filter is all that needs to be evaluated
+        Filter filter = filterPair.first;
+        HashSet<Integer> recNums = null;
+        if ( filter != null && generateAlphanumericIndexes ) {
+            List<Pair<Integer, Long>> matches = new ArrayList<Pair<Integer, Long>>();
+            Pair<Filter, SortProperty[]> p = dbfIndex.query( matches, filter, null );
+            if ( p != null ) {
+                filter = p.first;
+                recNums = new HashSet<Integer>( unzipPair( matches ).first );
+            }
+        }
+
+        int hits;
+        if ( filter == null ) {
+            hits = shp.count( bbox, recNums );
+            LOG.debug( "{} records matching (counted from index)", hits );
+        } else {
+            LOG.debug( "Applying in-memory filtering for counting hits." );
+            List<Pair<Integer, Long>> recNumsAndPos = shp.query( bbox, recNums );
+            FeatureInputStream rs = new IteratorFeatureInputStream( new FeatureIterator( recNumsAndPos.iterator() ) );
+            hits = new FilteredFeatureInputStream( rs, filter ).count();
+        }
+
+        // same as paging the result of #query(Query)
+        hits = Math.max( 0, hits - query.getStartIndex() );
+        if ( query.getMaxFeatures() > 0 ) {
+            hits = Math.min( hits, query.getMaxFeatures() );
+        }
+        return hits;
     }
 
     @Override
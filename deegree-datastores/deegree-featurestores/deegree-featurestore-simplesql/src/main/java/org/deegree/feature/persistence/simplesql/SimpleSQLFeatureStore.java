@@ -36,6 +36,7 @@
 package org.deegree.feature.persistence.simplesql;
 
 import static java.lang.System.currentTimeMillis;
+import static org.deegree.feature.persistence.FeatureStores.applyPaging;
 import static org.deegree.feature.persistence.query.Query.QueryHint.HINT_SCALE;
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -307,7 +308,7 @@ public class SimpleSQLFeatureStore implements FeatureStore {
                 conn = connProvider.getConnection();
 
                 if ( q.getMaxFeatures() > 0 && connProvider.getDialect() instanceof PostGISDialect ) {
-                    sql += " limit " + q.getMaxFeatures();
+                    sql += " limit " + ( q.getStartIndex() + q.getMaxFeatures() );
                 }
 
                 stmt = conn.prepareStatement( sql );
@@ -371,6 +372,7 @@ public class SimpleSQLFeatureStore implements FeatureStore {
                 if ( q.getFilter() != null ) {
                     set = new FilteredFeatureInputStream( set, q.getFilter() );
                 }
+                set = applyPaging( set, q );
 
                 list.add( set );
             }
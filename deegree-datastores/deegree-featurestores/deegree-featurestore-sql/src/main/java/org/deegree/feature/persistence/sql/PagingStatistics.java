@@ -0,0 +1,96 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.deegree.feature.persistence.query.Query;
+
+/**
+ * Counts how often the paging parameters of a {@link Query} (start index and maximum number of features) could be
+ * pushed down to the database by the {@link SQLFeatureStore} and, if not, why they had to be applied in memory.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PagingStatistics {
+
+    /**
+     * How paging has been performed for a query.
+     */
+    public enum Outcome {
+        /** Paging has been performed by the database. */
+        PUSHED_DOWN,
+        /** Filter could not be mapped to SQL completely, in-memory post-filtering required. */
+        POST_FILTER,
+        /** Sort criteria could not be mapped to SQL completely, in-memory post-sorting required. */
+        POST_SORT,
+        /** Filter requires joins, rows may not correspond to features. */
+        JOINS,
+        /** Query uses an id filter. */
+        ID_FILTER,
+        /** The SQL dialect does not support restricting the returned rows. */
+        UNSUPPORTED_DIALECT
+    }
+
+    private final AtomicLongArray counts = new AtomicLongArray( Outcome.values().length );
+
+    void record( Outcome outcome ) {
+        counts.incrementAndGet( outcome.ordinal() );
+    }
+
+    /**
+     * @param outcome
+     *            outcome, must not be <code>null</code>
+     * @return number of paged queries with the given outcome
+     */
+    public long getCount( Outcome outcome ) {
+        return counts.get( outcome.ordinal() );
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for ( Outcome outcome : Outcome.values() ) {
+            if ( sb.length() > 0 ) {
+                sb.append( ", " );
+            }
+            sb.append( outcome ).append( '=' ).append( getCount( outcome ) );
+        }
+        return sb.toString();
+    }
+}
@@ -38,9 +38,13 @@ package org.deegree.feature.persistence.sql;
 import static org.deegree.commons.xml.CommonNamespaces.OGCNS;
 import static org.deegree.commons.xml.CommonNamespaces.XLNNS;
 import static org.deegree.commons.xml.CommonNamespaces.XSINS;
+import static org.deegree.feature.persistence.FeatureStores.applyPaging;
+import static org.deegree.feature.persistence.FeatureStores.getLimit;
+import static org.deegree.feature.persistence.FeatureStores.isPaged;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.lang.reflect.Constructor;
+import java.math.BigInteger;
 import java.net.URL;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -48,6 +52,8 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -70,6 +76,7 @@ import org.deegree.commons.tom.primitive.PrimitiveType;
 import org.deegree.commons.tom.primitive.PrimitiveValue;
 import org.deegree.commons.tom.sql.ParticleConverter;
 import org.deegree.commons.tom.sql.SQLValueMangler;
+import org.deegree.commons.utils.CloseableIterator;
 import org.deegree.commons.utils.JDBCUtils;
 import org.deegree.commons.utils.Pair;
 import org.deegree.commons.utils.kvp.InvalidParameterValueException;
@@ -77,7 +84,6 @@ import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.db.ConnectionProvider;
 import org.deegree.db.ConnectionProviderProvider;
 import org.deegree.feature.Feature;
-import org.deegree.feature.Features;
 import org.deegree.feature.persistence.FeatureInspector;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
@@ -90,6 +96,7 @@ import org.deegree.feature.persistence.cache.SimpleFeatureStoreCache;
 import org.deegree.feature.persistence.lock.DefaultLockManager;
 import org.deegree.feature.persistence.lock.LockManager;
 import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.persistence.sql.PagingStatistics.Outcome;
 import org.deegree.feature.persistence.sql.blob.BlobCodec;
 import org.deegree.feature.persistence.sql.blob.BlobMapping;
 import org.deegree.feature.persistence.sql.blob.FeatureBuilderBlob;
@@ -112,7 +119,7 @@ import org.deegree.feature.stream.EmptyFeatureInputStream;
 import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.feature.stream.FilteredFeatureInputStream;
 import org.deegree.feature.stream.IteratorFeatureInputStream;
-import org.deegree.feature.stream.MemoryFeatureInputStream;
+import org.deegree.feature.stream.SortingFeatureInputStream;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension;
 import org.deegree.feature.types.property.GeometryPropertyType.GeometryType;
@@ -192,6 +199,8 @@ public class SQLFeatureStore implements FeatureStore {
 
     private final Boolean readAutoCommit;
 
+    private final int joinBatchSize;
+
     private final List<FeatureInspector> inspectors = new ArrayList<FeatureInspector>();
 
     private boolean nullEscalation;
@@ -204,6 +213,8 @@ public class SQLFeatureStore implements FeatureStore {
 
     private final ThreadLocal<SQLFeatureStoreTransaction> transaction = new ThreadLocal<SQLFeatureStoreTransaction>();
 
+    private final PagingStatistics pagingStats = new PagingStatistics();
+
     /**
      * Creates a new {@link SQLFeatureStore} for the given configuration.
      *
@@ -227,6 +238,9 @@ public class SQLFeatureStore implements FeatureStore {
         readAutoCommit = config.getJDBCConnId().isReadAutoCommit() != null ? config.getJDBCConnId().isReadAutoCommit()
                                                                           : !dialect.requiresTransactionForCursorMode();
         LOG.debug( "Read auto commit: " + readAutoCommit );
+        BigInteger batchSize = config.getJDBCConnId().getJoinBatchSize();
+        joinBatchSize = batchSize != null ? batchSize.intValue() : 0;
+        LOG.debug( "Join batch size: " + joinBatchSize );
 
         if ( config.getFeatureCache() != null ) {
             cache = new SimpleFeatureStoreCache( DEFAULT_CACHE_SIZE );
@@ -678,7 +692,7 @@ public class SQLFeatureStore implements FeatureStore {
 
             if ( wb.getPostFilter() != null ) {
                 LOG.debug( "Filter not fully mappable to WHERE clause. Need to iterate over all features to determine count." );
-                hits = queryByOperatorFilter( query, ftName, filter ).count();
+                hits = queryByOperatorFilter( query, ftName, filter, false ).count();
             } else {
                 StringBuilder sql = new StringBuilder( "SELECT " );
                 if ( wb.getWhere() == null ) {
@@ -897,7 +911,7 @@ public class SQLFeatureStore implements FeatureStore {
                 String msg = "Feature store is not configured to serve feature type '" + ftName + "'.";
                 throw new FeatureStoreException( msg );
             }
-            result = queryByOperatorFilter( query, ftName, (OperatorFilter) filter );
+            result = queryByOperatorFilter( query, ftName, (OperatorFilter) filter, true );
         } else {
             // must be an id filter based query
             if ( query.getFilter() == null || !( query.getFilter() instanceof IdFilter ) ) {
@@ -905,10 +919,67 @@ public class SQLFeatureStore implements FeatureStore {
                 throw new FilterEvaluationException( msg );
             }
             result = queryByIdFilter( query.getTypeNames(), (IdFilter) filter, query.getSortProperties() );
+            if ( isPaged( query ) ) {
+                pagingStats.record( Outcome.ID_FILTER );
+                result = applyPaging( result, query );
+            }
         }
         return result;
     }
 
+    /**
+     * Returns statistics on the paging of queries, i.e. how often the start index and maximum number of features
+     * could be applied by the database.
+     * 
+     * @return paging statistics, never <code>null</code>
+     */
+    public PagingStatistics getPagingStatistics() {
+        return pagingStats;
+    }
+
+    private static String getFidColumns( FeatureTypeMapping ftMapping, String tableAlias ) {
+        StringBuilder columns = new StringBuilder();
+        for ( Pair<SQLIdentifier, BaseType> fidColumn : ftMapping.getFidMapping().getColumns() ) {
+            if ( columns.length() > 0 ) {
+                columns.append( ',' );
+            }
+            columns.append( tableAlias );
+            columns.append( '.' );
+            columns.append( fidColumn.first.getName() );
+        }
+        return columns.length() > 0 ? columns.toString() : null;
+    }
+
+    /**
+     * @return number of features that an in-memory sort has to provide for the paging of the query, -1 for all
+     */
+    private static int getSortLimit( Query query ) {
+        return SortingFeatureInputStream.getLimit( query.getStartIndex(), getLimit( query ) );
+    }
+
+    /**
+     * Appends the paging clause of the query to the SELECT statement if possible and records the outcome.
+     * 
+     * @param keyColumns
+     *            qualified columns that identify the features, used to make the row order stable between pages
+     * @return <code>true</code>, if the database performs the paging, <code>false</code> if it has to be done in
+     *         memory
+     */
+    private boolean appendPaging( StringBuilder sql, boolean ordered, String keyColumns, Query query, Outcome reason ) {
+        Outcome outcome = reason;
+        if ( outcome == null ) {
+            if ( dialect.appendLimitOffset( sql, ordered, keyColumns, query.getStartIndex(), getLimit( query ) ) ) {
+                outcome = Outcome.PUSHED_DOWN;
+            } else {
+                outcome = Outcome.UNSUPPORTED_DIALECT;
+            }
+        }
+        LOG.debug( "Paging (start index: {}, max features: {}): {}", query.getStartIndex(), query.getMaxFeatures(),
+                   outcome );
+        pagingStats.record( outcome );
+        return outcome == Outcome.PUSHED_DOWN;
+    }
+
     @Override
     public FeatureInputStream query( final Query[] queries )
                             throws FeatureStoreException, FilterEvaluationException {
@@ -1012,7 +1083,7 @@ public class SQLFeatureStore implements FeatureStore {
 
         // sort features
         if ( sortCrit.length > 0 ) {
-            result = new MemoryFeatureInputStream( Features.sortFc( result.toCollection(), sortCrit ) );
+            result = new SortingFeatureInputStream( result, sortCrit, -1 );
         }
         return result;
     }
@@ -1060,8 +1131,8 @@ public class SQLFeatureStore implements FeatureStore {
             conn = getConnection();
 
             String tableAlias = "X1";
-            FeatureBuilder builder = new FeatureBuilderRelational( this, ft, ftMapping, conn, tableAlias,
-                                                                   nullEscalation );
+            FeatureBuilderRelational builder = new FeatureBuilderRelational( this, ft, ftMapping, conn, tableAlias,
+                                                                             nullEscalation );
             List<String> columns = builder.getInitialSelectList();
             StringBuilder sql = new StringBuilder( "SELECT " );
             sql.append( columns.get( 0 ) );
@@ -1112,7 +1183,7 @@ public class SQLFeatureStore implements FeatureStore {
             begin = System.currentTimeMillis();
             rs = stmt.executeQuery();
             LOG.debug( "Executing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
-            result = new IteratorFeatureInputStream( new FeatureResultSetIterator( builder, rs, conn, stmt ) );
+            result = new IteratorFeatureInputStream( getFeatureIterator( builder, rs, conn, stmt ) );
         } catch ( Exception e ) {
             release( rs, stmt, conn );
             String msg = "Error performing query by id filter (relational mode): " + e.getMessage();
@@ -1144,7 +1215,8 @@ public class SQLFeatureStore implements FeatureStore {
         return transaction.get() != null;
     }
 
-    private FeatureInputStream queryByOperatorFilterBlob( Query query, QName ftName, OperatorFilter filter )
+    private FeatureInputStream queryByOperatorFilterBlob( Query query, QName ftName, OperatorFilter filter,
+                                                         boolean paging )
                             throws FeatureStoreException {
 
         LOG.debug( "Performing blob query by operator filter" );
@@ -1154,6 +1226,7 @@ public class SQLFeatureStore implements FeatureStore {
         FeatureInputStream result = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
+        boolean pagingPushedDown = false;
 
         try {
             conn = getConnection();
@@ -1221,6 +1294,16 @@ public class SQLFeatureStore implements FeatureStore {
                 sql.append( " AND " );
                 sql.append( wb.getWhere().getSQL() );
             }
+            if ( paging && isPaged( query ) ) {
+                Outcome reason = null;
+                if ( filter != null ) {
+                    reason = Outcome.POST_FILTER;
+                } else if ( query.getSortProperties().length > 0 ) {
+                    reason = Outcome.POST_SORT;
+                }
+                String keyColumn = alias + "." + blobMapping.getInternalIdColumn();
+                pagingPushedDown = appendPaging( sql, false, keyColumn, query, reason );
+            }
 
             // if ( wb != null && wb.getWhere() != null ) {
             // if ( blobMapping != null ) {
@@ -1280,18 +1363,27 @@ public class SQLFeatureStore implements FeatureStore {
 
         if ( query.getSortProperties().length > 0 ) {
             LOG.debug( "Applying in-memory post-sorting." );
-            result = new MemoryFeatureInputStream( Features.sortFc( result.toCollection(), query.getSortProperties() ) );
+            int limit = paging && !pagingPushedDown ? getSortLimit( query ) : -1;
+            result = new SortingFeatureInputStream( result, query.getSortProperties(), limit );
+        }
+        if ( paging && isPaged( query ) && !pagingPushedDown ) {
+            LOG.debug( "Applying in-memory paging." );
+            result = applyPaging( result, query );
         }
         return result;
     }
 
-    private FeatureInputStream queryByOperatorFilter( Query query, QName ftName, OperatorFilter filter )
+    /**
+     * @param paging
+     *            if <code>true</code>, the start index and maximum number of features of the query are applied
+     */
+    private FeatureInputStream queryByOperatorFilter( Query query, QName ftName, OperatorFilter filter, boolean paging )
                             throws FeatureStoreException {
 
         LOG.debug( "Performing query by operator filter" );
 
         if ( getSchema().getBlobMapping() != null ) {
-            return queryByOperatorFilterBlob( query, ftName, filter );
+            return queryByOperatorFilterBlob( query, ftName, filter, paging );
         }
 
         AbstractWhereBuilder wb = null;
@@ -1299,6 +1391,7 @@ public class SQLFeatureStore implements FeatureStore {
         FeatureInputStream result = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
+        boolean pagingPushedDown = false;
 
         FeatureType ft = getSchema().getFeatureType( ftName );
         FeatureTypeMapping ftMapping = getMapping( ftName );
@@ -1315,8 +1408,12 @@ public class SQLFeatureStore implements FeatureStore {
             LOG.debug( "WHERE clause: " + wb.getWhere() );
             LOG.debug( "ORDER BY clause: " + wb.getOrderBy() );
 
-            FeatureBuilder builder = new FeatureBuilderRelational( this, ft, ftMapping, conn, ftTableAlias,
-                                                                   nullEscalation );
+            FeatureBuilderRelational builder = new FeatureBuilderRelational( this, ft, ftMapping, conn, ftTableAlias,
+                                                                             nullEscalation );
+            if ( wb.getPostFilter() == null ) {
+                // geometries are not needed for in-memory filtering, so the database may generalize them
+                builder.setGeneralization( query );
+            }
             List<String> columns = builder.getInitialSelectList();
 
             BlobMapping blobMapping = getSchema().getBlobMapping();
@@ -1357,6 +1454,10 @@ public class SQLFeatureStore implements FeatureStore {
                 sql.append( " ORDER BY " );
                 sql.append( wb.getOrderBy().getSQL() );
             }
+            if ( paging && isPaged( query ) ) {
+                pagingPushedDown = appendPaging( sql, wb.getOrderBy() != null, getFidColumns( ftMapping, ftTableAlias ),
+                                                 query, getPagingObstacle( wb ) );
+            }
 
             LOG.debug( "SQL: {}", sql );
             long begin = System.currentTimeMillis();
@@ -1380,7 +1481,7 @@ public class SQLFeatureStore implements FeatureStore {
             rs = stmt.executeQuery();
             LOG.debug( "Executing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
 
-            result = new IteratorFeatureInputStream( new FeatureResultSetIterator( builder, rs, conn, stmt ) );
+            result = new IteratorFeatureInputStream( getFeatureIterator( builder, rs, conn, stmt ) );
         } catch ( InvalidParameterValueException e ) {
             release( rs, stmt, conn );
             String msg = "Error performing query by operator filter: " + e.getMessage();
@@ -1399,11 +1500,34 @@ public class SQLFeatureStore implements FeatureStore {
         }
         if ( wb.getPostSortCriteria() != null ) {
             LOG.debug( "Applying in-memory post-sorting." );
-            result = new MemoryFeatureInputStream( Features.sortFc( result.toCollection(), wb.getPostSortCriteria() ) );
+            int limit = paging && !pagingPushedDown ? getSortLimit( query ) : -1;
+            result = new SortingFeatureInputStream( result, wb.getPostSortCriteria(), limit );
+        }
+        if ( paging && isPaged( query ) && !pagingPushedDown ) {
+            LOG.debug( "Applying in-memory paging." );
+            result = applyPaging( result, query );
         }
         return result;
     }
 
+    /**
+     * @return the reason why paging cannot be performed by the database, <code>null</code> if it can
+     */
+    private Outcome getPagingObstacle( AbstractWhereBuilder wb ) {
+        if ( wb.getPostFilter() != null ) {
+            return Outcome.POST_FILTER;
+        }
+        if ( wb.getPostSortCriteria() != null ) {
+            return Outcome.POST_SORT;
+        }
+        for ( PropertyNameMapping mappedPropName : wb.getMappedPropertyNames() ) {
+            if ( mappedPropName.getJoins() != null && !mappedPropName.getJoins().isEmpty() ) {
+                return Outcome.JOINS;
+            }
+        }
+        return null;
+    }
+
     private FeatureInputStream queryMultipleFts( Query[] queries, Envelope looseBBox )
                             throws FeatureStoreException {
         FeatureInputStream result = null;
@@ -1514,6 +1638,14 @@ public class SQLFeatureStore implements FeatureStore {
         return dialect;
     }
 
+    private CloseableIterator<Feature> getFeatureIterator( FeatureBuilderRelational builder, ResultSet rs,
+                                                           Connection conn, Statement stmt ) {
+        if ( joinBatchSize > 1 && builder.hasJoinedTables() ) {
+            return new BatchedFeatureResultSetIterator( builder, rs, conn, stmt );
+        }
+        return new FeatureResultSetIterator( builder, rs, conn, stmt );
+    }
+
     private class FeatureResultSetIterator extends ResultSetIterator<Feature> {
 
         private final FeatureBuilder builder;
@@ -1544,6 +1676,82 @@ public class SQLFeatureStore implements FeatureStore {
         }
     }
 
+    /**
+     * Iterates over the features of a relational result set in batches of {@link SQLFeatureStore#joinBatchSize} rows,
+     * so the rows of joined tables are fetched with one SELECT per join and batch (instead of per join and feature).
+     */
+    private class BatchedFeatureResultSetIterator implements CloseableIterator<Feature> {
+
+        private final FeatureBuilderRelational builder;
+
+        private final ResultSet rs;
+
+        private final Connection conn;
+
+        private final Statement stmt;
+
+        private Iterator<Feature> batch = Collections.<Feature> emptyList().iterator();
+
+        private boolean exhausted;
+
+        BatchedFeatureResultSetIterator( FeatureBuilderRelational builder, ResultSet rs, Connection conn,
+                                         Statement stmt ) {
+            this.builder = builder;
+            this.rs = rs;
+            this.conn = conn;
+            this.stmt = stmt;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while ( !batch.hasNext() && !exhausted ) {
+                try {
+                    List<Feature> features = builder.buildFeatures( rs, joinBatchSize );
+                    exhausted = features.isEmpty();
+                    batch = features.iterator();
+                } catch ( SQLException e ) {
+                    close();
+                    throw new RuntimeException( e.getMessage(), e );
+                }
+            }
+            return batch.hasNext();
+        }
+
+        @Override
+        public Feature next() {
+            if ( !hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            return batch.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            release( rs, stmt, conn );
+        }
+
+        @Override
+        public List<Feature> getAsListAndClose() {
+            List<Feature> list = new ArrayList<Feature>();
+            getAsCollectionAndClose( list );
+            return list;
+        }
+
+        @Override
+        public Collection<Feature> getAsCollectionAndClose( Collection<Feature> collection ) {
+            while ( hasNext() ) {
+                collection.add( next() );
+            }
+            close();
+            return collection;
+        }
+    }
+
     @Override
     public ResourceMetadata<? extends Resource> getMetadata() {
         return metadata;
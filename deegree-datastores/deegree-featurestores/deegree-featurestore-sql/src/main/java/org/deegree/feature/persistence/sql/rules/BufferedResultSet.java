@@ -0,0 +1,205 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.rules;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+
+import org.deegree.commons.tom.sql.ParticleConverter;
+
+/**
+ * Read-only, forward-only {@link ResultSet} view on rows that have been copied out of another {@link ResultSet}.
+ * <p>
+ * Used by {@link FeatureBuilderRelational} for building features from rows that have been read ahead (batched join
+ * fetching). Only the column accessors that {@link ParticleConverter}s and the feature builder rely on are supported
+ * (<code>getObject</code>, <code>getBytes</code>, <code>getString</code> and the numeric/boolean getters, all by column
+ * index), plus <code>next</code>, <code>wasNull</code> and <code>close</code>. Every other method throws an
+ * {@link SQLFeatureNotSupportedException}.
+ * </p>
+ *
+ * @author last edited by: $Author$
+ *
+ * @version $Revision$, $Date$
+ */
+final class BufferedResultSet implements InvocationHandler {
+
+    private final List<Object[]> rows;
+
+    private int pos = -1;
+
+    private boolean wasNull;
+
+    private BufferedResultSet( List<Object[]> rows ) {
+        this.rows = rows;
+    }
+
+    /**
+     * Copies the values of the current row of the given {@link ResultSet}.
+     *
+     * @param rs
+     *            result set positioned on a row, must not be <code>null</code>
+     * @param columns
+     *            number of columns to copy
+     * @return column values (index 0 holds column 1), never <code>null</code>
+     * @throws SQLException
+     */
+    static Object[] copyRow( ResultSet rs, int columns )
+                            throws SQLException {
+        Object[] row = new Object[columns];
+        for ( int i = 0; i < columns; i++ ) {
+            row[i] = rs.getObject( i + 1 );
+        }
+        return row;
+    }
+
+    /**
+     * Returns a new {@link ResultSet} that iterates over the given rows.
+     *
+     * @param rows
+     *            rows created by {@link #copyRow(ResultSet, int)}, must not be <code>null</code>
+     * @return result set positioned before the first row, never <code>null</code>
+     */
+    static ResultSet wrap( List<Object[]> rows ) {
+        return (ResultSet) Proxy.newProxyInstance( BufferedResultSet.class.getClassLoader(),
+                                                   new Class<?>[] { ResultSet.class }, new BufferedResultSet( rows ) );
+    }
+
+    @Override
+    public Object invoke( Object proxy, Method method, Object[] args )
+                            throws Throwable {
+        String name = method.getName();
+        if ( args == null || args.length == 0 ) {
+            if ( "next".equals( name ) ) {
+                return ++pos < rows.size();
+            }
+            if ( "wasNull".equals( name ) ) {
+                return wasNull;
+            }
+            if ( "close".equals( name ) ) {
+                pos = rows.size();
+                return null;
+            }
+            if ( "isClosed".equals( name ) || "isAfterLast".equals( name ) ) {
+                return pos >= rows.size();
+            }
+            if ( "getStatement".equals( name ) ) {
+                return null;
+            }
+            if ( "hashCode".equals( name ) ) {
+                return System.identityHashCode( proxy );
+            }
+            if ( "toString".equals( name ) ) {
+                return "BufferedResultSet (" + rows.size() + " rows)";
+            }
+        } else if ( args.length == 1 ) {
+            if ( "equals".equals( name ) ) {
+                return proxy == args[0];
+            }
+            if ( name.startsWith( "get" ) && args[0] instanceof Integer ) {
+                return getValue( (Integer) args[0], method.getReturnType(), name );
+            }
+        }
+        throw new SQLFeatureNotSupportedException( "ResultSet#" + name + " is not supported for buffered rows." );
+    }
+
+    private Object getValue( int columnIndex, Class<?> type, String getter )
+                            throws SQLException {
+        if ( pos < 0 || pos >= rows.size() ) {
+            throw new SQLException( "Result set is not positioned on a row." );
+        }
+        Object[] row = rows.get( pos );
+        if ( columnIndex < 1 || columnIndex > row.length ) {
+            throw new SQLException( "Invalid column index: " + columnIndex );
+        }
+        Object value = row[columnIndex - 1];
+        wasNull = value == null;
+        if ( type == Object.class ) {
+            return value;
+        }
+        if ( type == String.class ) {
+            return value == null ? null : value.toString();
+        }
+        if ( type.isPrimitive() ) {
+            return toPrimitive( value, type, getter );
+        }
+        if ( value == null || type.isInstance( value ) ) {
+            return value;
+        }
+        throw unsupported( getter, value );
+    }
+
+    private Object toPrimitive( Object value, Class<?> type, String getter )
+                            throws SQLException {
+        if ( type == Boolean.TYPE ) {
+            if ( value == null ) {
+                return false;
+            }
+            if ( value instanceof Boolean ) {
+                return value;
+            }
+            if ( value instanceof Number ) {
+                return ( (Number) value ).intValue() != 0;
+            }
+        } else if ( value == null || value instanceof Number ) {
+            Number n = value == null ? 0 : (Number) value;
+            if ( type == Integer.TYPE ) {
+                return n.intValue();
+            } else if ( type == Long.TYPE ) {
+                return n.longValue();
+            } else if ( type == Double.TYPE ) {
+                return n.doubleValue();
+            } else if ( type == Float.TYPE ) {
+                return n.floatValue();
+            } else if ( type == Short.TYPE ) {
+                return n.shortValue();
+            } else if ( type == Byte.TYPE ) {
+                return n.byteValue();
+            }
+        }
+        throw unsupported( getter, value );
+    }
+
+    private static SQLException unsupported( String getter, Object value ) {
+        String type = value == null ? "null" : value.getClass().getName();
+        String msg = "ResultSet#" + getter + " is not supported for buffered values of type " + type + ".";
+        return new SQLFeatureNotSupportedException( msg );
+    }
+}
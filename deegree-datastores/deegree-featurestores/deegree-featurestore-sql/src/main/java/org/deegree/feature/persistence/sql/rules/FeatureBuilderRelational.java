@@ -45,11 +45,14 @@ import static org.jaxen.saxpath.Axis.CHILD;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -81,6 +84,8 @@ import org.deegree.commons.xml.CommonNamespaces;
 import org.deegree.commons.xml.NamespaceBindings;
 import org.deegree.commons.xml.stax.XMLStreamReaderWrapper;
 import org.deegree.feature.Feature;
+import org.deegree.feature.persistence.cache.FeatureStoreCache;
+import org.deegree.feature.persistence.query.Query;
 import org.deegree.feature.persistence.sql.FeatureBuilder;
 import org.deegree.feature.persistence.sql.FeatureTypeMapping;
 import org.deegree.feature.persistence.sql.SQLFeatureStore;
@@ -96,6 +101,7 @@ import org.deegree.geometry.primitive.LineString;
 import org.deegree.geometry.primitive.Polygon;
 import org.deegree.geometry.primitive.patches.SurfacePatch;
 import org.deegree.geometry.primitive.segments.CurveSegment;
+import org.deegree.geometry.utils.GeometryParticleConverter;
 import org.deegree.gml.GMLInputFactory;
 import org.deegree.gml.GMLOutputFactory;
 import org.deegree.gml.GMLStreamReader;
@@ -129,6 +135,9 @@ public class FeatureBuilderRelational implements FeatureBuilder {
 
     private static final Logger LOG = LoggerFactory.getLogger( FeatureBuilderRelational.class );
 
+    // upper bound for the number of bind parameters in a batched subsequent SELECT (Oracle limits IN lists to 1000)
+    private static final int MAX_IN_LIST_PARAMS = 1000;
+
     private final SQLFeatureStore fs;
 
     private final FeatureType ft;
@@ -147,6 +156,14 @@ public class FeatureBuilderRelational implements FeatureBuilder {
 
     private final boolean nullEscalation;
 
+    // rows of joined tables that have been fetched in advance for the current batch (see #buildFeatures)
+    private final Map<Mapping, JoinedRows> prefetched = new HashMap<Mapping, JoinedRows>();
+
+    // query that provides the resolution hint for generalizing geometries, null if geometries are selected unchanged
+    private Query generalizationQuery;
+
+    private final Map<ParticleConverter<?>, String> geometrySnippets = new HashMap<ParticleConverter<?>, String>();
+
     /**
      * Creates a new {@link FeatureBuilderRelational} instance.
      * 
@@ -181,6 +198,20 @@ public class FeatureBuilderRelational implements FeatureBuilder {
         // }
     }
 
+    /**
+     * Enables generalization of the selected geometries in the database, according to the resolution hint of the
+     * given query (see {@link Query#getGeneralizationTolerance(org.deegree.cs.coordinatesystems.ICRS)}). Must be
+     * called before {@link #getInitialSelectList()}. While generalization is enabled, the feature cache of the store is
+     * bypassed.
+     * 
+     * @param query
+     *            query with a resolution hint, can be <code>null</code> (no generalization)
+     */
+    public void setGeneralization( Query query ) {
+        this.generalizationQuery = query;
+        geometrySnippets.clear();
+    }
+
     @Override
     public List<String> getInitialSelectList() {
         for ( Pair<SQLIdentifier, BaseType> fidColumn : ftMapping.getFidMapping().getColumns() ) {
@@ -230,7 +261,7 @@ public class FeatureBuilderRelational implements FeatureBuilder {
                 }
             } else if ( mapping instanceof GeometryMapping ) {
                 if ( particleConverter != null ) {
-                    addColumn( colToRsIdx, particleConverter.getSelectSnippet( tableAlias ) );
+                    addColumn( colToRsIdx, getGeometrySelectSnippet( particleConverter ) );
                 } else {
                     LOG.info( "Omitting mapping '" + mapping + "' from SELECT list. Not mapped to column.'" );
                 }
@@ -253,6 +284,29 @@ public class FeatureBuilderRelational implements FeatureBuilder {
         }
     }
 
+    /**
+     * Returns the select snippet for a geometry column, generalized if requested (see
+     * {@link #setGeneralization(Query)}). The snippet also serves as key for the result set index, so it is determined
+     * once per converter.
+     */
+    private String getGeometrySelectSnippet( ParticleConverter<?> converter ) {
+        if ( generalizationQuery == null || !( converter instanceof GeometryParticleConverter ) ) {
+            return converter.getSelectSnippet( tableAlias );
+        }
+        String snippet = geometrySnippets.get( converter );
+        if ( snippet == null ) {
+            GeometryParticleConverter geomConverter = (GeometryParticleConverter) converter;
+            double tolerance = generalizationQuery.getGeneralizationTolerance( geomConverter.getCrs() );
+            if ( tolerance > 0 ) {
+                snippet = geomConverter.getGeneralizedSelectSnippet( tableAlias, tolerance );
+            } else {
+                snippet = geomConverter.getSelectSnippet( tableAlias );
+            }
+            geometrySnippets.put( converter, snippet );
+        }
+        return snippet;
+    }
+
     @Override
     public Feature buildFeature( ResultSet rs )
                             throws SQLException {
@@ -266,8 +320,10 @@ public class FeatureBuilderRelational implements FeatureBuilder {
                 gmlId += ftMapping.getFidMapping().getDelimiter()
                          + rs.getObject( qualifiedSqlExprToRsIdx.get( tableAlias + "." + fidColumns.get( i ).first ) );
             }
-            if ( fs.getCache() != null ) {
-                feature = (Feature) fs.getCache().get( gmlId );
+            // features with generalized geometries must neither be taken from nor end up in the cache
+            FeatureStoreCache cache = generalizationQuery == null ? fs.getCache() : null;
+            if ( cache != null ) {
+                feature = (Feature) cache.get( gmlId );
             }
             if ( feature == null ) {
                 LOG.debug( "Recreating feature '" + gmlId + "' from db (relational mode)." );
@@ -286,8 +342,8 @@ public class FeatureBuilderRelational implements FeatureBuilder {
                     }
                 }
                 feature = ft.newFeatureInstance( gmlId, props, null );
-                if ( fs.getCache() != null ) {
-                    fs.getCache().add( feature );
+                if ( cache != null ) {
+                    cache.add( feature );
                 }
             } else {
                 LOG.debug( "Cache hit." );
@@ -415,7 +471,10 @@ public class FeatureBuilderRelational implements FeatureBuilder {
                 }
             } finally {
                 if ( rs2 != null ) {
-                    rs2.getStatement().close();
+                    Statement stmt = rs2.getStatement();
+                    if ( stmt != null ) {
+                        stmt.close();
+                    }
                     rs2.close();
                 }
             }
@@ -447,7 +506,7 @@ public class FeatureBuilderRelational implements FeatureBuilder {
             GeometryMapping pm = (GeometryMapping) mapping;
             MappingExpression me = pm.getMapping();
             if ( me instanceof DBField ) {
-                String col = converter.getSelectSnippet( tableAlias );
+                String col = getGeometrySelectSnippet( converter );
                 int colIndex = colToRsIdx.get( col );
                 particle = converter.toParticle( rs, colIndex );
                 Geometry geom = ( (Geometry) particle );
@@ -692,11 +751,65 @@ public class FeatureBuilderRelational implements FeatureBuilder {
                                                                                 LinkedHashMap<String, Integer> colToRsIdx )
                             throws SQLException {
 
+        JoinedRows prefetchedRows = prefetched.get( mapping );
+        if ( prefetchedRows != null ) {
+            List<Object> key = new ArrayList<Object>( jc.getFromColumns().size() );
+            for ( SQLIdentifier keyColumn : jc.getFromColumns() ) {
+                key.add( toGroupingKey( rs.getObject( colToRsIdx.get( tableAlias + "." + keyColumn ) ) ) );
+            }
+            List<Object[]> rows = prefetchedRows.rowsByKey.get( key );
+            if ( rows == null ) {
+                rows = Collections.emptyList();
+            }
+            return new Pair<ResultSet, LinkedHashMap<String, Integer>>( BufferedResultSet.wrap( rows ),
+                                                                        prefetchedRows.colToRsIdx );
+        }
+
         LinkedHashMap<String, Integer> rsToIdx = getSubsequentSelectColumns( mapping );
 
         StringBuilder sql = new StringBuilder( "SELECT " );
+        appendSelectFrom( sql, rsToIdx.keySet(), jc );
+        sql.append( " WHERE " );
         boolean first = true;
-        for ( String column : rsToIdx.keySet() ) {
+        for ( SQLIdentifier keyColumn : jc.getToColumns() ) {
+            if ( !first ) {
+                sql.append( " AND " );
+            }
+            sql.append( keyColumn );
+            sql.append( " = ?" );
+            first = false;
+        }
+        appendOrderBy( sql, jc );
+        LOG.debug( "SQL: {}", sql );
+
+        PreparedStatement stmt = null;
+        ResultSet rs2 = null;
+        try {
+            long begin = System.currentTimeMillis();
+            stmt = conn.prepareStatement( sql.toString() );
+
+            LOG.debug( "Preparing subsequent SELECT took {} [ms] ", System.currentTimeMillis() - begin );
+            int i = 1;
+            for ( SQLIdentifier keyColumn : jc.getFromColumns() ) {
+                Object key = rs.getObject( colToRsIdx.get( tableAlias + "." + keyColumn ) );
+                LOG.debug( "? = '{}' ({})", key, keyColumn );
+                stmt.setObject( i++, key );
+            }
+            begin = System.currentTimeMillis();
+            rs2 = stmt.executeQuery();
+            LOG.debug( "Executing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
+        } catch ( Throwable t ) {
+            close( rs2, stmt, null, LOG );
+            String msg = "Error performing subsequent SELECT: " + t.getMessage();
+            LOG.error( msg, t );
+            throw new SQLException( msg, t );
+        }
+        return new Pair<ResultSet, LinkedHashMap<String, Integer>>( rs2, rsToIdx );
+    }
+
+    private void appendSelectFrom( StringBuilder sql, Collection<String> columns, TableJoin jc ) {
+        boolean first = true;
+        for ( String column : columns ) {
             if ( !first ) {
                 sql.append( ',' );
             }
@@ -707,19 +820,12 @@ public class FeatureBuilderRelational implements FeatureBuilder {
         sql.append( jc.getToTable() );
         sql.append( ' ' );
         sql.append( tableAlias );
-        sql.append( " WHERE " );
-        first = true;
-        for ( SQLIdentifier keyColumn : jc.getToColumns() ) {
-            if ( !first ) {
-                sql.append( " AND " );
-            }
-            sql.append( keyColumn );
-            sql.append( " = ?" );
-            first = false;
-        }
+    }
+
+    private void appendOrderBy( StringBuilder sql, TableJoin jc ) {
         if ( jc.getOrderColumns() != null && !jc.getOrderColumns().isEmpty() ) {
             sql.append( " ORDER BY " );
-            first = true;
+            boolean first = true;
             for ( SQLIdentifier orderColumn : jc.getOrderColumns() ) {
                 if ( !first ) {
                     sql.append( "," );
@@ -733,6 +839,170 @@ public class FeatureBuilderRelational implements FeatureBuilder {
                 first = false;
             }
         }
+    }
+
+    /**
+     * Returns whether any of the mappings of the feature type requires subsequent SELECTs on joined tables.
+     * 
+     * @return <code>true</code>, if batching via {@link #buildFeatures(ResultSet, int)} saves round-trips,
+     *         <code>false</code> otherwise
+     */
+    public boolean hasJoinedTables() {
+        for ( Mapping mapping : ftMapping.getMappings() ) {
+            if ( hasJoinedTables( mapping ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasJoinedTables( Mapping mapping ) {
+        if ( isJoined( mapping ) ) {
+            return true;
+        }
+        if ( mapping instanceof CompoundMapping ) {
+            for ( Mapping particle : ( (CompoundMapping) mapping ).getParticles() ) {
+                if ( hasJoinedTables( particle ) ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isJoined( Mapping mapping ) {
+        return !( mapping instanceof FeatureMapping ) && mapping.getJoinedTable() != null
+               && !mapping.getJoinedTable().isEmpty();
+    }
+
+    /**
+     * Builds {@link Feature} instances from the next (up to) <code>maxRows</code> rows of the given {@link ResultSet}.
+     * <p>
+     * In contrast to invoking {@link #buildFeature(ResultSet)} for every row, the rows of joined tables are fetched
+     * for all rows of the batch at once: one SELECT (with an <code>IN</code> list of the parent keys) per join
+     * instead of one per join and row. The rows of the batch are read ahead, so this method advances the cursor of
+     * <code>rs</code> by up to <code>maxRows</code> rows.
+     * </p>
+     * 
+     * @param rs
+     *            SQL result set, must not be <code>null</code>
+     * @param maxRows
+     *            maximum number of rows to read from the result set, must be positive
+     * @return created {@link Feature} instances (in row order), empty if the result set is exhausted
+     * @throws SQLException
+     */
+    public List<Feature> buildFeatures( ResultSet rs, int maxRows )
+                            throws SQLException {
+        int columns = rs.getMetaData().getColumnCount();
+        List<Object[]> rows = new ArrayList<Object[]>();
+        while ( rows.size() < maxRows && rs.next() ) {
+            rows.add( BufferedResultSet.copyRow( rs, columns ) );
+        }
+        if ( rows.isEmpty() ) {
+            return Collections.emptyList();
+        }
+        try {
+            long begin = System.currentTimeMillis();
+            for ( Mapping mapping : ftMapping.getMappings() ) {
+                prefetchJoinedRows( mapping, rows, qualifiedSqlExprToRsIdx );
+            }
+            LOG.debug( "Fetching joined rows for {} features took {} [ms]", rows.size(),
+                       System.currentTimeMillis() - begin );
+            List<Feature> features = new ArrayList<Feature>( rows.size() );
+            ResultSet bufferedRs = BufferedResultSet.wrap( rows );
+            while ( bufferedRs.next() ) {
+                features.add( buildFeature( bufferedRs ) );
+            }
+            return features;
+        } finally {
+            prefetched.clear();
+        }
+    }
+
+    private void prefetchJoinedRows( Mapping mapping, List<Object[]> rows, LinkedHashMap<String, Integer> colToRsIdx )
+                            throws SQLException {
+        if ( isJoined( mapping ) ) {
+            JoinedRows joinedRows = fetchJoinedRows( mapping.getJoinedTable().get( 0 ), mapping, rows, colToRsIdx );
+            prefetched.put( mapping, joinedRows );
+            rows = joinedRows.allRows;
+            colToRsIdx = joinedRows.colToRsIdx;
+        }
+        if ( mapping instanceof CompoundMapping && !rows.isEmpty() ) {
+            for ( Mapping particle : ( (CompoundMapping) mapping ).getParticles() ) {
+                prefetchJoinedRows( particle, rows, colToRsIdx );
+            }
+        }
+    }
+
+    private JoinedRows fetchJoinedRows( TableJoin jc, Mapping mapping, List<Object[]> parentRows,
+                                        LinkedHashMap<String, Integer> parentColToRsIdx )
+                            throws SQLException {
+
+        List<SQLIdentifier> fromColumns = jc.getFromColumns();
+        List<SQLIdentifier> toColumns = jc.getToColumns();
+
+        // collect distinct parent keys (NULL keys never match)
+        Map<List<Object>, Object[]> keys = new LinkedHashMap<List<Object>, Object[]>();
+        for ( Object[] row : parentRows ) {
+            Object[] key = new Object[fromColumns.size()];
+            List<Object> groupingKey = new ArrayList<Object>( key.length );
+            for ( int i = 0; i < key.length; i++ ) {
+                key[i] = row[parentColToRsIdx.get( tableAlias + "." + fromColumns.get( i ) ) - 1];
+                groupingKey.add( toGroupingKey( key[i] ) );
+            }
+            if ( !groupingKey.contains( null ) && !keys.containsKey( groupingKey ) ) {
+                keys.put( groupingKey, key );
+            }
+        }
+
+        LinkedHashMap<String, Integer> rsToIdx = getSubsequentSelectColumns( mapping );
+        JoinedRows joinedRows = new JoinedRows( rsToIdx );
+        List<Object[]> pending = new ArrayList<Object[]>( keys.values() );
+        int keysPerSelect = Math.max( 1, MAX_IN_LIST_PARAMS / toColumns.size() );
+        for ( int offset = 0; offset < pending.size(); offset += keysPerSelect ) {
+            List<Object[]> chunk = pending.subList( offset, Math.min( pending.size(), offset + keysPerSelect ) );
+            fetchJoinedRows( jc, rsToIdx, chunk, joinedRows );
+        }
+        return joinedRows;
+    }
+
+    private void fetchJoinedRows( TableJoin jc, LinkedHashMap<String, Integer> rsToIdx, List<Object[]> keys,
+                                  JoinedRows joinedRows )
+                            throws SQLException {
+
+        List<SQLIdentifier> toColumns = jc.getToColumns();
+
+        // key columns are appended to the select list, so child rows can be assigned to their parents
+        List<String> columns = new ArrayList<String>( rsToIdx.keySet() );
+        for ( SQLIdentifier keyColumn : toColumns ) {
+            columns.add( tableAlias + "." + keyColumn );
+        }
+        StringBuilder sql = new StringBuilder( "SELECT " );
+        appendSelectFrom( sql, columns, jc );
+        sql.append( " WHERE " );
+        if ( toColumns.size() == 1 ) {
+            sql.append( toColumns.get( 0 ) );
+            sql.append( " IN (" );
+            for ( int i = 0; i < keys.size(); i++ ) {
+                sql.append( i == 0 ? "?" : ",?" );
+            }
+            sql.append( ')' );
+        } else {
+            for ( int i = 0; i < keys.size(); i++ ) {
+                sql.append( i == 0 ? "(" : " OR (" );
+                boolean first = true;
+                for ( SQLIdentifier keyColumn : toColumns ) {
+                    if ( !first ) {
+                        sql.append( " AND " );
+                    }
+                    sql.append( keyColumn );
+                    sql.append( " = ?" );
+                    first = false;
+                }
+                sql.append( ')' );
+            }
+        }
+        appendOrderBy( sql, jc );
         LOG.debug( "SQL: {}", sql );
 
         PreparedStatement stmt = null;
@@ -740,24 +1010,75 @@ public class FeatureBuilderRelational implements FeatureBuilder {
         try {
             long begin = System.currentTimeMillis();
             stmt = conn.prepareStatement( sql.toString() );
-
-            LOG.debug( "Preparing subsequent SELECT took {} [ms] ", System.currentTimeMillis() - begin );
+            LOG.debug( "Preparing batched subsequent SELECT took {} [ms] ", System.currentTimeMillis() - begin );
             int i = 1;
-            for ( SQLIdentifier keyColumn : jc.getFromColumns() ) {
-                Object key = rs.getObject( colToRsIdx.get( tableAlias + "." + keyColumn ) );
-                LOG.debug( "? = '{}' ({})", key, keyColumn );
-                stmt.setObject( i++, key );
+            for ( Object[] key : keys ) {
+                for ( Object keyValue : key ) {
+                    stmt.setObject( i++, keyValue );
+                }
             }
             begin = System.currentTimeMillis();
             rs2 = stmt.executeQuery();
-            LOG.debug( "Executing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
+            int numColumns = columns.size();
+            int firstKeyColumn = rsToIdx.size();
+            while ( rs2.next() ) {
+                Object[] row = BufferedResultSet.copyRow( rs2, numColumns );
+                List<Object> groupingKey = new ArrayList<Object>( toColumns.size() );
+                for ( int j = firstKeyColumn; j < numColumns; j++ ) {
+                    groupingKey.add( toGroupingKey( row[j] ) );
+                }
+                joinedRows.add( groupingKey, row );
+            }
+            LOG.debug( "Executing batched SELECT for {} keys took {} [ms] ", keys.size(),
+                       System.currentTimeMillis() - begin );
         } catch ( Throwable t ) {
-            close( rs2, stmt, null, LOG );
-            String msg = "Error performing subsequent SELECT: " + t.getMessage();
+            String msg = "Error performing batched subsequent SELECT: " + t.getMessage();
             LOG.error( msg, t );
             throw new SQLException( msg, t );
+        } finally {
+            close( rs2, stmt, null, LOG );
+        }
+    }
+
+    /**
+     * Normalizes key values, so parent and child keys compare equal even if the JDBC driver returns different
+     * {@link Number} types for both sides of the join (e.g. <code>Integer</code> vs. <code>Long</code>).
+     */
+    private static Object toGroupingKey( Object value ) {
+        if ( value instanceof Number ) {
+            try {
+                return new BigDecimal( value.toString() ).stripTrailingZeros().toPlainString();
+            } catch ( NumberFormatException e ) {
+                return value.toString();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Rows of a joined table that have been fetched for a batch of parent rows, grouped by join key.
+     */
+    private static class JoinedRows {
+
+        private final LinkedHashMap<String, Integer> colToRsIdx;
+
+        private final Map<List<Object>, List<Object[]>> rowsByKey = new HashMap<List<Object>, List<Object[]>>();
+
+        private final List<Object[]> allRows = new ArrayList<Object[]>();
+
+        private JoinedRows( LinkedHashMap<String, Integer> colToRsIdx ) {
+            this.colToRsIdx = colToRsIdx;
+        }
+
+        private void add( List<Object> key, Object[] row ) {
+            List<Object[]> rows = rowsByKey.get( key );
+            if ( rows == null ) {
+                rows = new ArrayList<Object[]>();
+                rowsByKey.put( key, rows );
+            }
+            rows.add( row );
+            allRows.add( row );
         }
-        return new Pair<ResultSet, LinkedHashMap<String, Integer>>( rs2, rsToIdx );
     }
 
     private QName getChildElementStepAsQName( ValueReference ref ) {
@@ -84,7 +84,9 @@ import org.deegree.filter.comparison.PropertyIsEqualTo;
 import org.deegree.filter.expression.Literal;
 import org.deegree.filter.expression.ValueReference;
 import org.deegree.filter.spatial.BBOX;
+import org.deegree.geometry.Geometry;
 import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.standard.AbstractDefaultGeometry;
 import org.deegree.gml.GMLInputFactory;
 import org.deegree.gml.GMLStreamReader;
 import org.deegree.gml.schema.GMLAppSchemaReader;
@@ -125,6 +127,8 @@ public class SQLFeatureStoreTOPPStatesTest {
 
     private static final QName SAMP_POP = QName.valueOf( "{http://www.openplans.org/topp}SAMP_POP" );
 
+    private static final QName THE_GEOM = QName.valueOf( "{http://www.openplans.org/topp}the_geom" );
+
     private final TestDBProperties settings;
 
     private Workspace ws;
@@ -307,6 +311,42 @@ public class SQLFeatureStoreTOPPStatesTest {
         Assert.assertTrue( stateNames.contains( "New Jersey" ) );
     }
 
+    @Test
+    public void generalizedQueryDoesNotPolluteCache()
+                            throws FeatureStoreException, FilterEvaluationException, UnknownCRSException {
+        BBOX oper = new BBOX( new GeometryFactory().createEnvelope( -75.102613, 40.212597, -72.361859, 41.512517,
+                                                                    CRSManager.lookup( "EPSG:4326" ) ) );
+        // map query with a resolution of 0.5 degrees per pixel
+        Query mapQuery = new Query( TOPP_STATES, new OperatorFilter( oper ), -1, -1, 0.5 );
+        Feature generalized = null;
+        for ( Feature f : fs.query( mapQuery ).toCollection() ) {
+            if ( "New York".equals( getPropertyValue( f, STATE_NAME ).getAsText() ) ) {
+                generalized = f;
+            }
+        }
+        Assert.assertNotNull( generalized );
+
+        Feature byId = (Feature) fs.getObjectById( generalized.getId() );
+
+        PropertyIsEqualTo isNewYork = new PropertyIsEqualTo( new ValueReference( STATE_NAME ),
+                                                             new Literal( "New York" ), false, null );
+        Query exactQuery = new Query( TOPP_STATES, new OperatorFilter( isNewYork ), -1, -1, -1 );
+        Feature exact = fs.query( exactQuery ).toCollection().iterator().next();
+
+        Assert.assertTrue( getNumPoints( generalized ) < getNumPoints( exact ) );
+        assertEquals( getNumPoints( exact ), getNumPoints( byId ) );
+        Assert.assertTrue( getJTSGeometry( exact ).equalsExact( getJTSGeometry( byId ) ) );
+    }
+
+    private int getNumPoints( Feature f ) {
+        return getJTSGeometry( f ).getNumPoints();
+    }
+
+    private org.locationtech.jts.geom.Geometry getJTSGeometry( Feature f ) {
+        Geometry geom = (Geometry) f.getProperties( THE_GEOM ).get( 0 ).getValue();
+        return ( (AbstractDefaultGeometry) geom ).getJTSGeometry();
+    }
+
     private PrimitiveValue getPropertyValue( Feature f, QName propName ) {
         return (PrimitiveValue) f.getProperties( propName ).get( 0 ).getValue();
     }
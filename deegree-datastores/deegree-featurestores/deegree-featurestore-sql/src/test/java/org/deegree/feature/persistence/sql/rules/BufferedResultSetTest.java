@@ -0,0 +1,102 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.rules;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link BufferedResultSet}.
+ */
+public class BufferedResultSetTest {
+
+    @Test
+    public void iteratesRowsAndConvertsValues()
+                            throws SQLException {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add( new Object[] { 1L, "a", new byte[] { 1, 2 } } );
+        rows.add( new Object[] { null, 42, null } );
+        ResultSet rs = BufferedResultSet.wrap( rows );
+
+        assertTrue( rs.next() );
+        assertEquals( 1L, rs.getObject( 1 ) );
+        assertEquals( 1, rs.getInt( 1 ) );
+        assertEquals( "a", rs.getString( 2 ) );
+        assertArrayEquals( new byte[] { 1, 2 }, rs.getBytes( 3 ) );
+        assertFalse( rs.wasNull() );
+
+        assertTrue( rs.next() );
+        assertNull( rs.getObject( 1 ) );
+        assertTrue( rs.wasNull() );
+        assertEquals( 0L, rs.getLong( 1 ) );
+        assertEquals( "42", rs.getString( 2 ) );
+        assertEquals( 42.0, rs.getDouble( 2 ), 0.0 );
+        assertNull( rs.getBytes( 3 ) );
+
+        assertFalse( rs.next() );
+        assertNull( rs.getStatement() );
+        rs.close();
+    }
+
+    @Test(expected = SQLFeatureNotSupportedException.class)
+    public void unsupportedAccessorFails()
+                            throws SQLException {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add( new Object[] { 1 } );
+        ResultSet rs = BufferedResultSet.wrap( rows );
+        rs.next();
+        rs.getObject( "column" );
+    }
+
+    @Test(expected = SQLException.class)
+    public void accessBeforeFirstRowFails()
+                            throws SQLException {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add( new Object[] { 1 } );
+        BufferedResultSet.wrap( rows ).getObject( 1 );
+    }
+}
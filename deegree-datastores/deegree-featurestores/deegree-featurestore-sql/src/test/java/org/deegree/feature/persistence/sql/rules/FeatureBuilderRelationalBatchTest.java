@@ -0,0 +1,473 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.rules;
+
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.jdbc.SQLIdentifier;
+import org.deegree.commons.jdbc.TableName;
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.genericxml.GenericXMLElement;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.BaseType;
+import org.deegree.commons.tom.primitive.PrimitiveType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.tom.sql.DefaultPrimitiveConverter;
+import org.deegree.commons.tom.sql.ParticleConverter;
+import org.deegree.commons.utils.Pair;
+import org.deegree.commons.xml.NamespaceBindings;
+import org.deegree.feature.Feature;
+import org.deegree.feature.persistence.sql.FeatureTypeMapping;
+import org.deegree.feature.persistence.sql.MappedAppSchema;
+import org.deegree.feature.persistence.sql.SQLFeatureStore;
+import org.deegree.feature.persistence.sql.expressions.TableJoin;
+import org.deegree.feature.persistence.sql.id.FIDMapping;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.sqldialect.filter.DBField;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests that {@link FeatureBuilderRelational#buildFeatures(ResultSet, int)} (joined rows fetched per batch via
+ * <code>IN</code> lists) builds the same features as {@link FeatureBuilderRelational#buildFeature(ResultSet)} (one
+ * SELECT per joined table and row).
+ * <p>
+ * The fixture is an in-memory database that evaluates the simple SELECTs issued by the builder: persons with a name,
+ * any number of phone numbers and any number of addresses, where every address has any number of notes (nested join
+ * on a composite key). The key columns deliberately use different {@link Number} types on both sides of the joins.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class FeatureBuilderRelationalBatchTest {
+
+    private static final String NS = "http://www.deegree.org/app";
+
+    private static final String ALIAS = "X1";
+
+    private static final Pattern SELECT = Pattern.compile( "SELECT (.+) FROM (\\w+) \\w+ WHERE (.+?)(?: ORDER BY (.+))?" );
+
+    private static final Pattern KEY_COLUMN = Pattern.compile( "(\\w+) (?:= \\?|IN \\()" );
+
+    private final Map<String, List<Map<String, Object>>> tables = new HashMap<String, List<Map<String, Object>>>();
+
+    private final List<String> selectedTables = new ArrayList<String>();
+
+    private NamespaceBindings nsContext;
+
+    private FeatureType ft;
+
+    private FeatureTypeMapping ftMapping;
+
+    private SQLFeatureStore fs;
+
+    private Connection conn;
+
+    @Before
+    public void setUp()
+                            throws SQLException {
+        nsContext = new NamespaceBindings();
+        nsContext.addNamespace( "app", NS );
+
+        List<PropertyType> props = new ArrayList<PropertyType>();
+        props.add( new SimplePropertyType( new QName( NS, "name", "app" ), 1, 1, STRING, null, null ) );
+        props.add( new SimplePropertyType( new QName( NS, "tel", "app" ), 0, -1, STRING, null, null ) );
+        props.add( new SimplePropertyType( new QName( NS, "address", "app" ), 0, -1, STRING, null, null ) );
+        ft = new GenericFeatureType( new QName( NS, "Person", "app" ), props, false );
+
+        List<Mapping> addressParticles = new ArrayList<Mapping>();
+        addressParticles.add( primitive( "app:street", "street", null ) );
+        addressParticles.add( primitive( "app:note", "text",
+                                         join( "address", "note", "person_id,pos", "person_id,pos", "n-" ) ) );
+        List<Mapping> mappings = new ArrayList<Mapping>();
+        mappings.add( primitive( "app:name", "name", null ) );
+        mappings.add( primitive( "app:tel", "tel", join( "person", "person_tel", "id", "person_id", "seq" ) ) );
+        mappings.add( new CompoundMapping( path( "app:address" ), true, addressParticles,
+                                           join( "person", "address", "id", "person_id", "pos" ), null ) );
+        List<Pair<SQLIdentifier, BaseType>> fidColumns = new ArrayList<Pair<SQLIdentifier, BaseType>>();
+        fidColumns.add( new Pair<SQLIdentifier, BaseType>( new SQLIdentifier( "id" ), BaseType.INTEGER ) );
+        FIDMapping fidMapping = new FIDMapping( "PERSON_", "_", fidColumns, null );
+        ftMapping = new FeatureTypeMapping( ft.getName(), new TableName( "person" ), fidMapping, mappings );
+
+        fs = mock( SQLFeatureStore.class );
+        when( fs.getNamespaceContext() ).thenReturn( Collections.singletonMap( "app", NS ) );
+        MappedAppSchema schema = mock( MappedAppSchema.class );
+        when( fs.getSchema() ).thenReturn( schema );
+        doAnswer( new Answer<ParticleConverter<?>>() {
+            @Override
+            public ParticleConverter<?> answer( InvocationOnMock invocation ) {
+                Mapping mapping = (Mapping) invocation.getArguments()[0];
+                if ( mapping instanceof PrimitiveMapping ) {
+                    PrimitiveMapping pm = (PrimitiveMapping) mapping;
+                    return new DefaultPrimitiveConverter( pm.getType(), ( (DBField) pm.getMapping() ).getColumn() );
+                }
+                return null;
+            }
+        } ).when( fs ).getConverter( any( Mapping.class ) );
+
+        conn = mock( Connection.class );
+        when( conn.prepareStatement( anyString() ) ).thenAnswer( new Answer<PreparedStatement>() {
+            @Override
+            public PreparedStatement answer( InvocationOnMock invocation ) {
+                String sql = (String) invocation.getArguments()[0];
+                return (PreparedStatement) Proxy.newProxyInstance( getClass().getClassLoader(),
+                                                                   new Class<?>[] { PreparedStatement.class },
+                                                                   new FakeStatement( sql ) );
+            }
+        } );
+    }
+
+    @Test
+    public void batchedFeaturesEqualPerRowFeaturesForAllBatchSizes()
+                            throws SQLException {
+        insertPersons( 12 );
+        List<String> expected = buildPerRow();
+        assertEquals( 12, expected.size() );
+        for ( int batchSize : new int[] { 1, 2, 5, 11, 12, 13, 1000 } ) {
+            assertEquals( "batch size " + batchSize, expected, buildBatched( batchSize ) );
+        }
+    }
+
+    @Test
+    public void propertyOrderAndMultiplicity()
+                            throws SQLException {
+        insertPersons( 6 );
+        List<String> perRow = buildPerRow();
+        List<String> batched = buildBatched( 4 );
+        assertEquals( perRow, batched );
+        // no phone numbers, one address with two notes (descending order)
+        assertEquals( "PERSON_4{name(name-4),address(street(street-4-1),note(note-4-1-1),note(note-4-1-0))}",
+                      batched.get( 3 ) );
+        // one phone number, two addresses (ascending order), nested notes only for the second one
+        assertEquals( "PERSON_5{name(name-5),tel(tel-5-0),address(street(street-5-1)),"
+                      + "address(street(street-5-2),note(note-5-2-0))}", batched.get( 4 ) );
+        // two phone numbers (ascending order), no addresses
+        assertEquals( "PERSON_6{name(name-6),tel(tel-6-0),tel(tel-6-1)}", batched.get( 5 ) );
+    }
+
+    @Test
+    public void keysAreSplitIntoSeveralSelectsAtTheInListLimit()
+                            throws SQLException {
+        int persons = 1201;
+        insertPersons( persons );
+        List<String> expected = buildPerRow();
+        selectedTables.clear();
+        assertEquals( expected, buildBatched( persons ) );
+
+        // 1000 keys per SELECT for single column joins, 500 keys for the composite key of the nested join
+        int addresses = tables.get( "address" ).size();
+        assertTrue( addresses > 1000 );
+        assertEquals( 2, Collections.frequency( selectedTables, "person_tel" ) );
+        assertEquals( 2, Collections.frequency( selectedTables, "address" ) );
+        assertEquals( ( addresses + 499 ) / 500, Collections.frequency( selectedTables, "note" ) );
+    }
+
+    /**
+     * Person <code>i</code> has <code>i % 4</code> phone numbers and <code>i % 3</code> addresses, address
+     * <code>pos</code> of person <code>i</code> has <code>(i + pos) % 3</code> notes. Rows are inserted in the
+     * opposite of the requested order.
+     */
+    private void insertPersons( int count ) {
+        for ( int i = 1; i <= count; i++ ) {
+            insert( "person", "id", i, "name", "name-" + i );
+            for ( int seq = i % 4 - 1; seq >= 0; seq-- ) {
+                insert( "person_tel", "person_id", Long.valueOf( i ), "seq", seq, "tel", "tel-" + i + "-" + seq );
+            }
+            for ( int pos = i % 3; pos >= 1; pos-- ) {
+                insert( "address", "person_id", Long.valueOf( i ), "pos", pos, "street", "street-" + i + "-" + pos );
+                for ( int n = 0; n < ( i + pos ) % 3; n++ ) {
+                    insert( "note", "person_id", new BigDecimal( i ), "pos", Long.valueOf( pos ), "n", n, "text",
+                            "note-" + i + "-" + pos + "-" + n );
+                }
+            }
+        }
+    }
+
+    private void insert( String table, Object... columnsAndValues ) {
+        Map<String, Object> row = new HashMap<String, Object>();
+        for ( int i = 0; i < columnsAndValues.length; i += 2 ) {
+            row.put( (String) columnsAndValues[i], columnsAndValues[i + 1] );
+        }
+        List<Map<String, Object>> rows = tables.get( table );
+        if ( rows == null ) {
+            rows = new ArrayList<Map<String, Object>>();
+            tables.put( table, rows );
+        }
+        rows.add( row );
+    }
+
+    private List<String> buildPerRow()
+                            throws SQLException {
+        FeatureBuilderRelational builder = new FeatureBuilderRelational( fs, ft, ftMapping, conn, ALIAS, false );
+        ResultSet rs = BufferedResultSet.wrap( selectPersons( builder.getInitialSelectList() ) );
+        List<String> features = new ArrayList<String>();
+        while ( rs.next() ) {
+            features.add( toString( builder.buildFeature( rs ) ) );
+        }
+        return features;
+    }
+
+    private List<String> buildBatched( int batchSize )
+                            throws SQLException {
+        FeatureBuilderRelational builder = new FeatureBuilderRelational( fs, ft, ftMapping, conn, ALIAS, false );
+        List<String> columns = builder.getInitialSelectList();
+        ResultSet rs = mock( ResultSet.class, delegatesTo( BufferedResultSet.wrap( selectPersons( columns ) ) ) );
+        ResultSetMetaData md = mock( ResultSetMetaData.class );
+        when( md.getColumnCount() ).thenReturn( columns.size() );
+        doReturn( md ).when( rs ).getMetaData();
+
+        List<String> features = new ArrayList<String>();
+        List<Feature> batch = builder.buildFeatures( rs, batchSize );
+        while ( !batch.isEmpty() ) {
+            assertTrue( batch.size() <= batchSize );
+            for ( Feature feature : batch ) {
+                features.add( toString( feature ) );
+            }
+            batch = builder.buildFeatures( rs, batchSize );
+        }
+        return features;
+    }
+
+    private List<Object[]> selectPersons( List<String> columns ) {
+        return project( tables.get( "person" ), columns.toArray( new String[columns.size()] ) );
+    }
+
+    private static List<Object[]> project( List<Map<String, Object>> rows, String[] columns ) {
+        List<Object[]> projected = new ArrayList<Object[]>( rows.size() );
+        for ( Map<String, Object> row : rows ) {
+            Object[] values = new Object[columns.length];
+            for ( int i = 0; i < columns.length; i++ ) {
+                values[i] = row.get( columns[i].substring( columns[i].indexOf( '.' ) + 1 ) );
+            }
+            projected.add( values );
+        }
+        return projected;
+    }
+
+    private ResultSet executeQuery( String sql, List<Object> params ) {
+        Matcher m = SELECT.matcher( sql );
+        assertTrue( "Unexpected SQL: " + sql, m.matches() );
+        String table = m.group( 2 );
+        selectedTables.add( table );
+
+        List<String> keyColumns = new ArrayList<String>();
+        Matcher keyMatcher = KEY_COLUMN.matcher( m.group( 3 ) );
+        while ( keyMatcher.find() ) {
+            if ( !keyColumns.contains( keyMatcher.group( 1 ) ) ) {
+                keyColumns.add( keyMatcher.group( 1 ) );
+            }
+        }
+        assertEquals( sql, 0, params.size() % keyColumns.size() );
+
+        List<Map<String, Object>> matches = new ArrayList<Map<String, Object>>();
+        List<Map<String, Object>> rows = tables.get( table );
+        for ( Map<String, Object> row : rows == null ? Collections.<Map<String, Object>> emptyList() : rows ) {
+            for ( int i = 0; i < params.size(); i += keyColumns.size() ) {
+                boolean match = true;
+                for ( int j = 0; j < keyColumns.size(); j++ ) {
+                    match &= sameKey( row.get( keyColumns.get( j ) ), params.get( i + j ) );
+                }
+                if ( match ) {
+                    matches.add( row );
+                    break;
+                }
+            }
+        }
+        if ( m.group( 4 ) != null ) {
+            // stable sorts, so the most significant order column is applied last
+            String[] orderColumns = m.group( 4 ).split( "," );
+            for ( int i = orderColumns.length - 1; i >= 0; i-- ) {
+                final boolean desc = orderColumns[i].endsWith( " DESC" );
+                final String column = desc ? orderColumns[i].substring( 0, orderColumns[i].length() - 5 )
+                                          : orderColumns[i];
+                Collections.sort( matches, new Comparator<Map<String, Object>>() {
+                    @SuppressWarnings({ "unchecked", "rawtypes" })
+                    @Override
+                    public int compare( Map<String, Object> r1, Map<String, Object> r2 ) {
+                        int c = ( (Comparable) r1.get( column ) ).compareTo( r2.get( column ) );
+                        return desc ? -c : c;
+                    }
+                } );
+            }
+        }
+        return BufferedResultSet.wrap( project( matches, m.group( 1 ).split( "," ) ) );
+    }
+
+    private static boolean sameKey( Object value, Object param ) {
+        if ( value == null || param == null ) {
+            return false;
+        }
+        if ( value instanceof Number && param instanceof Number ) {
+            return new BigDecimal( value.toString() ).compareTo( new BigDecimal( param.toString() ) ) == 0;
+        }
+        return value.equals( param );
+    }
+
+    private String toString( Feature feature ) {
+        StringBuilder sb = new StringBuilder( feature.getId() );
+        sb.append( '{' );
+        boolean first = true;
+        for ( Property prop : feature.getProperties() ) {
+            if ( !first ) {
+                sb.append( ',' );
+            }
+            append( sb, prop.getName(), prop.getChildren() );
+            first = false;
+        }
+        return sb.append( '}' ).toString();
+    }
+
+    private void append( StringBuilder sb, QName name, List<TypedObjectNode> children ) {
+        sb.append( name.getLocalPart() );
+        sb.append( '(' );
+        boolean first = true;
+        for ( TypedObjectNode child : children ) {
+            if ( !first ) {
+                sb.append( ',' );
+            }
+            if ( child instanceof GenericXMLElement ) {
+                GenericXMLElement el = (GenericXMLElement) child;
+                append( sb, el.getName(), el.getChildren() );
+            } else if ( child instanceof PrimitiveValue ) {
+                sb.append( child );
+            } else {
+                sb.append( child == null ? "null" : child.getClass().getSimpleName() );
+            }
+            first = false;
+        }
+        sb.append( ')' );
+    }
+
+    private ValueReference path( String xpath ) {
+        return new ValueReference( xpath, nsContext );
+    }
+
+    private PrimitiveMapping primitive( String xpath, String column, List<TableJoin> joins ) {
+        return new PrimitiveMapping( path( xpath ), true, new DBField( column ), new PrimitiveType( STRING ), joins,
+                                     null );
+    }
+
+    private static List<TableJoin> join( String fromTable, String toTable, String fromColumns, String toColumns,
+                                         String orderColumn ) {
+        TableJoin join = new TableJoin( new TableName( fromTable ), new TableName( toTable ),
+                                        asList( fromColumns.split( "," ) ), asList( toColumns.split( "," ) ),
+                                        Collections.singletonList( orderColumn ), false, null );
+        return Collections.singletonList( join );
+    }
+
+    private static List<String> asList( String[] values ) {
+        List<String> list = new ArrayList<String>();
+        Collections.addAll( list, values );
+        return list;
+    }
+
+    /**
+     * {@link PreparedStatement} that records the parameters and evaluates the query against the in-memory tables.
+     */
+    private class FakeStatement implements InvocationHandler {
+
+        private final String sql;
+
+        private final Map<Integer, Object> params = new TreeMap<Integer, Object>();
+
+        private FakeStatement( String sql ) {
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke( Object proxy, Method method, Object[] args ) {
+            String name = method.getName();
+            if ( "setObject".equals( name ) ) {
+                params.put( (Integer) args[0], args[1] );
+                return null;
+            }
+            if ( "executeQuery".equals( name ) && args == null ) {
+                return executeQuery( sql, new ArrayList<Object>( params.values() ) );
+            }
+            if ( "close".equals( name ) ) {
+                return null;
+            }
+            if ( "toString".equals( name ) ) {
+                return sql;
+            }
+            if ( "hashCode".equals( name ) ) {
+                return System.identityHashCode( proxy );
+            }
+            if ( "equals".equals( name ) ) {
+                return proxy == args[0];
+            }
+            throw new UnsupportedOperationException( "PreparedStatement#" + name );
+        }
+    }
+}
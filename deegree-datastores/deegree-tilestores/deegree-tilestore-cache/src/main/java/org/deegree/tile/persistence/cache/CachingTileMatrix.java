@@ -43,8 +43,6 @@ package org.deegree.tile.persistence.cache;
 
 import java.util.List;
 
-import net.sf.ehcache.Cache;
-
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileDataLevel;
 import org.deegree.tile.TileMatrix;
@@ -62,13 +60,13 @@ public class CachingTileMatrix implements TileDataLevel {
 
     private final TileDataLevel tileMatrix;
 
-    private final Cache cache;
+    private final TileCacheLoader loader;
 
     private final String identifier;
 
-    public CachingTileMatrix( TileDataLevel tileMatrix, Cache cache ) {
+    CachingTileMatrix( TileDataLevel tileMatrix, TileCacheLoader loader ) {
         this.tileMatrix = tileMatrix;
-        this.cache = cache;
+        this.loader = loader;
         this.identifier = tileMatrix.getMetadata().getIdentifier();
     }
 
@@ -84,7 +82,14 @@ public class CachingTileMatrix implements TileDataLevel {
             return null;
         }
         String key = identifier + "_" + x + "_" + y;
-        return new CachedTile( tile, cache, key );
+        return new CachedTile( tile, loader, identifier, key );
+    }
+
+    /**
+     * @return the level of the backing tile store, never <code>null</code>
+     */
+    TileDataLevel getCachedLevel() {
+        return tileMatrix;
     }
 
     @Override
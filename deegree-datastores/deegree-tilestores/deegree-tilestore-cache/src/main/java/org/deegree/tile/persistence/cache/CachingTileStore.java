@@ -47,7 +47,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
 
 import org.deegree.geometry.Envelope;
@@ -71,11 +70,23 @@ import org.deegree.workspace.ResourceMetadata;
  */
 public class CachingTileStore implements TileStore {
 
+    /** Default number of threads used for seeding. */
+    public static final int DEFAULT_SEED_THREADS = 2;
+
+    /** Default number of columns/rows of the metatiles rendered when seeding. */
+    public static final int DEFAULT_META_TILE_SIZE = 4;
+
     private final TileStore tileStore;
 
     private final CacheManager cacheManager;
 
-    private final Cache cache;
+    private final CachingTileStoreStatistics stats = new CachingTileStoreStatistics();
+
+    private final TileCacheLoader loader;
+
+    private final TileCacheSeeder seeder;
+
+    private final boolean refreshOnInvalidate;
 
     private Map<String, TileDataSet> tileMatrixSets;
 
@@ -83,10 +94,39 @@ public class CachingTileStore implements TileStore {
 
     public CachingTileStore( TileStore tileStore, CacheManager cacheManager, String cacheName,
                              ResourceMetadata<TileStore> metadata ) {
+        this( tileStore, cacheManager, cacheName, metadata, DEFAULT_SEED_THREADS, DEFAULT_META_TILE_SIZE, 0, false );
+    }
+
+    /**
+     * Creates a new {@link CachingTileStore} instance.
+     * 
+     * @param tileStore
+     *            the tile store to cache, must not be <code>null</code>
+     * @param cacheManager
+     *            the cache manager, must not be <code>null</code>
+     * @param cacheName
+     *            name of the cache to use, must not be <code>null</code>
+     * @param metadata
+     *            resource metadata
+     * @param seedThreads
+     *            number of threads used for seeding, must be positive
+     * @param metaTileSize
+     *            number of columns/rows of the metatiles rendered when seeding, must be positive
+     * @param maxTilesPerSecond
+     *            maximum number of tiles rendered per second when seeding, <code>0</code> for no limit
+     * @param refreshOnInvalidate
+     *            if <code>true</code>, {@link #invalidateCache(String, Envelope)} re-renders the cached tiles instead
+     *            of removing them
+     */
+    public CachingTileStore( TileStore tileStore, CacheManager cacheManager, String cacheName,
+                             ResourceMetadata<TileStore> metadata, int seedThreads, int metaTileSize,
+                             int maxTilesPerSecond, boolean refreshOnInvalidate ) {
         this.tileStore = tileStore;
         this.cacheManager = cacheManager;
         this.metadata = metadata;
-        this.cache = cacheManager.getCache( cacheName );
+        this.loader = new TileCacheLoader( cacheManager.getCache( cacheName ), stats );
+        this.seeder = new TileCacheSeeder( loader, seedThreads, metaTileSize, maxTilesPerSecond );
+        this.refreshOnInvalidate = refreshOnInvalidate;
     }
 
     @Override
@@ -97,7 +137,7 @@ public class CachingTileStore implements TileStore {
             TileDataSet cachedDataset = tileStore.getTileDataSet( id );
             List<TileDataLevel> list = new ArrayList<TileDataLevel>();
             for ( TileDataLevel tm : cachedDataset.getTileDataLevels() ) {
-                list.add( new CachingTileMatrix( tm, cache ) );
+                list.add( new CachingTileMatrix( tm, loader ) );
             }
             TileDataSet cachingDataset = new DefaultTileDataSet( list, cachedDataset.getTileMatrixSet(),
                                                                  cachedDataset.getNativeImageFormat() );
@@ -112,6 +152,7 @@ public class CachingTileStore implements TileStore {
 
     @Override
     public void destroy() {
+        seeder.shutdown();
         cacheManager.shutdown();
     }
 
@@ -136,17 +177,30 @@ public class CachingTileStore implements TileStore {
 
     /**
      * Removes matching objects from cache.
+     * <p>
+     * If the store has been configured to refresh on invalidation, the matching cached tiles are re-rendered in the
+     * background instead (see {@link #refresh(String, Envelope)}) and the cached versions are served until they have
+     * been replaced.
+     * </p>
      * 
      * @param tileMatrixSet
      *            the id of the tile matrix set
      * @param envelope
      *            may be null, in which case all objects will be removed from the cache
+     * @return number of removed objects (or number of tiles scheduled for refreshing)
      */
     public long invalidateCache( String tileMatrixSet, Envelope envelope ) {
+        if ( refreshOnInvalidate ) {
+            Map<CachingTileMatrix, List<long[]>> tiles = seeder.getCachedTiles( getLevels( tileMatrixSet ), envelope );
+            long cnt = 0;
+            for ( List<long[]> list : tiles.values() ) {
+                cnt += list.size();
+            }
+            seeder.refresh( "Refresh of tile matrix set " + tileMatrixSet, tiles );
+            return cnt;
+        }
         if ( envelope == null ) {
-            int size = cache.getSize();
-            cache.removeAll();
-            return size;
+            return loader.removeAll();
         }
         long cnt = 0;
         for ( TileDataLevel tm : tileMatrixSets.get( tileMatrixSet ).getTileDataLevels() ) {
@@ -155,7 +209,7 @@ public class CachingTileStore implements TileStore {
                 String id = tm.getMetadata().getIdentifier();
                 for ( long x = ts[0]; x <= ts[2]; ++x ) {
                     for ( long y = ts[1]; y <= ts[3]; ++y ) {
-                        if ( cache.remove( id + "_" + x + "_" + y ) ) {
+                        if ( loader.remove( id + "_" + x + "_" + y ) ) {
                             ++cnt;
                         }
                     }
@@ -165,6 +219,83 @@ public class CachingTileStore implements TileStore {
         return cnt;
     }
 
+    /**
+     * @return <code>true</code>, if {@link #invalidateCache(String, Envelope)} re-renders the tiles instead of removing
+     *         them
+     */
+    public boolean isRefreshOnInvalidate() {
+        return refreshOnInvalidate;
+    }
+
+    /**
+     * Fills the cache with the tiles of the given levels that intersect the envelope. Tiles are rendered in the
+     * background, metatiles whose tiles are all cached already are skipped.
+     * 
+     * @param tileMatrixSet
+     *            the id of the tile matrix set, must not be <code>null</code>
+     * @param envelope
+     *            area to seed, may be null, in which case the whole extent of the tile matrix set is seeded
+     * @param minLevel
+     *            index of the first level to seed (as returned by {@link TileDataSet#getTileDataLevels()}, counting
+     *            from zero)
+     * @param maxLevel
+     *            index of the last level to seed (inclusive)
+     * @return handle of the scheduled job, never <code>null</code>
+     * @throws IllegalArgumentException
+     *             if the tile matrix set does not exist or the level range is invalid
+     */
+    public SeedJob seed( String tileMatrixSet, Envelope envelope, int minLevel, int maxLevel ) {
+        List<CachingTileMatrix> levels = getLevels( tileMatrixSet );
+        if ( minLevel < 0 || maxLevel >= levels.size() || minLevel > maxLevel ) {
+            String msg = "Invalid level range " + minLevel + "-" + maxLevel + " for tile matrix set " + tileMatrixSet
+                         + " (" + levels.size() + " levels).";
+            throw new IllegalArgumentException( msg );
+        }
+        if ( envelope == null ) {
+            envelope = tileMatrixSets.get( tileMatrixSet ).getTileMatrixSet().getSpatialMetadata().getEnvelope();
+        }
+        String name = "Seeding of tile matrix set " + tileMatrixSet + ", levels " + minLevel + "-" + maxLevel;
+        return seeder.seed( name, levels.subList( minLevel, maxLevel + 1 ), envelope, true );
+    }
+
+    /**
+     * Re-renders the cached tiles that intersect the envelope in the background. The cached versions are served until
+     * they have been replaced, tiles that cannot be rendered any longer are removed.
+     * 
+     * @param tileMatrixSet
+     *            the id of the tile matrix set, must not be <code>null</code>
+     * @param envelope
+     *            may be null, in which case all cached tiles of the tile matrix set are re-rendered
+     * @return handle of the scheduled job, never <code>null</code>
+     * @throws IllegalArgumentException
+     *             if the tile matrix set does not exist
+     */
+    public SeedJob refresh( String tileMatrixSet, Envelope envelope ) {
+        Map<CachingTileMatrix, List<long[]>> tiles = seeder.getCachedTiles( getLevels( tileMatrixSet ), envelope );
+        return seeder.refresh( "Refresh of tile matrix set " + tileMatrixSet, tiles );
+    }
+
+    private List<CachingTileMatrix> getLevels( String tileMatrixSet ) {
+        TileDataSet dataSet = tileMatrixSets.get( tileMatrixSet );
+        if ( dataSet == null ) {
+            throw new IllegalArgumentException( "No tile matrix set with id " + tileMatrixSet + "." );
+        }
+        List<CachingTileMatrix> levels = new ArrayList<CachingTileMatrix>();
+        for ( TileDataLevel level : dataSet.getTileDataLevels() ) {
+            levels.add( (CachingTileMatrix) level );
+        }
+        return levels;
+    }
+
+    /**
+     * Returns the cache statistics of this tile store.
+     * 
+     * @return statistics, never <code>null</code>
+     */
+    public CachingTileStoreStatistics getStatistics() {
+        return stats;
+    }
+
     @Override
     public TileStoreTransaction acquireTransaction( String id ) {
         throw new UnsupportedOperationException( "CachingTileStore does not support transactions." );
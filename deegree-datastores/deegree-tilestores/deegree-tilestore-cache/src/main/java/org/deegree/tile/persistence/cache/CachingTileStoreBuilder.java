@@ -34,6 +34,7 @@ import net.sf.ehcache.CacheManager;
 
 import org.deegree.tile.persistence.TileStore;
 import org.deegree.tile.persistence.TileStoreProvider;
+import org.deegree.tile.persistence.cache.jaxb.CachingTileStore.Seeding;
 import org.deegree.workspace.ResourceBuilder;
 import org.deegree.workspace.ResourceInitException;
 import org.deegree.workspace.ResourceMetadata;
@@ -71,7 +72,13 @@ public class CachingTileStoreBuilder implements ResourceBuilder<TileStore> {
             }
             CacheManager cmgr = new CacheManager( f.toURI().toURL() );
             TileStore tileStore = workspace.getResource( TileStoreProvider.class, cfg.getTileStoreId() );
-            return new CachingTileStore( tileStore, cmgr, cfg.getCacheName(), metadata );
+            Seeding seeding = cfg.getSeeding();
+            if ( seeding == null ) {
+                return new CachingTileStore( tileStore, cmgr, cfg.getCacheName(), metadata );
+            }
+            return new CachingTileStore( tileStore, cmgr, cfg.getCacheName(), metadata,
+                                         seeding.getThreads().intValue(), seeding.getMetaTileSize().intValue(),
+                                         seeding.getMaxTilesPerSecond().intValue(), seeding.isRefreshOnInvalidate() );
         } catch ( CacheException e ) {
             // case needed, as NPE's inside exception can occur otherwise
             throw new ResourceInitException( "Unable to create tile store: " + e.getMessage() );
@@ -0,0 +1,224 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2010 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+ http://www.occamlabs.de/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+
+
+package org.deegree.tile.persistence.cache;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache statistics of a {@link CachingTileStore}, kept per tile matrix.
+ * <p>
+ * All counters are updated without locking and may be read at any time, so a snapshot of several counters is not
+ * necessarily consistent.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class CachingTileStoreStatistics {
+
+    private final ConcurrentMap<String, TileMatrixStatistics> tileMatrixStats;
+
+    /**
+     * Creates a new instance without any recorded statistics.
+     */
+    public CachingTileStoreStatistics() {
+        tileMatrixStats = new ConcurrentHashMap<String, TileMatrixStatistics>();
+    }
+
+    /**
+     * Returns the identifiers of all tile matrices that statistics have been recorded for.
+     * 
+     * @return tile matrix identifiers, never <code>null</code>
+     */
+    public Set<String> getTileMatrixIds() {
+        return Collections.unmodifiableSet( tileMatrixStats.keySet() );
+    }
+
+    /**
+     * Returns the statistics of the given tile matrix.
+     * 
+     * @param tileMatrix
+     *            identifier of the tile matrix, must not be <code>null</code>
+     * @return statistics, never <code>null</code>
+     */
+    public TileMatrixStatistics getStatistics( String tileMatrix ) {
+        TileMatrixStatistics stats = tileMatrixStats.get( tileMatrix );
+        if ( stats == null ) {
+            stats = new TileMatrixStatistics();
+            TileMatrixStatistics existing = tileMatrixStats.putIfAbsent( tileMatrix, stats );
+            if ( existing != null ) {
+                stats = existing;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the statistics of all tile matrices.
+     * 
+     * @return unmodifiable view on the statistics, keys are the tile matrix identifiers, never <code>null</code>
+     */
+    public Map<String, TileMatrixStatistics> getStatistics() {
+        return Collections.unmodifiableMap( tileMatrixStats );
+    }
+
+    /**
+     * Resets all counters.
+     */
+    public void reset() {
+        for ( TileMatrixStatistics stats : tileMatrixStats.values() ) {
+            stats.reset();
+        }
+    }
+
+    /**
+     * Cache statistics of a single tile matrix.
+     */
+    public static class TileMatrixStatistics {
+
+        private final AtomicLong hits = new AtomicLong();
+
+        private final AtomicLong misses = new AtomicLong();
+
+        private final AtomicLong coalesced = new AtomicLong();
+
+        private final AtomicLong failures = new AtomicLong();
+
+        private final AtomicLong loadTimeNanos = new AtomicLong();
+
+        private final AtomicLong maxLoadTimeNanos = new AtomicLong();
+
+        void hit() {
+            hits.incrementAndGet();
+        }
+
+        void coalesced() {
+            coalesced.incrementAndGet();
+        }
+
+        void loaded( long nanos, boolean failed ) {
+            misses.incrementAndGet();
+            if ( failed ) {
+                failures.incrementAndGet();
+            }
+            loadTimeNanos.addAndGet( nanos );
+            long max = maxLoadTimeNanos.get();
+            while ( nanos > max && !maxLoadTimeNanos.compareAndSet( max, nanos ) ) {
+                max = maxLoadTimeNanos.get();
+            }
+        }
+
+        void reset() {
+            hits.set( 0 );
+            misses.set( 0 );
+            coalesced.set( 0 );
+            failures.set( 0 );
+            loadTimeNanos.set( 0 );
+            maxLoadTimeNanos.set( 0 );
+        }
+
+        /**
+         * @return number of requests that have been served from the cache
+         */
+        public long getHits() {
+            return hits.get();
+        }
+
+        /**
+         * @return number of requests that have loaded the tile from the backing tile store (including failed loads)
+         */
+        public long getMisses() {
+            return misses.get();
+        }
+
+        /**
+         * @return number of requests that have missed the cache, but waited for a load that was already in progress
+         *         instead of loading the tile themselves
+         */
+        public long getCoalesced() {
+            return coalesced.get();
+        }
+
+        /**
+         * @return number of loads from the backing tile store that failed
+         */
+        public long getFailures() {
+            return failures.get();
+        }
+
+        /**
+         * @return summed up duration of all loads from the backing tile store in milliseconds
+         */
+        public double getTotalLoadTime() {
+            return loadTimeNanos.get() / 1000000.0;
+        }
+
+        /**
+         * @return average duration of a load from the backing tile store in milliseconds, <code>0</code> if no tile
+         *         has been loaded yet
+         */
+        public double getAverageLoadTime() {
+            long loads = misses.get();
+            return loads == 0 ? 0 : loadTimeNanos.get() / 1000000.0 / loads;
+        }
+
+        /**
+         * @return duration of the slowest load from the backing tile store in milliseconds
+         */
+        public double getMaxLoadTime() {
+            return maxLoadTimeNanos.get() / 1000000.0;
+        }
+
+        @Override
+        public String toString() {
+            return "hits: " + getHits() + ", misses: " + getMisses() + ", coalesced: " + getCoalesced()
+                   + ", failures: " + getFailures() + ", avg load time: " + getAverageLoadTime() + " ms";
+        }
+    }
+}
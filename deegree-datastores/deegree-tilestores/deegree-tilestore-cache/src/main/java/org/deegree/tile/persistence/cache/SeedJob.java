@@ -0,0 +1,195 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2010 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+ http://www.occamlabs.de/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+
+
+package org.deegree.tile.persistence.cache;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+
+/**
+ * Handle for a background job that fills the cache of a {@link CachingTileStore} (seeding) or re-renders cached tiles
+ * (refreshing).
+ * <p>
+ * Jobs of a tile store are processed one after another. Progress is counted in metatiles (blocks of adjacent tiles
+ * that are rendered together).
+ * </p>
+ * 
+ * @see CachingTileStore#seed(String, org.deegree.geometry.Envelope, int, int)
+ * @see CachingTileStore#refresh(String, org.deegree.geometry.Envelope)
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SeedJob {
+
+    private static final Logger LOG = getLogger( SeedJob.class );
+
+    private final String description;
+
+    private final long totalMetaTiles;
+
+    private final AtomicLong processedMetaTiles = new AtomicLong();
+
+    private final AtomicLong storedTiles = new AtomicLong();
+
+    private final AtomicLong failedTiles = new AtomicLong();
+
+    private final CountDownLatch finished = new CountDownLatch( 1 );
+
+    private volatile boolean cancelled;
+
+    SeedJob( String description, long totalMetaTiles ) {
+        this.description = description;
+        this.totalMetaTiles = totalMetaTiles;
+    }
+
+    void processed( int stored, int failed ) {
+        storedTiles.addAndGet( stored );
+        failedTiles.addAndGet( failed );
+        long done = processedMetaTiles.incrementAndGet();
+        if ( totalMetaTiles >= 10 && ( done * 10 ) / totalMetaTiles != ( ( done - 1 ) * 10 ) / totalMetaTiles ) {
+            long percent = ( done * 100 ) / totalMetaTiles;
+            LOG.info( "{}: {}% done ({} tiles stored, {} failed).",
+                      new Object[] { description, percent, storedTiles.get(), failedTiles.get() } );
+        }
+    }
+
+    void finished() {
+        LOG.info( "{} {}: processed {} of {} metatiles, stored {} tiles, {} tiles failed.",
+                  new Object[] { description, cancelled ? "cancelled" : "finished", processedMetaTiles.get(),
+                                totalMetaTiles, storedTiles.get(), failedTiles.get() } );
+        finished.countDown();
+    }
+
+    /**
+     * Stops the job. Metatiles that are currently being rendered are still stored.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return <code>true</code>, if {@link #cancel()} has been called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return <code>true</code>, if the job has completed or has been stopped after cancellation
+     */
+    public boolean isDone() {
+        return finished.getCount() == 0;
+    }
+
+    /**
+     * Waits for the job to complete.
+     * 
+     * @param timeout
+     *            maximum time to wait
+     * @param unit
+     *            unit of the timeout, must not be <code>null</code>
+     * @return <code>true</code>, if the job is done, <code>false</code> if the timeout elapsed before
+     * @throws InterruptedException
+     *             if the current thread was interrupted while waiting
+     */
+    public boolean awaitCompletion( long timeout, TimeUnit unit )
+                            throws InterruptedException {
+        return finished.await( timeout, unit );
+    }
+
+    /**
+     * @return description of the job, never <code>null</code>
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return number of metatiles the job has to process
+     */
+    public long getTotalMetaTiles() {
+        return totalMetaTiles;
+    }
+
+    /**
+     * @return number of metatiles that have been processed so far
+     */
+    public long getProcessedMetaTiles() {
+        return processedMetaTiles.get();
+    }
+
+    /**
+     * @return number of tiles that have been stored in the cache so far
+     */
+    public long getStoredTiles() {
+        return storedTiles.get();
+    }
+
+    /**
+     * @return number of tiles that could not be rendered so far
+     */
+    public long getFailedTiles() {
+        return failedTiles.get();
+    }
+
+    /**
+     * @return fraction of processed metatiles, between <code>0</code> and <code>1</code>
+     */
+    public double getProgress() {
+        return totalMetaTiles == 0 ? 1 : (double) processedMetaTiles.get() / totalMetaTiles;
+    }
+
+    @Override
+    public String toString() {
+        return description + ": " + processedMetaTiles.get() + "/" + totalMetaTiles + " metatiles, "
+               + storedTiles.get() + " tiles stored, " + failedTiles.get() + " failed"
+               + ( cancelled ? " (cancelled)" : "" );
+    }
+
+}
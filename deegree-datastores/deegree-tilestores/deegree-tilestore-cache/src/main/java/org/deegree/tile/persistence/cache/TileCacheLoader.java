@@ -0,0 +1,288 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2010 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+ http://www.occamlabs.de/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+
+
+package org.deegree.tile.persistence.cache;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Element;
+
+import org.apache.commons.io.IOUtils;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileIOException;
+import org.deegree.tile.persistence.cache.CachingTileStoreStatistics.TileMatrixStatistics;
+import org.slf4j.Logger;
+
+/**
+ * Fetches tile data from the cache of a {@link CachingTileStore} and loads missing tiles from the backing tile store.
+ * <p>
+ * Loads are de-duplicated: if a tile is requested while another thread is already loading it, the request waits for
+ * that load instead of hitting the backing tile store again. Failed loads are not cached, the next request for the
+ * tile starts a new load.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+final class TileCacheLoader {
+
+    private static final Logger LOG = getLogger( TileCacheLoader.class );
+
+    private final Cache cache;
+
+    private final CachingTileStoreStatistics stats;
+
+    private final ConcurrentMap<String, Load> inFlight;
+
+    TileCacheLoader( Cache cache, CachingTileStoreStatistics stats ) {
+        this.cache = cache;
+        this.stats = stats;
+        this.inFlight = new ConcurrentHashMap<String, Load>();
+    }
+
+    /**
+     * Returns the encoded data of a tile, loading it from the backing tile store if it is not cached yet.
+     * 
+     * @param tileMatrix
+     *            identifier of the tile matrix, must not be <code>null</code>
+     * @param key
+     *            cache key of the tile, must not be <code>null</code>
+     * @param tile
+     *            tile of the backing tile store, must not be <code>null</code>
+     * @return tile data, never <code>null</code>
+     * @throws TileIOException
+     *             if the tile could not be loaded
+     */
+    byte[] getData( String tileMatrix, String key, Tile tile ) {
+        TileMatrixStatistics matrixStats = stats.getStatistics( tileMatrix );
+        Element elem = cache.get( key );
+        if ( elem != null ) {
+            matrixStats.hit();
+            return (byte[]) elem.getValue();
+        }
+        Load load = new Load( key, tile, matrixStats );
+        Load running = inFlight.putIfAbsent( key, load );
+        if ( running != null ) {
+            matrixStats.coalesced();
+            LOG.trace( "Waiting for running load of tile {}.", key );
+            return await( running.task, key );
+        }
+        try {
+            load.task.run();
+        } finally {
+            inFlight.remove( key, load );
+        }
+        return await( load.task, key );
+    }
+
+    /**
+     * Removes a tile from the cache.
+     * <p>
+     * A load of the tile that is in progress is detached, so requests arriving after this call do not wait for data
+     * that may already be outdated, and the data of the detached load is not stored in the cache.
+     * </p>
+     * 
+     * @param key
+     *            cache key of the tile, must not be <code>null</code>
+     * @return <code>true</code>, if the tile was cached, <code>false</code> otherwise
+     */
+    boolean remove( String key ) {
+        Load running = inFlight.remove( key );
+        if ( running != null ) {
+            running.detach();
+        }
+        return cache.remove( key );
+    }
+
+    /**
+     * Removes all tiles from the cache.
+     * <p>
+     * All loads in progress are detached first (see {@link #remove(String)}), so none of them can store its possibly
+     * outdated data after the cache has been flushed.
+     * </p>
+     * 
+     * @return number of tiles that were cached
+     */
+    int removeAll() {
+        for ( String key : inFlight.keySet() ) {
+            Load running = inFlight.remove( key );
+            if ( running != null ) {
+                running.detach();
+            }
+        }
+        int size = cache.getSize();
+        cache.removeAll();
+        return size;
+    }
+
+    /**
+     * Loads a tile from the backing tile store and stores it in the cache, replacing a cached version.
+     * 
+     * @param key
+     *            cache key of the tile, must not be <code>null</code>
+     * @param tile
+     *            tile of the backing tile store, must not be <code>null</code>
+     * @throws TileIOException
+     *             if the tile could not be loaded
+     */
+    void store( String key, Tile tile ) {
+        cache.put( new Element( key, read( tile ) ) );
+    }
+
+    /**
+     * @param key
+     *            cache key of the tile, must not be <code>null</code>
+     * @return <code>true</code>, if the tile is cached (and not expired), <code>false</code> otherwise
+     */
+    boolean isCached( String key ) {
+        return cache.getQuiet( key ) != null;
+    }
+
+    /**
+     * @return keys of all cached tiles (may include expired ones), never <code>null</code>
+     */
+    List<?> getKeys() {
+        return cache.getKeys();
+    }
+
+    private static byte[] read( Tile tile ) {
+        try {
+            InputStream is = tile.getAsStream();
+            if ( is == null ) {
+                return new byte[] {};
+            }
+            try {
+                return IOUtils.toByteArray( is );
+            } finally {
+                IOUtils.closeQuietly( is );
+            }
+        } catch ( IOException e ) {
+            LOG.trace( e.getMessage(), e );
+            throw new TileIOException( e.getMessage(), e );
+        }
+    }
+
+    private static byte[] await( FutureTask<byte[]> load, String key ) {
+        try {
+            return load.get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new TileIOException( "Interrupted while waiting for tile " + key + ".", e );
+        } catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof TileIOException ) {
+                throw (TileIOException) cause;
+            }
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            throw new TileIOException( cause.getMessage(), cause );
+        }
+    }
+
+    private class Load implements Callable<byte[]> {
+
+        private final String key;
+
+        private final Tile tile;
+
+        private final TileMatrixStatistics matrixStats;
+
+        private final FutureTask<byte[]> task;
+
+        // guarded by this
+        private boolean detached;
+
+        Load( String key, Tile tile, TileMatrixStatistics matrixStats ) {
+            this.key = key;
+            this.tile = tile;
+            this.matrixStats = matrixStats;
+            this.task = new FutureTask<byte[]>( this );
+        }
+
+        synchronized void detach() {
+            detached = true;
+        }
+
+        @Override
+        public byte[] call() {
+            // the tile may have been stored by a load that finished after the cache lookup of this request, this
+            // is still the same lookup, so it is neither counted as another ehcache access nor as another hit
+            Element elem = cache.getQuiet( key );
+            if ( elem != null ) {
+                matrixStats.hit();
+                return (byte[]) elem.getValue();
+            }
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                byte[] data = read( tile );
+                synchronized ( this ) {
+                    // the tile has been removed while loading, the data may be outdated
+                    if ( !detached ) {
+                        cache.put( new Element( key, data ) );
+                    }
+                }
+                failed = false;
+                return data;
+            } finally {
+                long nanos = System.nanoTime() - start;
+                matrixStats.loaded( nanos, failed );
+                LOG.debug( "Loaded tile {} in {} ms.", key, nanos / 1000000 );
+            }
+        }
+    }
+}
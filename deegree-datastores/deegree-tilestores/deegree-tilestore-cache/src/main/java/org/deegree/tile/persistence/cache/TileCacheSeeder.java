@@ -0,0 +1,524 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2010 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+ http://www.occamlabs.de/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+
+
+package org.deegree.tile.persistence.cache;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.geometry.Envelope;
+import org.deegree.tile.MetaTileDataLevel;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileMatrix;
+import org.deegree.tile.Tiles;
+import org.slf4j.Logger;
+
+/**
+ * Fills the cache of a {@link CachingTileStore} in the background.
+ * <p>
+ * Tiles are rendered in metatiles: square blocks of adjacent tiles, aligned to multiples of the metatile size. If the
+ * backing tile store supports it ({@link MetaTileDataLevel}), each metatile is fetched with a single operation and cut
+ * into tiles, otherwise the tiles of a metatile are fetched one by one. Jobs are processed one after another by a
+ * coordinator thread, which hands out the metatiles of the current job to a pool of worker threads. The threads are
+ * only started when the first job is scheduled. The number of tiles rendered per second can be limited.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+final class TileCacheSeeder {
+
+    private static final Logger LOG = getLogger( TileCacheSeeder.class );
+
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+    private final TileCacheLoader loader;
+
+    private final int threads;
+
+    private final int metaTileSize;
+
+    private final int maxTilesPerSecond;
+
+    // guarded by this, created with the first job
+    private ExecutorService coordinator;
+
+    // guarded by this, created with the first job
+    private ExecutorService workers;
+
+    // guarded by this
+    private boolean shutdown;
+
+    private long nextRenderTime;
+
+    /**
+     * Creates a new {@link TileCacheSeeder} instance.
+     * 
+     * @param loader
+     *            used for storing the tiles, must not be <code>null</code>
+     * @param threads
+     *            number of worker threads, must be positive
+     * @param metaTileSize
+     *            number of columns/rows of a metatile, must be positive
+     * @param maxTilesPerSecond
+     *            maximum number of tiles to render per second, <code>0</code> for no limit
+     */
+    TileCacheSeeder( TileCacheLoader loader, int threads, int metaTileSize, int maxTilesPerSecond ) {
+        this.loader = loader;
+        this.threads = threads;
+        this.metaTileSize = metaTileSize;
+        this.maxTilesPerSecond = maxTilesPerSecond;
+    }
+
+    /**
+     * Schedules a job that renders all tiles of the given levels that intersect the envelope.
+     * 
+     * @param name
+     *            used in log messages, must not be <code>null</code>
+     * @param levels
+     *            levels to seed, must not be <code>null</code>
+     * @param envelope
+     *            area to seed, must not be <code>null</code>
+     * @param skipCached
+     *            if <code>true</code>, metatiles whose tiles are all cached already are not rendered
+     * @return the job, never <code>null</code>
+     */
+    SeedJob seed( String name, List<CachingTileMatrix> levels, Envelope envelope, boolean skipCached ) {
+        List<MetaTileRange> ranges = new ArrayList<MetaTileRange>();
+        long total = 0;
+        for ( CachingTileMatrix level : levels ) {
+            long[] range = Tiles.getTileIndexRange( level, envelope );
+            if ( range != null ) {
+                MetaTileRange r = new MetaTileRange( level, range );
+                ranges.add( r );
+                total += r.size();
+            }
+        }
+        SeedJob job = new SeedJob( name, total );
+        submit( job, new RangeIterator( ranges ), skipCached );
+        return job;
+    }
+
+    /**
+     * Schedules a job that re-renders the given cached tiles (and the other tiles of their metatiles).
+     * 
+     * @param name
+     *            used in log messages, must not be <code>null</code>
+     * @param tiles
+     *            cached tiles, keys are the levels, values are the tile indices (as <code>{x, y}</code>), must not be
+     *            <code>null</code>
+     * @return the job, never <code>null</code>
+     */
+    SeedJob refresh( String name, Map<CachingTileMatrix, List<long[]>> tiles ) {
+        Set<MetaTile> metaTiles = new LinkedHashSet<MetaTile>();
+        for ( Map.Entry<CachingTileMatrix, List<long[]>> e : tiles.entrySet() ) {
+            for ( long[] index : e.getValue() ) {
+                long x = ( index[0] / metaTileSize ) * metaTileSize;
+                long y = ( index[1] / metaTileSize ) * metaTileSize;
+                metaTiles.add( new MetaTile( e.getKey(), x, y ) );
+            }
+        }
+        SeedJob job = new SeedJob( name, metaTiles.size() );
+        submit( job, metaTiles.iterator(), false );
+        return job;
+    }
+
+    /**
+     * Stops all threads. Running jobs are cancelled.
+     */
+    synchronized void shutdown() {
+        shutdown = true;
+        if ( coordinator != null ) {
+            coordinator.shutdownNow();
+            workers.shutdownNow();
+        }
+    }
+
+    private synchronized ExecutorService getCoordinator() {
+        if ( shutdown ) {
+            throw new RejectedExecutionException( "Seeder has been shut down." );
+        }
+        if ( coordinator == null ) {
+            String prefix = "tile-cache-seed-" + POOL_COUNT.incrementAndGet();
+            coordinator = newFixedThreadPool( 1, new SeederThreadFactory( prefix + "-coordinator" ) );
+            workers = newFixedThreadPool( threads, new SeederThreadFactory( prefix + "-worker-" ) );
+        }
+        return coordinator;
+    }
+
+    private synchronized ExecutorService getWorkers() {
+        return workers;
+    }
+
+    private void submit( final SeedJob job, final Iterator<MetaTile> metaTiles, final boolean skipCached ) {
+        LOG.info( "Scheduling {} ({} metatiles).", job.getDescription(), job.getTotalMetaTiles() );
+        try {
+            getCoordinator().execute( new Runnable() {
+                @Override
+                public void run() {
+                    process( job, metaTiles, skipCached );
+                }
+            } );
+        } catch ( RejectedExecutionException e ) {
+            job.cancel();
+            job.finished();
+        }
+    }
+
+    private void process( final SeedJob job, Iterator<MetaTile> metaTiles, final boolean skipCached ) {
+        // at most two metatiles per worker are queued, so huge jobs do not fill the memory
+        int permits = threads * 2;
+        final Semaphore slots = new Semaphore( permits );
+        ExecutorService workers = getWorkers();
+        try {
+            while ( metaTiles.hasNext() && !job.isCancelled() ) {
+                final MetaTile metaTile = metaTiles.next();
+                slots.acquire();
+                try {
+                    workers.execute( new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                if ( !job.isCancelled() ) {
+                                    render( job, metaTile, skipCached );
+                                }
+                            } finally {
+                                slots.release();
+                            }
+                        }
+                    } );
+                } catch ( RejectedExecutionException e ) {
+                    slots.release();
+                    job.cancel();
+                }
+            }
+            slots.acquire( permits );
+        } catch ( InterruptedException e ) {
+            job.cancel();
+            Thread.currentThread().interrupt();
+        } finally {
+            job.finished();
+        }
+    }
+
+    private void render( SeedJob job, MetaTile metaTile, boolean skipCached ) {
+        TileMatrix md = metaTile.level.getMetadata();
+        String id = md.getIdentifier();
+        int columns = (int) Math.min( metaTileSize, md.getNumTilesX() - metaTile.x );
+        int rows = (int) Math.min( metaTileSize, md.getNumTilesY() - metaTile.y );
+        if ( skipCached && isCached( id, metaTile.x, metaTile.y, columns, rows ) ) {
+            job.processed( 0, 0 );
+            return;
+        }
+        int stored = 0;
+        int failed = 0;
+        try {
+            throttle( columns * rows );
+            Tile[][] tiles = getTiles( metaTile.level.getCachedLevel(), metaTile.x, metaTile.y, columns, rows );
+            for ( int i = 0; i < tiles.length; ++i ) {
+                for ( int j = 0; j < tiles[i].length; ++j ) {
+                    String key = id + "_" + ( metaTile.x + i ) + "_" + ( metaTile.y + j );
+                    if ( tiles[i][j] == null ) {
+                        loader.remove( key );
+                        continue;
+                    }
+                    try {
+                        loader.store( key, tiles[i][j] );
+                        ++stored;
+                    } catch ( RuntimeException e ) {
+                        // do not keep outdated data
+                        loader.remove( key );
+                        ++failed;
+                        LOG.debug( "Could not render tile {}: {}", key, e.getMessage() );
+                        LOG.trace( "Stack trace:", e );
+                    }
+                }
+            }
+        } catch ( InterruptedException e ) {
+            job.cancel();
+            Thread.currentThread().interrupt();
+        } catch ( RuntimeException e ) {
+            failed = columns * rows;
+            LOG.warn( "Could not render metatile {}_{}_{}: {}", new Object[] { id, metaTile.x, metaTile.y,
+                                                                             e.getMessage() } );
+            LOG.trace( "Stack trace:", e );
+        }
+        job.processed( stored, failed );
+    }
+
+    private boolean isCached( String id, long x, long y, int columns, int rows ) {
+        for ( int i = 0; i < columns; ++i ) {
+            for ( int j = 0; j < rows; ++j ) {
+                if ( !loader.isCached( id + "_" + ( x + i ) + "_" + ( y + j ) ) ) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Tile[][] getTiles( TileDataLevel level, long x, long y, int columns, int rows ) {
+        if ( level instanceof MetaTileDataLevel ) {
+            return ( (MetaTileDataLevel) level ).getMetaTile( x, y, columns, rows );
+        }
+        Tile[][] tiles = new Tile[columns][rows];
+        for ( int i = 0; i < columns; ++i ) {
+            for ( int j = 0; j < rows; ++j ) {
+                tiles[i][j] = level.getTile( x + i, y + j );
+            }
+        }
+        return tiles;
+    }
+
+    private void throttle( int tiles )
+                            throws InterruptedException {
+        if ( maxTilesPerSecond <= 0 ) {
+            return;
+        }
+        long wait;
+        synchronized ( this ) {
+            long now = System.nanoTime();
+            if ( nextRenderTime - now < 0 ) {
+                nextRenderTime = now;
+            }
+            wait = nextRenderTime - now;
+            nextRenderTime += tiles * 1000000000L / maxTilesPerSecond;
+        }
+        if ( wait > 0 ) {
+            NANOSECONDS.sleep( wait );
+        }
+    }
+
+    /**
+     * Collects the indices of the cached tiles of the given levels.
+     * 
+     * @param levels
+     *            levels to consider, must not be <code>null</code>
+     * @param envelope
+     *            only tiles intersecting this envelope are collected, may be <code>null</code> (all tiles)
+     * @return tile indices (as <code>{x, y}</code>) per level, never <code>null</code>
+     */
+    Map<CachingTileMatrix, List<long[]>> getCachedTiles( Collection<CachingTileMatrix> levels, Envelope envelope ) {
+        Map<String, CachingTileMatrix> levelsById = new HashMap<String, CachingTileMatrix>();
+        Map<CachingTileMatrix, long[]> ranges = new HashMap<CachingTileMatrix, long[]>();
+        for ( CachingTileMatrix level : levels ) {
+            if ( envelope != null ) {
+                long[] range = Tiles.getTileIndexRange( level, envelope );
+                if ( range == null ) {
+                    continue;
+                }
+                ranges.put( level, range );
+            }
+            levelsById.put( level.getMetadata().getIdentifier(), level );
+        }
+        Map<CachingTileMatrix, List<long[]>> tiles = new HashMap<CachingTileMatrix, List<long[]>>();
+        for ( Object o : loader.getKeys() ) {
+            String key = o.toString();
+            int yIdx = key.lastIndexOf( '_' );
+            int xIdx = yIdx > 0 ? key.lastIndexOf( '_', yIdx - 1 ) : -1;
+            if ( xIdx <= 0 ) {
+                continue;
+            }
+            CachingTileMatrix level = levelsById.get( key.substring( 0, xIdx ) );
+            if ( level == null ) {
+                continue;
+            }
+            long x, y;
+            try {
+                x = Long.parseLong( key.substring( xIdx + 1, yIdx ) );
+                y = Long.parseLong( key.substring( yIdx + 1 ) );
+            } catch ( NumberFormatException e ) {
+                continue;
+            }
+            long[] range = ranges.get( level );
+            if ( range != null && ( x < range[0] || y < range[1] || x > range[2] || y > range[3] ) ) {
+                continue;
+            }
+            List<long[]> list = tiles.get( level );
+            if ( list == null ) {
+                list = new ArrayList<long[]>();
+                tiles.put( level, list );
+            }
+            list.add( new long[] { x, y } );
+        }
+        return tiles;
+    }
+
+    private static class MetaTile {
+
+        final CachingTileMatrix level;
+
+        final long x;
+
+        final long y;
+
+        MetaTile( CachingTileMatrix level, long x, long y ) {
+            this.level = level;
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean equals( Object o ) {
+            if ( !( o instanceof MetaTile ) ) {
+                return false;
+            }
+            MetaTile that = (MetaTile) o;
+            return level == that.level && x == that.x && y == that.y;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = System.identityHashCode( level );
+            hash = 31 * hash + (int) ( x ^ ( x >>> 32 ) );
+            return 31 * hash + (int) ( y ^ ( y >>> 32 ) );
+        }
+    }
+
+    /**
+     * The metatiles of a level that cover a range of tile indices.
+     */
+    private class MetaTileRange {
+
+        final CachingTileMatrix level;
+
+        final long minX, minY, maxX, maxY;
+
+        MetaTileRange( CachingTileMatrix level, long[] tileRange ) {
+            this.level = level;
+            minX = tileRange[0] / metaTileSize;
+            minY = tileRange[1] / metaTileSize;
+            maxX = tileRange[2] / metaTileSize;
+            maxY = tileRange[3] / metaTileSize;
+        }
+
+        long size() {
+            return ( maxX - minX + 1 ) * ( maxY - minY + 1 );
+        }
+    }
+
+    /**
+     * Iterates over the metatiles of a list of ranges, without materializing them.
+     */
+    private class RangeIterator implements Iterator<MetaTile> {
+
+        private final Iterator<MetaTileRange> ranges;
+
+        private MetaTileRange range;
+
+        private long x, y;
+
+        RangeIterator( List<MetaTileRange> ranges ) {
+            this.ranges = ranges.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while ( range == null || y > range.maxY ) {
+                if ( !ranges.hasNext() ) {
+                    return false;
+                }
+                range = ranges.next();
+                x = range.minX;
+                y = range.minY;
+            }
+            return true;
+        }
+
+        @Override
+        public MetaTile next() {
+            if ( !hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            MetaTile metaTile = new MetaTile( range.level, x * metaTileSize, y * metaTileSize );
+            if ( ++x > range.maxX ) {
+                x = range.minX;
+                ++y;
+            }
+            return metaTile;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class SeederThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        SeederThreadFactory( String prefix ) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread( Runnable r ) {
+            String name = prefix.endsWith( "-" ) ? prefix + count.incrementAndGet() : prefix;
+            Thread t = new Thread( r, name );
+            t.setDaemon( true );
+            t.setPriority( Thread.MIN_PRIORITY );
+            return t;
+        }
+    }
+
+}
@@ -0,0 +1,172 @@
+//$HeadURL$
+/*---------------------------------------------------------------------------- 
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+
+import org.deegree.tile.Tile;
+import org.deegree.tile.persistence.cache.CachingTileStoreStatistics.TileMatrixStatistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/** Tests for {@link TileCacheLoader}. */
+public class TileCacheLoaderTest {
+
+    private CacheManager manager;
+
+    private TileCacheLoader loader;
+
+    private CachingTileStoreStatistics stats;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        manager = CacheManager.create();
+        manager.addCache( "tiles" );
+        Cache cache = manager.getCache( "tiles" );
+        stats = new CachingTileStoreStatistics();
+        loader = new TileCacheLoader( cache, stats );
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        manager.removeCache( "tiles" );
+    }
+
+    @Test
+    public void testLoadIsCached()
+                            throws Exception {
+        assertArrayEquals( new byte[] { 1 }, loader.getData( "m", "k", tile( new byte[] { 1 } ) ) );
+        assertTrue( loader.isCached( "k" ) );
+        assertArrayEquals( new byte[] { 1 }, loader.getData( "m", "k", tile( new byte[] { 2 } ) ) );
+    }
+
+    @Test
+    public void testHitsAndMissesAreCountedOnce()
+                            throws Exception {
+        loader.getData( "m", "k", tile( new byte[] { 1 } ) );
+        loader.getData( "m", "k", tile( new byte[] { 1 } ) );
+        TileMatrixStatistics matrixStats = stats.getStatistics( "m" );
+        assertEquals( 1, matrixStats.getMisses() );
+        assertEquals( 1, matrixStats.getHits() );
+    }
+
+    @Test
+    public void testRemoveDuringSlowLoadDiscardsLoadedData()
+                            throws Exception {
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch proceed = new CountDownLatch( 1 );
+        Future<byte[]> outdated = startSlowLoad( started, proceed );
+        assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+
+        // invalidation while the old load is still running
+        assertFalse( loader.remove( "k" ) );
+        proceed.countDown();
+
+        assertArrayEquals( new byte[] { 1 }, outdated.get( 10, TimeUnit.SECONDS ) );
+        assertFalse( loader.isCached( "k" ) );
+        assertArrayEquals( new byte[] { 2 }, loader.getData( "m", "k", tile( new byte[] { 2 } ) ) );
+        assertTrue( loader.isCached( "k" ) );
+    }
+
+    @Test
+    public void testRemoveAllDuringSlowLoadDiscardsLoadedData()
+                            throws Exception {
+        loader.getData( "m", "other", tile( new byte[] { 3 } ) );
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch proceed = new CountDownLatch( 1 );
+        Future<byte[]> outdated = startSlowLoad( started, proceed );
+        assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+
+        // full invalidation while the old load is still running
+        assertEquals( 1, loader.removeAll() );
+        proceed.countDown();
+
+        assertArrayEquals( new byte[] { 1 }, outdated.get( 10, TimeUnit.SECONDS ) );
+        assertFalse( loader.isCached( "k" ) );
+        assertFalse( loader.isCached( "other" ) );
+        assertArrayEquals( new byte[] { 2 }, loader.getData( "m", "k", tile( new byte[] { 2 } ) ) );
+    }
+
+    private Future<byte[]> startSlowLoad( final CountDownLatch started, final CountDownLatch proceed ) {
+        final Tile slow = mock( Tile.class );
+        when( slow.getAsStream() ).thenAnswer( new Answer<InputStream>() {
+            @Override
+            public InputStream answer( InvocationOnMock invocation )
+                                    throws Throwable {
+                started.countDown();
+                proceed.await();
+                return new ByteArrayInputStream( new byte[] { 1 } );
+            }
+        } );
+        return executor.submit( new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return loader.getData( "m", "k", slow );
+            }
+        } );
+    }
+
+    private static Tile tile( byte[] data ) {
+        Tile tile = mock( Tile.class );
+        when( tile.getAsStream() ).thenReturn( new ByteArrayInputStream( data ) );
+        return tile;
+    }
+
+}
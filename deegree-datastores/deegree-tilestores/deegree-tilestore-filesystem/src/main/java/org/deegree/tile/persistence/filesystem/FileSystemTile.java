@@ -48,6 +48,7 @@ import javax.imageio.ImageIO;
 
 import org.deegree.feature.FeatureCollection;
 import org.deegree.geometry.Envelope;
+import org.deegree.tile.FileBackedTile;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileIOException;
 
@@ -59,7 +60,7 @@ import org.deegree.tile.TileIOException;
  * 
  * @version $Revision$, $Date$
  */
-class FileSystemTile implements Tile {
+class FileSystemTile implements FileBackedTile {
 
     private final Envelope bbox;
 
@@ -102,6 +103,11 @@ class FileSystemTile implements Tile {
         }
     }
 
+    @Override
+    public File getFile() {
+        return file;
+    }
+
     @Override
     public Envelope getEnvelope() {
         return bbox;
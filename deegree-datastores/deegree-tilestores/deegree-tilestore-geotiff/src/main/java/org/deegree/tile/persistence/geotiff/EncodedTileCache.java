@@ -0,0 +1,140 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2010 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+ http://www.occamlabs.de/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.geotiff;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+/**
+ * Size bounded LRU cache for encoded GeoTIFF tiles, shared among all levels of a tile store. Tiles are identified by
+ * file, image index, tile column/row and output format, as the same file may be served in several formats.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+final class EncodedTileCache {
+
+    private final LinkedHashMap<Key, byte[]> tiles = new LinkedHashMap<Key, byte[]>( 256, 0.75f, true );
+
+    private final long maxBytes;
+
+    private long bytes;
+
+    /**
+     * @param maxBytes
+     *            maximum total size of the cached tiles in bytes
+     */
+    EncodedTileCache( long maxBytes ) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param format
+     *            mime type of the output format, may be <code>null</code> (PNG)
+     * @return the cached data, or <code>null</code> if the tile is not cached
+     */
+    synchronized byte[] get( File file, int imageIndex, int x, int y, String format ) {
+        return tiles.get( new Key( file, imageIndex, x, y, format ) );
+    }
+
+    /**
+     * Adds a tile, evicting the least recently used tiles if the cache is full. Tiles larger than the cache are not
+     * stored.
+     * 
+     * @param format
+     *            mime type of the output format, may be <code>null</code> (PNG)
+     */
+    synchronized void put( File file, int imageIndex, int x, int y, String format, byte[] data ) {
+        if ( data.length > maxBytes ) {
+            return;
+        }
+        byte[] old = tiles.put( new Key( file, imageIndex, x, y, format ), data );
+        if ( old != null ) {
+            bytes -= old.length;
+        }
+        bytes += data.length;
+        Iterator<Entry<Key, byte[]>> it = tiles.entrySet().iterator();
+        while ( bytes > maxBytes && it.hasNext() ) {
+            bytes -= it.next().getValue().length;
+            it.remove();
+        }
+    }
+
+    private static final class Key {
+
+        private final File file;
+
+        private final int imageIndex, x, y;
+
+        private final String format;
+
+        Key( File file, int imageIndex, int x, int y, String format ) {
+            this.file = file;
+            this.imageIndex = imageIndex;
+            this.x = x;
+            this.y = y;
+            this.format = format;
+        }
+
+        @Override
+        public boolean equals( Object o ) {
+            if ( !( o instanceof Key ) ) {
+                return false;
+            }
+            Key k = (Key) o;
+            return x == k.x && y == k.y && imageIndex == k.imageIndex && file.equals( k.file )
+                   && ( format == null ? k.format == null : format.equals( k.format ) );
+        }
+
+        @Override
+        public int hashCode() {
+            int h = file.hashCode();
+            h = 31 * h + imageIndex;
+            h = 31 * h + x;
+            h = 31 * h + y;
+            return 31 * h + ( format == null ? 0 : format.hashCode() );
+        }
+    }
+
+}
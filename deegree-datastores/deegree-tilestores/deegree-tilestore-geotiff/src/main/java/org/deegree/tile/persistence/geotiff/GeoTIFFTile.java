@@ -78,8 +78,16 @@ public class GeoTIFFTile implements Tile {
 
     private final GenericObjectPool readerPool;
 
+    private final GeoTIFFTileDataLevel level;
+
     public GeoTIFFTile( GenericObjectPool readerPool, int imageIndex, int x, int y, Envelope envelope, int sizeX,
                         int sizeY ) {
+        this( null, readerPool, imageIndex, x, y, envelope, sizeX, sizeY );
+    }
+
+    GeoTIFFTile( GeoTIFFTileDataLevel level, GenericObjectPool readerPool, int imageIndex, int x, int y,
+                 Envelope envelope, int sizeX, int sizeY ) {
+        this.level = level;
         this.readerPool = readerPool;
         this.imageIndex = imageIndex;
         this.x = x;
@@ -127,6 +135,9 @@ public class GeoTIFFTile implements Tile {
     @Override
     public InputStream getAsStream()
                             throws TileIOException {
+        if ( level != null ) {
+            return new ByteArrayInputStream( level.encode( this, x, y ) );
+        }
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         try {
             ImageIO.write( getAsImage(), "png", bos );
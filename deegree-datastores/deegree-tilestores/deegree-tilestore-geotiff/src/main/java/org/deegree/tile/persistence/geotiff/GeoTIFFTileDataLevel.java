@@ -40,18 +40,29 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.tile.persistence.geotiff;
 
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.List;
 
+import javax.imageio.ImageReader;
+
 import org.apache.commons.pool.impl.GenericObjectPool;
 import org.deegree.geometry.Envelope;
 import org.deegree.geometry.GeometryFactory;
 import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileIOException;
 import org.deegree.tile.TileMatrix;
+import org.slf4j.Logger;
 
 /**
  * The <code>GeoTIFFTileMatrix</code> is a tile matrix handing out GeoTIFFTile tiles. It uses an object pool shared
  * among all tiles created by this matrix.
+ * <p>
+ * Encoded tiles are produced here: tiles of JPEG compressed TIFFs are handed out as stored (if enabled and the output
+ * format is JPEG), all other tiles are encoded and kept in the store's encoded tile cache (if configured).
+ * </p>
  * 
  * @author <a href="mailto:schmitz@occamlabs.de">Andreas Schmitz</a>
  * @author last edited by: $Author: mschneider $
@@ -61,8 +72,12 @@ import org.deegree.tile.TileMatrix;
 
 public class GeoTIFFTileDataLevel implements TileDataLevel {
 
+    private static final Logger LOG = getLogger( GeoTIFFTileDataLevel.class );
+
     private final TileMatrix metadata;
 
+    private final File file;
+
     private final int imageIndex;
 
     private final GeometryFactory fac = new GeometryFactory();
@@ -71,8 +86,22 @@ public class GeoTIFFTileDataLevel implements TileDataLevel {
 
     private final int xoff, yoff, numx, numy;
 
+    private final String format;
+
+    private final TileEncoding encoding;
+
+    private volatile boolean nativeJpegChecked;
+
+    private volatile NativeJpegTiles nativeJpeg;
+
     public GeoTIFFTileDataLevel( TileMatrix metadata, File file, int imageIndex, int xoff, int yoff, int numx, int numy ) {
+        this( metadata, file, imageIndex, xoff, yoff, numx, numy, null, TileEncoding.DEFAULT );
+    }
+
+    GeoTIFFTileDataLevel( TileMatrix metadata, File file, int imageIndex, int xoff, int yoff, int numx, int numy,
+                          String format, TileEncoding encoding ) {
         this.metadata = metadata;
+        this.file = file;
         this.imageIndex = imageIndex;
         ImageReaderFactory fac = new ImageReaderFactory( file );
         this.readerPool = new GenericObjectPool( fac );
@@ -80,6 +109,8 @@ public class GeoTIFFTileDataLevel implements TileDataLevel {
         this.yoff = yoff;
         this.numx = numx;
         this.numy = numy;
+        this.format = format;
+        this.encoding = encoding;
     }
 
     @Override
@@ -108,8 +139,71 @@ public class GeoTIFFTileDataLevel implements TileDataLevel {
         double minx = width * x + env.getMin().get0();
         double miny = env.getMax().get1() - height * y;
         Envelope envelope = fac.createEnvelope( minx, miny, minx + width, miny - height, env.getCoordinateSystem() );
-        return new GeoTIFFTile( readerPool, imageIndex, (int) x, (int) y, envelope, (int) metadata.getTilePixelsX(),
-                                (int) metadata.getTilePixelsY() );
+        return new GeoTIFFTile( this, readerPool, imageIndex, (int) x, (int) y, envelope,
+                                (int) metadata.getTilePixelsX(), (int) metadata.getTilePixelsY() );
+    }
+
+    /**
+     * Returns the encoded data of a tile of this level.
+     * 
+     * @param tile
+     *            the tile, must not be <code>null</code>
+     * @param x
+     *            tile column within the TIFF image
+     * @param y
+     *            tile row within the TIFF image
+     * @return the encoded tile, never <code>null</code>
+     * @throws TileIOException
+     */
+    byte[] encode( GeoTIFFTile tile, int x, int y )
+                            throws TileIOException {
+        boolean jpeg = TileEncoding.isJpeg( format );
+        if ( jpeg && encoding.isNativeJpeg() ) {
+            byte[] data = readNativeJpeg( x, y );
+            if ( data != null ) {
+                return data;
+            }
+        }
+        EncodedTileCache cache = encoding.getCache();
+        if ( cache != null ) {
+            byte[] data = cache.get( file, imageIndex, x, y, format );
+            if ( data != null ) {
+                return data;
+            }
+        }
+        BufferedImage img = tile.getAsImage();
+        byte[] data = encoding.encode( img, format );
+        if ( cache != null ) {
+            cache.put( file, imageIndex, x, y, format, data );
+        }
+        return data;
+    }
+
+    private byte[] readNativeJpeg( int x, int y ) {
+        ImageReader reader = null;
+        try {
+            reader = (ImageReader) readerPool.borrowObject();
+            if ( !nativeJpegChecked ) {
+                synchronized ( this ) {
+                    if ( !nativeJpegChecked ) {
+                        nativeJpeg = NativeJpegTiles.create( reader, imageIndex, (int) metadata.getTilePixelsX(),
+                                                             (int) metadata.getTilePixelsY() );
+                        nativeJpegChecked = true;
+                    }
+                }
+            }
+            return nativeJpeg == null ? null : nativeJpeg.read( reader, x, y );
+        } catch ( Exception e ) {
+            LOG.debug( "Could not read native JPEG tile, encoding it instead: {}", e.getLocalizedMessage() );
+            LOG.trace( "Stack trace:", e );
+            return null;
+        } finally {
+            try {
+                readerPool.returnObject( reader );
+            } catch ( Exception e ) {
+                // ignore closing error
+            }
+        }
     }
 
     @Override
@@ -51,6 +51,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Locale;
 import java.util.Map;
 
 import javax.imageio.ImageReader;
@@ -60,6 +61,7 @@ import javax.imageio.stream.ImageInputStream;
 import org.deegree.geometry.Envelope;
 import org.deegree.tile.TileDataSet;
 import org.deegree.tile.persistence.TileStore;
+import org.deegree.tile.persistence.geotiff.PngEncoder.Filter;
 import org.deegree.tile.persistence.geotiff.jaxb.GeoTIFFTileStoreJAXB;
 import org.deegree.workspace.ResourceInitException;
 import org.deegree.workspace.ResourceLocation;
@@ -78,6 +80,10 @@ class GeoTiffTileDataSetMapBuilder {
 
     private static final Logger LOG = getLogger( GeoTiffTileDataSetMapBuilder.class );
 
+    private static final int DEFAULT_TILE_CACHE_SIZE = 32;
+
+    private static final int DEFAULT_PNG_COMPRESSION_LEVEL = 4;
+
     private GeoTIFFTileStoreJAXB cfg;
 
     private GeoTiffTileDataSetBuilder builder;
@@ -102,6 +108,8 @@ class GeoTiffTileDataSetMapBuilder {
             throw new ResourceInitException( "No TIFF reader was found for imageio." );
         }
 
+        TileEncoding encoding = buildEncoding( cfg.getEncoding() );
+
         Map<String, TileDataSet> map = new HashMap<String, TileDataSet>();
         for ( GeoTIFFTileStoreJAXB.TileDataSet tds : cfg.getTileDataSet() ) {
             String id = tds.getIdentifier();
@@ -128,9 +136,26 @@ class GeoTiffTileDataSetMapBuilder {
 
             LOG.debug( "Envelope from GeoTIFF was {}.", envelope );
 
-            map.put( id, builder.buildTileDataSet( tds, location, envelope ) );
+            map.put( id, builder.buildTileDataSet( tds, location, envelope, encoding ) );
         }
         return map;
     }
 
+    private static TileEncoding buildEncoding( GeoTIFFTileStoreJAXB.Encoding cfg ) {
+        boolean nativeJpeg = false;
+        int cacheSize = DEFAULT_TILE_CACHE_SIZE;
+        int level = DEFAULT_PNG_COMPRESSION_LEVEL;
+        Filter filter = Filter.SUB;
+        if ( cfg != null ) {
+            nativeJpeg = cfg.isNativeJpeg();
+            cacheSize = cfg.getTileCacheSize().intValue();
+            level = cfg.getPngCompressionLevel().intValue();
+            filter = Filter.valueOf( cfg.getPngFilter().toUpperCase( Locale.ENGLISH ) );
+        }
+        LOG.debug( "Tile encoding: native JPEG {}, tile cache {} MB, PNG compression level {}, PNG filter {}.",
+                   new Object[] { nativeJpeg, cacheSize, level, filter } );
+        EncodedTileCache cache = cacheSize > 0 ? new EncodedTileCache( cacheSize * 1024L * 1024L ) : null;
+        return new TileEncoding( nativeJpeg, cache, new PngEncoder( level, filter ) );
+    }
+
 }
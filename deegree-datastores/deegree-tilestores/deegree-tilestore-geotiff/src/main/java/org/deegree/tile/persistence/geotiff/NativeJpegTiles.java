@@ -0,0 +1,222 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2010 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+ http://www.occamlabs.de/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.geotiff;
+
+import static it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet.COMPRESSION_JPEG;
+import static it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet.PHOTOMETRIC_INTERPRETATION_BLACK_IS_ZERO;
+import static it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet.PHOTOMETRIC_INTERPRETATION_Y_CB_CR;
+import static it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet.PLANAR_CONFIGURATION_CHUNKY;
+import static it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet.TAG_COMPRESSION;
+import static it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet.TAG_IMAGE_LENGTH;
+import static it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet.TAG_IMAGE_WIDTH;
+import static it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet.TAG_JPEG_TABLES;
+import static it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet.TAG_PHOTOMETRIC_INTERPRETATION;
+import static it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet.TAG_PLANAR_CONFIGURATION;
+import static it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet.TAG_SAMPLES_PER_PIXEL;
+import static it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet.TAG_TILE_BYTE_COUNTS;
+import static it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet.TAG_TILE_LENGTH;
+import static it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet.TAG_TILE_OFFSETS;
+import static it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet.TAG_TILE_WIDTH;
+import static org.slf4j.LoggerFactory.getLogger;
+import it.geosolutions.imageio.plugins.tiff.TIFFField;
+import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageMetadata;
+
+import java.io.IOException;
+
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+
+import org.slf4j.Logger;
+
+/**
+ * Gives access to the compressed data of the tiles of a JPEG compressed TIFF image, so tiles can be served as JPEG
+ * without decoding and encoding them again.
+ * <p>
+ * Only chunky YCbCr (three samples) and gray (one sample) images whose TIFF tiles have exactly the size of the tile
+ * matrix tiles are supported. If the image has a <code>JPEGTables</code> tag (abbreviated JPEG streams), the tables
+ * are inserted into each tile so the result is a complete JPEG stream.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+final class NativeJpegTiles {
+
+    private static final Logger LOG = getLogger( NativeJpegTiles.class );
+
+    private final TIFFField offsets;
+
+    private final TIFFField byteCounts;
+
+    private final byte[] tables;
+
+    private final int tilesAcross, tilesDown;
+
+    private NativeJpegTiles( TIFFField offsets, TIFFField byteCounts, byte[] tables, int tilesAcross, int tilesDown ) {
+        this.offsets = offsets;
+        this.byteCounts = byteCounts;
+        this.tables = tables;
+        this.tilesAcross = tilesAcross;
+        this.tilesDown = tilesDown;
+    }
+
+    /**
+     * Checks whether the tiles of an image can be served as native JPEG.
+     * 
+     * @param reader
+     *            reader with the TIFF file as input, must not be <code>null</code>
+     * @param imageIndex
+     *            index of the image (overview level) within the TIFF file
+     * @param tileWidth
+     *            expected tile width in pixels
+     * @param tileHeight
+     *            expected tile height in pixels
+     * @return the tile accessor, or <code>null</code> if the image is not suitable
+     * @throws IOException
+     *             if the image metadata could not be read
+     */
+    static NativeJpegTiles create( ImageReader reader, int imageIndex, int tileWidth, int tileHeight )
+                            throws IOException {
+        IIOMetadata md = reader.getImageMetadata( imageIndex );
+        if ( !( md instanceof TIFFImageMetadata ) ) {
+            return null;
+        }
+        TIFFImageMetadata tiff = (TIFFImageMetadata) md;
+        if ( getInt( tiff, TAG_COMPRESSION, -1 ) != COMPRESSION_JPEG ) {
+            LOG.debug( "Image {} is not JPEG compressed, tiles will be encoded.", imageIndex );
+            return null;
+        }
+        int photometric = getInt( tiff, TAG_PHOTOMETRIC_INTERPRETATION, -1 );
+        int samples = getInt( tiff, TAG_SAMPLES_PER_PIXEL, 1 );
+        boolean ycbcr = photometric == PHOTOMETRIC_INTERPRETATION_Y_CB_CR && samples == 3;
+        boolean gray = photometric == PHOTOMETRIC_INTERPRETATION_BLACK_IS_ZERO && samples == 1;
+        if ( !( ycbcr || gray ) ) {
+            LOG.debug( "Photometric interpretation {} with {} samples of image {} is not supported for native JPEG.",
+                       new Object[] { photometric, samples, imageIndex } );
+            return null;
+        }
+        if ( getInt( tiff, TAG_PLANAR_CONFIGURATION, PLANAR_CONFIGURATION_CHUNKY ) != PLANAR_CONFIGURATION_CHUNKY ) {
+            return null;
+        }
+        int width = getInt( tiff, TAG_TILE_WIDTH, -1 );
+        int height = getInt( tiff, TAG_TILE_LENGTH, -1 );
+        if ( width != tileWidth || height != tileHeight ) {
+            LOG.debug( "TIFF tile size {}x{} of image {} does not match the tile matrix, tiles will be encoded.",
+                       new Object[] { width, height, imageIndex } );
+            return null;
+        }
+        TIFFField offsets = tiff.getTIFFField( TAG_TILE_OFFSETS );
+        TIFFField byteCounts = tiff.getTIFFField( TAG_TILE_BYTE_COUNTS );
+        if ( offsets == null || byteCounts == null ) {
+            return null;
+        }
+        int tilesAcross = ( getInt( tiff, TAG_IMAGE_WIDTH, 0 ) + width - 1 ) / width;
+        int tilesDown = ( getInt( tiff, TAG_IMAGE_LENGTH, 0 ) + height - 1 ) / height;
+        if ( offsets.getCount() < tilesAcross * tilesDown || byteCounts.getCount() < tilesAcross * tilesDown ) {
+            return null;
+        }
+        TIFFField tablesField = tiff.getTIFFField( TAG_JPEG_TABLES );
+        byte[] tables = null;
+        if ( tablesField != null ) {
+            tables = tablesField.getAsBytes();
+            // strip SOI and EOI markers, only the table segments are inserted into the tiles
+            if ( tables.length < 4 || ( tables[0] & 0xff ) != 0xff || ( tables[1] & 0xff ) != 0xd8 ) {
+                return null;
+            }
+            int end = tables.length;
+            if ( ( tables[end - 2] & 0xff ) == 0xff && ( tables[end - 1] & 0xff ) == 0xd9 ) {
+                end -= 2;
+            }
+            byte[] stripped = new byte[end - 2];
+            System.arraycopy( tables, 2, stripped, 0, stripped.length );
+            tables = stripped;
+        }
+        LOG.debug( "Serving tiles of image {} as native JPEG.", imageIndex );
+        return new NativeJpegTiles( offsets, byteCounts, tables, tilesAcross, tilesDown );
+    }
+
+    /**
+     * Reads the JPEG data of a tile.
+     * 
+     * @param reader
+     *            reader with the TIFF file as input, must not be <code>null</code> and must not be used concurrently
+     * @param x
+     *            tile column within the TIFF image
+     * @param y
+     *            tile row within the TIFF image
+     * @return a complete JPEG stream, or <code>null</code> if the tile is not present in the image
+     * @throws IOException
+     */
+    byte[] read( ImageReader reader, int x, int y )
+                            throws IOException {
+        if ( x < 0 || y < 0 || x >= tilesAcross || y >= tilesDown ) {
+            return null;
+        }
+        int idx = y * tilesAcross + x;
+        long offset = offsets.getAsLong( idx );
+        long length = byteCounts.getAsLong( idx );
+        if ( offset <= 0 || length < 4 || length > Integer.MAX_VALUE ) {
+            return null;
+        }
+        byte[] tile = new byte[(int) length];
+        ImageInputStream in = (ImageInputStream) reader.getInput();
+        in.seek( offset );
+        in.readFully( tile );
+        if ( tables == null ) {
+            return tile;
+        }
+        byte[] res = new byte[tile.length + tables.length];
+        // SOI, tables, then the rest of the tile
+        res[0] = tile[0];
+        res[1] = tile[1];
+        System.arraycopy( tables, 0, res, 2, tables.length );
+        System.arraycopy( tile, 2, res, 2 + tables.length, tile.length - 2 );
+        return res;
+    }
+
+    private static int getInt( TIFFImageMetadata md, int tag, int defaultValue ) {
+        TIFFField field = md.getTIFFField( tag );
+        return field == null ? defaultValue : field.getAsInt( 0 );
+    }
+
+}
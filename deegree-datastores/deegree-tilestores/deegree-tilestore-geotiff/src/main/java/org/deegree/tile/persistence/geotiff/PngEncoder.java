@@ -0,0 +1,258 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2010 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+ http://www.occamlabs.de/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.geotiff;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Minimal PNG encoder with configurable deflate level and scanline filter.
+ * <p>
+ * The ImageIO PNG writer always uses the highest compression level and adaptive filtering, which makes encoding tiles
+ * CPU-bound. This encoder writes 8 bit gray, RGB or RGBA images and lets the caller trade size for speed.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+final class PngEncoder {
+
+    /**
+     * PNG scanline filters, see the PNG specification, section 9.
+     */
+    enum Filter {
+        /** No filtering, fastest. */
+        NONE,
+        /** Difference to the pixel on the left. */
+        SUB,
+        /** Difference to the pixel above. */
+        UP,
+        /** Difference to the mean of the left and above pixels. */
+        AVERAGE,
+        /** Difference to the Paeth predictor. */
+        PAETH,
+        /** Chooses the best filter for each scanline (smallest output, slowest). */
+        ADAPTIVE
+    }
+
+    private static final byte[] SIGNATURE = { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+
+    private final int compressionLevel;
+
+    private final Filter filter;
+
+    /**
+     * @param compressionLevel
+     *            deflate level, between <code>0</code> (no compression) and <code>9</code> (best compression)
+     * @param filter
+     *            scanline filter, must not be <code>null</code>
+     */
+    PngEncoder( int compressionLevel, Filter filter ) {
+        if ( compressionLevel < 0 || compressionLevel > 9 ) {
+            throw new IllegalArgumentException( "Invalid PNG compression level: " + compressionLevel );
+        }
+        this.compressionLevel = compressionLevel;
+        this.filter = filter;
+    }
+
+    /**
+     * Encodes an image.
+     * 
+     * @param img
+     *            image to encode, must not be <code>null</code>
+     * @return the PNG data, never <code>null</code>
+     */
+    byte[] encode( BufferedImage img ) {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        boolean gray = img.getType() == BufferedImage.TYPE_BYTE_GRAY;
+        boolean alpha = !gray && img.getColorModel().hasAlpha();
+        int bpp = gray ? 1 : ( alpha ? 4 : 3 );
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream( width * height * bpp / 4 + 1024 );
+            DataOutputStream out = new DataOutputStream( bos );
+            out.write( SIGNATURE );
+
+            ByteArrayOutputStream header = new ByteArrayOutputStream( 13 );
+            DataOutputStream hdr = new DataOutputStream( header );
+            hdr.writeInt( width );
+            hdr.writeInt( height );
+            hdr.writeByte( 8 );
+            hdr.writeByte( gray ? 0 : ( alpha ? 6 : 2 ) );
+            hdr.writeByte( 0 );
+            hdr.writeByte( 0 );
+            hdr.writeByte( 0 );
+            writeChunk( out, "IHDR", header.toByteArray() );
+
+            ByteArrayOutputStream idat = new ByteArrayOutputStream( width * height * bpp / 4 + 1024 );
+            Deflater deflater = new Deflater( compressionLevel );
+            try {
+                DeflaterOutputStream dos = new DeflaterOutputStream( idat, deflater, 16384 );
+                writeScanlines( img, dos, bpp, gray, alpha );
+                dos.finish();
+            } finally {
+                deflater.end();
+            }
+            writeChunk( out, "IDAT", idat.toByteArray() );
+            writeChunk( out, "IEND", new byte[0] );
+            out.flush();
+            return bos.toByteArray();
+        } catch ( IOException e ) {
+            // cannot happen when writing to memory
+            throw new IllegalStateException( e.getMessage(), e );
+        }
+    }
+
+    private void writeScanlines( BufferedImage img, OutputStream out, int bpp, boolean gray, boolean alpha )
+                            throws IOException {
+        int width = img.getWidth();
+        int rowBytes = width * bpp;
+        int[] argb = new int[width];
+        byte[] prev = new byte[rowBytes];
+        byte[] cur = new byte[rowBytes];
+        byte[] filtered = new byte[rowBytes + 1];
+        byte[] best = filter == Filter.ADAPTIVE ? new byte[rowBytes + 1] : null;
+        for ( int y = 0; y < img.getHeight(); ++y ) {
+            if ( gray ) {
+                img.getRaster().getDataElements( 0, y, width, 1, cur );
+            } else {
+                img.getRGB( 0, y, width, 1, argb, 0, width );
+                int j = 0;
+                for ( int i = 0; i < width; ++i ) {
+                    int p = argb[i];
+                    cur[j++] = (byte) ( p >> 16 );
+                    cur[j++] = (byte) ( p >> 8 );
+                    cur[j++] = (byte) p;
+                    if ( alpha ) {
+                        cur[j++] = (byte) ( p >>> 24 );
+                    }
+                }
+            }
+            if ( filter == Filter.ADAPTIVE ) {
+                long bestSum = Long.MAX_VALUE;
+                for ( Filter f : Filter.values() ) {
+                    if ( f != Filter.ADAPTIVE ) {
+                        long sum = applyFilter( f, cur, prev, bpp, filtered );
+                        if ( sum < bestSum ) {
+                            bestSum = sum;
+                            System.arraycopy( filtered, 0, best, 0, filtered.length );
+                        }
+                    }
+                }
+                out.write( best );
+            } else {
+                applyFilter( filter, cur, prev, bpp, filtered );
+                out.write( filtered );
+            }
+            byte[] tmp = prev;
+            prev = cur;
+            cur = tmp;
+        }
+    }
+
+    /**
+     * Filters a scanline into <code>out</code> (filter type byte first).
+     * 
+     * @return sum of the absolute values of the filtered bytes (interpreted as signed), used to rate the filter
+     */
+    static long applyFilter( Filter f, byte[] cur, byte[] prev, int bpp, byte[] out ) {
+        out[0] = (byte) f.ordinal();
+        long sum = 0;
+        for ( int i = 0; i < cur.length; ++i ) {
+            int x = cur[i] & 0xff;
+            int a = i >= bpp ? cur[i - bpp] & 0xff : 0;
+            int b = prev[i] & 0xff;
+            int c = i >= bpp ? prev[i - bpp] & 0xff : 0;
+            int v;
+            switch ( f ) {
+            case SUB:
+                v = x - a;
+                break;
+            case UP:
+                v = x - b;
+                break;
+            case AVERAGE:
+                v = x - ( ( a + b ) >> 1 );
+                break;
+            case PAETH:
+                v = x - paeth( a, b, c );
+                break;
+            default:
+                v = x;
+            }
+            byte r = (byte) v;
+            out[i + 1] = r;
+            sum += Math.abs( r );
+        }
+        return sum;
+    }
+
+    private static int paeth( int a, int b, int c ) {
+        int p = a + b - c;
+        int pa = Math.abs( p - a );
+        int pb = Math.abs( p - b );
+        int pc = Math.abs( p - c );
+        if ( pa <= pb && pa <= pc ) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    private static void writeChunk( DataOutputStream out, String type, byte[] data )
+                            throws IOException {
+        byte[] typeBytes = type.getBytes( "US-ASCII" );
+        CRC32 crc = new CRC32();
+        crc.update( typeBytes );
+        crc.update( data );
+        out.writeInt( data.length );
+        out.write( typeBytes );
+        out.write( data );
+        out.writeInt( (int) crc.getValue() );
+    }
+
+}
@@ -0,0 +1,138 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2010 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+ http://www.occamlabs.de/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.geotiff;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.deegree.tile.TileIOException;
+import org.deegree.tile.persistence.geotiff.PngEncoder.Filter;
+
+/**
+ * Encoding settings of a GeoTIFF tile store.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+final class TileEncoding {
+
+    /** Settings used if nothing is configured: no native JPEG, no cache, fast PNG encoding. */
+    static final TileEncoding DEFAULT = new TileEncoding( false, null, new PngEncoder( 4, Filter.SUB ) );
+
+    private final boolean nativeJpeg;
+
+    private final EncodedTileCache cache;
+
+    private final PngEncoder png;
+
+    /**
+     * @param nativeJpeg
+     *            true, if the tiles of JPEG compressed TIFFs should be served without re-encoding
+     * @param cache
+     *            cache for encoded tiles, may be <code>null</code>
+     * @param png
+     *            encoder used for PNG output, must not be <code>null</code>
+     */
+    TileEncoding( boolean nativeJpeg, EncodedTileCache cache, PngEncoder png ) {
+        this.nativeJpeg = nativeJpeg;
+        this.cache = cache;
+        this.png = png;
+    }
+
+    boolean isNativeJpeg() {
+        return nativeJpeg;
+    }
+
+    /**
+     * @return the encoded tile cache, may be <code>null</code>
+     */
+    EncodedTileCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @param format
+     *            mime type of the output format, may be <code>null</code> (PNG)
+     * @return true, if the format is JPEG
+     */
+    static boolean isJpeg( String format ) {
+        return format != null && ( format.contains( "jpeg" ) || format.contains( "jpg" ) );
+    }
+
+    /**
+     * Encodes an image as JPEG (if the format is JPEG) or PNG (otherwise).
+     * 
+     * @param img
+     *            image to encode, must not be <code>null</code>
+     * @param format
+     *            mime type of the output format, may be <code>null</code> (PNG)
+     * @return the encoded image, never <code>null</code>
+     * @throws TileIOException
+     */
+    byte[] encode( BufferedImage img, String format )
+                            throws TileIOException {
+        if ( !isJpeg( format ) ) {
+            return png.encode( img );
+        }
+        if ( img.getColorModel().hasAlpha() ) {
+            BufferedImage rgb = new BufferedImage( img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_RGB );
+            Graphics2D g = rgb.createGraphics();
+            g.drawImage( img, 0, 0, null );
+            g.dispose();
+            img = rgb;
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try {
+            if ( !ImageIO.write( img, "jpeg", bos ) ) {
+                throw new TileIOException( "No JPEG writer available for tile image." );
+            }
+        } catch ( IOException e ) {
+            throw new TileIOException( "Error encoding image: " + e.getMessage(), e );
+        }
+        return bos.toByteArray();
+    }
+
+}
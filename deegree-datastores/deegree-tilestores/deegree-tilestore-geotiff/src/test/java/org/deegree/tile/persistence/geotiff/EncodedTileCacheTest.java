@@ -0,0 +1,105 @@
+//$HeadURL$
+/*---------------------------------------------------------------------------- 
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.geotiff;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+
+import org.junit.Test;
+
+/** Tests for {@link EncodedTileCache}. */
+public class EncodedTileCacheTest {
+
+    private static final File FILE = new File( "test.tif" );
+
+    @Test
+    public void testGetAndPut() {
+        EncodedTileCache cache = new EncodedTileCache( 100 );
+        assertNull( cache.get( FILE, 0, 1, 2, "image/png" ) );
+        cache.put( FILE, 0, 1, 2, "image/png", new byte[] { 1 } );
+        assertArrayEquals( new byte[] { 1 }, cache.get( FILE, 0, 1, 2, "image/png" ) );
+        assertNull( cache.get( FILE, 1, 1, 2, "image/png" ) );
+        assertNull( cache.get( FILE, 0, 2, 1, "image/png" ) );
+        assertNull( cache.get( new File( "other.tif" ), 0, 1, 2, "image/png" ) );
+    }
+
+    @Test
+    public void testFormatsOfSameFileAreCachedSeparately() {
+        EncodedTileCache cache = new EncodedTileCache( 100 );
+        cache.put( FILE, 0, 1, 2, "image/png", new byte[] { 1 } );
+        assertNull( cache.get( FILE, 0, 1, 2, "image/jpeg" ) );
+        cache.put( FILE, 0, 1, 2, "image/jpeg", new byte[] { 2 } );
+        cache.put( FILE, 0, 1, 2, null, new byte[] { 3 } );
+        assertArrayEquals( new byte[] { 1 }, cache.get( FILE, 0, 1, 2, "image/png" ) );
+        assertArrayEquals( new byte[] { 2 }, cache.get( FILE, 0, 1, 2, "image/jpeg" ) );
+        assertArrayEquals( new byte[] { 3 }, cache.get( FILE, 0, 1, 2, null ) );
+    }
+
+    @Test
+    public void testLeastRecentlyUsedTilesAreEvicted() {
+        EncodedTileCache cache = new EncodedTileCache( 20 );
+        cache.put( FILE, 0, 0, 0, null, new byte[8] );
+        cache.put( FILE, 0, 1, 0, null, new byte[8] );
+        // touch the first tile, so the second one is evicted
+        cache.get( FILE, 0, 0, 0, null );
+        cache.put( FILE, 0, 2, 0, null, new byte[8] );
+        assertArrayEquals( new byte[8], cache.get( FILE, 0, 0, 0, null ) );
+        assertNull( cache.get( FILE, 0, 1, 0, null ) );
+        assertArrayEquals( new byte[8], cache.get( FILE, 0, 2, 0, null ) );
+    }
+
+    @Test
+    public void testReplacedTileIsAccountedOnce() {
+        EncodedTileCache cache = new EncodedTileCache( 20 );
+        cache.put( FILE, 0, 0, 0, null, new byte[8] );
+        cache.put( FILE, 0, 0, 0, null, new byte[8] );
+        cache.put( FILE, 0, 1, 0, null, new byte[8] );
+        assertArrayEquals( new byte[8], cache.get( FILE, 0, 0, 0, null ) );
+        assertArrayEquals( new byte[8], cache.get( FILE, 0, 1, 0, null ) );
+    }
+
+    @Test
+    public void testTilesLargerThanCacheAreNotStored() {
+        EncodedTileCache cache = new EncodedTileCache( 4 );
+        cache.put( FILE, 0, 0, 0, null, new byte[2] );
+        cache.put( FILE, 0, 1, 0, null, new byte[5] );
+        assertNull( cache.get( FILE, 0, 1, 0, null ) );
+        assertArrayEquals( new byte[2], cache.get( FILE, 0, 0, 0, null ) );
+    }
+
+}
@@ -0,0 +1,172 @@
+//$HeadURL$
+/*---------------------------------------------------------------------------- 
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.geotiff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageReaderSpi;
+import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageWriterSpi;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.junit.After;
+import org.junit.Test;
+
+/** Tests for {@link NativeJpegTiles}. */
+public class NativeJpegTilesTest {
+
+    private File file;
+
+    private ImageReader reader;
+
+    @After
+    public void tearDown()
+                            throws IOException {
+        if ( reader != null ) {
+            ( (ImageInputStream) reader.getInput() ).close();
+            reader.dispose();
+        }
+        if ( file != null ) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testJpegTilesAreReadAsStored()
+                            throws IOException {
+        BufferedImage img = createImage();
+        open( img, "JPEG", 64 );
+        NativeJpegTiles tiles = NativeJpegTiles.create( reader, 0, 64, 64 );
+        assertNotNull( tiles );
+        for ( int y = 0; y < 2; y++ ) {
+            for ( int x = 0; x < 2; x++ ) {
+                byte[] data = tiles.read( reader, x, y );
+                assertNotNull( data );
+                // complete JPEG stream: SOI ... EOI
+                assertEquals( 0xff, data[0] & 0xff );
+                assertEquals( 0xd8, data[1] & 0xff );
+                assertEquals( 0xff, data[data.length - 2] & 0xff );
+                assertEquals( 0xd9, data[data.length - 1] & 0xff );
+                BufferedImage tile = ImageIO.read( new ByteArrayInputStream( data ) );
+                assertEquals( 64, tile.getWidth() );
+                assertEquals( 64, tile.getHeight() );
+                // lossy, but the content must be the tile at x/y
+                int expected = img.getRaster().getSample( x * 64 + 32, y * 64 + 32, 0 );
+                int actual = tile.getRaster().getSample( 32, 32, 0 );
+                assertTrue( "Tile " + x + "/" + y + ": " + expected + " vs. " + actual,
+                            Math.abs( expected - actual ) < 16 );
+            }
+        }
+    }
+
+    @Test
+    public void testTilesOutsideImageAreNull()
+                            throws IOException {
+        open( createImage(), "JPEG", 64 );
+        NativeJpegTiles tiles = NativeJpegTiles.create( reader, 0, 64, 64 );
+        assertNotNull( tiles );
+        assertNull( tiles.read( reader, 2, 0 ) );
+        assertNull( tiles.read( reader, 0, 2 ) );
+        assertNull( tiles.read( reader, -1, 0 ) );
+    }
+
+    @Test
+    public void testOtherCompressionIsNotSupported()
+                            throws IOException {
+        open( createImage(), "Deflate", 64 );
+        assertNull( NativeJpegTiles.create( reader, 0, 64, 64 ) );
+    }
+
+    @Test
+    public void testTileSizeMismatchIsNotSupported()
+                            throws IOException {
+        open( createImage(), "JPEG", 64 );
+        assertNull( NativeJpegTiles.create( reader, 0, 128, 128 ) );
+    }
+
+    private void open( BufferedImage img, String compression, int tileSize )
+                            throws IOException {
+        file = File.createTempFile( "nativejpeg", ".tif" );
+        ImageWriter writer = new TIFFImageWriterSpi().createWriterInstance();
+        ImageOutputStream out = ImageIO.createImageOutputStream( file );
+        try {
+            writer.setOutput( out );
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setTilingMode( ImageWriteParam.MODE_EXPLICIT );
+            param.setTiling( tileSize, tileSize, 0, 0 );
+            param.setCompressionMode( ImageWriteParam.MODE_EXPLICIT );
+            param.setCompressionType( compression );
+            writer.write( null, new IIOImage( img, null, null ), param );
+        } finally {
+            out.close();
+            writer.dispose();
+        }
+        reader = new TIFFImageReaderSpi().createReaderInstance();
+        reader.setInput( ImageIO.createImageInputStream( file ), false, true );
+    }
+
+    private static BufferedImage createImage() {
+        // gray, so the TIFF is written with a single sample (BlackIsZero)
+        BufferedImage img = new BufferedImage( 128, 128, BufferedImage.TYPE_BYTE_GRAY );
+        Graphics2D g = img.createGraphics();
+        g.setColor( new Color( 40, 40, 40 ) );
+        g.fillRect( 0, 0, 64, 64 );
+        g.setColor( new Color( 100, 100, 100 ) );
+        g.fillRect( 64, 0, 64, 64 );
+        g.setColor( new Color( 160, 160, 160 ) );
+        g.fillRect( 0, 64, 64, 64 );
+        g.setColor( new Color( 220, 220, 220 ) );
+        g.fillRect( 64, 64, 64, 64 );
+        g.dispose();
+        return img;
+    }
+
+}
@@ -0,0 +1,128 @@
+//$HeadURL$
+/*---------------------------------------------------------------------------- 
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.geotiff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.deegree.tile.persistence.geotiff.PngEncoder.Filter;
+import org.junit.Test;
+
+/** Tests for {@link PngEncoder}. */
+public class PngEncoderTest {
+
+    @Test
+    public void testAllFiltersRoundtripRgb()
+                            throws IOException {
+        BufferedImage img = createImage( BufferedImage.TYPE_INT_RGB );
+        for ( Filter filter : Filter.values() ) {
+            assertRoundtrip( img, new PngEncoder( 4, filter ), false );
+        }
+    }
+
+    @Test
+    public void testAllFiltersRoundtripArgb()
+                            throws IOException {
+        BufferedImage img = createImage( BufferedImage.TYPE_INT_ARGB );
+        for ( Filter filter : Filter.values() ) {
+            assertRoundtrip( img, new PngEncoder( 4, filter ), true );
+        }
+    }
+
+    @Test
+    public void testRoundtripGray()
+                            throws IOException {
+        BufferedImage img = createImage( BufferedImage.TYPE_BYTE_GRAY );
+        for ( Filter filter : Filter.values() ) {
+            assertRoundtrip( img, new PngEncoder( 4, filter ), false );
+        }
+    }
+
+    @Test
+    public void testCompressionLevels()
+                            throws IOException {
+        BufferedImage img = createImage( BufferedImage.TYPE_INT_RGB );
+        for ( int level = 0; level <= 9; level++ ) {
+            assertRoundtrip( img, new PngEncoder( level, Filter.SUB ), false );
+        }
+        int best = new PngEncoder( 9, Filter.SUB ).encode( img ).length;
+        assertTrue( best < new PngEncoder( 0, Filter.SUB ).encode( img ).length );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCompressionLevel() {
+        new PngEncoder( 10, Filter.NONE );
+    }
+
+    private static void assertRoundtrip( BufferedImage img, PngEncoder encoder, boolean alpha )
+                            throws IOException {
+        BufferedImage decoded = ImageIO.read( new ByteArrayInputStream( encoder.encode( img ) ) );
+        assertEquals( img.getWidth(), decoded.getWidth() );
+        assertEquals( img.getHeight(), decoded.getHeight() );
+        assertEquals( alpha, decoded.getColorModel().hasAlpha() );
+        for ( int y = 0; y < img.getHeight(); y++ ) {
+            for ( int x = 0; x < img.getWidth(); x++ ) {
+                assertEquals( "Pixel " + x + "," + y, img.getRGB( x, y ), decoded.getRGB( x, y ) );
+            }
+        }
+    }
+
+    private static BufferedImage createImage( int type ) {
+        BufferedImage img = new BufferedImage( 67, 45, type );
+        Graphics2D g = img.createGraphics();
+        g.setColor( new Color( 10, 200, 30, 128 ) );
+        g.fillRect( 5, 5, 30, 20 );
+        g.setColor( Color.BLUE );
+        g.drawOval( 20, 10, 40, 30 );
+        g.dispose();
+        // noise, so every filter has something to predict
+        Random random = new Random( 3 );
+        for ( int i = 0; i < 200; i++ ) {
+            img.setRGB( random.nextInt( img.getWidth() ), random.nextInt( img.getHeight() ), random.nextInt() );
+        }
+        return img;
+    }
+
+}
@@ -0,0 +1,202 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.remotewms;
+
+import static java.awt.image.BufferedImage.TYPE_INT_RGB;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.IOUtils;
+import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.geometry.Envelope;
+import org.deegree.protocol.wms.client.WMSClient;
+import org.deegree.protocol.wms.ops.GetMap;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileIOException;
+
+/**
+ * A block of adjacent tiles that is fetched from the remote WMS by a single {@link GetMap} request and cut into tiles
+ * afterwards.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class RemoteWMSMetaTile {
+
+    private final WMSClient client;
+
+    private final GetMap gm;
+
+    private final String outputFormat;
+
+    private BufferedImage image;
+
+    /**
+     * Creates a new {@link RemoteWMSMetaTile} instance.
+     * 
+     * @param client
+     *            client to use for performing the {@link GetMap} request, never <code>null</code>
+     * @param gm
+     *            request for retrieving the image of the whole block, never <code>null</code>
+     * @param outputFormat
+     *            ImageIO format to encode the tiles in, never <code>null</code>
+     */
+    RemoteWMSMetaTile( WMSClient client, GetMap gm, String outputFormat ) {
+        this.client = client;
+        this.gm = gm;
+        this.outputFormat = outputFormat;
+    }
+
+    /**
+     * Returns a tile of this block.
+     * 
+     * @param tile
+     *            the single tile, used for the envelope and feature info requests, never <code>null</code>
+     * @param offsetX
+     *            pixel offset of the tile in the block image
+     * @param offsetY
+     *            pixel offset of the tile in the block image
+     * @return tile whose image is cut from the block image, never <code>null</code>
+     */
+    Tile getTile( RemoteWMSTile tile, int offsetX, int offsetY ) {
+        return new Part( tile, offsetX, offsetY );
+    }
+
+    private synchronized BufferedImage getImage() {
+        if ( image != null ) {
+            return image;
+        }
+        InputStream in = null;
+        try {
+            in = client.getMap( gm );
+            if ( in == null ) {
+                throw new TileIOException( "A metatile could not be fetched from remote WMS for an unknown reason." );
+            }
+            image = ImageIO.read( in );
+            if ( image == null ) {
+                throw new TileIOException( "The metatile returned by the remote WMS could not be decoded." );
+            }
+            return image;
+        } catch ( SocketTimeoutException e ) {
+            String msg = "Error performing GetMap request, read timed out (timeout configured is "
+                         + client.getReadTimeout() + " seconds).";
+            throw new TileIOException( msg );
+        } catch ( UnknownHostException e ) {
+            throw new TileIOException( "Error performing GetMap request, host could not be resolved: " + e.getMessage() );
+        } catch ( IOException e ) {
+            throw new TileIOException( "Error performing GetMap request: " + e.getMessage(), e );
+        } catch ( OWSException e ) {
+            throw new TileIOException( "Error performing GetMap request: " + e.getMessage(), e );
+        } finally {
+            IOUtils.closeQuietly( in );
+        }
+    }
+
+    private class Part implements Tile {
+
+        private final RemoteWMSTile tile;
+
+        private final int offsetX;
+
+        private final int offsetY;
+
+        Part( RemoteWMSTile tile, int offsetX, int offsetY ) {
+            this.tile = tile;
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+        }
+
+        @Override
+        public BufferedImage getAsImage()
+                                throws TileIOException {
+            BufferedImage img = getImage();
+            int width = tile.getWidth();
+            int height = tile.getHeight();
+            boolean jpeg = "jpeg".equalsIgnoreCase( outputFormat ) || "jpg".equalsIgnoreCase( outputFormat );
+            if ( jpeg && img.getColorModel().hasAlpha() ) {
+                // JPEG writer cannot handle alpha
+                BufferedImage part = new BufferedImage( width, height, TYPE_INT_RGB );
+                Graphics2D g = part.createGraphics();
+                try {
+                    g.drawImage( img.getSubimage( offsetX, offsetY, width, height ), 0, 0, null );
+                } finally {
+                    g.dispose();
+                }
+                return part;
+            }
+            WritableRaster raster = img.getRaster().createCompatibleWritableRaster( width, height );
+            raster.setRect( -offsetX, -offsetY, img.getRaster() );
+            return new BufferedImage( img.getColorModel(), raster, img.isAlphaPremultiplied(), null );
+        }
+
+        @Override
+        public InputStream getAsStream()
+                                throws TileIOException {
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                if ( !ImageIO.write( getAsImage(), outputFormat, out ) ) {
+                    throw new TileIOException( "No image writer available for format " + outputFormat + "." );
+                }
+                return new ByteArrayInputStream( out.toByteArray() );
+            } catch ( IOException e ) {
+                throw new TileIOException( "Error encoding tile: " + e.getMessage(), e );
+            }
+        }
+
+        @Override
+        public Envelope getEnvelope() {
+            return tile.getEnvelope();
+        }
+
+        @Override
+        public FeatureCollection getFeatures( int i, int j, int limit ) {
+            return tile.getFeatures( i, j, limit );
+        }
+    }
+
+}
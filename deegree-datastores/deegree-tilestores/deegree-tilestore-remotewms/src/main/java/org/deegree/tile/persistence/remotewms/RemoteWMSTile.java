@@ -135,11 +135,16 @@ class RemoteWMSTile implements Tile {
             }
 
             if ( outputFormat != null ) {
-                BufferedImage img = ImageIO.read( map );
-                ByteArrayOutputStream out = new ByteArrayOutputStream();
-                ImageIO.write( img, outputFormat, out );
-                out.close();
-                return new ByteArrayInputStream( out.toByteArray() );
+                try {
+                    BufferedImage img = ImageIO.read( map );
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    ImageIO.write( img, outputFormat, out );
+                    out.close();
+                    return new ByteArrayInputStream( out.toByteArray() );
+                } finally {
+                    // releases the pooled connection
+                    IOUtils.closeQuietly( map );
+                }
             }
             return map;
         } catch ( SocketTimeoutException e ) {
@@ -155,6 +160,20 @@ class RemoteWMSTile implements Tile {
         }
     }
 
+    /**
+     * @return width of the tile in pixels
+     */
+    int getWidth() {
+        return gm.getWidth();
+    }
+
+    /**
+     * @return height of the tile in pixels
+     */
+    int getHeight() {
+        return gm.getHeight();
+    }
+
     @Override
     public Envelope getEnvelope() {
         return gm.getBoundingBox();
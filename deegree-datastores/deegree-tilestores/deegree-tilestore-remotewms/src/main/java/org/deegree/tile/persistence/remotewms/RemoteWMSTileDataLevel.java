@@ -35,10 +35,15 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.tile.persistence.remotewms;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+
 import org.deegree.commons.utils.RequestUtils;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.persistence.CRSManager;
@@ -47,6 +52,7 @@ import org.deegree.geometry.GeometryFactory;
 import org.deegree.protocol.wms.Utils;
 import org.deegree.protocol.wms.client.WMSClient;
 import org.deegree.protocol.wms.ops.GetMap;
+import org.deegree.tile.MetaTileDataLevel;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileDataLevel;
 import org.deegree.tile.TileMatrix;
@@ -59,7 +65,7 @@ import org.deegree.tile.TileMatrix;
  * 
  * @version $Revision$, $Date$
  */
-class RemoteWMSTileDataLevel implements TileDataLevel {
+class RemoteWMSTileDataLevel implements MetaTileDataLevel {
 
     private static final GeometryFactory fac = new GeometryFactory();
 
@@ -77,6 +83,8 @@ class RemoteWMSTileDataLevel implements TileDataLevel {
 
     private final String recodedOutputFormat;
 
+    private final String metaTileFormat;
+
     private ICRS crs;
 
     private Map<String, String> defaultGetMap;
@@ -117,7 +125,12 @@ class RemoteWMSTileDataLevel implements TileDataLevel {
         this.format = format;
         this.layers = layers;
         this.styles = styles;
-        this.recodedOutputFormat = recodedOutputFormat;
+        if ( recodedOutputFormat != null && isImageIoFormat( format, recodedOutputFormat ) ) {
+            // remote images already are in the output format, so they can be streamed as they are
+            this.recodedOutputFormat = null;
+        } else {
+            this.recodedOutputFormat = recodedOutputFormat;
+        }
         this.defaultGetMap = defaultGetMap;
         this.defaultGetFeatureInfo = defaultGetFeatureInfo;
         this.hardGetMap = hardGetMap;
@@ -128,6 +141,32 @@ class RemoteWMSTileDataLevel implements TileDataLevel {
         if ( crs != null ) {
             this.crs = CRSManager.getCRSRef( crs );
         }
+        this.metaTileFormat = recodedOutputFormat != null ? recodedOutputFormat : getImageIoFormat( format );
+    }
+
+    private static String getImageIoFormat( String mimeType ) {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByMIMEType( getBaseType( mimeType ) );
+        if ( !writers.hasNext() ) {
+            return null;
+        }
+        return writers.next().getOriginatingProvider().getFormatNames()[0];
+    }
+
+    private static boolean isImageIoFormat( String mimeType, String imageIoFormat ) {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByMIMEType( getBaseType( mimeType ) );
+        while ( writers.hasNext() ) {
+            for ( String name : writers.next().getOriginatingProvider().getFormatNames() ) {
+                if ( name.equalsIgnoreCase( imageIoFormat ) ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String getBaseType( String mimeType ) {
+        int idx = mimeType.indexOf( ';' );
+        return ( idx == -1 ? mimeType : mimeType.substring( 0, idx ) ).trim();
     }
 
     @Override
@@ -140,22 +179,59 @@ class RemoteWMSTileDataLevel implements TileDataLevel {
         if ( metadata.getNumTilesX() <= x || metadata.getNumTilesY() <= y || x < 0 || y < 0 ) {
             return null;
         }
+        GetMap gm = createGetMap( x, y, 1, 1 );
+        return new RemoteWMSTile( client, gm, recodedOutputFormat, defaultGetFeatureInfo, hardGetFeatureInfo );
+    }
+
+    @Override
+    public Tile[][] getMetaTile( long x, long y, int columns, int rows ) {
+        long minX = Math.max( 0, x );
+        long minY = Math.max( 0, y );
+        int numX = (int) ( Math.min( metadata.getNumTilesX(), x + columns ) - minX );
+        int numY = (int) ( Math.min( metadata.getNumTilesY(), y + rows ) - minY );
+        if ( numX <= 0 || numY <= 0 ) {
+            return new Tile[0][0];
+        }
+        Tile[][] tiles = new Tile[numX][numY];
+        RemoteWMSMetaTile metaTile = null;
+        if ( metaTileFormat != null ) {
+            metaTile = new RemoteWMSMetaTile( client, createGetMap( minX, minY, numX, numY ), metaTileFormat );
+        }
+        for ( int i = 0; i < numX; ++i ) {
+            for ( int j = 0; j < numY; ++j ) {
+                RemoteWMSTile tile = (RemoteWMSTile) getTile( minX + i, minY + j );
+                if ( metaTile == null ) {
+                    // tiles cannot be re-encoded in the requested format, fetch them separately
+                    tiles[i][j] = tile;
+                } else {
+                    tiles[i][j] = metaTile.getTile( tile, (int) ( i * tileSizeX ), (int) ( j * tileSizeY ) );
+                }
+            }
+        }
+        return tiles;
+    }
+
+    private GetMap createGetMap( long x, long y, int columns, int rows ) {
         double width = metadata.getTileWidth();
         double height = metadata.getTileHeight();
         Envelope env = metadata.getSpatialMetadata().getEnvelope();
         double minx = width * x + env.getMin().get0();
-        double miny = env.getMax().get1() - height * y;
-        Envelope envelope = fac.createEnvelope( minx, miny - height, minx + width, miny, env.getCoordinateSystem() );
+        double maxy = env.getMax().get1() - height * y;
+        Envelope envelope = fac.createEnvelope( minx, maxy - height * rows, minx + width * columns, maxy,
+                                                env.getCoordinateSystem() );
         ICRS crs = this.crs;
         if ( crs == null ) {
             crs = envelope.getCoordinateSystem();
         }
+        Map<String, String> requestParameters = RequestUtils.getCurrentThreadRequestParameters().get();
+        if ( requestParameters == null ) {
+            // not called in the context of a request (e.g. when seeding a cache)
+            requestParameters = Collections.<String, String> emptyMap();
+        }
         Map<String, String> overriddenParameters = new HashMap<String, String>();
-        RequestUtils.replaceParameters( overriddenParameters, RequestUtils.getCurrentThreadRequestParameters().get(),
-                                        defaultGetMap, hardGetMap );
-        GetMap gm = new GetMap( layers, styles, (int) tileSizeX, (int) tileSizeY, envelope, crs, format, true,
-                                overriddenParameters );
-        return new RemoteWMSTile( client, gm, recodedOutputFormat, defaultGetFeatureInfo, hardGetFeatureInfo );
+        RequestUtils.replaceParameters( overriddenParameters, requestParameters, defaultGetMap, hardGetMap );
+        return new GetMap( layers, styles, (int) tileSizeX * columns, (int) tileSizeY * rows, envelope, crs, format,
+                           true, overriddenParameters );
     }
 
     @Override
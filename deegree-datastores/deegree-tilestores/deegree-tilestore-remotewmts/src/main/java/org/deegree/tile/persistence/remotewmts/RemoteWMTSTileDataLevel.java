@@ -39,9 +39,13 @@ import static org.deegree.tile.Tiles.calcTileEnvelope;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+
 import org.deegree.commons.utils.RequestUtils;
 import org.deegree.geometry.Envelope;
 import org.deegree.protocol.wmts.client.WMTSClient;
@@ -111,7 +115,12 @@ class RemoteWMTSTileDataLevel implements TileDataLevel {
         this.requestFormat = requestFormat;
         this.layer = layer;
         this.style = style;
-        this.outputFormat = outputFormat;
+        if ( outputFormat != null && isImageIoFormat( requestFormat, outputFormat ) ) {
+            // remote tiles already are in the output format, so they can be streamed as they are
+            this.outputFormat = null;
+        } else {
+            this.outputFormat = outputFormat;
+        }
         this.client = client;
         this.defaultGetMap = defaultGetMap;
         this.hardGetMap = hardGetMap;
@@ -119,6 +128,20 @@ class RemoteWMTSTileDataLevel implements TileDataLevel {
         this.hardGetFeatureInfo = hardGetFeatureInfo;
     }
 
+    private static boolean isImageIoFormat( String mimeType, String imageIoFormat ) {
+        int idx = mimeType.indexOf( ';' );
+        String baseType = ( idx == -1 ? mimeType : mimeType.substring( 0, idx ) ).trim();
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByMIMEType( baseType );
+        while ( writers.hasNext() ) {
+            for ( String name : writers.next().getOriginatingProvider().getFormatNames() ) {
+                if ( name.equalsIgnoreCase( imageIoFormat ) ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     @Override
     public TileMatrix getMetadata() {
         return matrix;
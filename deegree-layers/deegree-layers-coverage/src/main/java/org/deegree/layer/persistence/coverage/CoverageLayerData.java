@@ -54,7 +54,7 @@ import org.deegree.feature.types.FeatureType;
 import org.deegree.geometry.Envelope;
 import org.deegree.geometry.Geometry;
 import org.deegree.geometry.GeometryTransformer;
-import org.deegree.layer.LayerData;
+import org.deegree.layer.PrefetchableLayerData;
 import org.deegree.rendering.r2d.RasterRenderer;
 import org.deegree.rendering.r2d.context.RenderContext;
 import org.deegree.style.se.unevaluated.Style;
@@ -69,7 +69,7 @@ import org.slf4j.Logger;
  * 
  * @version $Revision: $, $Date: $
  */
-public class CoverageLayerData implements LayerData {
+public class CoverageLayerData implements PrefetchableLayerData {
 
     private static final Logger LOG = getLogger( CoverageLayerData.class );
 
@@ -91,6 +91,11 @@ public class CoverageLayerData implements LayerData {
 
     private CoverageDimensionHandler dimensionHandler;
 
+    // raster prepared by #fetch(), consumed by #render(RenderContext)
+    private AbstractRaster fetched;
+
+    private boolean isFetched;
+
     public CoverageLayerData( AbstractRaster raster, Envelope bbox, int width, int height, InterpolationType interpol,
                               RangeSet filter, Style style, FeatureType featureType ) {
         this( raster, bbox, width, height, interpol, filter, style, featureType, null );
@@ -111,8 +116,63 @@ public class CoverageLayerData implements LayerData {
         this.dimensionHandler = dimensionHandler;
     }
 
+    @Override
+    public void fetch() {
+        AbstractRaster result = transformRaster();
+        synchronized ( this ) {
+            fetched = result;
+            isFetched = true;
+        }
+    }
+
+    @Override
+    public synchronized void discard() {
+        fetched = null;
+        isFetched = false;
+    }
+
     @Override
     public void render( RenderContext context ) {
+        AbstractRaster result;
+        boolean prefetched;
+        synchronized ( this ) {
+            result = fetched;
+            prefetched = isFetched;
+            fetched = null;
+            isFetched = false;
+        }
+        if ( !prefetched ) {
+            result = transformRaster();
+        }
+        if ( result == null ) {
+            return;
+        }
+        try {
+            RasterRenderer renderer = context.getRasterRenderer();
+
+            LinkedList<Triple<Styling, LinkedList<Geometry>, String>> list = style == null
+                                                                             || style.isDefault() ? null
+                                                                                                  : style.evaluate( null,
+                                                                                                                    null );
+            if ( list != null && list.size() > 0 ) {
+                for ( Triple<Styling, LinkedList<Geometry>, String> t : list ) {
+                    renderer.render( (RasterStyling) t.first, result );
+                }
+            } else {
+                renderer.render( null, result );
+            }
+        } catch ( Throwable e ) {
+            LOG.trace( "Stack trace:", e );
+            LOG.error( "Unable to render raster: {}", e.getLocalizedMessage() );
+        }
+    }
+
+    /**
+     * Cuts out (and warps) the requested region of the raster and applies the range set filter.
+     * 
+     * @return resulting raster, or <code>null</code> if there is nothing to render
+     */
+    private AbstractRaster transformRaster() {
         try {
             // prevent transformation if not intersects
             ICRS bboxCRS = bbox.getCoordinateSystem();
@@ -122,7 +182,7 @@ public class CoverageLayerData implements LayerData {
 
             if ( rasterBBox == null || rasterCRS == null || bboxCRS == null ) {
                 // do not render, if no data is available for intersection check
-                return;
+                return null;
             }
 
             if ( !rasterCRS.equals( bboxCRS ) ) {
@@ -132,11 +192,9 @@ public class CoverageLayerData implements LayerData {
 
             if ( !workEnv.intersects( bbox ) ) {
                 // intersection is empty or no overlap
-                return;
+                return null;
             }
 
-            RasterRenderer renderer = context.getRasterRenderer();
-
             AbstractRaster result;
             result = CoverageTransform.transform( raster, bbox, Grid.fromSize( width, height, MAX_VALUE, bbox ),
                                                   interpol.toString() );
@@ -145,22 +203,12 @@ public class CoverageLayerData implements LayerData {
                 RangeSet cbr = createBandRangeSetFromRaster( null, null, result );
                 result = new RasterFilter( result ).apply( cbr, filter );
             }
-
-            LinkedList<Triple<Styling, LinkedList<Geometry>, String>> list = style == null
-                                                                             || style.isDefault() ? null
-                                                                                                  : style.evaluate( null,
-                                                                                                                    null );
-            if ( list != null && list.size() > 0 ) {
-                for ( Triple<Styling, LinkedList<Geometry>, String> t : list ) {
-                    renderer.render( (RasterStyling) t.first, result );
-                }
-            } else {
-                renderer.render( null, result );
-            }
+            return result;
         } catch ( Throwable e ) {
             LOG.trace( "Stack trace:", e );
             LOG.error( "Unable to render raster: {}", e.getLocalizedMessage() );
         }
+        return null;
     }
 
     @Override
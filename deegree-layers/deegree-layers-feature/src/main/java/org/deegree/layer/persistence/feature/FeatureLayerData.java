@@ -37,7 +37,9 @@ package org.deegree.layer.persistence.feature;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -46,16 +48,20 @@ import javax.xml.namespace.QName;
 
 import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.Features;
 import org.deegree.feature.GenericFeatureCollection;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.stream.CombinedFeatureInputStream;
+import org.deegree.feature.stream.EmptyFeatureInputStream;
 import org.deegree.feature.stream.FeatureInputStream;
+import org.deegree.feature.stream.MemoryFeatureInputStream;
 import org.deegree.feature.stream.ThreadedFeatureInputStream;
 import org.deegree.feature.types.AppSchemas;
 import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.XPathEvaluator;
-import org.deegree.layer.LayerData;
+import org.deegree.layer.PrefetchableLayerData;
 import org.deegree.rendering.r2d.context.RenderContext;
 import org.deegree.style.se.unevaluated.Style;
 import org.slf4j.Logger;
@@ -67,10 +73,13 @@ import org.slf4j.Logger;
  * 
  * @version $Revision: $, $Date: $
  */
-public class FeatureLayerData implements LayerData {
+public class FeatureLayerData implements PrefetchableLayerData {
 
     private static final Logger LOG = getLogger( FeatureLayerData.class );
 
+    // maximum number of features that #fetch() reads ahead into memory
+    private static final int READ_AHEAD = 1000;
+
     private int maxFeatures;
 
     private final Style style;
@@ -81,6 +90,9 @@ public class FeatureLayerData implements LayerData {
 
     private final FeatureStore featureStore;
 
+    // result of #fetch(), consumed by #render(RenderContext)
+    private FeatureInputStream fetched;
+
     public FeatureLayerData( List<Query> queries, FeatureStore featureStore, int maxFeatures, Style style, QName ftName ) {
         this.queries = queries;
         this.featureStore = featureStore;
@@ -94,12 +106,80 @@ public class FeatureLayerData implements LayerData {
         evaluator = new TypedObjectNodeXPathEvaluator( bindings );
     }
 
+    @Override
+    public void fetch()
+                            throws InterruptedException {
+        FeatureInputStream features = null;
+        FeatureInputStream readAhead = null;
+        try {
+            features = featureStore.query( queries.toArray( new Query[queries.size()] ) );
+            readAhead = readAhead( features );
+        } catch ( InterruptedException e ) {
+            throw e;
+        } catch ( Throwable e ) {
+            LOG.warn( "Data could not be fetched from the feature store. The error was '{}'.", e.getLocalizedMessage() );
+            LOG.trace( "Stack trace:", e );
+            readAhead = new EmptyFeatureInputStream();
+        } finally {
+            if ( readAhead == null && features != null ) {
+                features.close();
+            }
+        }
+        synchronized ( this ) {
+            fetched = readAhead;
+        }
+    }
+
+    /**
+     * Reads the first features of the stream into memory, so the (possibly slow) retrieval of the first rows overlaps
+     * with other work. The remaining features are still streamed.
+     */
+    private FeatureInputStream readAhead( FeatureInputStream features )
+                            throws InterruptedException {
+        int limit = maxFeatures > 0 ? Math.min( maxFeatures, READ_AHEAD ) : READ_AHEAD;
+        List<Feature> head = new ArrayList<Feature>();
+        Iterator<Feature> iter = features.iterator();
+        while ( head.size() < limit && iter.hasNext() ) {
+            if ( Thread.interrupted() ) {
+                throw new InterruptedException();
+            }
+            head.add( iter.next() );
+        }
+        FeatureInputStream headStream = new MemoryFeatureInputStream( new GenericFeatureCollection( null, head ) );
+        if ( ( maxFeatures > 0 && head.size() == maxFeatures ) || !iter.hasNext() ) {
+            features.close();
+            return headStream;
+        }
+        List<FeatureInputStream> streams = new ArrayList<FeatureInputStream>( 2 );
+        streams.add( headStream );
+        streams.add( new RemainingFeatureInputStream( features, iter ) );
+        return new CombinedFeatureInputStream( streams.iterator() );
+    }
+
+    @Override
+    public void discard() {
+        FeatureInputStream features;
+        synchronized ( this ) {
+            features = fetched;
+            fetched = null;
+        }
+        if ( features != null ) {
+            features.close();
+        }
+    }
+
     @Override
     public void render( RenderContext context ) throws InterruptedException {
         FeatureInputStream features = null;
         try {
+            synchronized ( this ) {
+                features = fetched;
+                fetched = null;
+            }
+            if ( features == null ) {
+                features = featureStore.query( queries.toArray( new Query[queries.size()] ) );
+            }
             // TODO Should this always be done on this level? What about queueSize value?
-            features = featureStore.query( queries.toArray( new Query[queries.size()] ) );
             features = new ThreadedFeatureInputStream( features, 100 );
 
             FeatureStreamRenderer renderer = new FeatureStreamRenderer( context, maxFeatures, evaluator );
@@ -146,4 +226,45 @@ public class FeatureLayerData implements LayerData {
         return col;
     }
 
+    /**
+     * Remainder of a {@link FeatureInputStream} whose iteration has already been started.
+     */
+    private static class RemainingFeatureInputStream implements FeatureInputStream {
+
+        private final FeatureInputStream source;
+
+        private final Iterator<Feature> iter;
+
+        private RemainingFeatureInputStream( FeatureInputStream source, Iterator<Feature> iter ) {
+            this.source = source;
+            this.iter = iter;
+        }
+
+        @Override
+        public Iterator<Feature> iterator() {
+            return iter;
+        }
+
+        @Override
+        public void close() {
+            source.close();
+        }
+
+        @Override
+        public FeatureCollection toCollection() {
+            return Features.toCollection( this );
+        }
+
+        @Override
+        public int count() {
+            int i = 0;
+            while ( iter.hasNext() ) {
+                iter.next();
+                i++;
+            }
+            close();
+            return i;
+        }
+    }
+
 }
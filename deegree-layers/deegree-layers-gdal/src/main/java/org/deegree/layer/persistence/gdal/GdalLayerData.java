@@ -60,7 +60,7 @@ import org.deegree.geometry.Envelope;
 import org.deegree.geometry.primitive.Point;
 import org.deegree.geometry.standard.DefaultEnvelope;
 import org.deegree.geometry.standard.primitive.DefaultPoint;
-import org.deegree.layer.LayerData;
+import org.deegree.layer.PrefetchableLayerData;
 import org.deegree.rendering.r2d.context.RenderContext;
 import org.gdal.gdal.Band;
 import org.gdal.gdal.Dataset;
@@ -71,13 +71,13 @@ import org.gdal.osr.SpatialReference;
 import org.slf4j.Logger;
 
 /**
- * {@link LayerData} implementation for layers that are rendered from GDAL datasets.
+ * {@link PrefetchableLayerData} implementation for layers that are rendered from GDAL datasets.
  * 
  * @author <a href="mailto:schneider@occamlabs.de">Markus Schneider</a>
  * 
  * @since 3.4
  */
-class GdalLayerData implements LayerData {
+class GdalLayerData implements PrefetchableLayerData {
 
     private static final Logger LOG = getLogger( GdalLayerData.class );
 
@@ -91,6 +91,11 @@ class GdalLayerData implements LayerData {
 
     private final GdalSettings gdalSettings;
 
+    // image extracted by #fetch(), consumed by #render(RenderContext)
+    private BufferedImage fetched;
+
+    private boolean isFetched;
+
     GdalLayerData( List<File> datasets, Envelope bbox, int width, int height, GdalSettings gdalSettings ) {
         this.datasets = datasets;
         this.bbox = bbox;
@@ -99,20 +104,47 @@ class GdalLayerData implements LayerData {
         this.gdalSettings = gdalSettings;
     }
 
+    @Override
+    public void fetch() {
+        BufferedImage img = extractImage();
+        synchronized ( this ) {
+            fetched = img;
+            isFetched = true;
+        }
+    }
+
+    @Override
+    public synchronized void discard() {
+        fetched = null;
+        isFetched = false;
+    }
+
     @Override
     public void render( RenderContext context ) {
-        ICRS nativeCrs = gdalSettings.getDatasetPool().getCrs( datasets.get( 0 ) );
-        BufferedImage img = null;
-        if ( bbox.getCoordinateSystem().equals( nativeCrs ) ) {
-            img = extractRegionFromGdalFiles( bbox );
-        } else {
-            img = extractAndReprojectRegion( nativeCrs );
+        BufferedImage img;
+        boolean prefetched;
+        synchronized ( this ) {
+            img = fetched;
+            prefetched = isFetched;
+            fetched = null;
+            isFetched = false;
+        }
+        if ( !prefetched ) {
+            img = extractImage();
         }
         if ( img != null ) {
             context.paintImage( img );
         }
     }
 
+    private BufferedImage extractImage() {
+        ICRS nativeCrs = gdalSettings.getDatasetPool().getCrs( datasets.get( 0 ) );
+        if ( bbox.getCoordinateSystem().equals( nativeCrs ) ) {
+            return extractRegionFromGdalFiles( bbox );
+        }
+        return extractAndReprojectRegion( nativeCrs );
+    }
+
     private BufferedImage extractRegionFromGdalFiles( Envelope bbox ) {
         List<byte[][]> regions = getIntersectingRegionsFromAllDatasets( bbox );
         if ( regions.isEmpty() ) {
@@ -43,7 +43,7 @@ import java.util.Map;
 import org.deegree.commons.utils.Pair;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.GenericFeatureCollection;
-import org.deegree.layer.LayerData;
+import org.deegree.layer.PrefetchableLayerData;
 import org.deegree.protocol.wms.client.WMSClient;
 import org.deegree.protocol.wms.ops.GetFeatureInfo;
 import org.deegree.protocol.wms.ops.GetMap;
@@ -57,7 +57,7 @@ import org.slf4j.Logger;
  * 
  * @version $Revision: $, $Date: $
  */
-public class RemoteWMSLayerData implements LayerData {
+public class RemoteWMSLayerData implements PrefetchableLayerData {
 
     private static final Logger LOG = getLogger( RemoteWMSLayerData.class );
 
@@ -69,6 +69,11 @@ public class RemoteWMSLayerData implements LayerData {
 
     private GetFeatureInfo gfi;
 
+    // map image retrieved by #fetch(), consumed by #render(RenderContext)
+    private BufferedImage fetched;
+
+    private boolean isFetched;
+
     public RemoteWMSLayerData( WMSClient client, GetMap gm, Map<String, String> extraParams ) {
         this.client = client;
         this.gm = gm;
@@ -81,18 +86,49 @@ public class RemoteWMSLayerData implements LayerData {
         this.extraParams = extraParams;
     }
 
+    @Override
+    public void fetch() {
+        BufferedImage img = getMap();
+        synchronized ( this ) {
+            fetched = img;
+            isFetched = true;
+        }
+    }
+
+    @Override
+    public synchronized void discard() {
+        fetched = null;
+        isFetched = false;
+    }
+
     @Override
     public void render( RenderContext context ) {
+        BufferedImage img;
+        boolean prefetched;
+        synchronized ( this ) {
+            img = fetched;
+            prefetched = isFetched;
+            fetched = null;
+            isFetched = false;
+        }
+        if ( !prefetched ) {
+            img = getMap();
+        }
+        if ( img != null ) {
+            context.paintImage( img );
+        }
+    }
+
+    private BufferedImage getMap() {
         try {
-            Pair<BufferedImage, String> map = client.getMap( gm, extraParams, 30 );
-            if ( map.first != null ) {
-                context.paintImage( map.first );
-            }
+            // no extra worker thread, the connection and request timeouts of the client apply
+            Pair<BufferedImage, String> map = client.getMap( gm, extraParams, -1 );
+            return map.first;
         } catch ( Throwable e ) {
-            e.printStackTrace();
             LOG.warn( "Error when retrieving remote map: {}", e.getLocalizedMessage() );
             LOG.trace( "Stack trace:", e );
         }
+        return null;
     }
 
     @Override
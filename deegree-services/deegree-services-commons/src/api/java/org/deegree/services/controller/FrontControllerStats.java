@@ -42,10 +42,10 @@ import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
 
@@ -59,11 +59,20 @@ import org.deegree.cs.persistence.CRSManager;
 import org.deegree.geometry.Envelope;
 import org.deegree.geometry.GeometryFactory;
 import org.deegree.geometry.GeometryTransformer;
+import org.deegree.services.OWS;
+import org.deegree.services.OWSProvider;
+import org.deegree.services.controller.metrics.AsyncRequestLog;
+import org.deegree.services.controller.metrics.RequestMetrics;
 import org.h2.util.IOUtils;
 import org.slf4j.Logger;
 
 /**
  * Keeps track of request and runtime statistics for the {@link OGCFrontController}.
+ * <p>
+ * The runtime statistics are kept by the {@link RequestMetrics} (lock-free, with response time percentiles per
+ * service, request type, layer and feature type), incoming KVP requests are appended to the request log by a background
+ * thread.
+ * </p>
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author$
@@ -74,85 +83,98 @@ public class FrontControllerStats {
 
     private static final Logger LOG = getLogger( FrontControllerStats.class );
 
-    private static long numDispatched;
+    private static final String REQUEST_LOG = "requests.txt";
 
-    private static long numFinished;
+    private static final AsyncRequestLog requestLog = new AsyncRequestLog( REQUEST_LOG, 10000 );
 
-    private static double averageResponseTime;
-
-    private static double maxResponseTime;
+    private static final GeometryFactory fac = new GeometryFactory();
 
     private static Envelope bbox;
 
-    private static GeometryTransformer trans;
-
-    private static final GeometryFactory fac = new GeometryFactory();
+    private static volatile boolean bboxStale;
 
     /**
      * Called by the {@link OGCFrontController} to indicate that a new request has just been dispatched to an
      * {@link AbstractOWS}.
      * 
-     * @return current time
+     * @return dispatch time, to be passed to {@link #requestFinished(long, OWS, String, Map)}
      */
-    synchronized static long requestDispatched() {
-        numDispatched++;
-        return System.currentTimeMillis();
+    static long requestDispatched() {
+        return RequestMetrics.getInstance().requestDispatched();
     }
 
     /**
      * Called by the {@link OGCFrontController} to indicate that a dispatched request has been finished.
      * 
      * @param dispatchTime
-     *            time when the request has been dispatched
+     *            value returned by {@link #requestDispatched()}
+     * @param ows
+     *            service that handled the request, can be <code>null</code>
+     * @param request
+     *            name of the request, can be <code>null</code>
+     * @param kvp
+     *            normalized KVP parameters of the request (upper case keys), can be <code>null</code> (XML/SOAP)
      */
-    synchronized static void requestFinished( long dispatchTime ) {
-        long duration = System.currentTimeMillis() - dispatchTime;
-        if ( duration > maxResponseTime ) {
-            maxResponseTime = duration;
+    static void requestFinished( long dispatchTime, OWS ows, String request, Map<String, String> kvp ) {
+        String service = null;
+        Collection<String> requestTypes = null;
+        if ( ows != null && ows.getMetadata() != null ) {
+            if ( ows.getMetadata().getIdentifier() != null ) {
+                service = ows.getMetadata().getIdentifier().getId();
+            }
+            if ( ows.getMetadata().getProvider() instanceof OWSProvider ) {
+                OWSProvider provider = (OWSProvider) ows.getMetadata().getProvider();
+                ImplementationMetadata<?> md = provider.getImplementationMetadata();
+                if ( md != null ) {
+                    requestTypes = md.getHandledRequests();
+                }
+            }
+        }
+        String label = null;
+        Collection<String> subjects = null;
+        if ( kvp != null ) {
+            String layers = kvp.get( "LAYERS" );
+            if ( layers == null ) {
+                layers = kvp.get( "QUERY_LAYERS" );
+            }
+            String typeNames = kvp.get( "TYPENAMES" );
+            if ( typeNames == null ) {
+                typeNames = kvp.get( "TYPENAME" );
+            }
+            if ( layers != null ) {
+                label = "layer";
+                subjects = split( layers );
+            } else if ( typeNames != null ) {
+                label = "featuretype";
+                subjects = split( typeNames.replace( "(", "" ).replace( ")", "" ) );
+            }
+        }
+        RequestMetrics.getInstance().requestFinished( dispatchTime, service, request, requestTypes, label, subjects );
+    }
+
+    private static List<String> split( String values ) {
+        List<String> list = new ArrayList<String>();
+        for ( String value : values.split( "," ) ) {
+            value = value.trim();
+            if ( !value.isEmpty() ) {
+                list.add( value );
+            }
         }
-        averageResponseTime = ( averageResponseTime * numFinished + duration ) / ( numFinished + 1 );
-        numFinished++;
+        return list;
     }
 
     /**
+     * Appends a request to the request log. The request is written asynchronously, if the log cannot keep up, the
+     * request is dropped.
+     * 
      * @param request
      *            the query string
      * @param timestamp
      */
-    public synchronized static void incomingKVP( String request, long timestamp ) {
-        try {
-            OutputStream os = ConfigManager.getOutputResource( "requests.txt", true );
-            PrintWriter out = new PrintWriter( new OutputStreamWriter( os, "UTF-8" ) );
-            out.println( timestamp + " " + request );
-            out.close();
-            if ( request.toUpperCase().contains( "REQUEST=GETMAP" ) ) {
-                try {
-                    Map<String, String> map = KVPUtils.getNormalizedKVPMap( request, "UTF-8" );
-                    if ( map.get( "LAYERS" ).equals( "statistics" ) ) {
-                        return;
-                    }
-                    double[] ds = splitAsDoubles( map.get( "BBOX" ), "," );
-                    Envelope newBox = fac.createEnvelope( ds[0], ds[1], ds[2], ds[3],
-                                                          CRSManager.getCRSRef( map.get( "SRS" ) ) );
-                    if ( bbox != null ) {
-                        bbox.merge( trans.transform( newBox ) );
-                    }
-                } catch ( UnsupportedEncodingException e ) {
-                    LOG.trace( "Stack trace:", e );
-                } catch ( IllegalArgumentException e ) {
-                    LOG.trace( "Stack trace:", e );
-                } catch ( TransformationException e ) {
-                    LOG.trace( "Stack trace:", e );
-                } catch ( UnknownCRSException e ) {
-                    LOG.trace( "Stack trace:", e );
-                }
-            }
-        } catch ( FileNotFoundException e ) {
-            LOG.debug( "Could not find the file to store requests." );
-            LOG.debug( " Probably the DEEGREE_HOME directory does not exist and could not be created." );
-            LOG.trace( "Stack trace:", e );
-        } catch ( UnsupportedEncodingException e ) {
-            LOG.trace( "Stack trace:", e );
+    public static void incomingKVP( String request, long timestamp ) {
+        requestLog.log( timestamp + " " + request );
+        if ( request.toUpperCase().contains( "REQUEST=GETMAP" ) ) {
+            bboxStale = true;
         }
     }
 
@@ -162,7 +184,7 @@ public class FrontControllerStats {
      * @return number of dispatched requests
      */
     public static long getDispatchedRequests() {
-        return numDispatched;
+        return RequestMetrics.getInstance().getDispatchedRequests();
     }
 
     /**
@@ -172,35 +194,36 @@ public class FrontControllerStats {
      * @return number of active requests
      */
     public static long getActiveRequests() {
-        return numDispatched - numFinished;
+        return RequestMetrics.getInstance().getActiveRequests();
     }
 
     /**
      * Returns the average response time for all finished requests.
      * 
-     * @return the average response time
+     * @return the average response time (in milliseconds)
      */
     public static long getAverageResponseTime() {
-        return (long) averageResponseTime;
+        return (long) RequestMetrics.getInstance().getMeanResponseTimeMillis();
     }
 
     /**
      * Returns the maximum response time of all finished requests.
      * 
-     * @return the maximum response time
+     * @return the maximum response time (in milliseconds)
      */
     public static long getMaximumResponseTime() {
-        return (long) maxResponseTime;
+        return (long) RequestMetrics.getInstance().getMaxResponseTimeMillis();
     }
 
     /**
      * @return the incoming KVP requests
      */
     public static TreeSet<ComparablePair<Long, String>> getKVPRequests() {
+        requestLog.flush();
         TreeSet<ComparablePair<Long, String>> requests = new TreeSet<ComparablePair<Long, String>>();
         InputStreamReader is = null;
         try {
-            is = new InputStreamReader( ConfigManager.getInputResource( "requests.txt" ), "UTF-8" );
+            is = new InputStreamReader( ConfigManager.getInputResource( REQUEST_LOG ), "UTF-8" );
             BufferedReader in = new BufferedReader( is );
             String s = null;
             while ( ( s = in.readLine() ) != null ) {
@@ -238,9 +261,10 @@ public class FrontControllerStats {
      * @return the time of the first request
      */
     public static long getStartingTime() {
+        requestLog.flush();
         BufferedReader in = null;
         try {
-            InputStreamReader is = new InputStreamReader( ConfigManager.getInputResource( "requests.txt" ), "UTF-8" );
+            InputStreamReader is = new InputStreamReader( ConfigManager.getInputResource( REQUEST_LOG ), "UTF-8" );
             in = new BufferedReader( is );
             String s = null;
             if ( ( s = in.readLine() ) != null ) {
@@ -262,17 +286,23 @@ public class FrontControllerStats {
     }
 
     /**
+     * Returns the combined envelope of the logged GetMap requests. It is computed from the request log on first access
+     * and recomputed after new GetMap requests have been logged.
+     * 
      * @return an envelope of all the logged GetMap requests
      */
     public static synchronized Envelope getCombinedGetMapEnvelope() {
-        if ( bbox == null ) {
+        if ( bbox == null || bboxStale ) {
+            bboxStale = false;
+            Envelope combined = null;
+            GeometryTransformer trans = null;
             for ( Pair<Long, String> req : getKVPRequests() ) {
                 if ( !req.second.toUpperCase().contains( "REQUEST=GETMAP" ) ) {
                     continue;
                 }
                 try {
                     Map<String, String> map = KVPUtils.getNormalizedKVPMap( req.second, "UTF-8" );
-                    if ( map.get( "LAYERS" ).equals( "statistics" ) ) {
+                    if ( "statistics".equals( map.get( "LAYERS" ) ) ) {
                         continue;
                     }
                     if ( map.get( "VERSION" ) == null || !map.get( "VERSION" ).equals( "1.1.1" ) ) {
@@ -281,11 +311,11 @@ public class FrontControllerStats {
                     double[] ds = splitAsDoubles( map.get( "BBOX" ), "," );
                     Envelope newBox = fac.createEnvelope( ds[0], ds[1], ds[2], ds[3],
                                                           CRSManager.getCRSRef( map.get( "SRS" ) ) );
-                    if ( bbox == null ) {
-                        bbox = newBox;
-                        trans = new GeometryTransformer( bbox.getCoordinateSystem() );
+                    if ( combined == null ) {
+                        combined = newBox;
+                        trans = new GeometryTransformer( combined.getCoordinateSystem() );
                     } else {
-                        bbox.merge( trans.transform( newBox ) );
+                        combined = combined.merge( trans.transform( newBox ) );
                     }
                 } catch ( UnsupportedEncodingException e ) {
                     LOG.trace( "Stack trace:", e );
@@ -297,8 +327,18 @@ public class FrontControllerStats {
                     LOG.trace( "Stack trace:", e );
                 }
             }
+            bbox = combined;
         }
         return bbox;
     }
 
+    /**
+     * Called by the {@link OGCFrontController} on shutdown: writes pending request log entries and unregisters the
+     * metrics from JMX.
+     */
+    static void shutdown() {
+        requestLog.shutdown();
+        RequestMetrics.getInstance().unregisterMBean();
+    }
+
 }
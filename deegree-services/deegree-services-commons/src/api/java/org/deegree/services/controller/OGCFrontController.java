@@ -114,6 +114,7 @@ import org.deegree.services.OWSProvider;
 import org.deegree.services.OwsManager;
 import org.deegree.services.authentication.SecurityException;
 import org.deegree.services.controller.exception.serializer.XMLExceptionSerializer;
+import org.deegree.services.controller.metrics.RequestMetrics;
 import org.deegree.services.controller.security.SecurityConfiguration;
 import org.deegree.services.controller.utils.HttpResponseBuffer;
 import org.deegree.services.controller.utils.LoggingHttpResponseWrapper;
@@ -807,7 +808,7 @@ public class OGCFrontController extends HttpServlet {
                 watchTimeout( ows, request );
                 ows.doKVP( normalizedKVPParams, requestWrapper, response, multiParts );
             } finally {
-                FrontControllerStats.requestFinished( dispatchTime );
+                FrontControllerStats.requestFinished( dispatchTime, ows, request, normalizedKVPParams );
                 unwatchTimeout();
             }
         } catch ( SecurityException e ) {
@@ -889,12 +890,13 @@ public class OGCFrontController extends HttpServlet {
             }
             if ( ows != null ) {
                 LOG.debug( "Dispatching request to OWS: " + ows.getClass().getName() );
+                String requestName = xmlStream.getLocalName();
                 long dispatchTime = FrontControllerStats.requestDispatched();
                 try {
-                    watchTimeout( ows, xmlStream.getLocalName() );
+                    watchTimeout( ows, requestName );
                     ows.doXML( xmlStream, requestWrapper, response, multiParts );
                 } finally {
-                    FrontControllerStats.requestFinished( dispatchTime );
+                    FrontControllerStats.requestFinished( dispatchTime, ows, requestName, null );
                     unwatchTimeout();
                 }
             }
@@ -1009,12 +1011,13 @@ public class OGCFrontController extends HttpServlet {
             }
 
             LOG.debug( "Dispatching request to OWS class: " + ows.getClass().getName() );
+            String requestName = env.getSOAPBodyFirstElementLocalName();
             long dispatchTime = FrontControllerStats.requestDispatched();
             try {
-                watchTimeout( ows, env.getSOAPBodyFirstElementLocalName() );
+                watchTimeout( ows, requestName );
                 ows.doSOAP( env, requestWrapper, response, multiParts, factory );
             } finally {
-                FrontControllerStats.requestFinished( dispatchTime );
+                FrontControllerStats.requestFinished( dispatchTime, ows, requestName, null );
             }
         } catch ( SecurityException e ) {
             if ( credentialsProvider != null ) {
@@ -1084,6 +1087,7 @@ public class OGCFrontController extends HttpServlet {
             LOG.info( "" );
 
             initWorkspace();
+            RequestMetrics.getInstance().registerMBean( ctxPath );
 
         } catch ( NoClassDefFoundError e ) {
             LOG.error( "Initialization failed!" );
@@ -1381,6 +1385,7 @@ public class OGCFrontController extends HttpServlet {
     public void destroy() {
         super.destroy();
         destroyWorkspace();
+        FrontControllerStats.shutdown();
         if ( mainConfig.isPreventClassloaderLeaks() == null || mainConfig.isPreventClassloaderLeaks() ) {
             plugClassLoaderLeaks();
         }
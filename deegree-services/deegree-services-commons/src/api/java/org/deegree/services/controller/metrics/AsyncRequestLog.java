@@ -0,0 +1,194 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.metrics;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.FileNotFoundException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.deegree.commons.utils.ConfigManager;
+import org.slf4j.Logger;
+
+/**
+ * Appends lines to a {@link ConfigManager} output resource asynchronously.
+ * <p>
+ * Request threads only put the line into a bounded queue. A daemon thread (started on first use) writes the queued
+ * lines in batches, so the resource is opened once per batch instead of once per line. If the queue is full, lines are
+ * dropped (and counted) rather than blocking the request.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public final class AsyncRequestLog implements Runnable {
+
+    private static final Logger LOG = getLogger( AsyncRequestLog.class );
+
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    private final String resourceName;
+
+    private final BlockingQueue<String> queue;
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final Object writeLock = new Object();
+
+    private volatile Thread writer;
+
+    private volatile boolean stopped;
+
+    /**
+     * Creates a new {@link AsyncRequestLog} instance.
+     * 
+     * @param resourceName
+     *            name of the output resource (see {@link ConfigManager#getOutputResource(String, boolean)}), must not
+     *            be <code>null</code>
+     * @param capacity
+     *            maximum number of queued lines
+     */
+    public AsyncRequestLog( String resourceName, int capacity ) {
+        this.resourceName = resourceName;
+        this.queue = new ArrayBlockingQueue<String>( capacity );
+    }
+
+    /**
+     * Queues a line for writing, never blocks.
+     * 
+     * @param line
+     *            line to append, must not be <code>null</code>
+     */
+    public void log( String line ) {
+        if ( !queue.offer( line ) ) {
+            dropped.increment();
+            return;
+        }
+        if ( writer == null ) {
+            start();
+        }
+    }
+
+    private synchronized void start() {
+        if ( writer == null && !stopped ) {
+            Thread thread = new Thread( this, "AsyncRequestLog" );
+            thread.setDaemon( true );
+            thread.start();
+            writer = thread;
+        }
+    }
+
+    /**
+     * @return number of lines that have been dropped because the queue was full
+     */
+    public long getDroppedLines() {
+        return dropped.sum();
+    }
+
+    /**
+     * Writes all queued lines in the calling thread.
+     */
+    public void flush() {
+        List<String> batch = new ArrayList<String>();
+        queue.drainTo( batch );
+        write( batch );
+    }
+
+    /**
+     * Stops the writer thread and writes the remaining lines. Lines logged afterwards are only written by
+     * {@link #flush()}.
+     */
+    public synchronized void shutdown() {
+        stopped = true;
+        if ( writer != null ) {
+            writer.interrupt();
+            try {
+                // let the writer finish its current batch, so all lines have been written when this returns
+                writer.join( 1000 );
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+        flush();
+    }
+
+    @Override
+    public void run() {
+        List<String> batch = new ArrayList<String>();
+        try {
+            while ( !Thread.currentThread().isInterrupted() ) {
+                batch.add( queue.take() );
+                queue.drainTo( batch, MAX_BATCH_SIZE - 1 );
+                write( batch );
+                batch.clear();
+            }
+        } catch ( InterruptedException e ) {
+            LOG.debug( "Interrupted. Exiting" );
+        }
+    }
+
+    private void write( List<String> lines ) {
+        if ( lines.isEmpty() ) {
+            return;
+        }
+        // keeps the lines of concurrent flushes in order
+        synchronized ( writeLock ) {
+            try {
+                OutputStream os = ConfigManager.getOutputResource( resourceName, true );
+                PrintWriter out = new PrintWriter( new OutputStreamWriter( os, "UTF-8" ) );
+                for ( String line : lines ) {
+                    out.println( line );
+                }
+                out.close();
+            } catch ( FileNotFoundException e ) {
+                LOG.debug( "Could not find the file to store requests." );
+                LOG.debug( " Probably the DEEGREE_HOME directory does not exist and could not be created." );
+                LOG.trace( "Stack trace:", e );
+            } catch ( UnsupportedEncodingException e ) {
+                LOG.trace( "Stack trace:", e );
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies (in microseconds) with a bounded relative error.
+ * <p>
+ * Values are counted in log-linear buckets (similar to an HDR histogram): every power of two is divided into eight
+ * buckets, so percentiles are reported with a relative error of at most 12.5%. Recording is a few atomic increments,
+ * the memory footprint is constant (about 2.5 KB) regardless of the number of recorded values.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // largest tracked exponent, 2^38 microseconds is more than three days
+    private static final int MAX_EXPONENT = 38;
+
+    static final long MAX_VALUE = ( 1L << ( MAX_EXPONENT + 1 ) ) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray( ( MAX_EXPONENT - SUB_BUCKET_BITS + 2 ) * SUB_BUCKETS );
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value.
+     * 
+     * @param micros
+     *            latency in microseconds, negative values are counted as 0, values above three days are capped
+     */
+    public void record( long micros ) {
+        long value = micros < 0 ? 0 : Math.min( micros, MAX_VALUE );
+        counts.incrementAndGet( getBucket( value ) );
+        count.increment();
+        sum.add( value );
+        long currentMax = max.get();
+        while ( value > currentMax && !max.compareAndSet( currentMax, value ) ) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * @return number of recorded values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return sum of all recorded values (in microseconds)
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return largest recorded value (in microseconds), 0 if no value has been recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return mean of the recorded values (in microseconds), 0 if no value has been recorded
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Returns the value that the given percentage of the recorded values does not exceed. The result is the upper
+     * bound of the matching bucket (but never larger than {@link #getMax()}).
+     * 
+     * @param percentile
+     *            percentile, between 0 and 100
+     * @return value at the percentile (in microseconds), 0 if no value has been recorded
+     */
+    public long getValueAtPercentile( double percentile ) {
+        long total = 0;
+        int numBuckets = counts.length();
+        long[] snapshot = new long[numBuckets];
+        for ( int i = 0; i < numBuckets; i++ ) {
+            snapshot[i] = counts.get( i );
+            total += snapshot[i];
+        }
+        if ( total == 0 ) {
+            return 0;
+        }
+        long rank = (long) Math.ceil( Math.max( 0, Math.min( 100, percentile ) ) / 100 * total );
+        rank = Math.max( 1, rank );
+        long seen = 0;
+        for ( int i = 0; i < numBuckets; i++ ) {
+            seen += snapshot[i];
+            if ( seen >= rank ) {
+                return Math.min( getUpperBound( i ), getMax() );
+            }
+        }
+        return getMax();
+    }
+
+    static int getBucket( long value ) {
+        if ( value < SUB_BUCKETS ) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros( value );
+        int subBucket = (int) ( value >>> ( exponent - SUB_BUCKET_BITS ) ) & ( SUB_BUCKETS - 1 );
+        return ( exponent - SUB_BUCKET_BITS + 1 ) * SUB_BUCKETS + subBucket;
+    }
+
+    static long getUpperBound( int bucket ) {
+        if ( bucket < SUB_BUCKETS ) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) ( SUB_BUCKETS + bucket % SUB_BUCKETS ) << shift;
+        return lower + ( 1L << shift ) - 1;
+    }
+}
@@ -0,0 +1,471 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.metrics;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+
+/**
+ * Collects request counts and response time histograms for the requests dispatched by the
+ * {@link org.deegree.services.controller.OGCFrontController}.
+ * <p>
+ * Response times are tracked per service and request type, and additionally per layer or feature type if the request
+ * names them (label <code>layer</code> or <code>featuretype</code>). Request names are supplied by clients, so they are
+ * mapped onto the request types supported by the service (ignoring case), all other names are counted as
+ * <code>{@value #OTHER}</code>. Recording does not acquire any locks, so it can be called by every request thread. The
+ * number of tracked series is limited to {@value #MAX_SERIES}, further request types or subjects are counted as
+ * <code>{@value #OTHER}</code> as well. Map services may also record how long fetching the data of each layer took and
+ * how long the request thread had to wait for it. The metrics are exposed in the Prometheus text format (see
+ * {@link #writePrometheus(Writer)}) and via JMX (see {@link #registerMBean(String)}).
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public final class RequestMetrics implements RequestMetricsMBean {
+
+    private static final Logger LOG = getLogger( RequestMetrics.class );
+
+    static final int MAX_SERIES = 2000;
+
+    static final String OTHER = "_other";
+
+    private static final String UNKNOWN = "unknown";
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private static final RequestMetrics INSTANCE = new RequestMetrics();
+
+    private final LongAdder dispatched = new LongAdder();
+
+    private final LongAdder finished = new LongAdder();
+
+    private final LatencyHistogram all = new LatencyHistogram();
+
+    private final ConcurrentMap<SeriesKey, LatencyHistogram> series;
+
+    private final ConcurrentMap<String, LatencyHistogram> layerFetches;
+
+    private final ConcurrentMap<String, LatencyHistogram> layerWaits;
+
+    private ObjectName mbeanName;
+
+    RequestMetrics() {
+        series = new ConcurrentHashMap<SeriesKey, LatencyHistogram>();
+        layerFetches = new ConcurrentHashMap<String, LatencyHistogram>();
+        layerWaits = new ConcurrentHashMap<String, LatencyHistogram>();
+    }
+
+    /**
+     * @return the metrics of this web application, never <code>null</code>
+     */
+    public static RequestMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Called when a request has been dispatched to a service.
+     * 
+     * @return dispatch time (to be passed to {@link #requestFinished(long, String, String, Collection, String, Collection)})
+     */
+    public long requestDispatched() {
+        dispatched.increment();
+        return System.nanoTime();
+    }
+
+    /**
+     * Called when a dispatched request has been finished.
+     * 
+     * @param dispatchTime
+     *            value returned by {@link #requestDispatched()}
+     * @param service
+     *            identifier of the service, can be <code>null</code>
+     * @param request
+     *            request name as supplied by the client, can be <code>null</code>
+     * @param requestTypes
+     *            names of the request types supported by the service, can be <code>null</code> (all requests are
+     *            counted as <code>{@value #OTHER}</code>)
+     * @param subjectLabel
+     *            label for the subjects, e.g. <code>layer</code>, can be <code>null</code> (no subjects)
+     * @param subjects
+     *            names of the layers/feature types affected by the request, can be <code>null</code>
+     */
+    public void requestFinished( long dispatchTime, String service, String request, Collection<String> requestTypes,
+                                 String subjectLabel, Collection<String> subjects ) {
+        long micros = ( System.nanoTime() - dispatchTime ) / 1000;
+        finished.increment();
+        all.record( micros );
+        String serviceName = service == null ? UNKNOWN : service;
+        String requestName = normalizeRequest( request, requestTypes );
+        getHistogram( new SeriesKey( serviceName, requestName, null, null ) ).record( micros );
+        if ( subjectLabel != null && subjects != null ) {
+            for ( String subject : subjects ) {
+                getHistogram( new SeriesKey( serviceName, requestName, subjectLabel, subject ) ).record( micros );
+            }
+        }
+    }
+
+    /**
+     * Called when the data of a layer has been fetched for rendering.
+     * 
+     * @param layer
+     *            name of the layer, must not be <code>null</code>
+     * @param fetchMicros
+     *            time spent fetching the data in microseconds
+     * @param waitMicros
+     *            time the request thread waited for the data in microseconds (includes the fetch time if the data has
+     *            been fetched on the request thread)
+     */
+    public void layerFetched( String layer, long fetchMicros, long waitMicros ) {
+        getLayerHistogram( layerFetches, layer ).record( fetchMicros );
+        getLayerHistogram( layerWaits, layer ).record( waitMicros );
+    }
+
+    /**
+     * Maps a request name onto the matching supported request type.
+     * 
+     * @param request
+     *            request name as supplied by the client, can be <code>null</code>
+     * @param requestTypes
+     *            names of the supported request types, can be <code>null</code>
+     * @return name of the matching request type, <code>unknown</code> if the request name is <code>null</code>,
+     *         <code>{@value #OTHER}</code> if it does not match any supported request type
+     */
+    static String normalizeRequest( String request, Collection<String> requestTypes ) {
+        if ( request == null ) {
+            return UNKNOWN;
+        }
+        if ( requestTypes != null ) {
+            for ( String requestType : requestTypes ) {
+                if ( requestType.equalsIgnoreCase( request ) ) {
+                    return requestType;
+                }
+            }
+        }
+        return OTHER;
+    }
+
+    private LatencyHistogram getHistogram( SeriesKey key ) {
+        LatencyHistogram histogram = series.get( key );
+        if ( histogram == null ) {
+            if ( series.size() >= MAX_SERIES ) {
+                // limit the number of series, only the (few) overflow series of each service may still be added
+                if ( key.label != null ) {
+                    key = new SeriesKey( key.service, key.request, key.label, OTHER );
+                } else {
+                    key = new SeriesKey( key.service, OTHER, null, null );
+                }
+                histogram = series.get( key );
+                if ( histogram != null ) {
+                    return histogram;
+                }
+            }
+            histogram = new LatencyHistogram();
+            LatencyHistogram existing = series.putIfAbsent( key, histogram );
+            if ( existing != null ) {
+                histogram = existing;
+            }
+        }
+        return histogram;
+    }
+
+    private static LatencyHistogram getLayerHistogram( ConcurrentMap<String, LatencyHistogram> histograms,
+                                                       String layer ) {
+        LatencyHistogram histogram = histograms.get( layer );
+        if ( histogram == null ) {
+            if ( histograms.size() >= MAX_SERIES ) {
+                layer = OTHER;
+                histogram = histograms.get( layer );
+                if ( histogram != null ) {
+                    return histogram;
+                }
+            }
+            histogram = new LatencyHistogram();
+            LatencyHistogram existing = histograms.putIfAbsent( layer, histogram );
+            if ( existing != null ) {
+                histogram = existing;
+            }
+        }
+        return histogram;
+    }
+
+    @Override
+    public long getDispatchedRequests() {
+        return dispatched.sum();
+    }
+
+    @Override
+    public long getActiveRequests() {
+        return dispatched.sum() - finished.sum();
+    }
+
+    @Override
+    public double getMeanResponseTimeMillis() {
+        return all.getMean() / 1000;
+    }
+
+    @Override
+    public double getMaxResponseTimeMillis() {
+        return all.getMax() / 1000.0;
+    }
+
+    @Override
+    public double getP99ResponseTimeMillis() {
+        return all.getValueAtPercentile( 99 ) / 1000.0;
+    }
+
+    @Override
+    public double getResponseTimeMillis( String service, String request, double percentile ) {
+        if ( service == null || request == null ) {
+            return -1;
+        }
+        LatencyHistogram histogram = series.get( new SeriesKey( service, request, null, null ) );
+        if ( histogram == null || histogram.getCount() == 0 ) {
+            return -1;
+        }
+        return histogram.getValueAtPercentile( percentile ) / 1000.0;
+    }
+
+    @Override
+    public String getPrometheusText() {
+        StringWriter writer = new StringWriter();
+        try {
+            writePrometheus( writer );
+        } catch ( IOException e ) {
+            // StringWriter does not throw
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format (version 0.0.4).
+     * 
+     * @param writer
+     *            writer to write to, must not be <code>null</code>
+     * @throws IOException
+     */
+    public void writePrometheus( Writer writer )
+                            throws IOException {
+        writeHeader( writer, "deegree_requests_dispatched_total", "Requests dispatched to services.", "counter" );
+        writer.write( "deegree_requests_dispatched_total " + getDispatchedRequests() + "\n" );
+        writeHeader( writer, "deegree_requests_active", "Requests currently being processed.", "gauge" );
+        writer.write( "deegree_requests_active " + getActiveRequests() + "\n" );
+
+        // sorted, so that the series of a metric family are written together
+        Map<SeriesKey, LatencyHistogram> sorted = new TreeMap<SeriesKey, LatencyHistogram>( series );
+        String family = null;
+        for ( Entry<SeriesKey, LatencyHistogram> entry : sorted.entrySet() ) {
+            SeriesKey key = entry.getKey();
+            LatencyHistogram histogram = entry.getValue();
+            String name = key.label == null ? "deegree_request_duration_seconds" : "deegree_" + key.label
+                                                                                   + "_request_duration_seconds";
+            if ( !name.equals( family ) ) {
+                family = name;
+                String help = "Request processing time" + ( key.label == null ? "" : " per " + key.label ) + ".";
+                writeHeader( writer, name, help, "summary" );
+            }
+            StringBuilder labels = new StringBuilder();
+            appendLabel( labels, "service", key.service );
+            labels.append( ',' );
+            appendLabel( labels, "request", key.request );
+            if ( key.label != null ) {
+                labels.append( ',' );
+                appendLabel( labels, key.label, key.value );
+            }
+            writeSummary( writer, name, labels, histogram );
+        }
+        writeLayerSummaries( writer, "deegree_layer_fetch_duration_seconds", "Time spent fetching layer data.",
+                             layerFetches );
+        writeLayerSummaries( writer, "deegree_layer_fetch_wait_duration_seconds",
+                             "Time requests waited for layer data.", layerWaits );
+    }
+
+    private static void writeLayerSummaries( Writer writer, String name, String help,
+                                             Map<String, LatencyHistogram> histograms )
+                            throws IOException {
+        if ( histograms.isEmpty() ) {
+            return;
+        }
+        writeHeader( writer, name, help, "summary" );
+        for ( Entry<String, LatencyHistogram> entry : new TreeMap<String, LatencyHistogram>( histograms ).entrySet() ) {
+            StringBuilder labels = new StringBuilder();
+            appendLabel( labels, "layer", entry.getKey() );
+            writeSummary( writer, name, labels, entry.getValue() );
+        }
+    }
+
+    private static void writeSummary( Writer writer, String name, StringBuilder labels, LatencyHistogram histogram )
+                            throws IOException {
+        for ( double quantile : QUANTILES ) {
+            double seconds = histogram.getValueAtPercentile( quantile * 100 ) / 1e6;
+            writer.write( name + "{" + labels + ",quantile=\"" + quantile + "\"} " + seconds + "\n" );
+        }
+        writer.write( name + "_sum{" + labels + "} " + histogram.getSum() / 1e6 + "\n" );
+        writer.write( name + "_count{" + labels + "} " + histogram.getCount() + "\n" );
+    }
+
+    private static void writeHeader( Writer writer, String name, String help, String type )
+                            throws IOException {
+        writer.write( "# HELP " + name + " " + help + "\n" );
+        writer.write( "# TYPE " + name + " " + type + "\n" );
+    }
+
+    private static void appendLabel( StringBuilder sb, String name, String value ) {
+        sb.append( name ).append( "=\"" );
+        for ( int i = 0; i < value.length(); i++ ) {
+            char c = value.charAt( i );
+            if ( c == '\\' || c == '"' ) {
+                sb.append( '\\' ).append( c );
+            } else if ( c == '\n' ) {
+                sb.append( "\\n" );
+            } else {
+                sb.append( c );
+            }
+        }
+        sb.append( '"' );
+    }
+
+    /**
+     * Registers the metrics as MBean with the platform MBean server.
+     * 
+     * @param context
+     *            context path of the web application (distinguishes several deegree webapps in one JVM), must not be
+     *            <code>null</code>
+     */
+    public synchronized void registerMBean( String context ) {
+        unregisterMBean();
+        try {
+            String quotedContext = ObjectName.quote( context );
+            ObjectName name = new ObjectName( "org.deegree:type=RequestMetrics,context=" + quotedContext );
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if ( server.isRegistered( name ) ) {
+                server.unregisterMBean( name );
+            }
+            server.registerMBean( this, name );
+            mbeanName = name;
+        } catch ( JMException e ) {
+            LOG.warn( "Unable to register request metrics MBean: {}", e.getMessage() );
+            LOG.trace( "Stack trace:", e );
+        }
+    }
+
+    /**
+     * Unregisters the MBean registered by {@link #registerMBean(String)} (if any).
+     */
+    public synchronized void unregisterMBean() {
+        if ( mbeanName == null ) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean( mbeanName );
+        } catch ( JMException e ) {
+            LOG.debug( "Unable to unregister request metrics MBean: {}", e.getMessage() );
+        }
+        mbeanName = null;
+    }
+
+    private static final class SeriesKey implements Comparable<SeriesKey> {
+
+        private final String service;
+
+        private final String request;
+
+        private final String label;
+
+        private final String value;
+
+        SeriesKey( String service, String request, String label, String value ) {
+            this.service = service;
+            this.request = request;
+            this.label = label;
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo( SeriesKey o ) {
+            int c = compare( label, o.label );
+            if ( c == 0 ) {
+                c = service.compareTo( o.service );
+            }
+            if ( c == 0 ) {
+                c = request.compareTo( o.request );
+            }
+            if ( c == 0 ) {
+                c = compare( value, o.value );
+            }
+            return c;
+        }
+
+        private static int compare( String a, String b ) {
+            if ( a == null ) {
+                return b == null ? 0 : -1;
+            }
+            return b == null ? 1 : a.compareTo( b );
+        }
+
+        @Override
+        public boolean equals( Object o ) {
+            if ( !( o instanceof SeriesKey ) ) {
+                return false;
+            }
+            return compareTo( (SeriesKey) o ) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = service.hashCode() * 31 + request.hashCode();
+            hash = hash * 31 + ( label == null ? 0 : label.hashCode() );
+            return hash * 31 + ( value == null ? 0 : value.hashCode() );
+        }
+    }
+}
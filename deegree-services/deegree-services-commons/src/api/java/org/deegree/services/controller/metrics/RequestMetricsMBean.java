@@ -0,0 +1,88 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.metrics;
+
+/**
+ * JMX management interface of {@link RequestMetrics}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public interface RequestMetricsMBean {
+
+    /**
+     * @return number of requests dispatched to services
+     */
+    long getDispatchedRequests();
+
+    /**
+     * @return number of dispatched requests that did not finish yet
+     */
+    long getActiveRequests();
+
+    /**
+     * @return mean response time of all finished requests in milliseconds
+     */
+    double getMeanResponseTimeMillis();
+
+    /**
+     * @return maximum response time of all finished requests in milliseconds
+     */
+    double getMaxResponseTimeMillis();
+
+    /**
+     * @return 99th percentile of the response times of all finished requests in milliseconds
+     */
+    double getP99ResponseTimeMillis();
+
+    /**
+     * Returns a response time percentile for a single service and request type.
+     * 
+     * @param service
+     *            service identifier
+     * @param request
+     *            request type, e.g. <code>GetMap</code>
+     * @param percentile
+     *            percentile, between 0 and 100
+     * @return response time in milliseconds, -1 if no such request has been finished
+     */
+    double getResponseTimeMillis( String service, String request, double percentile );
+
+    /**
+     * @return all metrics in the Prometheus text exposition format
+     */
+    String getPrometheusText();
+}
@@ -0,0 +1,138 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import org.deegree.commons.utils.ConfigManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link AsyncRequestLog}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class AsyncRequestLogTest {
+
+    private String resourceName;
+
+    @Before
+    public void setUp() {
+        resourceName = "test-requests-" + UUID.randomUUID() + ".txt";
+    }
+
+    @After
+    public void tearDown() {
+        getResourceFile().delete();
+    }
+
+    @Test
+    public void testAllLinesAreWritten()
+                            throws IOException {
+        AsyncRequestLog log = new AsyncRequestLog( resourceName, 10000 );
+        List<String> expected = new ArrayList<String>();
+        for ( int i = 0; i < 5000; i++ ) {
+            String line = "request=" + i;
+            log.log( line );
+            expected.add( line );
+        }
+        log.shutdown();
+        List<String> lines = readLines();
+        assertEquals( expected.size(), lines.size() );
+        assertEquals( new HashSet<String>( expected ), new HashSet<String>( lines ) );
+        assertEquals( 0, log.getDroppedLines() );
+    }
+
+    @Test
+    public void testLinesAreDroppedIfQueueIsFull()
+                            throws IOException {
+        AsyncRequestLog log = new AsyncRequestLog( resourceName, 2 );
+        // no writer thread is started after the shutdown, so the queue fills up
+        log.shutdown();
+        for ( int i = 0; i < 5; i++ ) {
+            log.log( "request=" + i );
+        }
+        assertEquals( 3, log.getDroppedLines() );
+        log.flush();
+        List<String> lines = readLines();
+        assertEquals( 2, lines.size() );
+        assertEquals( "request=0", lines.get( 0 ) );
+        assertEquals( "request=1", lines.get( 1 ) );
+    }
+
+    @Test
+    public void testFlushWithoutLinesDoesNotCreateResource() {
+        AsyncRequestLog log = new AsyncRequestLog( resourceName, 10 );
+        log.flush();
+        assertFalse( getResourceFile().exists() );
+    }
+
+    private File getResourceFile() {
+        // see ConfigManager
+        return new File( new File( System.getProperty( "user.home" ), ".deegree" ), resourceName );
+    }
+
+    private List<String> readLines()
+                            throws IOException {
+        List<String> lines = new ArrayList<String>();
+        InputStream is = ConfigManager.getInputResource( resourceName );
+        BufferedReader reader = new BufferedReader( new InputStreamReader( is, "UTF-8" ) );
+        try {
+            String line;
+            while ( ( line = reader.readLine() ) != null ) {
+                lines.add( line );
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+}
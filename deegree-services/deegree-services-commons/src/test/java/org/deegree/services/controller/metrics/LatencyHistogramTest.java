@@ -0,0 +1,74 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link LatencyHistogram}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketBoundsAreWithinRelativeError() {
+        for ( long value = 0; value < 1000000; value = value * 3 / 2 + 1 ) {
+            long upper = LatencyHistogram.getUpperBound( LatencyHistogram.getBucket( value ) );
+            assertTrue( upper >= value );
+            assertTrue( upper - value <= Math.max( 1, value / 8 ) );
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for ( long i = 1; i <= 10000; i++ ) {
+            histogram.record( i );
+        }
+        assertEquals( 10000, histogram.getCount() );
+        assertEquals( 10000, histogram.getMax() );
+        assertEquals( 5000.5, histogram.getMean(), 0.001 );
+        assertEquals( 5000, histogram.getValueAtPercentile( 50 ), 5000 / 8 );
+        assertEquals( 9900, histogram.getValueAtPercentile( 99 ), 9900 / 8 );
+        assertEquals( 10000, histogram.getValueAtPercentile( 100 ) );
+    }
+
+}
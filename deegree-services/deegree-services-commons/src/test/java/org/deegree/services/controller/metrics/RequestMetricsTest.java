@@ -0,0 +1,188 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.metrics;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link RequestMetrics}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class RequestMetricsTest {
+
+    private static final List<String> WMS_REQUESTS = asList( "GetCapabilities", "GetMap", "GetFeatureInfo" );
+
+    private static final List<String> WFS_REQUESTS = asList( "GetCapabilities", "GetFeature" );
+
+    @Test
+    public void testSeries() {
+        RequestMetrics metrics = new RequestMetrics();
+        long dispatchTime = metrics.requestDispatched();
+        assertEquals( 1, metrics.getActiveRequests() );
+        metrics.requestFinished( dispatchTime, "wms", "GetMap", WMS_REQUESTS, "layer", asList( "roads", "rivers" ) );
+        metrics.requestFinished( metrics.requestDispatched(), "wms", "GetMap", WMS_REQUESTS, null, null );
+        assertEquals( 2, metrics.getDispatchedRequests() );
+        assertEquals( 0, metrics.getActiveRequests() );
+        assertTrue( metrics.getResponseTimeMillis( "wms", "GetMap", 50 ) >= 0 );
+        assertEquals( -1, metrics.getResponseTimeMillis( "wfs", "GetFeature", 50 ), 0 );
+    }
+
+    @Test
+    public void testNormalizeRequest() {
+        assertEquals( "GetMap", RequestMetrics.normalizeRequest( "GetMap", WMS_REQUESTS ) );
+        assertEquals( "GetMap", RequestMetrics.normalizeRequest( "getmap", WMS_REQUESTS ) );
+        assertEquals( "GetMap", RequestMetrics.normalizeRequest( "GETMAP", WMS_REQUESTS ) );
+        assertEquals( RequestMetrics.OTHER, RequestMetrics.normalizeRequest( "GetFeature", WMS_REQUESTS ) );
+        assertEquals( RequestMetrics.OTHER, RequestMetrics.normalizeRequest( "GetMap", null ) );
+        assertEquals( "unknown", RequestMetrics.normalizeRequest( null, WMS_REQUESTS ) );
+    }
+
+    @Test
+    public void testUnsupportedRequestNamesShareOneSeries() {
+        RequestMetrics metrics = new RequestMetrics();
+        for ( int i = 0; i < 100; i++ ) {
+            metrics.requestFinished( metrics.requestDispatched(), "wfs", "Bogus" + i, WFS_REQUESTS, null, null );
+        }
+        metrics.requestFinished( metrics.requestDispatched(), "wfs", "getfeature", WFS_REQUESTS, null, null );
+        String text = metrics.getPrometheusText();
+        assertTrue( text.contains( "deegree_request_duration_seconds_count{service=\"wfs\",request=\""
+                                   + RequestMetrics.OTHER + "\"} 100" ) );
+        assertTrue( text.contains( "deegree_request_duration_seconds_count{service=\"wfs\",request=\"GetFeature\"} "
+                                   + "1" ) );
+        assertFalse( text.contains( "Bogus" ) );
+        assertFalse( text.contains( "getfeature" ) );
+    }
+
+    @Test
+    public void testSubjectSeriesLimit() {
+        RequestMetrics metrics = new RequestMetrics();
+        for ( int i = 0; i < RequestMetrics.MAX_SERIES + 10; i++ ) {
+            metrics.requestFinished( metrics.requestDispatched(), "wfs", "GetFeature", WFS_REQUESTS, "featuretype",
+                                     Collections.singleton( "ft" + i ) );
+        }
+        String text = metrics.getPrometheusText();
+        assertTrue( text.contains( "featuretype=\"" + RequestMetrics.OTHER + "\"" ) );
+        assertTrue( countSeries( text ) <= RequestMetrics.MAX_SERIES + 1 );
+    }
+
+    @Test
+    public void testServiceSeriesLimit() {
+        RequestMetrics metrics = new RequestMetrics();
+        List<String> requestTypes = new ArrayList<String>();
+        for ( int i = 0; i < RequestMetrics.MAX_SERIES + 10; i++ ) {
+            requestTypes.add( "Request" + i );
+        }
+        for ( String request : requestTypes ) {
+            metrics.requestFinished( metrics.requestDispatched(), "wps", request, requestTypes, null, null );
+        }
+        String text = metrics.getPrometheusText();
+        assertTrue( text.contains( "request=\"" + RequestMetrics.OTHER + "\"" ) );
+        assertEquals( RequestMetrics.MAX_SERIES + 1, countSeries( text ) );
+    }
+
+    @Test
+    public void testPrometheusText() {
+        RequestMetrics metrics = new RequestMetrics();
+        metrics.requestFinished( metrics.requestDispatched(), "wms", "GetMap", WMS_REQUESTS, "layer",
+                                 asList( "roads", "ri\"vers" ) );
+        metrics.requestFinished( metrics.requestDispatched(), null, null, null, null, null );
+        metrics.requestDispatched();
+
+        String text = metrics.getPrometheusText();
+        assertTrue( text.contains( "# TYPE deegree_requests_dispatched_total counter\n" ) );
+        assertTrue( text.contains( "deegree_requests_dispatched_total 3\n" ) );
+        assertTrue( text.contains( "deegree_requests_active 1\n" ) );
+        assertTrue( text.contains( "# TYPE deegree_request_duration_seconds summary\n" ) );
+        assertTrue( text.contains( "# TYPE deegree_layer_request_duration_seconds summary\n" ) );
+        assertTrue( text.contains( "deegree_layer_request_duration_seconds_count{service=\"wms\",request=\"GetMap\","
+                                   + "layer=\"roads\"} 1\n" ) );
+        // quotes in label values are escaped
+        assertTrue( text.contains( "layer=\"ri\\\"vers\"" ) );
+        assertTrue( text.contains( "deegree_request_duration_seconds{service=\"unknown\",request=\"unknown\","
+                                   + "quantile=\"0.99\"}" ) );
+        // each metric family has a single header
+        assertEquals( text.indexOf( "# TYPE deegree_layer_request_duration_seconds" ),
+                      text.lastIndexOf( "# TYPE deegree_layer_request_duration_seconds" ) );
+    }
+
+    @Test
+    public void testLayerFetchTimes() {
+        RequestMetrics metrics = new RequestMetrics();
+        metrics.layerFetched( "roads", 2000, 500 );
+        metrics.layerFetched( "roads", 4000, 0 );
+        metrics.layerFetched( "rivers", 1000, 1000 );
+        String text = metrics.getPrometheusText();
+        assertTrue( text.contains( "# TYPE deegree_layer_fetch_duration_seconds summary\n" ) );
+        assertTrue( text.contains( "deegree_layer_fetch_duration_seconds_count{layer=\"roads\"} 2\n" ) );
+        assertTrue( text.contains( "deegree_layer_fetch_duration_seconds_sum{layer=\"roads\"} 0.006\n" ) );
+        assertTrue( text.contains( "deegree_layer_fetch_wait_duration_seconds_sum{layer=\"roads\"} 5.0E-4\n" ) );
+        assertTrue( text.contains( "deegree_layer_fetch_wait_duration_seconds_count{layer=\"rivers\"} 1\n" ) );
+    }
+
+    @Test
+    public void testLayerSeriesLimit() {
+        RequestMetrics metrics = new RequestMetrics();
+        for ( int i = 0; i < RequestMetrics.MAX_SERIES + 10; i++ ) {
+            metrics.layerFetched( "layer" + i, 1000, 1000 );
+        }
+        String text = metrics.getPrometheusText();
+        assertTrue( text.contains( "deegree_layer_fetch_duration_seconds_count{layer=\"" + RequestMetrics.OTHER
+                                   + "\"} 10\n" ) );
+        assertEquals( 2 * ( RequestMetrics.MAX_SERIES + 1 ), countSeries( text ) );
+    }
+
+    private static int countSeries( String text ) {
+        int count = 0;
+        for ( String line : text.split( "\n" ) ) {
+            if ( line.contains( "_count{" ) ) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+}
@@ -107,8 +107,13 @@ public class Invalidate {
             bbox.setCoordinateSystem( ts.getTileDataSet( tmsid ).getTileMatrixSet().getSpatialMetadata().getCoordinateSystems().get( 0 ) );
         }
 
-        long num = ( (CachingTileStore) ts ).invalidateCache( tmsid, bbox );
-        IOUtils.write( "Removed " + num + " elements from the cache.\n", resp.getOutputStream() );
+        CachingTileStore store = (CachingTileStore) ts;
+        long num = store.invalidateCache( tmsid, bbox );
+        if ( store.isRefreshOnInvalidate() ) {
+            IOUtils.write( "Scheduled " + num + " cached elements for re-rendering.\n", resp.getOutputStream() );
+        } else {
+            IOUtils.write( "Removed " + num + " elements from the cache.\n", resp.getOutputStream() );
+        }
     }
 
 }
@@ -0,0 +1,172 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2010 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+ http://www.occamlabs.de/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+
+package org.deegree.services.config.actions;
+
+import static org.deegree.services.config.actions.Utils.getWorkspaceAndPath;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.deegree.commons.config.DeegreeWorkspace;
+import org.deegree.commons.utils.ArrayUtils;
+import org.deegree.commons.utils.Pair;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.tile.TileDataSet;
+import org.deegree.tile.persistence.TileStore;
+import org.deegree.tile.persistence.TileStoreProvider;
+import org.deegree.tile.persistence.cache.CachingTileStore;
+import org.deegree.tile.persistence.cache.SeedJob;
+
+/**
+ * Starts seeding (or refreshing) a part of a tile store cache in the background.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class Seed {
+
+    public static void seed( String path, String qstring, HttpServletResponse resp )
+                            throws IOException {
+        Pair<DeegreeWorkspace, String> p = getWorkspaceAndPath( path );
+
+        resp.setContentType( "text/plain" );
+
+        String[] parts = path.split( "/" );
+        if ( parts.length < 2 ) {
+            resp.setStatus( 404 );
+            IOUtils.write( "No tile store or tile matrix set specified.\n", resp.getOutputStream() );
+            return;
+        }
+        String id = parts[0];
+        String tmsid = parts[1];
+
+        double[] bbox = null;
+        int[] levels = null;
+        boolean refresh = false;
+        if ( qstring != null ) {
+            for ( String param : qstring.split( "&" ) ) {
+                String lower = param.toLowerCase();
+                String value = URLDecoder.decode( param.substring( param.indexOf( '=' ) + 1 ), "UTF-8" );
+                if ( lower.startsWith( "bbox=" ) ) {
+                    bbox = ArrayUtils.splitAsDoubles( value, "," );
+                    if ( bbox.length != 4 ) {
+                        resp.setStatus( 404 );
+                        IOUtils.write( "The value of the bbox parameter was invalid.\n", resp.getOutputStream() );
+                        return;
+                    }
+                } else if ( lower.startsWith( "levels=" ) ) {
+                    levels = parseLevels( value );
+                    if ( levels == null ) {
+                        resp.setStatus( 404 );
+                        IOUtils.write( "The value of the levels parameter was invalid.\n", resp.getOutputStream() );
+                        return;
+                    }
+                } else if ( lower.equals( "refresh=true" ) ) {
+                    refresh = true;
+                }
+            }
+        }
+
+        TileStore ts = p.first.getNewWorkspace().getResource( TileStoreProvider.class, id );
+        if ( ts == null ) {
+            resp.setStatus( 404 );
+            IOUtils.write( "No such tile store.\n", resp.getOutputStream() );
+            return;
+        }
+
+        if ( !( ts instanceof CachingTileStore ) ) {
+            resp.setStatus( 403 );
+            IOUtils.write( "The tile store is no caching tile store.\n", resp.getOutputStream() );
+            return;
+        }
+
+        TileDataSet dataSet = ts.getTileDataSet( tmsid );
+        if ( dataSet == null ) {
+            resp.setStatus( 404 );
+            IOUtils.write( "No such tile matrix set.\n", resp.getOutputStream() );
+            return;
+        }
+
+        Envelope env = null;
+        if ( bbox != null ) {
+            env = new GeometryFactory().createEnvelope( bbox[0], bbox[1], bbox[2], bbox[3], null );
+            env.setCoordinateSystem( dataSet.getTileMatrixSet().getSpatialMetadata().getCoordinateSystems().get( 0 ) );
+        }
+
+        CachingTileStore store = (CachingTileStore) ts;
+        SeedJob job;
+        if ( refresh ) {
+            job = store.refresh( tmsid, env );
+        } else {
+            if ( levels == null ) {
+                levels = new int[] { 0, dataSet.getTileDataLevels().size() - 1 };
+            }
+            try {
+                job = store.seed( tmsid, env, levels[0], levels[1] );
+            } catch ( IllegalArgumentException e ) {
+                resp.setStatus( 404 );
+                IOUtils.write( e.getMessage() + "\n", resp.getOutputStream() );
+                return;
+            }
+        }
+        IOUtils.write( "Scheduled " + job.getDescription() + " (" + job.getTotalMetaTiles() + " metatiles).\n",
+                       resp.getOutputStream() );
+    }
+
+    private static int[] parseLevels( String value ) {
+        String[] ss = value.split( "," );
+        if ( ss.length != 2 ) {
+            return null;
+        }
+        try {
+            return new int[] { Integer.parseInt( ss[0].trim() ), Integer.parseInt( ss[1].trim() ) };
+        } catch ( NumberFormatException e ) {
+            return null;
+        }
+    }
+
+}
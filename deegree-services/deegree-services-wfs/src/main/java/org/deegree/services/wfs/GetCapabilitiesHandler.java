@@ -569,8 +569,7 @@ class GetCapabilitiesHandler extends OWSCapabilitiesXMLAdapter {
 
             // DescribeFeatureType
             List<Domain> params = new ArrayList<Domain>();
-            List<String> outputFormats = new ArrayList<String>( master.getOutputFormats() );
-            params.add( new Domain( "outputFormat", outputFormats ) );
+            params.add( new Domain( "outputFormat", outputFormats( DescribeFeatureType ) ) );
             addOperation( DescribeFeatureType, params, getAndPost, post, get, operations );
 
             // GetCapabilities
@@ -589,20 +588,20 @@ class GetCapabilitiesHandler extends OWSCapabilitiesXMLAdapter {
             // GetFeature
             params = new ArrayList<Domain>();
             params.add( new Domain( "resultType", Arrays.asList( new String[] { "results", "hits" } ) ) );
-            params.add( new Domain( "outputFormat", outputFormats ) );
+            params.add( new Domain( "outputFormat", outputFormats( GetFeature ) ) );
             addOperation( GetFeature, params, getAndPost, post, get, operations );
 
             // GetFeatureWithLock
             if ( enableTransactions ) {
                 params = new ArrayList<Domain>();
                 params.add( new Domain( "resultType", Arrays.asList( new String[] { "results", "hits" } ) ) );
-                params.add( new Domain( "outputFormat", outputFormats ) );
+                params.add( new Domain( "outputFormat", outputFormats( GetFeatureWithLock ) ) );
                 addOperation( GetFeatureWithLock, params, getAndPost, post, get, operations );
             }
 
             // GetGmlObject
             params = new ArrayList<Domain>();
-            params.add( new Domain( "outputFormat", outputFormats ) );
+            params.add( new Domain( "outputFormat", outputFormats( GetGmlObject ) ) );
             addOperation( GetGmlObject, params, getAndPost, post, get, operations );
 
             if ( enableTransactions ) {
@@ -614,7 +613,7 @@ class GetCapabilitiesHandler extends OWSCapabilitiesXMLAdapter {
 
                 // Transaction
                 params = new ArrayList<Domain>();
-                params.add( new Domain( "inputFormat", outputFormats ) );
+                params.add( new Domain( "inputFormat", outputFormats( Transaction ) ) );
                 params.add( new Domain( "idgen", Arrays.asList( new String[] { "GenerateNew", "UseExisting",
                                                                               "ReplaceDuplicate" } ) ) );
                 params.add( new Domain( "releaseAction", Arrays.asList( new String[] { "ALL", "SOME" } ) ) );
@@ -770,7 +769,7 @@ class GetCapabilitiesHandler extends OWSCapabilitiesXMLAdapter {
     private void writeOutputFormats110( XMLStreamWriter writer )
                             throws XMLStreamException {
         writer.writeStartElement( WFS_NS, "OutputFormats" );
-        for ( String format : master.getOutputFormats() ) {
+        for ( String format : master.getOutputFormats( GetFeature ) ) {
             writer.writeStartElement( WFS_NS, "Format" );
             writer.writeCharacters( format );
             writer.writeEndElement();
@@ -848,8 +847,13 @@ class GetCapabilitiesHandler extends OWSCapabilitiesXMLAdapter {
             // DescribeStoredQueries
             addOperation( DescribeStoredQueries, getAndPost, post, get, operations );
 
-            // GetFeature
-            addOperation( GetFeature, getAndPost, post, get, operations );
+            // GetFeature (may support more output formats than the other operations)
+            List<Domain> getFeatureParams = null;
+            List<String> getFeatureFormats = outputFormats( GetFeature );
+            if ( !getFeatureFormats.equals( new ArrayList<String>( master.getOutputFormats() ) ) ) {
+                getFeatureParams = singletonList( new Domain( "outputFormat", getFeatureFormats ) );
+            }
+            addOperation( GetFeature, getFeatureParams, getAndPost, post, get, operations );
 
             // GetPropertyValue
             addOperation( GetPropertyValue, getAndPost, post, get, operations );
@@ -1111,7 +1115,7 @@ class GetCapabilitiesHandler extends OWSCapabilitiesXMLAdapter {
     private void writeOutputFormats200( XMLStreamWriter writer )
                             throws XMLStreamException {
         writer.writeStartElement( WFS_200_NS, "OutputFormats" );
-        for ( String format : master.getOutputFormats() ) {
+        for ( String format : master.getOutputFormats( GetFeature ) ) {
             writer.writeStartElement( WFS_200_NS, "Format" );
             writer.writeCharacters( format );
             writer.writeEndElement();
@@ -1119,6 +1123,10 @@ class GetCapabilitiesHandler extends OWSCapabilitiesXMLAdapter {
         writer.writeEndElement();
     }
 
+    private List<String> outputFormats( WFSRequestType requestType ) {
+        return new ArrayList<String>( master.getOutputFormats( requestType ) );
+    }
+
     private boolean isGetSupported( WFSRequestType requestType ) {
         return supportedEncodings.isEncodingSupported( requestType, "KVP" );
     }
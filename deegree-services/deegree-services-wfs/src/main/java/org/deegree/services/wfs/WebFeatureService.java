@@ -130,6 +130,7 @@ import org.deegree.services.jaxb.wfs.DeegreeWFS.SupportedVersions;
 import org.deegree.services.jaxb.wfs.DisabledResources;
 import org.deegree.services.jaxb.wfs.FeatureTypeMetadata;
 import org.deegree.services.jaxb.wfs.GMLFormat;
+import org.deegree.services.jaxb.wfs.GeoJSONFormat;
 import org.deegree.services.jaxb.wfs.IdentifierGenerationOptionType;
 import org.deegree.services.jaxb.wfs.RequestType;
 import org.deegree.services.metadata.MetadataUtils;
@@ -140,6 +141,7 @@ import org.deegree.services.ows.OWS100ExceptionReportSerializer;
 import org.deegree.services.ows.OWS110ExceptionReportSerializer;
 import org.deegree.services.ows.PreOWSExceptionReportSerializer;
 import org.deegree.services.wfs.format.Format;
+import org.deegree.services.wfs.format.geojson.GeoJsonFormat;
 import org.deegree.services.wfs.query.StoredQueryHandler;
 import org.deegree.workspace.ResourceIdentifier;
 import org.deegree.workspace.ResourceInitException;
@@ -561,6 +563,7 @@ public class WebFeatureService extends AbstractOWS {
             mimeTypeToFormat.put( "text/xml; subtype=\"gml/3.0.1\"", gml30 );
             mimeTypeToFormat.put( "text/xml; subtype=\"gml/3.1.1\"", gml31 );
             mimeTypeToFormat.put( "text/xml; subtype=\"gml/3.2.1\"", gml32 );
+            mimeTypeToFormat.put( GeoJsonFormat.MIME_TYPE, new GeoJsonFormat( this ) );
         } else {
             LOG.debug( "Using customized format configuration." );
             for ( JAXBElement<? extends AbstractFormatType> formatEl : formatList ) {
@@ -569,6 +572,8 @@ public class WebFeatureService extends AbstractOWS {
                 Format format = null;
                 if ( formatDef instanceof GMLFormat ) {
                     format = new org.deegree.services.wfs.format.gml.GmlFormat( this, (GMLFormat) formatDef );
+                } else if ( formatDef instanceof GeoJSONFormat ) {
+                    format = new GeoJsonFormat( this, (GeoJSONFormat) formatDef );
                 } else if ( formatDef instanceof CustomFormat ) {
                     CustomFormat cf = (CustomFormat) formatDef;
                     String className = cf.getJavaClass();
@@ -1405,8 +1410,45 @@ public class WebFeatureService extends AbstractOWS {
             resolveParams.setTimeout( resolveTimeOutInSeconds );
     }
 
+    /**
+     * Returns the mime types of the formats that support all requests.
+     * 
+     * @return mime types, never <code>null</code>
+     */
     Collection<String> getOutputFormats() {
-        return mimeTypeToFormat.keySet();
+        List<String> formats = new ArrayList<String>();
+        for ( Map.Entry<String, Format> entry : mimeTypeToFormat.entrySet() ) {
+            if ( isSupportedByAll( entry.getValue() ) ) {
+                formats.add( entry.getKey() );
+            }
+        }
+        return formats;
+    }
+
+    private static boolean isSupportedByAll( Format format ) {
+        for ( WFSRequestType requestType : WFSRequestType.values() ) {
+            if ( !format.isSupported( requestType ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the mime types of the formats that support the given request.
+     * 
+     * @param requestType
+     *            request, must not be <code>null</code>
+     * @return mime types, never <code>null</code>
+     */
+    Collection<String> getOutputFormats( WFSRequestType requestType ) {
+        List<String> formats = new ArrayList<String>();
+        for ( Map.Entry<String, Format> entry : mimeTypeToFormat.entrySet() ) {
+            if ( entry.getValue().isSupported( requestType ) ) {
+                formats.add( entry.getKey() );
+            }
+        }
+        return formats;
     }
 
     public int getQueryMaxFeatures() {
@@ -35,6 +35,7 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.services.wfs.format;
 
+import org.deegree.protocol.wfs.WFSRequestType;
 import org.deegree.protocol.wfs.describefeaturetype.DescribeFeatureType;
 import org.deegree.protocol.wfs.getfeature.GetFeature;
 import org.deegree.protocol.wfs.getgmlobject.GetGmlObject;
@@ -57,6 +58,18 @@ public interface Format {
      */
     public void destroy();
 
+    /**
+     * Returns whether this format supports the given request. The {@link WebFeatureService} only advertises a format
+     * for the requests it supports.
+     * 
+     * @param requestType
+     *            request, must not be <code>null</code>
+     * @return <code>true</code>, if the request is supported, <code>false</code> otherwise
+     */
+    public default boolean isSupported( WFSRequestType requestType ) {
+        return true;
+    }
+
     /**
      * Invoked by the {@link WebFeatureService} to perform a <code>DescribeFeatureType</code> request for this format.
      * 
@@ -0,0 +1,227 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wfs.format.geojson;
+
+import static java.lang.Integer.MAX_VALUE;
+import static org.apache.commons.lang.StringUtils.trim;
+import static org.deegree.commons.ows.exception.OWSException.OPTION_NOT_SUPPORTED;
+import static org.deegree.protocol.wfs.WFSRequestType.GetFeature;
+import static org.deegree.protocol.wfs.getfeature.ResultType.RESULTS;
+
+import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.geometry.SFSProfiler;
+import org.deegree.geometry.linearization.LinearizationCriterion;
+import org.deegree.geometry.linearization.MaxErrorCriterion;
+import org.deegree.geometry.linearization.NumPointsCriterion;
+import org.deegree.protocol.wfs.WFSRequestType;
+import org.deegree.protocol.wfs.describefeaturetype.DescribeFeatureType;
+import org.deegree.protocol.wfs.getfeature.GetFeature;
+import org.deegree.protocol.wfs.getfeature.ResultType;
+import org.deegree.protocol.wfs.getgmlobject.GetGmlObject;
+import org.deegree.protocol.wfs.getpropertyvalue.GetPropertyValue;
+import org.deegree.services.controller.utils.HttpResponseBuffer;
+import org.deegree.services.jaxb.wfs.GeoJSONFormat;
+import org.deegree.services.wfs.WebFeatureService;
+import org.deegree.services.wfs.format.Format;
+
+/**
+ * {@link Format} implementation that streams <code>GetFeature</code> results as GeoJSON (RFC 7946).
+ * <p>
+ * Unless a different <code>srsName</code> is requested, geometries are transformed to WGS 84 longitude/latitude
+ * (<code>CRS:84</code>). Only <code>GetFeature</code> is supported by this format, so it is not advertised for other
+ * requests.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class GeoJsonFormat implements Format {
+
+    /** Mime type registered for RFC 7946 GeoJSON. */
+    public static final String MIME_TYPE = "application/geo+json";
+
+    /** Maximum number of decimal places for coordinates. */
+    public static final int MAX_COORDINATE_PRECISION = 15;
+
+    private static final int DEFAULT_POINTS_PER_ARC = 32;
+
+    private final WebFeatureService master;
+
+    private final String mimeType;
+
+    private final int coordinatePrecision;
+
+    private final boolean flattenProperties;
+
+    private final SFSProfiler linearizer;
+
+    private final GeoJsonGetFeatureHandler gfHandler;
+
+    /**
+     * Creates a new {@link GeoJsonFormat} instance with default behaviour.
+     * 
+     * @param master
+     *            service that uses this format, must not be <code>null</code>
+     */
+    public GeoJsonFormat( WebFeatureService master ) {
+        this.master = master;
+        this.mimeType = MIME_TYPE;
+        this.coordinatePrecision = -1;
+        this.flattenProperties = false;
+        this.linearizer = new SFSProfiler( new NumPointsCriterion( DEFAULT_POINTS_PER_ARC ) );
+        this.gfHandler = new GeoJsonGetFeatureHandler( this );
+    }
+
+    /**
+     * Creates a new {@link GeoJsonFormat} instance with user-defined configuration options.
+     * 
+     * @param master
+     *            service that uses this format, must not be <code>null</code>
+     * @param formatDef
+     *            JAXB configuration options, must not be <code>null</code>
+     */
+    public GeoJsonFormat( WebFeatureService master, GeoJSONFormat formatDef ) {
+        this.master = master;
+        this.mimeType = trim( formatDef.getMimeType().get( 0 ) );
+        if ( formatDef.getCoordinatePrecision() != null ) {
+            int precision = formatDef.getCoordinatePrecision().intValue();
+            this.coordinatePrecision = Math.max( 0, Math.min( MAX_COORDINATE_PRECISION, precision ) );
+        } else {
+            this.coordinatePrecision = -1;
+        }
+        this.flattenProperties = formatDef.isFlattenProperties() != null && formatDef.isFlattenProperties();
+        LinearizationCriterion crit = new NumPointsCriterion( DEFAULT_POINTS_PER_ARC );
+        if ( formatDef.getGeometryLinearization() != null ) {
+            crit = new MaxErrorCriterion( formatDef.getGeometryLinearization().getAccuracy(), MAX_VALUE );
+        }
+        this.linearizer = new SFSProfiler( crit );
+        this.gfHandler = new GeoJsonGetFeatureHandler( this );
+    }
+
+    /**
+     * Only <code>GetFeature</code> is supported, so the format must not be advertised for other requests.
+     */
+    @Override
+    public boolean isSupported( WFSRequestType requestType ) {
+        return requestType == GetFeature;
+    }
+
+    @Override
+    public void destroy() {
+        // nothing to do
+    }
+
+    @Override
+    public void doDescribeFeatureType( DescribeFeatureType request, HttpResponseBuffer response, boolean isSoap )
+                            throws OWSException {
+        throw unsupported( "DescribeFeatureType" );
+    }
+
+    @Override
+    public void doGetFeature( GetFeature request, HttpResponseBuffer response )
+                            throws Exception {
+        ResultType type = request.getPresentationParams().getResultType();
+        if ( type == RESULTS || type == null ) {
+            gfHandler.doGetFeatureResults( request, response );
+        } else {
+            gfHandler.doGetFeatureHits( request, response );
+        }
+    }
+
+    @Override
+    public void doGetGmlObject( GetGmlObject request, HttpResponseBuffer response )
+                            throws OWSException {
+        throw unsupported( "GetGmlObject" );
+    }
+
+    @Override
+    public void doGetPropertyValue( GetPropertyValue request, HttpResponseBuffer response )
+                            throws OWSException {
+        throw unsupported( "GetPropertyValue" );
+    }
+
+    private OWSException unsupported( String operation ) {
+        String msg = "Output format '" + mimeType + "' is not supported for " + operation + " requests.";
+        return new OWSException( msg, OPTION_NOT_SUPPORTED, "outputFormat" );
+    }
+
+    /**
+     * Returns the service instance that uses this format.
+     * 
+     * @return service that uses this format, never <code>null</code>
+     */
+    public WebFeatureService getMaster() {
+        return master;
+    }
+
+    /**
+     * Returns the mime type used for responses.
+     * 
+     * @return mime type, never <code>null</code>
+     */
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * Returns the number of decimal places used for coordinates.
+     * 
+     * @return number of decimal places (at most {@link #MAX_COORDINATE_PRECISION}), -1 if it depends on the units of
+     *         the output crs (3 for metres, 6 otherwise)
+     */
+    public int getCoordinatePrecision() {
+        return coordinatePrecision;
+    }
+
+    /**
+     * Returns whether complex property values are flattened into dot-separated member names.
+     * 
+     * @return <code>true</code>, if complex property values are flattened, <code>false</code> if they are written as
+     *         nested objects
+     */
+    public boolean isFlattenProperties() {
+        return flattenProperties;
+    }
+
+    /**
+     * Returns the profiler used for linearizing curves and surfaces with non-linear segments.
+     * 
+     * @return profiler, never <code>null</code>
+     */
+    public SFSProfiler getLinearizer() {
+        return linearizer;
+    }
+}
@@ -0,0 +1,397 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wfs.format.geojson;
+
+import static org.deegree.commons.ows.exception.OWSException.INVALID_PARAMETER_VALUE;
+import static org.deegree.commons.ows.exception.OWSException.NOT_FOUND;
+import static org.deegree.commons.ows.exception.OWSException.OPTION_NOT_SUPPORTED;
+import static org.deegree.protocol.wfs.WFSConstants.VERSION_200;
+import static org.deegree.services.wfs.query.StoredQueryHandler.GET_FEATURE_BY_ID;
+
+import java.io.OutputStreamWriter;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.commons.tom.datetime.DateTime;
+import org.deegree.commons.tom.datetime.ISO8601Converter;
+import org.deegree.commons.utils.kvp.KVPUtils;
+import org.deegree.cs.components.Unit;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.exceptions.UnknownCRSException;
+import org.deegree.cs.persistence.CRSManager;
+import org.deegree.feature.Feature;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.stream.FeatureInputStream;
+import org.deegree.filter.projection.ProjectionClause;
+import org.deegree.filter.projection.PropertyName;
+import org.deegree.protocol.wfs.getfeature.GetFeature;
+import org.deegree.protocol.wfs.getfeature.kvp.GetFeature200KVPEncoder;
+import org.deegree.protocol.wfs.getfeaturewithlock.GetFeatureWithLock;
+import org.deegree.protocol.wfs.query.StoredQuery;
+import org.deegree.services.controller.OGCFrontController;
+import org.deegree.services.controller.utils.HttpResponseBuffer;
+import org.deegree.services.wfs.WebFeatureService;
+import org.deegree.services.wfs.query.QueryAnalyzer;
+import org.deegree.services.wfs.util.ResponsePagingUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Handles {@link GetFeature} requests for the {@link GeoJsonFormat}.
+ * <p>
+ * Features are written to the response while they are read from the feature stores, the result is never collected in
+ * memory. As the number of matched features is not known in advance, paging links are derived from reading one feature
+ * beyond the requested page.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class GeoJsonGetFeatureHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger( GeoJsonGetFeatureHandler.class );
+
+    private static final TimeZone GMT = TimeZone.getTimeZone( "GMT" );
+
+    // RFC 7946: coordinates are WGS 84 longitude/latitude by default
+    private static final String DEFAULT_CRS = "CRS:84";
+
+    private static final int DEFAULT_PLACES = 6;
+
+    private static final int DEFAULT_PLACES_METRE = 3;
+
+    private final GeoJsonFormat format;
+
+    /**
+     * Creates a new {@link GeoJsonGetFeatureHandler} instance.
+     * 
+     * @param format
+     *            never <code>null</code>
+     */
+    GeoJsonGetFeatureHandler( GeoJsonFormat format ) {
+        this.format = format;
+    }
+
+    /**
+     * Performs the given {@link GetFeature} request (result type <code>results</code>).
+     * 
+     * @param request
+     *            request to be handled, never <code>null</code>
+     * @param response
+     *            response that is used to write the result, never <code>null</code>
+     */
+    void doGetFeatureResults( GetFeature request, HttpResponseBuffer response )
+                            throws Exception {
+
+        LOG.debug( "Performing GetFeature (results) request." );
+
+        if ( request instanceof GetFeatureWithLock ) {
+            throw new OWSException( "GetFeatureWithLock is not supported for output format '" + format.getMimeType()
+                                    + "'.", OPTION_NOT_SUPPORTED, "outputFormat" );
+        }
+
+        WebFeatureService master = format.getMaster();
+        QueryAnalyzer analyzer = new QueryAnalyzer( request.getQueries(), master, master.getStoreManager(),
+                                                    master.getCheckAreaOfUse() );
+        ICRS outputCrs = getOutputCrs( analyzer.getRequestedCRS() );
+
+        // -1: unlimited
+        int maxFeatures = master.getQueryMaxFeatures() > 0 ? master.getQueryMaxFeatures() : -1;
+        BigInteger count = request.getPresentationParams().getCount();
+        if ( count != null && ( maxFeatures < 0 || count.intValue() < maxFeatures ) ) {
+            maxFeatures = count.intValue();
+        }
+        int startIndex = 0;
+        if ( request.getPresentationParams().getStartIndex() != null ) {
+            startIndex = request.getPresentationParams().getStartIndex().intValue();
+        }
+
+        JsonWriter json = openResponse( response );
+        GeoJsonWriter writer = new GeoJsonWriter( json, outputCrs, getPlaces( outputCrs ),
+                                                  format.isFlattenProperties(), format.getLinearizer(),
+                                                  getPropertyNames( analyzer.getProjections() ) );
+
+        if ( isGetFeatureByIdRequest( request ) ) {
+            writeSingleFeature( writer, analyzer );
+            json.flush();
+            return;
+        }
+
+        json.beginObject();
+        json.name( "type" );
+        json.value( "FeatureCollection" );
+        json.name( "features" );
+        json.beginArray();
+
+        int featuresAdded = 0;
+        int featuresSkipped = 0;
+        boolean morePages = false;
+        // COUNT=0 requests no features at all, so there are no pages to link to either
+        if ( maxFeatures != 0 ) {
+            int skip = pushDownPaging( analyzer, maxFeatures, startIndex );
+            for ( Map.Entry<FeatureStore, List<Query>> fsToQueries : analyzer.getQueries().entrySet() ) {
+                FeatureStore fs = fsToQueries.getKey();
+                Query[] queries = fsToQueries.getValue().toArray( new Query[fsToQueries.getValue().size()] );
+                FeatureInputStream rs = fs.query( queries );
+                try {
+                    for ( Feature member : rs ) {
+                        if ( featuresAdded == maxFeatures ) {
+                            morePages = true;
+                            break;
+                        }
+                        if ( featuresSkipped < skip ) {
+                            featuresSkipped++;
+                        } else {
+                            writer.writeFeature( member );
+                            featuresAdded++;
+                        }
+                    }
+                } finally {
+                    LOG.debug( "Closing FeatureResultSet (stream)" );
+                    rs.close();
+                }
+                if ( morePages ) {
+                    break;
+                }
+            }
+        }
+        json.endArray();
+
+        json.name( "numberReturned" );
+        json.value( featuresAdded );
+        json.name( "timeStamp" );
+        json.value( getTimestamp() );
+        if ( master.isEnableResponsePaging() && count != null && count.intValue() > 0
+             && VERSION_200.equals( request.getVersion() ) ) {
+            writeLinks( json, request, startIndex, count.intValue(), morePages ? featuresAdded : -1 );
+        }
+        json.endObject();
+        json.flush();
+    }
+
+    /**
+     * Performs the given {@link GetFeature} request (result type <code>hits</code>).
+     * 
+     * @param request
+     *            request to be handled, never <code>null</code>
+     * @param response
+     *            response that is used to write the result, never <code>null</code>
+     */
+    void doGetFeatureHits( GetFeature request, HttpResponseBuffer response )
+                            throws Exception {
+
+        LOG.debug( "Performing GetFeature (hits) request." );
+
+        WebFeatureService master = format.getMaster();
+        QueryAnalyzer analyzer = new QueryAnalyzer( request.getQueries(), master, master.getStoreManager(),
+                                                    master.getCheckAreaOfUse() );
+        int hits = 0;
+        for ( Map.Entry<FeatureStore, List<Query>> fsToQueries : analyzer.getQueries().entrySet() ) {
+            FeatureStore fs = fsToQueries.getKey();
+            Query[] queries = fsToQueries.getValue().toArray( new Query[fsToQueries.getValue().size()] );
+            for ( int queryHits : fs.queryHits( queries ) ) {
+                hits += queryHits;
+            }
+        }
+
+        JsonWriter json = openResponse( response );
+        json.beginObject();
+        json.name( "type" );
+        json.value( "FeatureCollection" );
+        json.name( "features" );
+        json.beginArray();
+        json.endArray();
+        json.name( "numberMatched" );
+        json.value( hits );
+        json.name( "numberReturned" );
+        json.value( 0 );
+        json.name( "timeStamp" );
+        json.value( getTimestamp() );
+        json.endObject();
+        json.flush();
+    }
+
+    private JsonWriter openResponse( HttpResponseBuffer response )
+                            throws Exception {
+        response.setContentType( format.getMimeType() );
+        response.setCharacterEncoding( "UTF-8" );
+        return new JsonWriter( new OutputStreamWriter( response.getOutputStream(), "UTF-8" ) );
+    }
+
+    private void writeSingleFeature( GeoJsonWriter writer, QueryAnalyzer analyzer )
+                            throws Exception {
+        for ( Map.Entry<FeatureStore, List<Query>> fsToQueries : analyzer.getQueries().entrySet() ) {
+            FeatureStore fs = fsToQueries.getKey();
+            Query[] queries = fsToQueries.getValue().toArray( new Query[fsToQueries.getValue().size()] );
+            FeatureInputStream rs = fs.query( queries );
+            try {
+                for ( Feature feature : rs ) {
+                    writer.writeFeature( feature );
+                    return;
+                }
+            } finally {
+                rs.close();
+            }
+        }
+        throw new OWSException( "Feature not found.", NOT_FOUND );
+    }
+
+    /**
+     * Hands the paging parameters to the feature store if the request consists of a single query. One feature more than
+     * requested is fetched, so the existence of a next page can be detected without a separate hits query.
+     * 
+     * @return number of features that still have to be skipped by the caller
+     */
+    private int pushDownPaging( QueryAnalyzer analyzer, int maxFeatures, int startIndex ) {
+        if ( analyzer.getQueries().size() != 1 ) {
+            return startIndex;
+        }
+        List<Query> queries = analyzer.getQueries().values().iterator().next();
+        if ( queries.size() != 1 ) {
+            return startIndex;
+        }
+        Query query = queries.get( 0 );
+        query.setStartIndex( startIndex );
+        if ( maxFeatures > 0 ) {
+            query.setMaxFeatures( maxFeatures + 1 );
+        }
+        return 0;
+    }
+
+    /**
+     * @param returned
+     *            number of features in the current page, -1 if there is no next page
+     */
+    private void writeLinks( JsonWriter json, GetFeature request, int startIndex, int count, int returned )
+                            throws Exception {
+        json.name( "links" );
+        json.beginArray();
+        Map<String, String> kvp = GetFeature200KVPEncoder.export( request );
+        if ( returned >= 0 ) {
+            writeLink( json, kvp, startIndex + returned, "next" );
+        }
+        int previousStartIndex = ResponsePagingUtils.calculatePreviousStartIndex( startIndex, count );
+        if ( previousStartIndex >= 0 ) {
+            writeLink( json, kvp, previousStartIndex, "prev" );
+        }
+        json.endArray();
+    }
+
+    private void writeLink( JsonWriter json, Map<String, String> kvp, int startIndex, String rel )
+                            throws Exception {
+        kvp.put( "STARTINDEX", "" + startIndex );
+        json.beginObject();
+        json.name( "href" );
+        json.value( getHttpGetURL() + KVPUtils.toQueryString( kvp ) );
+        json.name( "rel" );
+        json.value( rel );
+        json.name( "type" );
+        json.value( format.getMimeType() );
+        json.endObject();
+    }
+
+    /**
+     * Returns the base URL of the paging links. Only available while a request is performed by the
+     * {@link OGCFrontController}.
+     */
+    String getHttpGetURL() {
+        return OGCFrontController.getHttpGetURL();
+    }
+
+    /**
+     * Determines the crs for the output geometries. GeoJSON positions are always easting/northing, so the requested crs
+     * is used with x/y axis order.
+     */
+    private ICRS getOutputCrs( ICRS requestedCrs )
+                            throws OWSException {
+        String name = requestedCrs != null ? requestedCrs.getAlias() : DEFAULT_CRS;
+        try {
+            return CRSManager.lookup( name, true );
+        } catch ( UnknownCRSException e ) {
+            throw new OWSException( "Unknown CRS '" + name + "'.", INVALID_PARAMETER_VALUE, "srsName" );
+        }
+    }
+
+    private int getPlaces( ICRS crs ) {
+        if ( format.getCoordinatePrecision() >= 0 ) {
+            return format.getCoordinatePrecision();
+        }
+        if ( crs.getAxis()[0].getUnits() == Unit.METRE ) {
+            return DEFAULT_PLACES_METRE;
+        }
+        return DEFAULT_PLACES;
+    }
+
+    private Set<QName> getPropertyNames( List<ProjectionClause> projections ) {
+        Set<QName> propNames = null;
+        if ( projections != null ) {
+            for ( ProjectionClause clause : projections ) {
+                if ( clause instanceof PropertyName ) {
+                    QName propName = ( (PropertyName) clause ).getPropertyName().getAsQName();
+                    if ( propName != null ) {
+                        if ( propNames == null ) {
+                            propNames = new HashSet<QName>();
+                        }
+                        propNames.add( propName );
+                    }
+                }
+            }
+        }
+        return propNames;
+    }
+
+    private boolean isGetFeatureByIdRequest( GetFeature request ) {
+        if ( request.getQueries().size() == 1 && request.getQueries().get( 0 ) instanceof StoredQuery ) {
+            return GET_FEATURE_BY_ID.equals( ( (StoredQuery) request.getQueries().get( 0 ) ).getId() );
+        }
+        return false;
+    }
+
+    private String getTimestamp() {
+        long msSince1970 = new Date().getTime() / 1000 * 1000;
+        return ISO8601Converter.formatDateTime( new DateTime( new Date( msSince1970 ), GMT ) );
+    }
+
+}
@@ -0,0 +1,652 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wfs.format.geojson;
+
+import static org.deegree.commons.xml.CommonNamespaces.XSINS;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.ElementNode;
+import org.deegree.commons.tom.Reference;
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.exceptions.TransformationException;
+import org.deegree.feature.Feature;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryTransformer;
+import org.deegree.geometry.SFSProfiler;
+import org.deegree.geometry.composite.CompositeGeometry;
+import org.deegree.geometry.multi.MultiGeometry;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.Curve;
+import org.deegree.geometry.primitive.GeometricPrimitive;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.primitive.Ring.RingType;
+import org.deegree.geometry.primitive.Surface;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Encodes {@link Feature}s and {@link Geometry}s as GeoJSON (RFC 7946) objects.
+ * <p>
+ * The first geometry property of a feature becomes the GeoJSON <code>geometry</code> member, all other properties are
+ * written into the <code>properties</code> object. Complex property values are written as nested JSON objects, or, if
+ * flattening is enabled, as members with dot-separated names (e.g. <code>address.street</code>). Multiple occurrences
+ * of the same property become JSON arrays (nested mode) or get an index suffix (e.g. <code>name[1]</code>, flat mode).
+ * Non-linear curves and surfaces are linearized, as GeoJSON has no encoding for them.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class GeoJsonWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger( GeoJsonWriter.class );
+
+    private static final QName XSI_NIL = new QName( XSINS, "nil" );
+
+    private static final String TEXT_MEMBER = "#text";
+
+    private final JsonWriter json;
+
+    private final GeometryTransformer transformer;
+
+    private final int places;
+
+    private final boolean flatten;
+
+    private final SFSProfiler linearizer;
+
+    private final Set<QName> propertyNames;
+
+    /**
+     * Creates a new {@link GeoJsonWriter} instance.
+     * 
+     * @param json
+     *            JSON stream to write to, must not be <code>null</code>
+     * @param outputCrs
+     *            crs to transform geometries into, may be <code>null</code> (no transformation)
+     * @param places
+     *            number of decimal places for coordinates
+     * @param flatten
+     *            <code>true</code>, if complex property values shall be flattened into dot-separated member names
+     * @param linearizer
+     *            used for linearizing non-linear geometries, must not be <code>null</code>
+     * @param propertyNames
+     *            names of the properties to write, may be <code>null</code> (all properties)
+     */
+    GeoJsonWriter( JsonWriter json, ICRS outputCrs, int places, boolean flatten, SFSProfiler linearizer,
+                   Set<QName> propertyNames ) {
+        this.json = json;
+        this.transformer = outputCrs != null ? new GeometryTransformer( outputCrs ) : null;
+        this.places = places;
+        this.flatten = flatten;
+        this.linearizer = linearizer;
+        this.propertyNames = propertyNames;
+    }
+
+    /**
+     * Writes the given {@link Feature} as a GeoJSON <code>Feature</code> object.
+     * 
+     * @param feature
+     *            feature to write, must not be <code>null</code>
+     * @throws IOException
+     * @throws TransformationException
+     *             if a geometry cannot be transformed into the output crs
+     */
+    void writeFeature( Feature feature )
+                            throws IOException, TransformationException {
+        List<Property> props = feature.getProperties();
+        Property geometryProp = null;
+        for ( Property prop : props ) {
+            if ( prop.getValue() instanceof Geometry && isIncluded( prop.getName() ) ) {
+                geometryProp = prop;
+                break;
+            }
+        }
+
+        json.beginObject();
+        json.name( "type" );
+        json.value( "Feature" );
+        if ( feature.getId() != null ) {
+            json.name( "id" );
+            json.value( feature.getId() );
+        }
+        json.name( "geometry" );
+        if ( geometryProp != null ) {
+            writeGeometry( (Geometry) geometryProp.getValue() );
+        } else {
+            json.nullValue();
+        }
+        json.name( "properties" );
+        json.beginObject();
+        int size = props.size();
+        for ( int i = 0; i < size; ) {
+            QName name = props.get( i ).getName();
+            int end = i + 1;
+            while ( end < size && name.equals( props.get( end ).getName() ) ) {
+                end++;
+            }
+            if ( isIncluded( name ) ) {
+                List<Property> group = props.subList( i, end );
+                if ( geometryProp != null && group.contains( geometryProp ) ) {
+                    group = new ArrayList<Property>( group );
+                    group.remove( geometryProp );
+                }
+                writeMember( name.getLocalPart(), group );
+            }
+            i = end;
+        }
+        json.endObject();
+        json.endObject();
+    }
+
+    /**
+     * Writes the given {@link Geometry} as a GeoJSON geometry object (transformed into the output crs).
+     * 
+     * @param geometry
+     *            geometry to write, must not be <code>null</code>
+     * @throws IOException
+     * @throws TransformationException
+     *             if the geometry cannot be transformed into the output crs
+     */
+    void writeGeometry( Geometry geometry )
+                            throws IOException, TransformationException {
+        Geometry geom = geometry;
+        if ( transformer != null && geom.getCoordinateSystem() != null ) {
+            geom = transformer.transform( geom );
+        }
+        writeGeometryObject( geom );
+    }
+
+    private boolean isIncluded( QName name ) {
+        if ( propertyNames == null || propertyNames.contains( name ) ) {
+            return true;
+        }
+        for ( QName propName : propertyNames ) {
+            if ( propName.getNamespaceURI().isEmpty() && propName.getLocalPart().equals( name.getLocalPart() ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeMember( String name, List<? extends ElementNode> nodes )
+                            throws IOException, TransformationException {
+        if ( nodes.isEmpty() ) {
+            return;
+        }
+        if ( flatten ) {
+            if ( nodes.size() == 1 ) {
+                writeFlat( name, nodes.get( 0 ) );
+            } else {
+                for ( int i = 0; i < nodes.size(); i++ ) {
+                    writeFlat( name + "[" + i + "]", nodes.get( i ) );
+                }
+            }
+            return;
+        }
+        json.name( name );
+        if ( nodes.size() == 1 ) {
+            writeValue( getValue( nodes.get( 0 ) ) );
+        } else {
+            json.beginArray();
+            for ( ElementNode node : nodes ) {
+                writeValue( getValue( node ) );
+            }
+            json.endArray();
+        }
+    }
+
+    private TypedObjectNode getValue( ElementNode node ) {
+        if ( node instanceof Property ) {
+            return ( (Property) node ).getValue();
+        }
+        return node;
+    }
+
+    private void writeValue( TypedObjectNode value )
+                            throws IOException, TransformationException {
+        if ( value == null ) {
+            json.nullValue();
+        } else if ( value instanceof Reference<?> ) {
+            json.value( ( (Reference<?>) value ).getURI() );
+        } else if ( value instanceof PrimitiveValue ) {
+            writePrimitive( (PrimitiveValue) value );
+        } else if ( value instanceof Geometry ) {
+            writeGeometry( (Geometry) value );
+        } else if ( value instanceof Feature ) {
+            writeFeature( (Feature) value );
+        } else if ( value instanceof ElementNode ) {
+            writeElement( (ElementNode) value );
+        } else {
+            json.value( value.toString() );
+        }
+    }
+
+    private void writeElement( ElementNode element )
+                            throws IOException, TransformationException {
+        PrimitiveValue text = getSimpleContent( element );
+        if ( text != null || isNil( element ) ) {
+            writeValue( text );
+            return;
+        }
+        json.beginObject();
+        Map<QName, PrimitiveValue> attrs = element.getAttributes();
+        if ( attrs != null ) {
+            for ( Map.Entry<QName, PrimitiveValue> attr : attrs.entrySet() ) {
+                json.name( "@" + attr.getKey().getLocalPart() );
+                writePrimitive( attr.getValue() );
+            }
+        }
+        StringBuilder mixedText = null;
+        List<TypedObjectNode> children = element.getChildren();
+        int size = children.size();
+        for ( int i = 0; i < size; ) {
+            TypedObjectNode child = children.get( i );
+            int end = i + 1;
+            if ( child instanceof ElementNode ) {
+                QName name = ( (ElementNode) child ).getName();
+                while ( end < size && children.get( end ) instanceof ElementNode
+                        && name.equals( ( (ElementNode) children.get( end ) ).getName() ) ) {
+                    end++;
+                }
+                writeMember( name.getLocalPart(), elementNodes( children.subList( i, end ) ) );
+            } else if ( child instanceof PrimitiveValue ) {
+                String s = ( (PrimitiveValue) child ).getAsText();
+                if ( s != null && !s.trim().isEmpty() ) {
+                    if ( mixedText == null ) {
+                        mixedText = new StringBuilder();
+                    }
+                    mixedText.append( s.trim() );
+                }
+            }
+            i = end;
+        }
+        if ( mixedText != null ) {
+            json.name( TEXT_MEMBER );
+            json.value( mixedText.toString() );
+        }
+        json.endObject();
+    }
+
+    private void writeFlat( String key, ElementNode node )
+                            throws IOException, TransformationException {
+        TypedObjectNode value = getValue( node );
+        if ( value instanceof Feature && !( value instanceof Reference<?> ) ) {
+            Feature feature = (Feature) value;
+            if ( feature.getId() != null ) {
+                json.name( key + ".id" );
+                json.value( feature.getId() );
+            }
+            writeFlatChildren( key, feature.getProperties() );
+            return;
+        }
+        if ( !( value instanceof ElementNode ) || value instanceof Reference<?> ) {
+            json.name( key );
+            writeValue( value );
+            return;
+        }
+        ElementNode element = (ElementNode) value;
+        PrimitiveValue text = getSimpleContent( element );
+        if ( text != null || isNil( element ) ) {
+            json.name( key );
+            writeValue( text );
+            return;
+        }
+        Map<QName, PrimitiveValue> attrs = element.getAttributes();
+        if ( attrs != null ) {
+            for ( Map.Entry<QName, PrimitiveValue> attr : attrs.entrySet() ) {
+                json.name( key + ".@" + attr.getKey().getLocalPart() );
+                writePrimitive( attr.getValue() );
+            }
+        }
+        writeFlatChildren( key, element.getChildren() );
+    }
+
+    private void writeFlatChildren( String key, List<? extends TypedObjectNode> children )
+                            throws IOException, TransformationException {
+        int size = children.size();
+        for ( int i = 0; i < size; ) {
+            TypedObjectNode child = children.get( i );
+            int end = i + 1;
+            if ( child instanceof ElementNode ) {
+                QName name = ( (ElementNode) child ).getName();
+                while ( end < size && children.get( end ) instanceof ElementNode
+                        && name.equals( ( (ElementNode) children.get( end ) ).getName() ) ) {
+                    end++;
+                }
+                writeMember( key + "." + name.getLocalPart(), elementNodes( children.subList( i, end ) ) );
+            }
+            i = end;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ElementNode> elementNodes( List<? extends TypedObjectNode> nodes ) {
+        // only called for runs of ElementNodes
+        return (List<ElementNode>) nodes;
+    }
+
+    private boolean isNil( ElementNode element ) {
+        Map<QName, PrimitiveValue> attrs = element.getAttributes();
+        if ( attrs == null ) {
+            return false;
+        }
+        PrimitiveValue nil = attrs.get( XSI_NIL );
+        return nil != null && Boolean.parseBoolean( nil.getAsText() );
+    }
+
+    /**
+     * Returns the text content of an element without attributes and child elements.
+     * 
+     * @return text content or <code>null</code>, if the element has attributes or child elements
+     */
+    private PrimitiveValue getSimpleContent( ElementNode element ) {
+        if ( element.getAttributes() != null && !element.getAttributes().isEmpty() ) {
+            return null;
+        }
+        List<TypedObjectNode> children = element.getChildren();
+        if ( children == null || children.size() != 1 || !( children.get( 0 ) instanceof PrimitiveValue ) ) {
+            return null;
+        }
+        return (PrimitiveValue) children.get( 0 );
+    }
+
+    private void writePrimitive( PrimitiveValue primitive )
+                            throws IOException {
+        Object value = primitive.getValue();
+        if ( value instanceof Boolean ) {
+            json.value( ( (Boolean) value ).booleanValue() );
+        } else if ( value instanceof Double || value instanceof Float ) {
+            json.value( ( (Number) value ).doubleValue() );
+        } else if ( value instanceof Integer || value instanceof Long || value instanceof Short
+                    || value instanceof Byte ) {
+            json.value( ( (Number) value ).longValue() );
+        } else if ( value instanceof BigInteger || value instanceof BigDecimal ) {
+            json.numberValue( value.toString() );
+        } else {
+            json.value( primitive.getAsText() );
+        }
+    }
+
+    private void writeGeometryObject( Geometry geom )
+                            throws IOException, TransformationException {
+        switch ( geom.getGeometryType() ) {
+        case PRIMITIVE_GEOMETRY:
+            writeGeometricPrimitive( (GeometricPrimitive) geom );
+            break;
+        case MULTI_GEOMETRY:
+            writeMulti( (MultiGeometry<?>) geom );
+            break;
+        case COMPOSITE_GEOMETRY:
+            writeCollection( (CompositeGeometry<?>) geom );
+            break;
+        case ENVELOPE:
+            writeEnvelope( (Envelope) geom );
+            break;
+        default:
+            json.nullValue();
+        }
+    }
+
+    private void writeGeometricPrimitive( GeometricPrimitive geom )
+                            throws IOException, TransformationException {
+        switch ( geom.getPrimitiveType() ) {
+        case Point:
+            beginGeometry( "Point" );
+            writePosition( (Point) geom );
+            json.endObject();
+            break;
+        case Curve:
+            beginGeometry( "LineString" );
+            writeCurveCoordinates( (Curve) geom );
+            json.endObject();
+            break;
+        case Surface:
+            Surface surface = (Surface) geom;
+            if ( isLinearPolygon( surface ) ) {
+                beginGeometry( "Polygon" );
+                writePolygonCoordinates( (Polygon) surface );
+                json.endObject();
+            } else {
+                writeGeometryObject( linearizer.simplify( surface ) );
+            }
+            break;
+        default:
+            LOG.debug( "Cannot encode geometry of type {} as GeoJSON.", geom.getPrimitiveType() );
+            json.nullValue();
+        }
+    }
+
+    private void writeMulti( MultiGeometry<?> multi )
+                            throws IOException, TransformationException {
+        switch ( multi.getMultiGeometryType() ) {
+        case MULTI_POINT:
+            beginGeometry( "MultiPoint" );
+            json.beginArray();
+            for ( Geometry member : multi ) {
+                writePosition( (Point) member );
+            }
+            json.endArray();
+            json.endObject();
+            break;
+        case MULTI_CURVE:
+        case MULTI_LINE_STRING:
+            beginGeometry( "MultiLineString" );
+            json.beginArray();
+            for ( Geometry member : multi ) {
+                writeCurveCoordinates( (Curve) member );
+            }
+            json.endArray();
+            json.endObject();
+            break;
+        case MULTI_SURFACE:
+        case MULTI_POLYGON:
+            beginGeometry( "MultiPolygon" );
+            json.beginArray();
+            for ( Geometry member : multi ) {
+                Surface surface = (Surface) member;
+                if ( isLinearPolygon( surface ) ) {
+                    writePolygonCoordinates( (Polygon) surface );
+                } else {
+                    Geometry simplified = linearizer.simplify( surface );
+                    if ( simplified instanceof Polygon ) {
+                        writePolygonCoordinates( (Polygon) simplified );
+                    } else {
+                        for ( Geometry patch : (MultiGeometry<?>) simplified ) {
+                            writePolygonCoordinates( (Polygon) patch );
+                        }
+                    }
+                }
+            }
+            json.endArray();
+            json.endObject();
+            break;
+        default:
+            writeCollection( multi );
+        }
+    }
+
+    private void writeCollection( List<? extends Geometry> members )
+                            throws IOException, TransformationException {
+        beginGeometry( "GeometryCollection" );
+        json.name( "geometries" );
+        json.beginArray();
+        for ( Geometry member : members ) {
+            writeGeometryObject( member );
+        }
+        json.endArray();
+        json.endObject();
+    }
+
+    private void writeEnvelope( Envelope env )
+                            throws IOException {
+        double[] min = env.getMin().getAsArray();
+        double[] max = env.getMax().getAsArray();
+        beginGeometry( "Polygon" );
+        json.beginArray();
+        json.beginArray();
+        writePosition( min[0], min[1] );
+        writePosition( max[0], min[1] );
+        writePosition( max[0], max[1] );
+        writePosition( min[0], max[1] );
+        writePosition( min[0], min[1] );
+        json.endArray();
+        json.endArray();
+        json.endObject();
+    }
+
+    private void beginGeometry( String type )
+                            throws IOException {
+        json.beginObject();
+        json.name( "type" );
+        json.value( type );
+        if ( !"GeometryCollection".equals( type ) ) {
+            json.name( "coordinates" );
+        }
+    }
+
+    private boolean isLinearPolygon( Surface surface ) {
+        if ( !( surface instanceof Polygon ) ) {
+            return false;
+        }
+        Polygon polygon = (Polygon) surface;
+        if ( !isLinearRing( polygon.getExteriorRing() ) ) {
+            return false;
+        }
+        if ( polygon.getInteriorRings() != null ) {
+            for ( Ring interior : polygon.getInteriorRings() ) {
+                if ( !isLinearRing( interior ) ) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean isLinearRing( Ring ring ) {
+        return ring != null && ring.getRingType() == RingType.LinearRing;
+    }
+
+    private void writeCurveCoordinates( Curve curve )
+                            throws IOException {
+        switch ( curve.getCurveType() ) {
+        case LineString:
+            writePoints( curve.getControlPoints() );
+            break;
+        case Ring:
+            if ( isLinearRing( (Ring) curve ) ) {
+                writePoints( curve.getControlPoints() );
+                break;
+            }
+            writePoints( linearizer.simplify( curve ).getControlPoints() );
+            break;
+        default:
+            writePoints( linearizer.simplify( curve ).getControlPoints() );
+        }
+    }
+
+    private void writePolygonCoordinates( Polygon polygon )
+                            throws IOException {
+        json.beginArray();
+        writePoints( polygon.getExteriorRing().getControlPoints() );
+        if ( polygon.getInteriorRings() != null ) {
+            for ( Ring interior : polygon.getInteriorRings() ) {
+                writePoints( interior.getControlPoints() );
+            }
+        }
+        json.endArray();
+    }
+
+    private void writePoints( Points points )
+                            throws IOException {
+        json.beginArray();
+        if ( points instanceof PackedPoints ) {
+            // avoid creating a point object per position
+            double[] coords = points.getAsArray();
+            int dim = points.getDimension();
+            for ( int i = 0; i + dim <= coords.length; i += dim ) {
+                json.beginArray();
+                json.value( coords[i], places );
+                json.value( coords[i + 1], places );
+                if ( dim > 2 && !Double.isNaN( coords[i + 2] ) ) {
+                    json.value( coords[i + 2], places );
+                }
+                json.endArray();
+            }
+        } else {
+            for ( Point p : points ) {
+                writePosition( p );
+            }
+        }
+        json.endArray();
+    }
+
+    private void writePosition( Point p )
+                            throws IOException {
+        json.beginArray();
+        json.value( p.get0(), places );
+        json.value( p.get1(), places );
+        if ( p.getCoordinateDimension() > 2 && !Double.isNaN( p.get2() ) ) {
+            json.value( p.get2(), places );
+        }
+        json.endArray();
+    }
+
+    private void writePosition( double x, double y )
+                            throws IOException {
+        json.beginArray();
+        json.value( x, places );
+        json.value( y, places );
+        json.endArray();
+    }
+
+}
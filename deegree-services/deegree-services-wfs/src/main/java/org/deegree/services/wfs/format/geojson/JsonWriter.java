@@ -0,0 +1,359 @@
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wfs.format.geojson;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Minimal streaming JSON writer that keeps its own character buffer and formats numbers without creating intermediate
+ * strings.
+ * <p>
+ * The writer only tracks whether a separator is required, it does not validate the structure of the written document.
+ * Callers are responsible for properly nesting objects and arrays and for writing a name before each object member.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class JsonWriter {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int MAX_PLACES = 15;
+
+    private static final long[] POW10 = new long[MAX_PLACES + 1];
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    static {
+        POW10[0] = 1;
+        for ( int i = 1; i < POW10.length; i++ ) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    private final Writer out;
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    private final char[] digits = new char[20];
+
+    private int pos;
+
+    // one entry per open object/array: true if the next value needs a leading comma
+    private boolean[] separator = new boolean[16];
+
+    private int depth;
+
+    private boolean afterName;
+
+    /**
+     * Creates a new {@link JsonWriter} instance.
+     * 
+     * @param out
+     *            writer to write to, must not be <code>null</code>
+     */
+    JsonWriter( Writer out ) {
+        this.out = out;
+    }
+
+    void beginObject()
+                            throws IOException {
+        beforeValue();
+        write( '{' );
+        push();
+    }
+
+    void endObject()
+                            throws IOException {
+        depth--;
+        write( '}' );
+    }
+
+    void beginArray()
+                            throws IOException {
+        beforeValue();
+        write( '[' );
+        push();
+    }
+
+    void endArray()
+                            throws IOException {
+        depth--;
+        write( ']' );
+    }
+
+    /**
+     * Writes the name of the next object member.
+     * 
+     * @param name
+     *            member name, must not be <code>null</code>
+     * @throws IOException
+     */
+    void name( String name )
+                            throws IOException {
+        beforeValue();
+        writeString( name );
+        write( ':' );
+        afterName = true;
+    }
+
+    void value( String value )
+                            throws IOException {
+        if ( value == null ) {
+            nullValue();
+            return;
+        }
+        beforeValue();
+        writeString( value );
+    }
+
+    void value( boolean value )
+                            throws IOException {
+        beforeValue();
+        write( value ? "true" : "false" );
+    }
+
+    void value( long value )
+                            throws IOException {
+        beforeValue();
+        writeLong( value );
+    }
+
+    /**
+     * Writes the given number in its shortest exact representation. Non-finite values are written as
+     * <code>null</code>.
+     * 
+     * @param value
+     *            number to write
+     * @throws IOException
+     */
+    void value( double value )
+                            throws IOException {
+        if ( Double.isNaN( value ) || Double.isInfinite( value ) ) {
+            nullValue();
+            return;
+        }
+        beforeValue();
+        if ( value == (long) value && Math.abs( value ) < POW10[MAX_PLACES] ) {
+            writeLong( (long) value );
+        } else {
+            write( Double.toString( value ) );
+        }
+    }
+
+    /**
+     * Writes the given number rounded to a fixed number of decimal places (trailing zeros are omitted). Non-finite
+     * values are written as <code>null</code>.
+     * 
+     * @param value
+     *            number to write
+     * @param places
+     *            number of decimal places, between 0 and 15
+     * @throws IOException
+     */
+    void value( double value, int places )
+                            throws IOException {
+        if ( Double.isNaN( value ) || Double.isInfinite( value ) ) {
+            nullValue();
+            return;
+        }
+        long scale = POW10[places];
+        double scaled = value * scale;
+        if ( Math.abs( scaled ) >= POW10[MAX_PLACES] ) {
+            // too large for exact fixed point arithmetic
+            value( value );
+            return;
+        }
+        beforeValue();
+        long rounded = Math.round( scaled );
+        if ( rounded < 0 ) {
+            write( '-' );
+            rounded = -rounded;
+        }
+        writeLong( rounded / scale );
+        long fraction = rounded % scale;
+        if ( fraction != 0 ) {
+            int digitCount = places;
+            while ( fraction % 10 == 0 ) {
+                fraction /= 10;
+                digitCount--;
+            }
+            write( '.' );
+            for ( long p = POW10[digitCount - 1]; p > fraction && p > 1; p /= 10 ) {
+                write( '0' );
+            }
+            writeLong( fraction );
+        }
+    }
+
+    /**
+     * Writes a number that is already encoded as a valid JSON number literal.
+     * 
+     * @param literal
+     *            number literal, must not be <code>null</code>
+     * @throws IOException
+     */
+    void numberValue( String literal )
+                            throws IOException {
+        beforeValue();
+        write( literal );
+    }
+
+    void nullValue()
+                            throws IOException {
+        beforeValue();
+        write( "null" );
+    }
+
+    /**
+     * Writes all buffered characters to the underlying writer and flushes it.
+     * 
+     * @throws IOException
+     */
+    void flush()
+                            throws IOException {
+        out.write( buffer, 0, pos );
+        pos = 0;
+        out.flush();
+    }
+
+    private void push() {
+        if ( depth == separator.length ) {
+            boolean[] grown = new boolean[depth * 2];
+            System.arraycopy( separator, 0, grown, 0, depth );
+            separator = grown;
+        }
+        separator[depth++] = false;
+    }
+
+    private void beforeValue()
+                            throws IOException {
+        if ( afterName ) {
+            afterName = false;
+            return;
+        }
+        if ( depth > 0 ) {
+            if ( separator[depth - 1] ) {
+                write( ',' );
+            } else {
+                separator[depth - 1] = true;
+            }
+        }
+    }
+
+    private void writeString( String s )
+                            throws IOException {
+        write( '"' );
+        int length = s.length();
+        for ( int i = 0; i < length; i++ ) {
+            char c = s.charAt( i );
+            switch ( c ) {
+            case '"':
+                write( '\\' );
+                write( '"' );
+                break;
+            case '\\':
+                write( '\\' );
+                write( '\\' );
+                break;
+            case '\n':
+                write( '\\' );
+                write( 'n' );
+                break;
+            case '\r':
+                write( '\\' );
+                write( 'r' );
+                break;
+            case '\t':
+                write( '\\' );
+                write( 't' );
+                break;
+            default:
+                if ( c < 0x20 || c == 0x2028 || c == 0x2029 ) {
+                    write( '\\' );
+                    write( 'u' );
+                    write( HEX[( c >> 12 ) & 0xf] );
+                    write( HEX[( c >> 8 ) & 0xf] );
+                    write( HEX[( c >> 4 ) & 0xf] );
+                    write( HEX[c & 0xf] );
+                } else {
+                    write( c );
+                }
+            }
+        }
+        write( '"' );
+    }
+
+    private void writeLong( long value )
+                            throws IOException {
+        if ( value == Long.MIN_VALUE ) {
+            write( Long.toString( value ) );
+            return;
+        }
+        if ( value < 0 ) {
+            write( '-' );
+            value = -value;
+        }
+        int i = digits.length;
+        do {
+            digits[--i] = (char) ( '0' + value % 10 );
+            value /= 10;
+        } while ( value != 0 );
+        while ( i < digits.length ) {
+            write( digits[i++] );
+        }
+    }
+
+    private void write( String s )
+                            throws IOException {
+        int length = s.length();
+        for ( int i = 0; i < length; i++ ) {
+            write( s.charAt( i ) );
+        }
+    }
+
+    private void write( char c )
+                            throws IOException {
+        if ( pos == buffer.length ) {
+            out.write( buffer, 0, pos );
+            pos = 0;
+        }
+        buffer[pos++] = c;
+    }
+
+}
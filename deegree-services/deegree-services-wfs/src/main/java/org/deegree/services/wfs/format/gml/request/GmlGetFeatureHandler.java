@@ -514,6 +514,7 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         // retrieve and write result features
         int featuresAdded = 0;
         int featuresSkipped = 0;
+        startIndex = pushDownPaging( analyzer, maxFeatures, startIndex, lock );
         GmlXlinkOptions resolveState = gmlStream.getReferenceResolveStrategy().getResolveOptions();
         for ( Map.Entry<FeatureStore, List<Query>> fsToQueries : analyzer.getQueries().entrySet() ) {
             FeatureStore fs = fsToQueries.getKey();
@@ -554,6 +555,7 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         // retrieve maxfeatures features
         int featuresAdded = 0;
         int featuresSkipped = 0;
+        startIndex = pushDownPaging( analyzer, maxFeatures, startIndex, lock );
         for ( Map.Entry<FeatureStore, List<Query>> fsToQueries : analyzer.getQueries().entrySet() ) {
             FeatureStore fs = fsToQueries.getKey();
             Query[] queries = fsToQueries.getValue().toArray( new Query[fsToQueries.getValue().size()] );
@@ -600,6 +602,28 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         }
     }
 
+    /**
+     * Hands the paging parameters to the feature store if the request consists of a single query, so the store can
+     * apply them efficiently (e.g. as LIMIT/OFFSET in the database).
+     * 
+     * @return number of features that still have to be skipped by the caller
+     */
+    private int pushDownPaging( QueryAnalyzer analyzer, int maxFeatures, int startIndex, Lock lock ) {
+        if ( lock != null || analyzer.getQueries().size() != 1 ) {
+            return startIndex;
+        }
+        List<Query> queries = analyzer.getQueries().values().iterator().next();
+        if ( queries.size() != 1 ) {
+            return startIndex;
+        }
+        Query query = queries.get( 0 );
+        query.setStartIndex( startIndex );
+        if ( maxFeatures > 0 ) {
+            query.setMaxFeatures( maxFeatures );
+        }
+        return 0;
+    }
+
     private void writeResponsePagingUris( XMLStreamWriter xmlStream, ResponsePagingUris responsePagingUris )
                             throws XMLStreamException {
         if ( responsePagingUris == null )
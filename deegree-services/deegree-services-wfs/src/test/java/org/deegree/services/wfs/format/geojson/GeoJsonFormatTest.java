@@ -0,0 +1,102 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2015 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wfs.format.geojson;
+
+import static org.deegree.protocol.wfs.WFSRequestType.DescribeFeatureType;
+import static org.deegree.protocol.wfs.WFSRequestType.GetFeature;
+import static org.deegree.protocol.wfs.WFSRequestType.GetFeatureWithLock;
+import static org.deegree.protocol.wfs.WFSRequestType.GetGmlObject;
+import static org.deegree.protocol.wfs.WFSRequestType.GetPropertyValue;
+import static org.deegree.protocol.wfs.WFSRequestType.Transaction;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+
+import org.deegree.services.jaxb.wfs.GeoJSONFormat;
+import org.junit.Test;
+
+/**
+ * Tests for {@link GeoJsonFormat}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class GeoJsonFormatTest {
+
+    @Test
+    public void testDefaultCoordinatePrecision() {
+        assertEquals( -1, new GeoJsonFormat( null ).getCoordinatePrecision() );
+        assertEquals( -1, new GeoJsonFormat( null, createFormatDef( null ) ).getCoordinatePrecision() );
+    }
+
+    @Test
+    public void testCoordinatePrecision() {
+        assertEquals( 0, new GeoJsonFormat( null, createFormatDef( 0 ) ).getCoordinatePrecision() );
+        assertEquals( 5, new GeoJsonFormat( null, createFormatDef( 5 ) ).getCoordinatePrecision() );
+        assertEquals( 15, new GeoJsonFormat( null, createFormatDef( 15 ) ).getCoordinatePrecision() );
+    }
+
+    @Test
+    public void testCoordinatePrecisionIsClamped() {
+        assertEquals( GeoJsonFormat.MAX_COORDINATE_PRECISION,
+                      new GeoJsonFormat( null, createFormatDef( 16 ) ).getCoordinatePrecision() );
+        assertEquals( GeoJsonFormat.MAX_COORDINATE_PRECISION,
+                      new GeoJsonFormat( null, createFormatDef( 100 ) ).getCoordinatePrecision() );
+    }
+
+    @Test
+    public void testOnlyGetFeatureIsSupported() {
+        GeoJsonFormat format = new GeoJsonFormat( null );
+        assertTrue( format.isSupported( GetFeature ) );
+        assertFalse( format.isSupported( DescribeFeatureType ) );
+        assertFalse( format.isSupported( GetFeatureWithLock ) );
+        assertFalse( format.isSupported( GetGmlObject ) );
+        assertFalse( format.isSupported( GetPropertyValue ) );
+        assertFalse( format.isSupported( Transaction ) );
+    }
+
+    private static GeoJSONFormat createFormatDef( Integer coordinatePrecision ) {
+        GeoJSONFormat formatDef = new GeoJSONFormat();
+        formatDef.getMimeType().add( GeoJsonFormat.MIME_TYPE );
+        if ( coordinatePrecision != null ) {
+            formatDef.setCoordinatePrecision( BigInteger.valueOf( coordinatePrecision ) );
+        }
+        return formatDef;
+    }
+}
@@ -0,0 +1,302 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2015 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wfs.format.geojson;
+
+import static org.deegree.protocol.wfs.WFSConstants.VERSION_200;
+import static org.deegree.protocol.wfs.getfeature.ResultType.RESULTS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.ServletOutputStream;
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.BaseType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.Feature;
+import org.deegree.feature.GenericFeatureCollection;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.stream.MemoryFeatureInputStream;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.protocol.wfs.getfeature.GetFeature;
+import org.deegree.protocol.wfs.query.FilterQuery;
+import org.deegree.protocol.wfs.query.StandardPresentationParams;
+import org.deegree.services.controller.utils.HttpResponseBuffer;
+import org.deegree.services.wfs.WebFeatureService;
+import org.deegree.services.wfs.WfsFeatureStoreManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests the paging of {@link GeoJsonGetFeatureHandler}: the paging parameters are handed to the feature store (reading
+ * one feature beyond the requested page) and the <code>next</code>/<code>prev</code> links are derived from that.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class GeoJsonGetFeatureHandlerTest {
+
+    private static final QName FT_NAME = new QName( "http://www.deegree.org/app", "Road", "app" );
+
+    private static final String BASE_URL = "http://localhost/deegree-webservices/services/wfs?";
+
+    private static final Pattern FEATURE_ID = Pattern.compile( "\"type\":\"Feature\",\"id\":\"([^\"]+)\"" );
+
+    private static final Pattern START_INDEX = Pattern.compile( "[?&]STARTINDEX=(\\d+)" );
+
+    private static final Pattern LINK = Pattern.compile( "\\{\"href\":\"([^\"]*)\",\"rel\":\"(\\w+)\"" );
+
+    private final List<Feature> features = new ArrayList<Feature>();
+
+    private final List<Query> queries = new ArrayList<Query>();
+
+    private WebFeatureService master;
+
+    private FeatureStore store;
+
+    private GeoJsonGetFeatureHandler handler;
+
+    @Before
+    public void setUp()
+                            throws Exception {
+        PropertyType pt = new SimplePropertyType( new QName( FT_NAME.getNamespaceURI(), "name", "app" ), 1, 1,
+                                                  BaseType.STRING, null, null );
+        FeatureType ft = new GenericFeatureType( FT_NAME, Collections.singletonList( pt ), false );
+
+        store = mock( FeatureStore.class );
+        when( store.query( any( Query[].class ) ) ).thenAnswer( new Answer<MemoryFeatureInputStream>() {
+            @Override
+            public MemoryFeatureInputStream answer( InvocationOnMock invocation ) {
+                Query query = ( (Query[]) invocation.getArguments()[0] )[0];
+                queries.add( query );
+                // like the SQL based stores: paging is performed by the store
+                int from = Math.min( features.size(), query.getStartIndex() );
+                int to = features.size();
+                if ( query.getMaxFeatures() > 0 ) {
+                    to = Math.min( to, from + query.getMaxFeatures() );
+                }
+                return new MemoryFeatureInputStream( new GenericFeatureCollection( null, features.subList( from, to ) ) );
+            }
+        } );
+        WfsFeatureStoreManager storeManager = mock( WfsFeatureStoreManager.class );
+        when( storeManager.lookupFeatureType( FT_NAME ) ).thenReturn( ft );
+        when( storeManager.getStore( FT_NAME ) ).thenReturn( store );
+
+        master = mock( WebFeatureService.class );
+        when( master.getStoreManager() ).thenReturn( storeManager );
+        when( master.getQueryMaxFeatures() ).thenReturn( 15 );
+        when( master.isEnableResponsePaging() ).thenReturn( true );
+
+        handler = new GeoJsonGetFeatureHandler( new GeoJsonFormat( master ) ) {
+            @Override
+            String getHttpGetURL() {
+                return BASE_URL;
+            }
+        };
+
+        for ( int i = 0; i < 25; i++ ) {
+            Property name = new GenericProperty( pt, new PrimitiveValue( "road " + i ) );
+            features.add( ft.newFeatureInstance( "ROAD_" + i, Collections.singletonList( name ), null ) );
+        }
+    }
+
+    @Test
+    public void firstPageHasNextLink()
+                            throws Exception {
+        String json = getFeature( 0, 10 );
+        assertEquals( ids( 0, 10 ), featureIds( json ) );
+        assertReadAhead( 0, 10 );
+        Map<String, String> links = links( json );
+        assertEquals( 1, links.size() );
+        assertStartIndex( 10, links.get( "next" ) );
+    }
+
+    @Test
+    public void middlePageHasNextAndPrevLink()
+                            throws Exception {
+        String json = getFeature( 10, 10 );
+        assertEquals( ids( 10, 20 ), featureIds( json ) );
+        assertReadAhead( 10, 10 );
+        Map<String, String> links = links( json );
+        assertEquals( 2, links.size() );
+        assertStartIndex( 20, links.get( "next" ) );
+        assertStartIndex( 0, links.get( "prev" ) );
+    }
+
+    @Test
+    public void lastPageHasNoNextLink()
+                            throws Exception {
+        String json = getFeature( 20, 10 );
+        assertEquals( ids( 20, 25 ), featureIds( json ) );
+        assertTrue( json.contains( "\"numberReturned\":5," ) );
+        Map<String, String> links = links( json );
+        assertEquals( 1, links.size() );
+        assertStartIndex( 10, links.get( "prev" ) );
+    }
+
+    @Test
+    public void exactlyFullLastPageHasNoNextLink()
+                            throws Exception {
+        // the read-ahead finds no further feature, so no link to an empty page is written
+        String json = getFeature( 15, 10 );
+        assertEquals( ids( 15, 25 ), featureIds( json ) );
+        assertReadAhead( 15, 10 );
+        Map<String, String> links = links( json );
+        assertEquals( 1, links.size() );
+        assertStartIndex( 5, links.get( "prev" ) );
+    }
+
+    @Test
+    public void countIsLimitedByQueryMaxFeatures()
+                            throws Exception {
+        String json = getFeature( 0, 20 );
+        assertEquals( ids( 0, 15 ), featureIds( json ) );
+        assertReadAhead( 0, 15 );
+        assertStartIndex( 15, links( json ).get( "next" ) );
+    }
+
+    @Test
+    public void countZeroReturnsNoFeaturesAndNoLinks()
+                            throws Exception {
+        String json = getFeature( 10, 0 );
+        assertTrue( featureIds( json ).isEmpty() );
+        assertTrue( json.contains( "\"numberReturned\":0," ) );
+        assertTrue( links( json ).isEmpty() );
+        verify( store, never() ).query( any( Query[].class ) );
+    }
+
+    @Test
+    public void unlimitedWithoutCount()
+                            throws Exception {
+        when( master.getQueryMaxFeatures() ).thenReturn( -1 );
+        String json = getFeature( 0, -1 );
+        assertEquals( ids( 0, 25 ), featureIds( json ) );
+        assertEquals( -1, queries.get( 0 ).getMaxFeatures() );
+        assertFalse( json.contains( "\"links\"" ) );
+    }
+
+    /**
+     * @param count
+     *            requested number of features, -1 for none
+     * @return the response document
+     */
+    private String getFeature( int startIndex, int count )
+                            throws Exception {
+        BigInteger countParam = count < 0 ? null : BigInteger.valueOf( count );
+        StandardPresentationParams presentationParams = new StandardPresentationParams(
+                                                                                        BigInteger.valueOf( startIndex ),
+                                                                                        countParam, RESULTS,
+                                                                                        GeoJsonFormat.MIME_TYPE );
+        org.deegree.protocol.wfs.query.Query query = new FilterQuery( FT_NAME, null, null, null );
+        GetFeature request = new GetFeature( VERSION_200, null, presentationParams, null,
+                                             Collections.singletonList( query ) );
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        HttpResponseBuffer response = mock( HttpResponseBuffer.class );
+        when( response.getOutputStream() ).thenReturn( new ServletOutputStream() {
+            @Override
+            public void write( int b )
+                                    throws IOException {
+                bos.write( b );
+            }
+        } );
+        handler.doGetFeatureResults( request, response );
+        return bos.toString( "UTF-8" );
+    }
+
+    private void assertReadAhead( int startIndex, int count ) {
+        assertEquals( 1, queries.size() );
+        assertEquals( startIndex, queries.get( 0 ).getStartIndex() );
+        assertEquals( count + 1, queries.get( 0 ).getMaxFeatures() );
+    }
+
+    private static void assertStartIndex( int expected, String href ) {
+        assertTrue( href, href.startsWith( BASE_URL ) );
+        Matcher m = START_INDEX.matcher( href );
+        assertTrue( href, m.find() );
+        assertEquals( href, "" + expected, m.group( 1 ) );
+    }
+
+    private static List<String> ids( int from, int to ) {
+        List<String> ids = new ArrayList<String>();
+        for ( int i = from; i < to; i++ ) {
+            ids.add( "ROAD_" + i );
+        }
+        return ids;
+    }
+
+    private static List<String> featureIds( String json ) {
+        List<String> ids = new ArrayList<String>();
+        Matcher m = FEATURE_ID.matcher( json );
+        while ( m.find() ) {
+            ids.add( m.group( 1 ) );
+        }
+        return ids;
+    }
+
+    private static Map<String, String> links( String json ) {
+        Map<String, String> links = new HashMap<String, String>();
+        Matcher m = LINK.matcher( json );
+        while ( m.find() ) {
+            links.put( m.group( 2 ), m.group( 1 ) );
+        }
+        return links;
+    }
+}
@@ -0,0 +1,130 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2015 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wfs.format.geojson;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+
+import org.deegree.cs.exceptions.TransformationException;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.SFSProfiler;
+import org.deegree.geometry.linearization.NumPointsCriterion;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.junit.Test;
+
+/**
+ * Tests for {@link JsonWriter} and the geometry encoding of {@link GeoJsonWriter}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class GeoJsonWriterTest {
+
+    private final GeometryFactory fac = new GeometryFactory();
+
+    @Test
+    public void testFixedPrecisionNumbers()
+                            throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter json = new JsonWriter( out );
+        json.beginArray();
+        json.value( 7.0, 3 );
+        json.value( 1.25, 3 );
+        json.value( -0.05, 3 );
+        json.value( 0.0004, 3 );
+        json.value( 1.0509, 2 );
+        json.value( 123456.7891, 0 );
+        json.value( Double.NaN, 3 );
+        json.value( 1.0E20, 3 );
+        json.endArray();
+        json.flush();
+        assertEquals( "[7,1.25,-0.05,0,1.05,123457,null,1.0E20]", out.toString() );
+    }
+
+    @Test
+    public void testStringEscaping()
+                            throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter json = new JsonWriter( out );
+        json.beginObject();
+        json.name( "a\"b" );
+        json.value( "line\nbreak\\\u0001" );
+        json.name( "empty" );
+        json.beginObject();
+        json.endObject();
+        json.name( "flag" );
+        json.value( true );
+        json.endObject();
+        json.flush();
+        assertEquals( "{\"a\\\"b\":\"line\\nbreak\\\\\\u0001\",\"empty\":{},\"flag\":true}", out.toString() );
+    }
+
+    @Test
+    public void testPoint()
+                            throws IOException, TransformationException {
+        Geometry point = fac.createPoint( null, 7.123456789, 50.5, null );
+        assertEquals( "{\"type\":\"Point\",\"coordinates\":[7.12346,50.5]}", write( point, 5 ) );
+    }
+
+    @Test
+    public void testPolygonWithHole()
+                            throws IOException, TransformationException {
+        Ring exterior = fac.createLinearRing( null, null, new PackedPoints( null, new double[] { 0, 0, 10, 0, 10, 10,
+                                                                                                0, 10, 0, 0 }, 2 ) );
+        Ring interior = fac.createLinearRing( null, null, new PackedPoints( null, new double[] { 2, 2, 3, 2, 3, 3, 2,
+                                                                                                2 }, 2 ) );
+        Geometry polygon = fac.createPolygon( null, null, exterior, Collections.singletonList( interior ) );
+        assertEquals( "{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[10,0],[10,10],[0,10],[0,0]],"
+                      + "[[2,2],[3,2],[3,3],[2,2]]]}", write( polygon, 3 ) );
+    }
+
+    private String write( Geometry geometry, int places )
+                            throws IOException, TransformationException {
+        StringWriter out = new StringWriter();
+        JsonWriter json = new JsonWriter( out );
+        SFSProfiler linearizer = new SFSProfiler( new NumPointsCriterion( 8 ) );
+        new GeoJsonWriter( json, null, places, false, linearizer, null ).writeGeometry( geometry );
+        json.flush();
+        return out.toString();
+    }
+
+}
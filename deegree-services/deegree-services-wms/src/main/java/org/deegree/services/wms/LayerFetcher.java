@@ -0,0 +1,197 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2026 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+
+package org.deegree.services.wms;
+
+import static java.lang.System.nanoTime;
+import static org.deegree.commons.ows.exception.OWSException.NO_APPLICABLE_CODE;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.layer.LayerData;
+import org.deegree.layer.PrefetchableLayerData;
+import org.deegree.protocol.wms.filter.ScaleFunction;
+import org.deegree.services.controller.metrics.RequestMetrics;
+import org.slf4j.Logger;
+
+/**
+ * Fetches the data of the {@link PrefetchableLayerData} of a GetMap request concurrently, while the request thread
+ * renders the layers one after another and in layer order.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class LayerFetcher {
+
+    private static final Logger LOG = getLogger( LayerFetcher.class );
+
+    private final List<LayerFetch> fetches;
+
+    private final List<String> layerNames;
+
+    /**
+     * Creates a new {@link LayerFetcher} and submits the retrieval of the data of all prefetchable layers.
+     * 
+     * @param executor
+     *            executor to fetch the data with, can be <code>null</code> (data is fetched during rendering)
+     * @param layerDataList
+     *            data of the layers in rendering order, must not be <code>null</code>
+     * @param layerNames
+     *            names of the layers (same order), must not be <code>null</code>
+     * @param scale
+     *            scale of the map
+     */
+    LayerFetcher( Executor executor, List<LayerData> layerDataList, List<String> layerNames, double scale ) {
+        this.layerNames = layerNames;
+        fetches = new ArrayList<LayerFetch>( layerDataList.size() );
+        for ( LayerData d : layerDataList ) {
+            LayerFetch fetch = null;
+            if ( executor != null && d instanceof PrefetchableLayerData ) {
+                fetch = new LayerFetch( (PrefetchableLayerData) d, scale );
+                try {
+                    executor.execute( fetch );
+                } catch ( RejectedExecutionException e ) {
+                    // performed on the request thread by #await
+                    LOG.debug( "Layer fetch executor rejected task, fetching on request thread." );
+                }
+            }
+            fetches.add( fetch );
+        }
+    }
+
+    /**
+     * Waits until the data of a layer has been fetched. If the executor has not started fetching it yet, it is fetched
+     * on the calling thread.
+     * 
+     * @param index
+     *            index of the layer
+     * @throws InterruptedException
+     *             if the calling or the fetching thread has been interrupted
+     * @throws OWSException
+     *             if fetching the data failed
+     */
+    void await( int index )
+                            throws InterruptedException, OWSException {
+        LayerFetch fetch = fetches.get( index );
+        if ( fetch == null ) {
+            return;
+        }
+        long begin = nanoTime();
+        // no-op if the executor has already started (or finished) the task
+        fetch.run();
+        long fetchMicros;
+        try {
+            fetchMicros = fetch.get();
+        } catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof InterruptedException ) {
+                throw (InterruptedException) cause;
+            }
+            LOG.trace( "Stack trace:", cause );
+            String msg = "Fetching the data of layer '" + layerNames.get( index ) + "' failed: "
+                         + cause.getLocalizedMessage();
+            throw new OWSException( msg, cause, NO_APPLICABLE_CODE );
+        }
+        long waitMicros = ( nanoTime() - begin ) / 1000;
+        LOG.debug( "Layer '{}': fetching took {} [ms] (waited {} [ms]).",
+                   new Object[] { layerNames.get( index ), fetchMicros / 1000, waitMicros / 1000 } );
+        RequestMetrics.getInstance().layerFetched( layerNames.get( index ), fetchMicros, waitMicros );
+    }
+
+    /**
+     * Stops all fetches and releases the data that has already been fetched. Called if the layers are not going to be
+     * rendered (completely).
+     */
+    void cancel() {
+        for ( LayerFetch fetch : fetches ) {
+            if ( fetch != null ) {
+                fetch.cancel( true );
+                fetch.data.discard();
+            }
+        }
+    }
+
+    /**
+     * Fetches the data of a single layer, result is the fetch time in microseconds.
+     */
+    private static class LayerFetch extends FutureTask<Long> {
+
+        private final PrefetchableLayerData data;
+
+        private LayerFetch( final PrefetchableLayerData data, final double scale ) {
+            super( new Callable<Long>() {
+                @Override
+                public Long call()
+                                        throws Exception {
+                    long begin = nanoTime();
+                    // may also run on the request thread, so restore its scale value afterwards
+                    Double previousScale = ScaleFunction.getCurrentScaleValue().get();
+                    ScaleFunction.getCurrentScaleValue().set( scale );
+                    try {
+                        data.fetch();
+                    } finally {
+                        if ( previousScale == null ) {
+                            ScaleFunction.getCurrentScaleValue().remove();
+                        } else {
+                            ScaleFunction.getCurrentScaleValue().set( previousScale );
+                        }
+                    }
+                    return ( nanoTime() - begin ) / 1000;
+                }
+            } );
+            this.data = data;
+        }
+
+        @Override
+        public void run() {
+            super.run();
+            if ( isCancelled() ) {
+                // fetch may have completed after the request has been given up
+                data.discard();
+            }
+        }
+    }
+
+}
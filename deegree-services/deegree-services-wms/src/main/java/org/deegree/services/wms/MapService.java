@@ -36,6 +36,8 @@
 
 package org.deegree.services.wms;
 
+import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static org.deegree.commons.ows.exception.OWSException.LAYER_NOT_QUERYABLE;
 import static org.deegree.commons.ows.exception.OWSException.NO_APPLICABLE_CODE;
 import static org.deegree.commons.utils.MapUtils.DEFAULT_PIXEL_SIZE;
@@ -54,6 +56,9 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.deegree.commons.annotations.LoggingNotes;
 import org.deegree.commons.ows.exception.OWSException;
@@ -97,6 +102,8 @@ public class MapService {
 
     private static final Logger LOG = getLogger( MapService.class );
 
+    private static final int DEFAULT_LAYER_FETCH_THREADS = 4;
+
     public StyleRegistry registry;
 
     MapOptionsMaps layerOptions = new MapOptionsMaps();
@@ -113,6 +120,9 @@ public class MapService {
 
     private final GetLegendHandler getLegendHandler;
 
+    // fetches layer data concurrently for GetMap requests, null if disabled
+    private final ExecutorService fetchExecutor;
+
     /**
      * @param conf
      * @param adapter
@@ -149,6 +159,36 @@ public class MapService {
             }
         }
         getLegendHandler = new GetLegendHandler( this );
+
+        int fetchThreads = DEFAULT_LAYER_FETCH_THREADS;
+        if ( conf != null && conf.getLayerFetchThreads() != null ) {
+            fetchThreads = conf.getLayerFetchThreads().intValue();
+        }
+        LOG.debug( "Using {} threads for fetching layer data.", fetchThreads );
+        fetchExecutor = fetchThreads > 0 ? createFetchExecutor( fetchThreads ) : null;
+    }
+
+    private static ExecutorService createFetchExecutor( int threads ) {
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread( Runnable r ) {
+                Thread t = new Thread( r, "wms-layer-fetch-" + count.incrementAndGet() );
+                t.setDaemon( true );
+                return t;
+            }
+        };
+        return newFixedThreadPool( threads, threadFactory );
+    }
+
+    /**
+     * Stops the threads used for fetching layer data.
+     */
+    public void destroy() {
+        if ( fetchExecutor != null ) {
+            fetchExecutor.shutdownNow();
+        }
     }
 
     /**
@@ -209,15 +249,28 @@ public class MapService {
 
         ScaleFunction.getCurrentScaleValue().set( scale );
 
-        List<LayerData> layerDataList = checkStyleValidAndBuildLayerDataList( gm, headers, scale, queryIter );
-        Iterator<MapOptions> optIter = mapOptions.iterator();
-        for ( LayerData d : layerDataList ) {
-            ctx.applyOptions( optIter.next() );
-            try {
+        List<String> layerNames = new ArrayList<String>();
+        List<LayerData> layerDataList = checkStyleValidAndBuildLayerDataList( gm, headers, scale, queryIter,
+                                                                              layerNames );
+        LayerFetcher fetcher = new LayerFetcher( fetchExecutor, layerDataList, layerNames, scale );
+        boolean finished = false;
+        try {
+            Iterator<MapOptions> optIter = mapOptions.iterator();
+            for ( int i = 0; i < layerDataList.size(); i++ ) {
+                LayerData d = layerDataList.get( i );
+                ctx.applyOptions( optIter.next() );
+                fetcher.await( i );
+                long begin = currentTimeMillis();
                 d.render( ctx );
-            } catch ( InterruptedException e ) {
-                String msg = "Request time-out.";
-                throw new OWSException( msg, NO_APPLICABLE_CODE );
+                LOG.debug( "Layer '{}': rendering took {} [ms].", layerNames.get( i ), currentTimeMillis() - begin );
+            }
+            finished = true;
+        } catch ( InterruptedException e ) {
+            String msg = "Request time-out.";
+            throw new OWSException( msg, NO_APPLICABLE_CODE );
+        } finally {
+            if ( !finished ) {
+                fetcher.cancel();
             }
         }
         ctx.optimizeAndDrawLabels();
@@ -227,7 +280,8 @@ public class MapService {
 
     private List<LayerData> checkStyleValidAndBuildLayerDataList( org.deegree.protocol.wms.ops.GetMap gm,
                                                                   List<String> headers, double scale,
-                                                                  ListIterator<LayerQuery> queryIter )
+                                                                  ListIterator<LayerQuery> queryIter,
+                                                                  List<String> layerNames )
                             throws OWSException {
         List<LayerData> layerDataList = new ArrayList<LayerData>();
         for ( LayerRef lr : gm.getLayers() ) {
@@ -241,6 +295,7 @@ public class MapService {
                 }
                 if ( layer.isStyleApplicable( query.getStyle() ) ) {
                     layerDataList.add( layer.mapQuery( query, headers ) );
+                    layerNames.add( layer.getMetadata().getName() );
                 }
             }
         }
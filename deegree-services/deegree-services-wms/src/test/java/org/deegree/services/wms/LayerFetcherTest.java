@@ -0,0 +1,266 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2026 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+
+package org.deegree.services.wms;
+
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.layer.LayerData;
+import org.deegree.layer.PrefetchableLayerData;
+import org.deegree.rendering.r2d.context.RenderContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link LayerFetcher}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class LayerFetcherTest {
+
+    private static final List<String> NAMES = asList( "first", "second", "third" );
+
+    private ExecutorService executor;
+
+    private final List<String> events = Collections.synchronizedList( new ArrayList<String>() );
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool( 3 );
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testLayersAreFetchedConcurrentlyAndAwaitedInOrder()
+                            throws Exception {
+        // the first layer can only finish after the last one has been fetched
+        final CountDownLatch lastFetched = new CountDownLatch( 1 );
+        TestLayerData first = new TestLayerData( "first" ) {
+            @Override
+            public void fetch()
+                                    throws InterruptedException {
+                assertTrue( lastFetched.await( 5, SECONDS ) );
+                super.fetch();
+            }
+        };
+        TestLayerData second = new TestLayerData( "second" );
+        TestLayerData third = new TestLayerData( "third" ) {
+            @Override
+            public void fetch()
+                                    throws InterruptedException {
+                super.fetch();
+                lastFetched.countDown();
+            }
+        };
+        LayerFetcher fetcher = new LayerFetcher( executor, list( first, second, third ), NAMES, 1000 );
+        for ( int i = 0; i < NAMES.size(); i++ ) {
+            fetcher.await( i );
+            events.add( "render " + NAMES.get( i ) );
+        }
+        assertTrue( events.indexOf( "fetch third" ) < events.indexOf( "fetch first" ) );
+        assertEquals( asList( "render first", "render second", "render third" ), rendered() );
+        assertTrue( events.indexOf( "fetch first" ) < events.indexOf( "render first" ) );
+        assertTrue( first.fetched && second.fetched && third.fetched );
+    }
+
+    @Test
+    public void testRejectedFetchIsPerformedOnRequestThread()
+                            throws Exception {
+        executor.shutdown();
+        TestLayerData data = new TestLayerData( "first" );
+        LayerFetcher fetcher = new LayerFetcher( executor, list( data ), NAMES, 1000 );
+        assertFalse( data.fetched );
+        fetcher.await( 0 );
+        assertTrue( data.fetched );
+        assertEquals( Thread.currentThread(), data.fetchThread );
+    }
+
+    @Test
+    public void testWithoutExecutorDataIsFetchedDuringRendering()
+                            throws Exception {
+        TestLayerData data = new TestLayerData( "first" );
+        LayerFetcher fetcher = new LayerFetcher( null, list( data ), NAMES, 1000 );
+        fetcher.await( 0 );
+        assertFalse( data.fetched );
+    }
+
+    @Test
+    public void testFailedFetchIsReportedAndNotRetried()
+                            throws Exception {
+        TestLayerData failing = new TestLayerData( "second" ) {
+            @Override
+            public void fetch()
+                                    throws InterruptedException {
+                super.fetch();
+                throw new IllegalStateException( "dataset missing" );
+            }
+        };
+        TestLayerData first = new TestLayerData( "first" );
+        TestLayerData third = new TestLayerData( "third" );
+        LayerFetcher fetcher = new LayerFetcher( executor, list( first, failing, third ), NAMES, 1000 );
+        fetcher.await( 0 );
+        try {
+            fetcher.await( 1 );
+            fail( "Expected OWSException." );
+        } catch ( OWSException e ) {
+            assertTrue( e.getMessage().contains( "'second'" ) );
+            assertTrue( e.getMessage().contains( "dataset missing" ) );
+            assertTrue( e.getCause() instanceof IllegalStateException );
+        }
+        assertEquals( 1, failing.fetches );
+        // as done by MapService if rendering does not finish
+        fetcher.cancel();
+        assertTrue( first.discarded && failing.discarded && third.discarded );
+    }
+
+    @Test
+    public void testCancelInterruptsRunningFetchAndDiscardsData()
+                            throws Exception {
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch interrupted = new CountDownLatch( 1 );
+        TestLayerData blocking = new TestLayerData( "second" ) {
+            @Override
+            public void fetch()
+                                    throws InterruptedException {
+                started.countDown();
+                try {
+                    new CountDownLatch( 1 ).await();
+                } catch ( InterruptedException e ) {
+                    interrupted.countDown();
+                    throw e;
+                }
+            }
+        };
+        TestLayerData first = new TestLayerData( "first" );
+        LayerFetcher fetcher = new LayerFetcher( executor, list( first, blocking ), NAMES, 1000 );
+        fetcher.await( 0 );
+        assertTrue( started.await( 5, SECONDS ) );
+        fetcher.cancel();
+        assertTrue( interrupted.await( 5, SECONDS ) );
+        assertTrue( first.discarded );
+        assertTrue( blocking.discarded );
+    }
+
+    @Test(expected = InterruptedException.class)
+    public void testInterruptedFetchIsPropagated()
+                            throws Exception {
+        TestLayerData data = new TestLayerData( "first" ) {
+            @Override
+            public void fetch()
+                                    throws InterruptedException {
+                throw new InterruptedException();
+            }
+        };
+        new LayerFetcher( executor, list( data ), NAMES, 1000 ).await( 0 );
+    }
+
+    private List<String> rendered() {
+        List<String> rendered = new ArrayList<String>();
+        for ( String event : events ) {
+            if ( event.startsWith( "render " ) ) {
+                rendered.add( event );
+            }
+        }
+        return rendered;
+    }
+
+    private static List<LayerData> list( LayerData... data ) {
+        return new ArrayList<LayerData>( asList( data ) );
+    }
+
+    private class TestLayerData implements PrefetchableLayerData {
+
+        private final String name;
+
+        volatile boolean fetched;
+
+        volatile boolean discarded;
+
+        volatile int fetches;
+
+        volatile Thread fetchThread;
+
+        TestLayerData( String name ) {
+            this.name = name;
+        }
+
+        @Override
+        public void fetch()
+                                throws InterruptedException {
+            fetches++;
+            fetchThread = Thread.currentThread();
+            events.add( "fetch " + name );
+            fetched = true;
+        }
+
+        @Override
+        public void discard() {
+            discarded = true;
+        }
+
+        @Override
+        public void render( RenderContext context ) {
+            // rendering is performed by MapService
+        }
+
+        @Override
+        public FeatureCollection info() {
+            return null;
+        }
+    }
+
+}
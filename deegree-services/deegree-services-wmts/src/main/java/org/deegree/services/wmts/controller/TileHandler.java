@@ -41,17 +41,27 @@
 
 package org.deegree.services.wmts.controller;
 
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
 import static org.apache.commons.io.IOUtils.closeQuietly;
 import static org.apache.commons.io.IOUtils.copy;
 import static org.deegree.commons.ows.exception.OWSException.INVALID_PARAMETER_VALUE;
 import static org.deegree.commons.ows.exception.OWSException.NO_APPLICABLE_CODE;
+import static org.slf4j.LoggerFactory.getLogger;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
 
 import org.deegree.commons.ows.exception.OWSException;
 import org.deegree.layer.Layer;
@@ -60,9 +70,11 @@ import org.deegree.protocol.wmts.ops.GetTile;
 import org.deegree.services.controller.utils.HttpResponseBuffer;
 import org.deegree.theme.Theme;
 import org.deegree.theme.Themes;
+import org.deegree.tile.FileBackedTile;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileDataLevel;
 import org.deegree.tile.TileDataSet;
+import org.slf4j.Logger;
 
 /**
  * Responsible for handling GetTile requests.
@@ -75,6 +87,8 @@ import org.deegree.tile.TileDataSet;
 
 class TileHandler {
 
+    private static final Logger LOG = getLogger( TileHandler.class );
+
     private Map<String, TileLayer> layers;
 
     TileHandler( List<Theme> themes ) {
@@ -88,13 +102,13 @@ class TileHandler {
         }
     }
 
-    void getTile( Map<String, String> map, HttpResponseBuffer response )
+    void getTile( Map<String, String> map, HttpServletRequest request, HttpResponseBuffer response )
                             throws OWSException, ServletException {
         GetTile op = new GetTile( map );
-        getTile( op, response );
+        getTile( op, request, response );
     }
 
-    private void getTile( final GetTile op, final HttpResponseBuffer response )
+    private void getTile( final GetTile op, final HttpServletRequest request, final HttpResponseBuffer response )
                             throws OWSException, ServletException {
         final TileLayer layer = layers.get( op.getLayer() );
         if ( layer == null ) {
@@ -134,12 +148,25 @@ class TileHandler {
             throw new OWSException( "No such tile found.", INVALID_PARAMETER_VALUE );
         }
 
+        if ( t instanceof FileBackedTile ) {
+            File file = ( (FileBackedTile) t ).getFile();
+            if ( file.isFile() ) {
+                sendFile( file, format, request, response );
+                return;
+            }
+        }
+
         InputStream in = null;
         try {
             in = t.getAsStream();
             if ( in == null ) {
                 throw new OWSException( "Tile yielded no data.", NO_APPLICABLE_CODE );
             }
+            if ( in instanceof ByteArrayInputStream ) {
+                // data is in memory already, reading it cannot fail after the response has been committed
+                response.disableBuffering();
+                response.setContentLength( in.available() );
+            }
             response.setContentType( format );
             copy( in, response.getOutputStream() );
         } catch ( Throwable e ) {
@@ -149,4 +176,77 @@ class TileHandler {
         }
     }
 
+    /**
+     * Sends a tile file without buffering: the file is transferred to the servlet output stream via its
+     * {@link FileChannel} and the response headers are derived from the file metadata. Conditional requests
+     * (<code>If-None-Match</code>, <code>If-Modified-Since</code>) are answered with <code>304 Not Modified</code>.
+     */
+    private void sendFile( File file, String format, HttpServletRequest request, HttpResponseBuffer response )
+                            throws OWSException {
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream( file );
+            FileChannel channel = in.getChannel();
+            long length = channel.size();
+            long lastModified = file.lastModified();
+            String etag = "\"" + Long.toHexString( lastModified ) + "-" + Long.toHexString( length ) + "\"";
+
+            response.disableBuffering();
+            response.setHeader( "ETag", etag );
+            response.setDateHeader( "Last-Modified", lastModified );
+            if ( isNotModified( request, etag, lastModified ) ) {
+                LOG.debug( "Tile file {} has not been modified.", file );
+                response.setStatus( SC_NOT_MODIFIED );
+                return;
+            }
+            response.setContentType( format );
+            if ( length <= Integer.MAX_VALUE ) {
+                response.setContentLength( (int) length );
+            } else {
+                response.setHeader( "Content-Length", Long.toString( length ) );
+            }
+            WritableByteChannel out = Channels.newChannel( response.getOutputStream() );
+            long pos = 0;
+            while ( pos < length ) {
+                long transferred = channel.transferTo( pos, length - pos, out );
+                if ( transferred <= 0 ) {
+                    break;
+                }
+                pos += transferred;
+            }
+        } catch ( IOException e ) {
+            throw new OWSException( e.getMessage(), e, NO_APPLICABLE_CODE );
+        } finally {
+            closeQuietly( in );
+        }
+    }
+
+    private static boolean isNotModified( HttpServletRequest request, String etag, long lastModified ) {
+        if ( request == null ) {
+            return false;
+        }
+        String ifNoneMatch = request.getHeader( "If-None-Match" );
+        if ( ifNoneMatch != null ) {
+            for ( String tag : ifNoneMatch.split( "," ) ) {
+                tag = tag.trim();
+                if ( tag.startsWith( "W/" ) ) {
+                    tag = tag.substring( 2 );
+                }
+                if ( tag.equals( "*" ) || tag.equals( etag ) ) {
+                    return true;
+                }
+            }
+            // If-Modified-Since must be ignored if If-None-Match is present
+            return false;
+        }
+        try {
+            long ifModifiedSince = request.getDateHeader( "If-Modified-Since" );
+            // HTTP dates have a resolution of one second
+            return ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+        } catch ( IllegalArgumentException e ) {
+            LOG.debug( "Ignoring invalid If-Modified-Since header: {}", e.getMessage() );
+            return false;
+        }
+    }
+
 }
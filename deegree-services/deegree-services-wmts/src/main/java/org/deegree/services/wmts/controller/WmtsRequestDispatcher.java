@@ -48,6 +48,7 @@ import static org.slf4j.LoggerFactory.getLogger;
 import java.util.Map;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
 
 import org.deegree.commons.ows.exception.OWSException;
 import org.deegree.commons.tom.ows.Version;
@@ -87,7 +88,8 @@ class WmtsRequestDispatcher {
         tileHandler = new TileHandler( builder.getThemes() );
     }
 
-    void handleRequest( WMTSRequestType req, HttpResponseBuffer response, Map<String, String> map, Version version )
+    void handleRequest( WMTSRequestType req, HttpServletRequest request, HttpResponseBuffer response,
+                        Map<String, String> map, Version version )
                             throws OWSException, ServletException {
         if ( !map.get( "SERVICE" ).equals( "WMTS" ) ) {
             throw new OWSException( "The service parameter must to be WMTS.", INVALID_PARAMETER_VALUE, "service" );
@@ -116,7 +118,7 @@ class WmtsRequestDispatcher {
             }
             break;
         case GetTile:
-            tileHandler.getTile( map, response );
+            tileHandler.getTile( map, request, response );
             break;
         }
     }